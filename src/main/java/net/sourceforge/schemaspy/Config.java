@@ -89,6 +89,9 @@ public class Config
     private String userConnectionPropertiesFile;
     private Properties userConnectionProperties;
     private Integer maxDbThreads;
+    private boolean maxDbThreadsSpecified;
+    private Integer maxDbConnections;
+    private Integer fetchSize;
     private Integer maxDetailedTables;
     private String driverPath;
     private String css;
@@ -106,7 +109,28 @@ public class Config
     private Boolean rankDirBugEnabled;
     private Boolean encodeCommentsEnabled;
     private Boolean numRowsEnabled;
+    private Integer rowEstimateThreshold;
+    private Integer rowCountTimeout;
+    private Integer rowCountDeadline;
     private Boolean viewsEnabled;
+    private Boolean bulkMetadataEnabled;
+    private Boolean virtualThreadsEnabled;
+    private Boolean adaptiveThreadsEnabled;
+    private Integer maxTableRate;
+    private Boolean lazyTablesEnabled;
+    private String focusTable;
+    private File snapshotFile;
+    private File snapshotSource;
+    private File incrementalSnapshot;
+    private File ddlSource;
+    private File informationSchemaSource;
+    private File cacheDir;
+    private Integer cacheTtl;
+    private Integer cacheSize;
+    private Boolean cacheRefreshed;
+    private File diagramCacheDir;
+    private Integer diagramCacheSize;
+    private Boolean streamResultsEnabled;
     private Boolean meterEnabled;
     private Boolean railsEnabled;
     private Boolean evaluteAll;
@@ -655,6 +679,7 @@ public class Config
      */
     public void setMaxDbThreads(int maxDbThreads) {
         this.maxDbThreads = new Integer(maxDbThreads);
+        maxDbThreadsSpecified = true;
     }
 
     /**
@@ -675,13 +700,17 @@ public class Config
             String threads = properties.getProperty("dbThreads");
             if (threads == null)
                 threads = properties.getProperty("dbthreads");
-            if (threads != null)
+            if (threads != null) {
                 max = Integer.parseInt(threads);
+                maxDbThreadsSpecified = true;
+            }
             threads = pullParam("-dbThreads");
             if (threads == null)
                 threads = pullParam("-dbthreads");
-            if (threads != null)
+            if (threads != null) {
                 max = Integer.parseInt(threads);
+                maxDbThreadsSpecified = true;
+            }
             if (max < 0)
                 max = Integer.MAX_VALUE;
             else if (max == 0)
@@ -693,6 +722,97 @@ public class Config
         return maxDbThreads.intValue();
     }
 
+    /**
+     * Maximum number of connections to open to the database when querying
+     * metadata information with multiple threads.
+     * The effective number is also limited by {@link #getMaxDbThreads()}.
+     *
+     * @param maxDbConnections
+     */
+    public void setMaxDbConnections(int maxDbConnections) {
+        this.maxDbConnections = new Integer(maxDbConnections);
+    }
+
+    /**
+     * Defaults to just the one connection that the run was started with (as it
+     * always has been) unless the <code>dbConnections</code> property of the database type
+     * or <code>-dbConnections</code> says otherwise.  If the number of threads was
+     * specified (<code>-dbThreads</code>) then each of them gets a connection
+     * (up to 8 if they're unlimited).
+     *
+     * @see #setMaxDbConnections(int)
+     * @throws InvalidConfigurationException if unable to load properties
+     */
+    public int getMaxDbConnections() throws InvalidConfigurationException {
+        if (maxDbConnections == null) {
+            Properties properties;
+            try {
+                properties = getDbProperties(getDbType());
+            } catch (IOException exc) {
+                throw new InvalidConfigurationException("Failed to load properties for " + getDbType() + ": " + exc)
+                                .setParamName("-type");
+            }
+
+            int threads = getMaxDbThreads();
+            int max = !maxDbThreadsSpecified ? 1 : threads == Integer.MAX_VALUE ? 8 : threads;
+            String connections = properties.getProperty("dbConnections");
+            if (connections != null)
+                max = Integer.parseInt(connections);
+            connections = pullParam("-dbConnections");
+            if (connections != null)
+                max = Integer.parseInt(connections);
+            if (max < 1)
+                max = 1;
+
+            maxDbConnections = new Integer(max);
+        }
+
+        return Math.min(maxDbConnections.intValue(), getMaxDbThreads());
+    }
+
+    /**
+     * Number of rows that the driver should fetch per round trip when reading
+     * the results of catalog queries.  0 leaves it up to the driver.
+     *
+     * @param fetchSize
+     */
+    public void setFetchSize(int fetchSize) {
+        this.fetchSize = new Integer(fetchSize);
+    }
+
+    /**
+     * Defaults to 0 (the driver's default) unless the <code>fetchSize</code> property
+     * of the database type or <code>-fetchSize</code> says otherwise.
+     *
+     * @see #setFetchSize(int)
+     * @throws InvalidConfigurationException if unable to load properties
+     */
+    public int getFetchSize() throws InvalidConfigurationException {
+        if (fetchSize == null) {
+            Properties properties;
+            try {
+                properties = getDbProperties(getDbType());
+            } catch (IOException exc) {
+                throw new InvalidConfigurationException("Failed to load properties for " + getDbType() + ": " + exc)
+                                .setParamName("-type");
+            }
+
+            int size = 0;
+            String rows = properties.getProperty("fetchSize");
+            if (rows != null)
+                size = Integer.parseInt(rows);
+            rows = pullParam("-fetchSize");
+            if (rows != null)
+                size = Integer.parseInt(rows);
+            if (size < 0)
+                size = 0;
+
+            fetchSize = new Integer(size);
+        }
+
+        return fetchSize.intValue();
+    }
+
     public boolean isLogoEnabled() {
         if (logoEnabled == null)
             logoEnabled = !options.remove("-nologo");
@@ -786,6 +906,82 @@ public class Config
         return numRowsEnabled;
     }
 
+    /**
+     * When the database type provides <code>selectRowCountEstimatesSql</code>
+     * only tables that are estimated to have fewer rows than this are counted
+     * exactly.  The rest report the (much cheaper) estimate.
+     *
+     * @param threshold
+     */
+    public void setRowEstimateThreshold(int threshold) {
+        rowEstimateThreshold = new Integer(threshold);
+    }
+
+    /**
+     * Defaults to 100,000 rows.
+     *
+     * @see #setRowEstimateThreshold(int)
+     * @return
+     */
+    public int getRowEstimateThreshold() {
+        if (rowEstimateThreshold == null) {
+            String threshold = pullParam("-rowEstimateThreshold");
+            rowEstimateThreshold = new Integer(threshold == null ? 100000 : Integer.parseInt(threshold));
+        }
+
+        return rowEstimateThreshold.intValue();
+    }
+
+    /**
+     * Maximum number of seconds to spend counting the rows of any one table.
+     * Tables that take longer are reported as having -1 (unknown) rows.
+     *
+     * @param seconds
+     */
+    public void setRowCountTimeout(int seconds) {
+        rowCountTimeout = new Integer(seconds);
+    }
+
+    /**
+     * Defaults to 0 (no limit).
+     *
+     * @see #setRowCountTimeout(int)
+     * @return
+     */
+    public int getRowCountTimeout() {
+        if (rowCountTimeout == null) {
+            String seconds = pullParam("-rowCountTimeout");
+            rowCountTimeout = new Integer(seconds == null ? 0 : Integer.parseInt(seconds));
+        }
+
+        return rowCountTimeout.intValue();
+    }
+
+    /**
+     * Maximum number of seconds to spend counting the rows of all tables.
+     * Tables that haven't been counted by then are reported as having -1 (unknown) rows.
+     *
+     * @param seconds
+     */
+    public void setRowCountDeadline(int seconds) {
+        rowCountDeadline = new Integer(seconds);
+    }
+
+    /**
+     * Defaults to 0 (no limit).
+     *
+     * @see #setRowCountDeadline(int)
+     * @return
+     */
+    public int getRowCountDeadline() {
+        if (rowCountDeadline == null) {
+            String seconds = pullParam("-rowCountDeadline");
+            rowCountDeadline = new Integer(seconds == null ? 0 : Integer.parseInt(seconds));
+        }
+
+        return rowCountDeadline.intValue();
+    }
+
     /**
      * If enabled we'll include views in the analysis.<p/>
      *
@@ -808,6 +1004,472 @@ public class Config
         return viewsEnabled;
     }
 
+    /**
+     * If enabled we'll harvest the columns and primary keys of every table in
+     * the schema with one wildcarded metadata query each instead of querying
+     * each table individually.<p/>
+     *
+     * This can be enabled per database type with <code>bulkMetadata=true</code>
+     * in its <code>.properties</code>.<p/>
+     *
+     * Foreign keys are also collected in bulk if the database type has a
+     * <code>selectAllForeignKeysSql</code> query or says that its driver
+     * handles wildcarded foreign key queries with <code>bulkForeignKeys=true</code>.<p/>
+     *
+     * Defaults to <code>false</code> (disabled).
+     *
+     * @param enabled
+     */
+    public void setBulkMetadataEnabled(boolean enabled) {
+        bulkMetadataEnabled = enabled;
+    }
+
+    /**
+     * @see #setBulkMetadataEnabled(boolean)
+     * @return
+     */
+    public boolean isBulkMetadataEnabled() {
+        if (bulkMetadataEnabled == null)
+            bulkMetadataEnabled = options.remove("-bulkmeta");
+
+        return bulkMetadataEnabled;
+    }
+
+    /**
+     * If enabled (and the JVM supports them) metadata will be collected with
+     * one virtual thread per table instead of a fixed pool of <code>-dbThreads</code>
+     * platform threads, leaving the number of connections as the only limit.<p/>
+     *
+     * Defaults to <code>false</code> (disabled).
+     *
+     * @param enabled
+     */
+    public void setVirtualThreadsEnabled(boolean enabled) {
+        virtualThreadsEnabled = enabled;
+    }
+
+    /**
+     * @see #setVirtualThreadsEnabled(boolean)
+     * @return
+     */
+    public boolean isVirtualThreadsEnabled() {
+        if (virtualThreadsEnabled == null)
+            virtualThreadsEnabled = options.remove("-virtualThreads");
+
+        return virtualThreadsEnabled;
+    }
+
+    /**
+     * If enabled the number of tables whose details are collected concurrently
+     * starts at 1 and adapts to how the database copes: it grows while the
+     * latency of collecting a table's details stays flat and is cut back
+     * when latency degrades or its queries start failing.
+     * <code>-dbThreads</code> remains the hard cap.<p/>
+     *
+     * Defaults to <code>false</code> (disabled).
+     *
+     * @param enabled
+     */
+    public void setAdaptiveThreadsEnabled(boolean enabled) {
+        adaptiveThreadsEnabled = enabled;
+    }
+
+    /**
+     * @see #setAdaptiveThreadsEnabled(boolean)
+     * @return
+     */
+    public boolean isAdaptiveThreadsEnabled() {
+        if (adaptiveThreadsEnabled == null)
+            adaptiveThreadsEnabled = options.remove("-adaptiveThreads");
+
+        return adaptiveThreadsEnabled;
+    }
+
+    /**
+     * Maximum number of tables per second to start collecting the details of.
+     * Each table costs a handful of metadata queries so this is a way to limit
+     * the rate of queries against a busy (e.g. production) database.
+     *
+     * @param tablesPerSecond
+     */
+    public void setMaxTableRate(int tablesPerSecond) {
+        maxTableRate = new Integer(tablesPerSecond);
+    }
+
+    /**
+     * Defaults to 0 (no limit).
+     *
+     * @see #setMaxTableRate(int)
+     * @return
+     */
+    public int getMaxTableRate() {
+        if (maxTableRate == null) {
+            String tablesPerSecond = pullParam("-maxTableRate");
+            maxTableRate = new Integer(tablesPerSecond == null ? 0 : Integer.parseInt(tablesPerSecond));
+        }
+
+        return maxTableRate.intValue();
+    }
+
+    /**
+     * If enabled the tables are created with just their basic metadata
+     * (name, comments and row count estimate) and their columns, indexes,
+     * primary keys and foreign keys are collected the first time that they're
+     * needed.  Connecting a table's foreign keys collects the details of its
+     * immediate neighbors in one batch, so whatever only visits part of the
+     * schema (e.g. <code>-focus</code>) only pays for that part.<p/>
+     *
+     * Ignored along with <code>-meta</code> or <code>-incremental</code>, which
+     * need every table up front.  Defaults to <code>false</code> (disabled)
+     * unless a {@link #setFocusTable(String) focus table} is specified.
+     *
+     * @param enabled
+     */
+    public void setLazyTablesEnabled(boolean enabled) {
+        lazyTablesEnabled = enabled;
+    }
+
+    /**
+     * @see #setLazyTablesEnabled(boolean)
+     * @return
+     */
+    public boolean isLazyTablesEnabled() {
+        if (lazyTablesEnabled == null)
+            lazyTablesEnabled = options.remove("-lazy") || getFocusTable() != null;
+
+        return lazyTablesEnabled;
+    }
+
+    /**
+     * Only regenerate the details (pages and diagrams) of the specified table
+     * and its immediate relatives, leaving the rest of the output directory
+     * as it is.  Implies {@link #setLazyTablesEnabled(boolean) lazy tables}
+     * so that only the table's neighborhood is collected.<p/>
+     *
+     * Implied and Rails-based relationships aren't derived since that
+     * takes every table in the schema.
+     *
+     * @param tableName
+     */
+    public void setFocusTable(String tableName) {
+        focusTable = tableName;
+    }
+
+    /**
+     * @see #setFocusTable(String)
+     * @return <code>null</code> if everything is to be generated
+     */
+    public String getFocusTable() {
+        if (focusTable == null)
+            focusTable = pullParam("-focus");
+
+        return focusTable;
+    }
+
+    /**
+     * Once the schema has been analyzed write a snapshot of its model to
+     * the specified file so that it can be rendered again later
+     * (e.g. with a different style sheet or <code>-hq</code>) without
+     * connecting to the database.
+     *
+     * @param snapshotFile
+     * @see #setSnapshotSource(File)
+     */
+    public void setSnapshotFile(File snapshotFile) {
+        this.snapshotFile = snapshotFile;
+    }
+
+    /**
+     * @see #setSnapshotFile(File)
+     * @return <code>null</code> if a snapshot isn't to be written
+     */
+    public File getSnapshotFile() {
+        if (snapshotFile == null) {
+            String file = pullParam("-snapshot");
+            if (file != null)
+                snapshotFile = new File(file);
+        }
+
+        return snapshotFile;
+    }
+
+    /**
+     * Render the model from the specified snapshot (written by a previous run
+     * with {@link #setSnapshotFile(File)}) rather than analyzing the database.
+     * No connection is made to the database.
+     *
+     * @param snapshotSource
+     */
+    public void setSnapshotSource(File snapshotSource) {
+        this.snapshotSource = snapshotSource;
+    }
+
+    /**
+     * @see #setSnapshotSource(File)
+     * @return <code>null</code> if the database is to be analyzed
+     */
+    public File getSnapshotSource() {
+        if (snapshotSource == null) {
+            String file = pullParam("-fromSnapshot");
+            if (file != null)
+                snapshotSource = new File(file);
+        }
+
+        return snapshotSource;
+    }
+
+    /**
+     * Only analyze the tables that have changed (according to the database type's
+     * <code>selectLastDdlTimesSql</code>) since the specified snapshot was written
+     * (see {@link #setSnapshotFile(File)}), taking the rest from the snapshot.<p/>
+     *
+     * Typically the same file is also specified with {@link #setSnapshotFile(File)}
+     * so that the next run is incremental to this one.
+     * Everything is analyzed if the snapshot doesn't exist yet.
+     *
+     * @param incrementalSnapshot
+     */
+    public void setIncrementalSnapshot(File incrementalSnapshot) {
+        this.incrementalSnapshot = incrementalSnapshot;
+    }
+
+    /**
+     * @see #setIncrementalSnapshot(File)
+     * @return <code>null</code> if everything is to be analyzed
+     */
+    public File getIncrementalSnapshot() {
+        if (incrementalSnapshot == null) {
+            String file = pullParam("-incremental");
+            if (file != null)
+                incrementalSnapshot = new File(file);
+        }
+
+        return incrementalSnapshot;
+    }
+
+    /**
+     * Build the model from DDL (a schema dump, a script or a directory of
+     * migration scripts) rather than by connecting to the database.
+     * See {@link schemaspy.model.DdlParser} for what's understood.
+     *
+     * @param ddlSource
+     */
+    public void setDdlSource(File ddlSource) {
+        this.ddlSource = ddlSource;
+    }
+
+    /**
+     * @see #setDdlSource(File)
+     * @return <code>null</code> if the database is to be analyzed
+     */
+    public File getDdlSource() {
+        if (ddlSource == null) {
+            String file = pullParam("-ddl");
+            if (file != null)
+                ddlSource = new File(file);
+        }
+
+        return ddlSource;
+    }
+
+    /**
+     * Build the model from CSV/TSV exports of the database's <code>INFORMATION_SCHEMA</code>
+     * in the specified directory rather than by connecting to the database.
+     * See {@link schemaspy.model.InformationSchemaImporter} for the exports that are used.
+     *
+     * @param informationSchemaSource
+     */
+    public void setInformationSchemaSource(File informationSchemaSource) {
+        this.informationSchemaSource = informationSchemaSource;
+    }
+
+    /**
+     * @see #setInformationSchemaSource(File)
+     * @return <code>null</code> if the database is to be analyzed
+     */
+    public File getInformationSchemaSource() {
+        if (informationSchemaSource == null) {
+            String dir = pullParam("-infoSchema");
+            if (dir != null)
+                informationSchemaSource = new File(dir);
+        }
+
+        return informationSchemaSource;
+    }
+
+    /**
+     * Keep snapshots of analyzed schemas in the specified directory so that
+     * later runs against the same database, schema and filters (within
+     * {@link #setCacheTtl(int)}) render from the snapshot rather than
+     * analyzing the database again.
+     *
+     * @param cacheDir
+     */
+    public void setCacheDir(File cacheDir) {
+        this.cacheDir = cacheDir;
+    }
+
+    /**
+     * @see #setCacheDir(File)
+     * @return <code>null</code> if analysis isn't cached
+     */
+    public File getCacheDir() {
+        if (cacheDir == null) {
+            String dir = pullParam("-cache");
+            if (dir != null)
+                cacheDir = new File(dir);
+        }
+
+        return cacheDir;
+    }
+
+    /**
+     * How long (in minutes) a cached snapshot can be used for.
+     * Defaults to 60.
+     *
+     * @param minutes
+     * @see #setCacheDir(File)
+     */
+    public void setCacheTtl(int minutes) {
+        cacheTtl = new Integer(minutes);
+    }
+
+    /**
+     * @see #setCacheTtl(int)
+     * @return
+     */
+    public int getCacheTtl() {
+        if (cacheTtl == null) {
+            String minutes = pullParam("-cacheTtl");
+            cacheTtl = new Integer(minutes == null ? 60 : Integer.parseInt(minutes));
+        }
+
+        return cacheTtl.intValue();
+    }
+
+    /**
+     * The most space (in megabytes) that the cached snapshots can take up
+     * before the least recently used ones are evicted.
+     * Defaults to 256.
+     *
+     * @param megabytes
+     * @see #setCacheDir(File)
+     */
+    public void setCacheSize(int megabytes) {
+        cacheSize = new Integer(megabytes);
+    }
+
+    /**
+     * @see #setCacheSize(int)
+     * @return
+     */
+    public int getCacheSize() {
+        if (cacheSize == null) {
+            String megabytes = pullParam("-cacheSize");
+            cacheSize = new Integer(megabytes == null ? 256 : Integer.parseInt(megabytes));
+        }
+
+        return cacheSize.intValue();
+    }
+
+    /**
+     * If enabled the database is analyzed (and the cache refreshed)
+     * even if there's a usable snapshot in the cache.
+     *
+     * @param refreshed
+     * @see #setCacheDir(File)
+     */
+    public void setCacheRefreshed(boolean refreshed) {
+        cacheRefreshed = refreshed;
+    }
+
+    /**
+     * @see #setCacheRefreshed(boolean)
+     * @return
+     */
+    public boolean isCacheRefreshed() {
+        if (cacheRefreshed == null)
+            cacheRefreshed = options.remove("-refresh");
+
+        return cacheRefreshed;
+    }
+
+    /**
+     * Keep the diagrams that dot generates in the specified directory so that
+     * diagrams of graphs that haven't changed since an earlier run are reused
+     * rather than generated again.
+     *
+     * @param diagramCacheDir
+     */
+    public void setDiagramCacheDir(File diagramCacheDir) {
+        this.diagramCacheDir = diagramCacheDir;
+    }
+
+    /**
+     * @see #setDiagramCacheDir(File)
+     * @return <code>null</code> if diagrams aren't cached
+     */
+    public File getDiagramCacheDir() {
+        if (diagramCacheDir == null) {
+            String dir = pullParam("-diagramCache");
+            if (dir != null)
+                diagramCacheDir = new File(dir);
+        }
+
+        return diagramCacheDir;
+    }
+
+    /**
+     * The most space (in megabytes) that the cached diagrams can take up
+     * before the least recently used ones are evicted.
+     * Defaults to 512.
+     *
+     * @param megabytes
+     * @see #setDiagramCacheDir(File)
+     */
+    public void setDiagramCacheSize(int megabytes) {
+        diagramCacheSize = new Integer(megabytes);
+    }
+
+    /**
+     * @see #setDiagramCacheSize(int)
+     * @return
+     */
+    public int getDiagramCacheSize() {
+        if (diagramCacheSize == null) {
+            String megabytes = pullParam("-diagramCacheSize");
+            diagramCacheSize = new Integer(megabytes == null ? 512 : Integer.parseInt(megabytes));
+        }
+
+        return diagramCacheSize.intValue();
+    }
+
+    /**
+     * If enabled the results of catalog queries are streamed from the database
+     * rather than buffered in their entirety by the driver.
+     * Streaming is requested with the (MySQL) convention of a fetch size
+     * of <code>Integer.MIN_VALUE</code>.<p/>
+     *
+     * Defaults to <code>false</code> (disabled) unless the database type's
+     * <code>streamResults</code> property says otherwise.
+     *
+     * @param enabled
+     */
+    public void setStreamResultsEnabled(boolean enabled) {
+        streamResultsEnabled = enabled;
+    }
+
+    /**
+     * @see #setStreamResultsEnabled(boolean)
+     * @return
+     */
+    public boolean isStreamResultsEnabled() {
+        if (streamResultsEnabled == null)
+            streamResultsEnabled = options.remove("-streamResults");
+
+        return streamResultsEnabled;
+    }
+
     /**
      * Returns <code>true</code> if metering should be embedded in
      * the generated pages.<p/>
@@ -1599,8 +2261,32 @@ public class Config
             params.add("-meter");
         if (!isNumRowsEnabled())
             params.add("-norows");
+        params.add("-rowEstimateThreshold");
+        params.add(String.valueOf(getRowEstimateThreshold()));
+        params.add("-rowCountTimeout");
+        params.add(String.valueOf(getRowCountTimeout()));
+        params.add("-rowCountDeadline");
+        params.add(String.valueOf(getRowCountDeadline()));
         if (!isViewsEnabled())
             params.add("-noviews");
+        if (isBulkMetadataEnabled())
+            params.add("-bulkmeta");
+        if (isVirtualThreadsEnabled())
+            params.add("-virtualThreads");
+        if (isAdaptiveThreadsEnabled())
+            params.add("-adaptiveThreads");
+        if (getMaxTableRate() > 0) {
+            params.add("-maxTableRate");
+            params.add(String.valueOf(getMaxTableRate()));
+        }
+        if (isLazyTablesEnabled())
+            params.add("-lazy");
+        if (getFocusTable() != null) {
+            params.add("-focus");
+            params.add(getFocusTable());
+        }
+        if (isStreamResultsEnabled())
+            params.add("-streamResults");
         if (isRankDirBugEnabled())
             params.add("-rankdirbug");
         if (isRailsEnabled())
@@ -1693,6 +2379,42 @@ public class Config
             params.add("-meta");
             params.add(value);
         }
+        if (getSnapshotFile() != null) {
+            params.add("-snapshot");
+            params.add(getSnapshotFile().toString());
+        }
+        if (getSnapshotSource() != null) {
+            params.add("-fromSnapshot");
+            params.add(getSnapshotSource().toString());
+        }
+        if (getIncrementalSnapshot() != null) {
+            params.add("-incremental");
+            params.add(getIncrementalSnapshot().toString());
+        }
+        if (getDdlSource() != null) {
+            params.add("-ddl");
+            params.add(getDdlSource().toString());
+        }
+        if (getInformationSchemaSource() != null) {
+            params.add("-infoSchema");
+            params.add(getInformationSchemaSource().toString());
+        }
+        if (getCacheDir() != null) {
+            params.add("-cache");
+            params.add(getCacheDir().toString());
+            params.add("-cacheTtl");
+            params.add(String.valueOf(getCacheTtl()));
+            params.add("-cacheSize");
+            params.add(String.valueOf(getCacheSize()));
+            if (isCacheRefreshed())
+                params.add("-refresh");
+        }
+        if (getDiagramCacheDir() != null) {
+            params.add("-diagramCache");
+            params.add(getDiagramCacheDir().toString());
+            params.add("-diagramCacheSize");
+            params.add(String.valueOf(getDiagramCacheSize()));
+        }
         if (getGraphvizDir() != null) {
             params.add("-gv");
             params.add(getGraphvizDir().toString());
@@ -1711,6 +2433,10 @@ public class Config
         params.add(getIndirectColumnExclusions().pattern());
         params.add("-dbthreads");
         params.add(String.valueOf(getMaxDbThreads()));
+        params.add("-dbConnections");
+        params.add(String.valueOf(getMaxDbConnections()));
+        params.add("-fetchSize");
+        params.add(String.valueOf(getFetchSize()));
         params.add("-maxdet");
         params.add(String.valueOf(getMaxDetailedTables()));
         params.add("-o");
@@ -1718,4 +2444,4 @@ public class Config
 
         return params;
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
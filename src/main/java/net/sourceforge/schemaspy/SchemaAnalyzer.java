@@ -34,6 +34,7 @@ import java.util.List;
 import java.util.Properties;
 import java.util.Set;
 import java.util.StringTokenizer;
+import java.util.TreeSet;
 import java.util.logging.ConsoleHandler;
 import java.util.logging.Handler;
 import java.util.logging.Level;
@@ -42,16 +43,24 @@ import javax.xml.parsers.DocumentBuilder;
 import javax.xml.parsers.DocumentBuilderFactory;
 import schemaspy.model.ConnectionFailure;
 import schemaspy.model.Database;
+import schemaspy.model.DatabaseCapabilities;
+import schemaspy.model.DatabaseSnapshot;
+import schemaspy.model.DdlParser;
+import schemaspy.model.InformationSchemaImporter;
 import schemaspy.model.EmptySchemaException;
 import schemaspy.model.ForeignKeyConstraint;
 import schemaspy.model.ImpliedForeignKeyConstraint;
 import schemaspy.model.InvalidConfigurationException;
+import schemaspy.model.RowCounter;
+import schemaspy.model.SnapshotCache;
 import schemaspy.model.Table;
 import schemaspy.model.TableColumn;
 import schemaspy.model.xml.SchemaMeta;
+import schemaspy.util.ConnectionPool;
 import schemaspy.util.ConnectionURLBuilder;
 import schemaspy.util.DOMUtil;
 import schemaspy.util.DbSpecificOption;
+import schemaspy.util.DiagramCache;
 import schemaspy.util.Dot;
 import schemaspy.util.LineWriter;
 import schemaspy.util.LogFormatter;
@@ -133,231 +142,360 @@ public class SchemaAnalyzer {
                 return null;
             }
 ////////////////////////////////////////////////////////////////////////////////////////////////////
-            Properties properties = config.getDbProperties(config.getDbType());
+            File snapshotSource = config.getSnapshotSource();
+            File ddlSource = config.getDdlSource();
+            File informationSchemaSource = config.getInformationSchemaSource();
+            Properties properties = null;
+            ConnectionURLBuilder urlBuilder = null;
+            ConnectionPool pool = null;
+            Connection connection = null;
+            DatabaseMetaData meta = null;
+            RowCounter rowCounter = null;
+            SnapshotCache cache = null;
+            String cacheKey = null;
+            String dbName;
+            String schema;
+            Database db = null;
+
+            if (snapshotSource == null && ddlSource == null && informationSchemaSource == null && config.getCacheDir() != null) {
+                // use what a recent run analyzed if it analyzed the same thing
+                properties = config.getDbProperties(config.getDbType());
+                urlBuilder = new ConnectionURLBuilder(config, properties);
+                cache = new SnapshotCache(config.getCacheDir(), config.getCacheTtl(), config.getCacheSize());
+                cacheKey = SnapshotCache.getKey(config, urlBuilder.getConnectionURL());
+                db = cache.get(cacheKey, config.isCacheRefreshed());
+            }
 
-            ConnectionURLBuilder urlBuilder = new ConnectionURLBuilder(config, properties);
-            if (config.getDb() == null)
-                config.setDb(urlBuilder.getConnectionURL());
+            if (snapshotSource != null || db != null) {
+                // render what a previous run analyzed without connecting to the database
+                if (config.isHtmlGenerationEnabled()) {
+                    new File(outputDir, "app/views/schemas").mkdirs();
+                    new File(outputDir, "public/images").mkdirs();
+                }
 
-            if (config.getRemainingParameters().size() != 0) {
-                StringBuilder msg = new StringBuilder("Unrecognized option(s):");
-                for (String remnant : config.getRemainingParameters())
-                    msg.append(" " + remnant);
-                logger.warning(msg.toString());
-            }
+                if (db == null) {
+                    logger.info("Reading schema details from snapshot " + snapshotSource);
+                    db = DatabaseSnapshot.read(snapshotSource);
+                } else {
+                    logger.info("Using schema details cached in " + config.getCacheDir());
+                }
+                dbName = db.getName();
+                schema = db.getSchema();
+                config.setDb(dbName);
+                if (schema != null)
+                    config.setSchema(schema);
+            } else if (ddlSource != null) {
+                // build the model from DDL without connecting to the database
+                if (config.isHtmlGenerationEnabled()) {
+                    new File(outputDir, "app/views/schemas").mkdirs();
+                    new File(outputDir, "public/images").mkdirs();
+                }
+
+                dbName = config.getDb() == null ? ddlSource.getName() : config.getDb();
+                schema = config.getSchema();
+                config.setDb(dbName);
+                config.setNumRowsEnabled(false);    // nothing to count
+
+                logger.info("Reading schema details from DDL " + ddlSource);
+                db = DdlParser.read(ddlSource, dbName, schema, config.getDescription());
+            } else if (informationSchemaSource != null) {
+                // build the model from exports of INFORMATION_SCHEMA without connecting to the database
+                if (config.isHtmlGenerationEnabled()) {
+                    new File(outputDir, "app/views/schemas").mkdirs();
+                    new File(outputDir, "public/images").mkdirs();
+                }
+
+                dbName = config.getDb() == null ? informationSchemaSource.getName() : config.getDb();
+                config.setDb(dbName);
+
+                logger.info("Reading schema details from INFORMATION_SCHEMA exports in " + informationSchemaSource);
+                db = InformationSchemaImporter.read(informationSchemaSource, dbName, config.getSchema(), config.getDescription());
+                schema = db.getSchema();
+                if (schema != null)
+                    config.setSchema(schema);
+            } else {
+                if (urlBuilder == null) {
+                    properties = config.getDbProperties(config.getDbType());
+                    urlBuilder = new ConnectionURLBuilder(config, properties);
+                }
+                if (config.getDb() == null)
+                    config.setDb(urlBuilder.getConnectionURL());
+
+                if (config.getRemainingParameters().size() != 0) {
+                    StringBuilder msg = new StringBuilder("Unrecognized option(s):");
+                    for (String remnant : config.getRemainingParameters())
+                        msg.append(" " + remnant);
+                    logger.warning(msg.toString());
+                }
 
-            String driverClass = properties.getProperty("driver");
-            String driverPath = properties.getProperty("driverPath");
-            if (driverPath == null)
-                driverPath = "";
-            if (config.getDriverPath() != null)
-                driverPath = config.getDriverPath() + File.pathSeparator + driverPath;
+                String driverClass = properties.getProperty("driver");
+                String driverPath = properties.getProperty("driverPath");
+                if (driverPath == null)
+                    driverPath = "";
+                if (config.getDriverPath() != null)
+                    driverPath = config.getDriverPath() + File.pathSeparator + driverPath;
 
-            Connection connection = getConnection(config, urlBuilder.getConnectionURL(), driverClass, driverPath);
+                pool = getConnectionPool(config, urlBuilder.getConnectionURL(), driverClass, driverPath);
+                connection = pool.getConnection();
 
-            DatabaseMetaData meta = connection.getMetaData();
-            String dbName = config.getDb();
-            String schema = config.getSchema();
+                meta = connection.getMetaData();
+                DatabaseCapabilities capabilities = new DatabaseCapabilities(meta);
+                dbName = config.getDb();
+                schema = config.getSchema();
 //////////////////////////////////////////////////IGNORE////////////////////////////////////////////////////
-            if (config.isEvaluateAllEnabled()) {
-                List<String> args = config.asList();
-                for (DbSpecificOption option : urlBuilder.getOptions()) {
-                    if (!args.contains("-" + option.getName())) {
-                        args.add("-" + option.getName());
-                        args.add(option.getValue().toString());
+                if (config.isEvaluateAllEnabled()) {
+                    List<String> args = config.asList();
+                    for (DbSpecificOption option : urlBuilder.getOptions()) {
+                        if (!args.contains("-" + option.getName())) {
+                            args.add("-" + option.getName());
+                            args.add(option.getValue().toString());
+                        }
                     }
-                }
  
-                yankParam(args, "-o");  // param will be replaced by something appropriate
-                yankParam(args, "-s");  // param will be replaced by something appropriate
-                args.remove("-all");    // param will be replaced by something appropriate
-
-                String schemaSpec = config.getSchemaSpec();
-                if (schemaSpec == null)
-                    schemaSpec = properties.getProperty("schemaSpec", ".*");
-                MultipleSchemaAnalyzer.getInstance().analyze(dbName, meta, schemaSpec, null, args, config.getUser(), outputDir, config.getCharset(), Config.getLoadedFromJar());
-                return null;    // no database to return
-            }
+                    yankParam(args, "-o");  // param will be replaced by something appropriate
+                    yankParam(args, "-s");  // param will be replaced by something appropriate
+                    args.remove("-all");    // param will be replaced by something appropriate
+
+                    String schemaSpec = config.getSchemaSpec();
+                    if (schemaSpec == null)
+                        schemaSpec = properties.getProperty("schemaSpec", ".*");
+                    MultipleSchemaAnalyzer.getInstance().analyze(dbName, meta, schemaSpec, null, args, config.getUser(), outputDir, config.getCharset(), Config.getLoadedFromJar());
+                    return null;    // no database to return
+                }
 ///////////////////////////////////////////////////////////////////////////////////////////////////////////
-            if (schema == null && meta.supportsSchemasInTableDefinitions() &&
-                    !config.isSchemaDisabled()) {
-                schema = config.getUser();
-                if (schema == null)
-                    throw new InvalidConfigurationException("Either a schema ('-s') or a user ('-u') must be specified");
-                config.setSchema(schema);
-            }
+                if (schema == null && capabilities.supportsSchemasInTableDefinitions() &&
+                        !config.isSchemaDisabled()) {
+                    schema = config.getUser();
+                    if (schema == null)
+                        throw new InvalidConfigurationException("Either a schema ('-s') or a user ('-u') must be specified");
+                    config.setSchema(schema);
+                }
 
-            SchemaMeta schemaMeta = config.getMeta() == null ? null : new SchemaMeta(config.getMeta(), dbName, schema);
-            if (config.isHtmlGenerationEnabled()) {
-                if(!(new File(outputDir, "app/views/schemas").exists()))
-                  new File(outputDir, "app/views/schemas").mkdirs();
-                if(!(new File(outputDir, "public/images").exists()))
-                  new File(outputDir, "public/images").mkdirs();
+                SchemaMeta schemaMeta = config.getMeta() == null ? null : new SchemaMeta(config.getMeta(), dbName, schema);
+                if (config.isHtmlGenerationEnabled()) {
+                    if(!(new File(outputDir, "app/views/schemas").exists()))
+                      new File(outputDir, "app/views/schemas").mkdirs();
+                    if(!(new File(outputDir, "public/images").exists()))
+                      new File(outputDir, "public/images").mkdirs();
+
+                    logger.info("Connected to " + capabilities.getDatabaseProduct());
+
+                    if (schemaMeta != null && schemaMeta.getFile() != null) {
+                        logger.info("Using additional metadata from " + schemaMeta.getFile());
+                    }
 
-                logger.info("Connected to " + meta.getDatabaseProductName() + " - " + meta.getDatabaseProductVersion());
+                    logger.info("Gathering schema details");
 
-                if (schemaMeta != null && schemaMeta.getFile() != null) {
-                    logger.info("Using additional metadata from " + schemaMeta.getFile());
+                    if (!fineEnabled)
+                        System.out.print("Gathering schema details...");
                 }
 
-                logger.info("Gathering schema details");
+                //
+                // create our representation of the database
+                //
+                try {
+                    db = new Database(config, pool, meta, capabilities, dbName, schema, properties, schemaMeta);
+                } finally {
+                    if (db == null)
+                        pool.close();
+                }
 
-                if (!fineEnabled)
-                    System.out.print("Gathering schema details...");
-            }
+                // count rows in the background (on the additional connections) while we render
+                // (not when focusing on a few tables, which don't pay for counting them all)
+                if (config.getFocusTable() == null) {
+                    rowCounter = new RowCounter(db, pool, config);
+                    rowCounter.start(config.getMaxDbThreads());
+                }
 
-            //
-            // create our representation of the database
-            //
-            Database db = new Database(config, connection, meta, dbName, schema, properties, schemaMeta);
+                schemaMeta = null; // done with it so let GC reclaim it
+            }
 
-            schemaMeta = null; // done with it so let GC reclaim it
+            if (config.getFocusTable() != null) {
+                try {
+                    writeFocusedDetails(db, config, outputDir);
+                } finally {
+                    if (pool != null)
+                        pool.close();
+                }
+                return db;
+            }
 
             LineWriter out;
             Collection<Table> tables = new ArrayList<Table>(db.getTables());
             tables.addAll(db.getViews());
 
-            if (tables.isEmpty()) {
-                dumpNoTablesMessage(schema, config.getUser(), meta, config.getTableInclusions() != null);
-                if (!config.isOneOfMultipleSchemas()) // don't bail if we're doing the whole enchilada
-                    throw new EmptySchemaException();
-            }
-
             DocumentBuilderFactory factory = DocumentBuilderFactory.newInstance();
             DocumentBuilder builder = factory.newDocumentBuilder();
             Document document = builder.newDocument();
             Element rootNode = document.createElement("database");
-            document.appendChild(rootNode);
-            DOMUtil.appendAttribute(rootNode, "name", dbName);
-            if (schema != null)
-                DOMUtil.appendAttribute(rootNode, "schema", schema);
-            DOMUtil.appendAttribute(rootNode, "type", db.getDatabaseProduct());
 
-            if (config.isHtmlGenerationEnabled()) {
-                startSummarizing = System.currentTimeMillis();
-                if (!fineEnabled) {
-                    System.out.println("(" + (startSummarizing - start) / 1000 + "sec)");
+            // whatever happens, stop counting rows and release the pooled connections
+            try {
+                if (tables.isEmpty()) {
+                    if (meta != null) {
+                        dumpNoTablesMessage(schema, config.getUser(), meta, config.getTableInclusions() != null);
+                    } else if (cache != null) {
+                        // a cache hit, so what's cached is what a recent run found
+                        System.out.println();
+                        System.out.println("No tables or views were found in the analysis cached in '" + config.getCacheDir() + "'.");
+                        System.out.println("Specify -refresh to analyze the database again.");
+                    } else {
+                        System.out.println();
+                        System.out.println("No tables or views were found in " + (snapshotSource != null ? "snapshot '" + snapshotSource :
+                                                                                ddlSource != null ? "DDL '" + ddlSource :
+                                                                                "INFORMATION_SCHEMA exports '" + informationSchemaSource) + "'.");
+                    }
+                    if (!config.isOneOfMultipleSchemas()) // don't bail if we're doing the whole enchilada
+                        throw new EmptySchemaException();
                 }
 
-                logger.info("Gathered schema details in " + (startSummarizing - start) / 1000 + " seconds");
-                logger.info("Writing/graphing summary");
-                System.err.flush();
-                System.out.flush();
-                if (!fineEnabled) {
-                    System.out.print("Writing/graphing summary");
-                    System.out.print(".");
-                }
-                //ImageWriter.getInstance().writeImages(outputDir);
-                ResourceWriter.getInstance().writeResource("/index.html.erb", new File(outputDir, "/app/views/schemas/index.html.erb"));
-                out = new LineWriter(new File(outputDir, "schemaSpy.css"), config.getCharset());
-                StyleSheet.getInstance().write(out);
-                out.close();
-                if (!fineEnabled)
-                    System.out.print(".");
-
-                boolean showDetailedTables = tables.size() <= config.getMaxDetailedTables();
-                final boolean includeImpliedConstraints = config.isImpliedConstraintsEnabled();
-
-                // if evaluating a 'ruby on rails-based' database then connect the columns
-                // based on RoR conventions
-                // note that this is done before 'hasRealRelationships' gets evaluated so
-                // we get a relationships ER diagram
-                if (config.isRailsEnabled())
-                    DbAnalyzer.getRailsConstraints(db.getTablesByName());
-
-                File diagramsDir = new File(outputDir, "public/images");
-
-                // generate the compact form of the relationships .dot file
-                String dotBaseFilespec = "relationships";
-                out = new LineWriter(new File(diagramsDir, dotBaseFilespec + ".real.compact.dot"), Config.DOT_CHARSET);
-                WriteStats stats = new WriteStats(tables);
-    
-                DotFormatter.getInstance().writeRealRelationships(db, tables, true, showDetailedTables, stats, out);
-    /////////////////////////////////////////////////////////////////////////////////////////////////////////////////
-                boolean hasRealRelationships = stats.getNumTablesWritten() > 0 || stats.getNumViewsWritten() > 0;
-                out.close();
-
-                if (hasRealRelationships) {
-                    // real relationships exist so generate the 'big' form of the relationships .dot file
+                document.appendChild(rootNode);
+                DOMUtil.appendAttribute(rootNode, "name", dbName);
+                if (schema != null)
+                    DOMUtil.appendAttribute(rootNode, "schema", schema);
+                DOMUtil.appendAttribute(rootNode, "type", db.getDatabaseProduct());
+
+                if (config.isHtmlGenerationEnabled()) {
+                    startSummarizing = System.currentTimeMillis();
+                    if (!fineEnabled) {
+                        System.out.println("(" + (startSummarizing - start) / 1000 + "sec)");
+                    }
+
+                    logger.info("Gathered schema details in " + (startSummarizing - start) / 1000 + " seconds");
+                    logger.info("Writing/graphing summary");
+                    System.err.flush();
+                    System.out.flush();
+                    if (!fineEnabled) {
+                        System.out.print("Writing/graphing summary");
+                        System.out.print(".");
+                    }
+                    //ImageWriter.getInstance().writeImages(outputDir);
+                    ResourceWriter.getInstance().writeResource("/index.html.erb", new File(outputDir, "/app/views/schemas/index.html.erb"));
+                    out = new LineWriter(new File(outputDir, "schemaSpy.css"), config.getCharset());
+                    StyleSheet.getInstance().write(out);
+                    out.close();
                     if (!fineEnabled)
                         System.out.print(".");
-                    out = new LineWriter(new File(diagramsDir, dotBaseFilespec + ".real.large.dot"), Config.DOT_CHARSET);
-                    DotFormatter.getInstance().writeRealRelationships(db, tables, false, showDetailedTables, stats, out);
+
+                    boolean showDetailedTables = tables.size() <= config.getMaxDetailedTables();
+                    final boolean includeImpliedConstraints = config.isImpliedConstraintsEnabled();
+
+                    // if evaluating a 'ruby on rails-based' database then connect the columns
+                    // based on RoR conventions
+                    // note that this is done before 'hasRealRelationships' gets evaluated so
+                    // we get a relationships ER diagram
+                    if (config.isRailsEnabled())
+                        DbAnalyzer.getRailsConstraints(db.getTablesByName());
+
+                    File diagramsDir = new File(outputDir, "public/images");
+
+                    // generate the compact form of the relationships .dot file
+                    String dotBaseFilespec = "relationships";
+                    out = new LineWriter(new File(diagramsDir, dotBaseFilespec + ".real.compact.dot"), Config.DOT_CHARSET);
+                    WriteStats stats = new WriteStats(tables);
+
+                    DotFormatter.getInstance().writeRealRelationships(db, tables, true, showDetailedTables, stats, out);
+        /////////////////////////////////////////////////////////////////////////////////////////////////////////////////
+                    boolean hasRealRelationships = stats.getNumTablesWritten() > 0 || stats.getNumViewsWritten() > 0;
                     out.close();
-                }
 
-                // getting implied constraints has a side-effect of associating the parent/child tables, so don't do it
-                // here unless they want that behavior
-                List<ImpliedForeignKeyConstraint> impliedConstraints = null;
-                if (includeImpliedConstraints)
-                    impliedConstraints = DbAnalyzer.getImpliedConstraints(tables);
-                else
-                    impliedConstraints = new ArrayList<ImpliedForeignKeyConstraint>();
+                    if (hasRealRelationships) {
+                        // real relationships exist so generate the 'big' form of the relationships .dot file
+                        if (!fineEnabled)
+                            System.out.print(".");
+                        out = new LineWriter(new File(diagramsDir, dotBaseFilespec + ".real.large.dot"), Config.DOT_CHARSET);
+                        DotFormatter.getInstance().writeRealRelationships(db, tables, false, showDetailedTables, stats, out);
+                        out.close();
+                    }
 
-                List<Table> orphans = DbAnalyzer.getOrphans(tables);
-                boolean hasOrphans = !orphans.isEmpty() && Dot.getInstance().isValid();
+                    // getting implied constraints has a side-effect of associating the parent/child tables, so don't do it
+                    // here unless they want that behavior
+                    List<ImpliedForeignKeyConstraint> impliedConstraints = null;
+                    if (includeImpliedConstraints)
+                        impliedConstraints = DbAnalyzer.getImpliedConstraints(tables);
+                    else
+                        impliedConstraints = new ArrayList<ImpliedForeignKeyConstraint>();
 
-                if (!fineEnabled)
-                    System.out.print(".");
+                    List<Table> orphans = DbAnalyzer.getOrphans(tables);
+                    boolean hasOrphans = !orphans.isEmpty() && Dot.getInstance().isValid();
 
-                File impliedDotFile = new File(diagramsDir, dotBaseFilespec + ".implied.compact.dot");
-                out = new LineWriter(impliedDotFile, Config.DOT_CHARSET);
-                boolean hasImplied = DotFormatter.getInstance().writeAllRelationships(db, tables, true, showDetailedTables, stats, out);
+                    if (!fineEnabled)
+                        System.out.print(".");
 
-                Set<TableColumn> excludedColumns = stats.getExcludedColumns();
-                out.close();
-                if (hasImplied) {
-                    impliedDotFile = new File(diagramsDir, dotBaseFilespec + ".implied.large.dot");
+                    File impliedDotFile = new File(diagramsDir, dotBaseFilespec + ".implied.compact.dot");
                     out = new LineWriter(impliedDotFile, Config.DOT_CHARSET);
-                    DotFormatter.getInstance().writeAllRelationships(db, tables, false, showDetailedTables, stats, out);
+                    boolean hasImplied = DotFormatter.getInstance().writeAllRelationships(db, tables, true, showDetailedTables, stats, out);
+
+                    Set<TableColumn> excludedColumns = stats.getExcludedColumns();
                     out.close();
-                } else {
-                    impliedDotFile.delete();
-                }
+                    if (hasImplied) {
+                        impliedDotFile = new File(diagramsDir, dotBaseFilespec + ".implied.large.dot");
+                        out = new LineWriter(impliedDotFile, Config.DOT_CHARSET);
+                        DotFormatter.getInstance().writeAllRelationships(db, tables, false, showDetailedTables, stats, out);
+                        out.close();
+                    } else {
+                        impliedDotFile.delete();
+                    }
 
-                out = new LineWriter(new File(outputDir,"app/views/schemas/_relationships.html.erb"), config.getCharset());
-                HtmlRelationshipsPage.getInstance().write(db, diagramsDir, dotBaseFilespec, hasOrphans, hasRealRelationships, hasImplied, excludedColumns, out);
-                out.close();
+                    out = new LineWriter(new File(outputDir,"app/views/schemas/_relationships.html.erb"), config.getCharset());
+                    HtmlRelationshipsPage.getInstance().write(db, diagramsDir, dotBaseFilespec, hasOrphans, hasRealRelationships, hasImplied, excludedColumns, out);
+                    out.close();
 
-                if (!fineEnabled)
-                    System.out.print(".");
-                if (!fineEnabled)
-                    System.out.print(".");
-                out = new LineWriter(new File(outputDir,"app/views/schemas/_index_table.html.erb"), 64 * 1024, config.getCharset());
-                HtmlMainIndexPage.getInstance().write(db, tables, hasOrphans, out);
-                out.close();
+                    if (!fineEnabled)
+                        System.out.print(".");
+                    if (!fineEnabled)
+                        System.out.print(".");
+                    out = new LineWriter(new File(outputDir,"app/views/schemas/_index_table.html.erb"), 64 * 1024, config.getCharset());
+                    HtmlMainIndexPage.getInstance().write(db, tables, hasOrphans, out);
+                    out.close();
 
-                if (!fineEnabled)
-                    System.out.print(".");
+                    if (!fineEnabled)
+                        System.out.print(".");
 
-                List<ForeignKeyConstraint> constraints = DbAnalyzer.getForeignKeyConstraints(tables);
-                if (!fineEnabled)
-                    System.out.print(".");
-                if (!fineEnabled)
-                    System.out.print(".");
-                startDiagrammingDetails = System.currentTimeMillis();
-                if (!fineEnabled)
-                    System.out.println("(" + (startDiagrammingDetails - startSummarizing) / 1000 + "sec)");
-                logger.info("Completed summary in " + (startDiagrammingDetails - startSummarizing) / 1000 + " seconds");
-                logger.info("Writing/diagramming details");
-                if (!fineEnabled) {
-                    System.out.print("Writing/diagramming details");
-                }
-///////////////////////////////////////////////////////////////////////////////////////////////////////////////
-                HtmlTablePage tableFormatter = HtmlTablePage.getInstance();
-                for (Table table : tables) {
-                    tableFormatter.reset();
+                    List<ForeignKeyConstraint> constraints = DbAnalyzer.getForeignKeyConstraints(tables);
                     if (!fineEnabled)
-                        System.out.print('.');
-                    else
-                        logger.fine("Writing details of " + table.getName());
+                        System.out.print(".");
+                    if (!fineEnabled)
+                        System.out.print(".");
+                    startDiagrammingDetails = System.currentTimeMillis();
+                    if (!fineEnabled)
+                        System.out.println("(" + (startDiagrammingDetails - startSummarizing) / 1000 + "sec)");
+                    logger.info("Completed summary in " + (startDiagrammingDetails - startSummarizing) / 1000 + " seconds");
+                    logger.info("Writing/diagramming details");
+                    if (!fineEnabled) {
+                        System.out.print("Writing/diagramming details");
+                    }
+///////////////////////////////////////////////////////////////////////////////////////////////////////////////
+                    HtmlTablePage tableFormatter = HtmlTablePage.getInstance();
+                    for (Table table : tables) {
+                        tableFormatter.reset();
+                        if (!fineEnabled)
+                            System.out.print('.');
+                        else
+                            logger.fine("Writing details of " + table.getName());
+
+                        out = new LineWriter(new File(outputDir, "app/views/schemas/_" + table.getName() + "_table.html.erb"), 24 * 1024, config.getCharset());
+                        tableFormatter.write(db, table, hasOrphans, outputDir, stats, out);
+                        out.close();
+                    }
+///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
 
-                    out = new LineWriter(new File(outputDir, "app/views/schemas/_" + table.getName() + "_table.html.erb"), 24 * 1024, config.getCharset());
-                    tableFormatter.write(db, table, hasOrphans, outputDir, stats, out);
-                    out.close();
                 }
-///////////////////////////////////////////////////////////////////////////////////////////////////////////////////////
-                
+
+                if (rowCounter != null)
+                    rowCounter.join();
+
+                if (cache != null && rowCounter != null)
+                    cache.put(cacheKey, db);    // a miss, so cache what we analyzed
+
+                File snapshotFile = config.getSnapshotFile();
+                if (snapshotFile != null)
+                    DatabaseSnapshot.write(db, snapshotFile);
+            } finally {
+                if (rowCounter != null)
+                    rowCounter.cancel();    // nothing left to cancel once it's been joined
+                if (pool != null)
+                    pool.close();  // done with the additional connections
             }
 
             XmlTableFormatter.getInstance().appendTables(rootNode, tables);
@@ -418,6 +556,21 @@ public class SchemaAnalyzer {
                 }
             }
 
+            if (cache != null) {
+                if (logger.isLoggable(Level.INFO))
+                    logger.info(cache.getSummary());
+                else
+                    System.out.println(cache.getSummary());
+            }
+
+            DiagramCache diagramCache = Dot.getInstance().getCache();
+            if (diagramCache != null && config.isHtmlGenerationEnabled()) {
+                if (logger.isLoggable(Level.INFO))
+                    logger.info(diagramCache.getSummary());
+                else
+                    System.out.println(diagramCache.getSummary());
+            }
+
             return db;
         } catch (Config.MissingRequiredParameterException missingParam) {
             config.dumpUsage(missingParam.getMessage(), missingParam.isDbTypeSpecific());
@@ -425,6 +578,59 @@ public class SchemaAnalyzer {
         }
     }
 
+    /**
+     * Regenerate the details (pages and diagrams) of just the <code>-focus</code>
+     * table and its immediate relatives, leaving everything else in the
+     * output directory as it is.  With lazy tables only that neighborhood
+     * (and the tables that its diagrams reach) is collected.
+     *
+     * @param db
+     * @param config
+     * @param outputDir
+     * @throws IOException
+     */
+    private void writeFocusedDetails(Database db, Config config, File outputDir) throws IOException {
+        Table focus = db.getTablesByName().get(config.getFocusTable());
+        if (focus == null) {
+            for (Table view : db.getViews()) {
+                if (view.getName().equalsIgnoreCase(config.getFocusTable()))
+                    focus = view;
+            }
+        }
+        if (focus == null)
+            throw new InvalidConfigurationException("Table '" + config.getFocusTable() + "' specified by -focus wasn't found");
+
+        Set<Table> neighborhood = new TreeSet<Table>();
+        neighborhood.add(focus);
+        for (TableColumn column : focus.getColumns()) {
+            for (TableColumn parent : column.getParents()) {
+                if (!parent.getTable().isRemote())
+                    neighborhood.add(parent.getTable());
+            }
+            for (TableColumn child : column.getChildren()) {
+                if (!child.getTable().isRemote())
+                    neighborhood.add(child.getTable());
+            }
+        }
+
+        new File(outputDir, "app/views/schemas").mkdirs();
+        new File(outputDir, "public/images").mkdirs();
+
+        WriteStats stats = new WriteStats(neighborhood);
+        HtmlTablePage tableFormatter = HtmlTablePage.getInstance();
+        for (Table table : neighborhood) {
+            tableFormatter.reset();
+            logger.fine("Writing details of " + table.getName());
+
+            LineWriter out = new LineWriter(new File(outputDir, "app/views/schemas/_" + table.getName() + "_table.html.erb"), 24 * 1024, config.getCharset());
+            tableFormatter.write(db, table, false, outputDir, stats, out);
+            out.close();
+        }
+
+        logger.info("Wrote the details of " + focus.getName() + " and its " + (neighborhood.size() - 1) +
+                    " relatives to directory '" + config.getOutputDir() + "'");
+    }
+
     /**
      * dumpNoDataMessage
      *
@@ -472,7 +678,12 @@ public class SchemaAnalyzer {
         }
     }
 
-    private Connection getConnection(Config config, String connectionURL,
+    /**
+     * Connect to the database, returning a pool that starts out with that
+     * connection and can grow to <code>-dbConnections</code> connections
+     * for multithreaded metadata collection.
+     */
+    private ConnectionPool getConnectionPool(Config config, String connectionURL,
                       String driverClass, String driverPath) throws FileNotFoundException, IOException {
         if (logger.isLoggable(Level.INFO)) {
             logger.info("Using database properties:");
@@ -564,7 +775,7 @@ public class SchemaAnalyzer {
             throw new ConnectionFailure(exc);
         }
 
-        return connection;
+        return new ConnectionPool(driver, connectionURL, connectionProperties, connection, config.getMaxDbConnections());
     }
 
     private static void yankParam(List<String> args, String paramId) {
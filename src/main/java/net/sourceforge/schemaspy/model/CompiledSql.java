@@ -0,0 +1,96 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package schemaspy.model;
+
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.StringTokenizer;
+
+/**
+ * SQL with named parameters (<code>:schema</code>, <code>:table</code>, etc.)
+ * that's been parsed into positional (question mark) SQL and the list of
+ * parameters to bind to those positions.<p/>
+ *
+ * The parsing is done once per distinct SQL rather than every time the SQL
+ * is executed for a table.
+ *
+ * @see Database#prepareStatement(String, String)
+ */
+public class CompiledSql {
+    private final String namedSql;
+    private final String sql;
+    private final List<String> paramNames = new ArrayList<String>();
+    private boolean tableRequired;
+
+    /**
+     * @param namedSql SQL with named parameters (but <b>not</b> question marks)
+     * @throws InvalidConfigurationException if the SQL contains an unexpected named parameter
+     */
+    public CompiledSql(String namedSql) throws InvalidConfigurationException {
+        this.namedSql = namedSql;
+
+        StringBuilder positional = new StringBuilder(namedSql);
+        int nextColon = positional.indexOf(":");
+        while (nextColon != -1) {
+            String paramName = new StringTokenizer(positional.substring(nextColon), " ,\"')").nextToken();
+            if (paramName.equals(":table") || paramName.equals(":view"))
+                tableRequired = true;
+            else if (!paramName.equals(":schema") && !paramName.equals(":owner"))
+                throw unexpected(paramName);
+            paramNames.add(paramName);
+            positional.replace(nextColon, nextColon + paramName.length(), "?"); // replace with a ?
+            nextColon = positional.indexOf(":", nextColon);
+        }
+
+        sql = positional.toString();
+    }
+
+    /**
+     * Returns the SQL with its named parameters replaced by question marks
+     */
+    public String getSql() {
+        return sql;
+    }
+
+    /**
+     * Bind the parameters' values to the specified statement
+     *
+     * @param stmt statement prepared from {@link #getSql()}
+     * @param schema value of <code>:schema</code> (and its alias <code>:owner</code>)
+     * @param tableName value of <code>:table</code> (and its alias <code>:view</code>),
+     *          <code>null</code> if the statement doesn't deal with <code>Table</code>-level details.
+     * @throws SQLException
+     */
+    public void bind(PreparedStatement stmt, String schema, String tableName) throws SQLException {
+        if (tableRequired && tableName == null)
+            throw unexpected(":table");
+
+        for (int i = 0; i < paramNames.size(); ++i) {
+            String paramName = paramNames.get(i);
+            boolean isTable = paramName.equals(":table") || paramName.equals(":view");
+            stmt.setString(i + 1, isTable ? tableName : schema);
+        }
+    }
+
+    private InvalidConfigurationException unexpected(String paramName) {
+        return new InvalidConfigurationException("Unexpected named parameter '" + paramName + "' found in SQL '" + namedSql + "'");
+    }
+}
@@ -18,25 +18,35 @@
  */
 package schemaspy.model;
 
+import java.io.File;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DatabaseMetaData;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
+import java.sql.Statement;
 import java.text.SimpleDateFormat;
 import java.util.ArrayList;
 import java.util.Arrays;
 import java.util.Collection;
+import java.util.Collections;
 import java.util.Date;
 import java.util.HashMap;
 import java.util.HashSet;
 import java.util.Iterator;
+import java.util.LinkedHashSet;
 import java.util.List;
 import java.util.Map;
 import java.util.MissingResourceException;
 import java.util.Properties;
 import java.util.Set;
-import java.util.StringTokenizer;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 import java.util.logging.Level;
 import java.util.logging.Logger;
 import java.util.regex.Matcher;
@@ -45,6 +55,10 @@ import schemaspy.Config;
 import schemaspy.model.xml.SchemaMeta;
 import schemaspy.model.xml.TableMeta;
 import schemaspy.util.CaseInsensitiveMap;
+import schemaspy.util.ConcurrencyController;
+import schemaspy.util.ConnectionPool;
+import schemaspy.util.LikePatterns;
+import schemaspy.util.ResultSetColumns;
 
 public class Database {
     private final String databaseName;
@@ -53,37 +67,150 @@ public class Database {
     private final Map<String, Table> tables = new CaseInsensitiveMap<Table>();
     private final Map<String, View> views = new CaseInsensitiveMap<View>();
     private final Map<String, Table> remoteTables = new CaseInsensitiveMap<Table>(); // key: schema.tableName value: RemoteTable
+    private Map<String, RemoteReference> remoteReferences; // key: schema.tableName, null unless collecting remote tables
+    private final Map<String, String> lastDdlTimes = new CaseInsensitiveMap<String>(); // key: tableName
+    private Map<String, Table> priorTables; // key: tableName, unchanged tables of an incremental snapshot
     private final DatabaseMetaData meta;
+    private final DatabaseCapabilities capabilities;
+    private final Dialect dialect = new Dialect();
+    private final Map<String, CompiledSql> compiledSql = new HashMap<String, CompiledSql>();
+    private final Set<Object> viewCommentsFound = Collections.synchronizedSet(new HashSet<Object>()); // views/view columns
     private final Connection connection;
-    private final String connectTime = new SimpleDateFormat("EEE MMM dd HH:mm z yyyy").format(new Date());
+    private final ConnectionPool pool;
+    private final ThreadLocal<DatabaseMetaData> workerMeta = new ThreadLocal<DatabaseMetaData>();
+    private final ThreadLocal<int[]> workerFailures = new ThreadLocal<int[]>(); // queries that failed but were logged and skipped
+    private final String connectTime;
     private Set<String> sqlKeywords;
     private Pattern invalidIdentifierPattern;
+    private final boolean bulkMetadata;
+    private final boolean bulkForeignKeys;
+    private final boolean lazy;     // table details are collected on demand
+    private final Object connectLock = new Object();    // connecting deferred foreign keys
+    private final String autoIncrementSql;
+    private volatile boolean autoIncrementFailed;
+    private final int fetchSize;
+    private final boolean streamResults;
+    private boolean virtualThreadsUnsupported;
+    private static final int MAX_NAME_PATTERNS = 50;
+    private static final int MIN_REMOTE_HARVEST_PERCENT = 25;  // of a remote schema's tables
     private final Logger logger = Logger.getLogger(getClass().getName());
     private final boolean fineEnabled = logger.isLoggable(Level.FINE);
 
     public Database(Config config, Connection connection, DatabaseMetaData meta, String name, String schema, Properties properties, SchemaMeta schemaMeta) throws SQLException, MissingResourceException {
-        this.connection = connection;
+        this(config, new ConnectionPool(null, null, null, connection, 1), meta, new DatabaseCapabilities(meta), name, schema, properties, schemaMeta);
+
+        // the pool we created is left open for anything that's evaluated later on
+        // (e.g. row counts).  it only ever has the caller's connection, so its
+        // statements are closed along with that connection.
+    }
+
+    /**
+     * Create our representation of the database, letting multithreaded
+     * metadata collection draw connections from the specified pool.
+     *
+     * @param capabilities snapshot of <code>meta</code>'s capabilities
+     */
+    public Database(Config config, ConnectionPool pool, DatabaseMetaData meta, DatabaseCapabilities capabilities, String name, String schema, Properties properties, SchemaMeta schemaMeta) throws SQLException, MissingResourceException {
+        this.pool = pool;
+        this.connection = pool.getConnection();
         this.meta = meta;
+        this.capabilities = capabilities;
+        connectTime = new SimpleDateFormat("EEE MMM dd HH:mm z yyyy").format(new Date());
         databaseName = name;
         this.schema = schema;
         description = config.getDescription();
+        boolean lazyTables = config.isLazyTablesEnabled();
+        if (lazyTables && (schemaMeta != null || config.getIncrementalSnapshot() != null)) {
+            logger.warning("Ignoring -lazy since " + (schemaMeta != null ? "-meta" : "-incremental") + " needs every table up front");
+            lazyTables = false;
+        }
+        lazy = lazyTables;
+        bulkMetadata = !lazy && (config.isBulkMetadataEnabled() || Boolean.valueOf(properties.getProperty("bulkMetadata")).booleanValue());
+        bulkForeignKeys = Boolean.valueOf(properties.getProperty("bulkForeignKeys")).booleanValue();
+        autoIncrementSql = properties.getProperty("selectAutoIncrementColumnsSql");
+        fetchSize = config.getFetchSize();
+        streamResults = config.isStreamResultsEnabled() || Boolean.valueOf(properties.getProperty("streamResults")).booleanValue();
+
+        if (config.getSnapshotFile() != null || config.getIncrementalSnapshot() != null)
+            initLastDdlTimes(properties);
+        if (config.getIncrementalSnapshot() != null)
+            priorTables = getUnchangedTables(config.getIncrementalSnapshot(), properties, schemaMeta);
 
         initTables(meta, properties, config);
-        if (config.isViewsEnabled())
+        initRowCountEstimates(properties, config);
+        if (config.isViewsEnabled() && !bulkMetadata)  // bulk harvests views along with tables
             initViews(meta, properties, config);
 
-        initCheckConstraints(properties);
-        initTableIds(properties);
-        initIndexIds(properties);
-        initTableComments(properties);
-        initTableColumnComments(properties);
-        initViewComments(properties);
-        initViewColumnComments(properties);
+        initAutoIncrementColumns();
+        initDetails(properties, config.getMaxDbThreads());
 
-        connectTables();
+        // lazy tables are connected as they're used (see connectDeferred())
+        if (!lazy)
+            connectTables(properties);
         updateFromXmlMetadata(schemaMeta);
     }
 
+    /**
+     * Create an empty representation of the database that's populated from a
+     * {@link DatabaseSnapshot} rather than from a connection to the database.
+     *
+     * @param capabilities
+     * @param name
+     * @param schema
+     * @param description
+     * @param connectTime when the snapshot's database was connected to
+     */
+    Database(DatabaseCapabilities capabilities, String name, String schema, String description, String connectTime) {
+        pool = null;
+        connection = null;
+        meta = null;
+        this.capabilities = capabilities;
+        this.connectTime = connectTime;
+        databaseName = name;
+        this.schema = schema;
+        this.description = description;
+        bulkMetadata = false;
+        bulkForeignKeys = false;
+        lazy = false;
+        autoIncrementSql = null;
+        fetchSize = 0;
+        streamResults = false;
+    }
+
+    /**
+     * Add a table, view or remote table that was restored from a {@link DatabaseSnapshot}
+     *
+     * @param table
+     */
+    void restore(Table table) {
+        if (table.isView())
+            views.put(table.getName(), (View)table);
+        else if (table.isRemote())
+            remoteTables.put(table.getSchema() + '.' + table.getName(), table);
+        else
+            tables.put(table.getName(), table);
+    }
+
+    /**
+     * Returns the token (typically a timestamp) that changes whenever the DDL
+     * of the specified table changes (see <code>selectLastDdlTimesSql</code>)
+     *
+     * @param tableName
+     * @return <code>null</code> if it isn't known
+     */
+    String getLastDdlTime(String tableName) {
+        return lastDdlTimes.get(tableName);
+    }
+
+    /**
+     * @see #getLastDdlTime(String)
+     * @param tableName
+     * @param lastDdlTime
+     */
+    void setLastDdlTime(String tableName, String lastDdlTime) {
+        lastDdlTimes.put(tableName, lastDdlTime);
+    }
+
     public String getName() {
         return databaseName;
     }
@@ -122,12 +249,73 @@ public class Database {
         return remoteTables.values();
     }
 
+    /**
+     * Returns the connection that the current thread should use.
+     * Metadata workers each have their own, everyone else shares the primary one.
+     */
     public Connection getConnection() {
+        DatabaseMetaData worker = workerMeta.get();
+        if (worker != null) {
+            try {
+                return worker.getConnection();
+            } catch (SQLException exc) {
+                // fall back to the shared connection
+            }
+        }
+
         return connection;
     }
 
+    /**
+     * Make the calling thread use the specified pooled connection
+     * (and its metadata) until {@link #releaseWorkerConnection()} is called.
+     *
+     * @param workerConnection
+     * @throws SQLException
+     */
+    void useWorkerConnection(Connection workerConnection) throws SQLException {
+        workerMeta.set(pool.getMetaData(workerConnection));
+    }
+
+    /**
+     * Revert the calling thread to the shared connection
+     */
+    void releaseWorkerConnection() {
+        workerMeta.remove();
+    }
+
+    /**
+     * Note that a query failed in a way that was logged and skipped rather than thrown
+     * (e.g. a row count that timed out) so that the table workers can back off.
+     */
+    void queryFailed() {
+        int[] failures = workerFailures.get();
+        if (failures != null)
+            ++failures[0];
+    }
+
+    /**
+     * Returns the metadata that the current thread should use.
+     * Metadata workers each have their own, everyone else shares the primary one.
+     */
     public DatabaseMetaData getMetaData() {
-        return meta;
+        DatabaseMetaData worker = workerMeta.get();
+        return worker != null ? worker : meta;
+    }
+
+    /**
+     * Returns the capabilities of the database that were snapshot
+     * when we connected to it.
+     */
+    public DatabaseCapabilities getCapabilities() {
+        return capabilities;
+    }
+
+    /**
+     * Returns what we've learned about which SQL variants work with this database
+     */
+    public Dialect getDialect() {
+        return dialect;
     }
 
     public String getConnectTime() {
@@ -135,11 +323,7 @@ public class Database {
     }
 
     public String getDatabaseProduct() {
-        try {
-            return meta.getDatabaseProductName() + " - " + meta.getDatabaseProductVersion();
-        } catch (SQLException exc) {
-            return "";
-        }
+        return capabilities.getDatabaseProduct();
     }
 
     /**
@@ -229,10 +413,18 @@ public class Database {
 
         String[] types = getTypes("tableTypes", "TABLE", properties);
         NameValidator validator = new NameValidator("table", include, exclude, types);
-        List<BasicTableMeta> entries = getBasicTableMeta(metadata, true, properties, types);
+        List<BasicTableMeta> entries = getBasicTableMeta(metadata, true, include, properties, types);
+
+        if (priorTables != null)
+            reuseUnchangedTables(entries, validator, properties);
+
+        if (bulkMetadata) {
+            initTablesInBulk(metadata, entries, validator, properties, config);
+            return;
+        }
 
         TableCreator creator;
-        if (maxThreads == 1) {
+        if (maxThreads == 1 || lazy) {
             creator = new TableCreator();
         } else {
             // creating tables takes a LONG time (based on JProbe analysis),
@@ -265,114 +457,126 @@ public class Database {
     }
 
     /**
-     * Create/initialize any views in the schema.
+     * Create the tables that haven't changed since the incremental snapshot was
+     * written from their snapshot counterparts rather than querying their details,
+     * removing them from <code>entries</code>.<p/>
      *
-     * @param metadata
+     * Only the ones that are reused are left in <code>priorTables</code>.
+     *
+     * @param entries
+     * @param validator
      * @param properties
-     * @param config
-     * @throws SQLException
      */
-    private void initViews(DatabaseMetaData metadata, Properties properties,
-                            Config config) throws SQLException {
-        Pattern includeTables = config.getTableInclusions();
-        Pattern excludeTables = config.getTableExclusions();
-        Pattern excludeColumns = config.getColumnExclusions();
-        Pattern excludeIndirectColumns = config.getIndirectColumnExclusions();
+    private void reuseUnchangedTables(List<BasicTableMeta> entries, NameValidator validator, Properties properties) {
+        Pattern excludeColumns = Config.getInstance().getColumnExclusions();
+        Pattern excludeIndirectColumns = Config.getInstance().getIndirectColumnExclusions();
+        Map<String, Table> reused = new CaseInsensitiveMap<Table>();
 
-        String[] types = getTypes("viewTypes", "VIEW", properties);
-        NameValidator validator = new NameValidator("view", includeTables, excludeTables, types);
+        for (Iterator<BasicTableMeta> iter = entries.iterator(); iter.hasNext(); ) {
+            BasicTableMeta entry = iter.next();
+            Table prior = priorTables.get(entry.name);
 
-        for (BasicTableMeta entry : getBasicTableMeta(metadata, false, properties, types)) {
-            if (validator.isValid(entry.name, entry.type)) {
-                View view = new View(this, entry.schema, entry.name, entry.remarks,
-                                    entry.viewSql, properties,
-                                    excludeIndirectColumns, excludeColumns);
-                views.put(view.getName(), view);
-                if (logger.isLoggable(Level.FINE)) {
-                    logger.fine("Found details of view " + view.getName());
-                } else {
-                    System.out.print('.');
-                }
+            if (prior != null && validator.isValid(entry.name, entry.type)) {
+                Table table = new Table(this, entry.schema, entry.name, entry.remarks, properties);
+                table.copyDetails(prior, excludeIndirectColumns, excludeColumns);
+                if (entry.numRows != -1)
+                    table.setNumRows(entry.numRows);
+                tables.put(table.getName(), table);
+                reused.put(prior.getName(), prior);
+                iter.remove();
             }
         }
+
+        priorTables = reused;
+        logger.info("Reusing the details of " + reused.size() + " unchanged tables");
     }
 
     /**
-     * Collection of fundamental table/view metadata
+     * Returns the tables of the specified snapshot that haven't changed since
+     * it was written (according to their last DDL times), keyed by name.
+     *
+     * @param snapshotFile
+     * @param properties
+     * @param schemaMeta
+     * @return <code>null</code> if nothing can be taken from the snapshot
      */
-    private class BasicTableMeta
-    {
-        @SuppressWarnings("hiding")
-        final String schema;
-        final String name;
-        final String type;
-        final String remarks;
-        final String viewSql;
-        final int numRows;  // -1 if not determined
+    private Map<String, Table> getUnchangedTables(File snapshotFile, Properties properties, SchemaMeta schemaMeta) {
+        if (!snapshotFile.exists()) {
+            logger.info("Analyzing all tables since " + snapshotFile + " doesn't exist yet");
+            return null;
+        }
+        if (properties.getProperty("selectLastDdlTimesSql") == null) {
+            logger.warning("Analyzing all tables since this type of database doesn't define selectLastDdlTimesSql");
+            return null;
+        }
+        if (schemaMeta != null) {
+            // the snapshot has the metadata merged into it
+            logger.info("Analyzing all tables since XML metadata is being applied");
+            return null;
+        }
+        if (lastDdlTimes.isEmpty())
+            return null;
 
-        /**
-         * @param schema
-         * @param name
-         * @param type typically "TABLE" or "VIEW"
-         * @param remarks
-         * @param text optional textual SQL used to create the view
-         * @param numRows number of rows, or -1 if not determined
-         */
-        BasicTableMeta(String schema, String name, String type, String remarks, String text, int numRows)
-        {
-            this.schema = schema;
-            this.name = name;
-            this.type = type;
-            this.remarks = remarks;
-            viewSql = text;
-            this.numRows = numRows;
+        Database prior;
+        try {
+            prior = DatabaseSnapshot.read(snapshotFile);
+        } catch (IOException exc) {
+            logger.warning("Analyzing all tables since " + snapshotFile + " couldn't be read: " + exc);
+            return null;
+        }
+
+        if (!String.valueOf(prior.getName()).equals(String.valueOf(databaseName)) ||
+                !String.valueOf(prior.getSchema()).equals(String.valueOf(schema))) {
+            logger.warning("Analyzing all tables since " + snapshotFile + " is of " + prior.getName() +
+                            (prior.getSchema() == null ? "" : "." + prior.getSchema()));
+            return null;
         }
+
+        Map<String, Table> unchanged = new CaseInsensitiveMap<Table>();
+        int numRemoved = 0;
+
+        for (Table table : prior.getTables()) {
+            String lastDdlTime = lastDdlTimes.get(table.getName());
+            if (lastDdlTime == null)
+                ++numRemoved;
+            else if (lastDdlTime.equals(prior.getLastDdlTime(table.getName())))
+                unchanged.put(table.getName(), table);
+        }
+
+        logger.info(unchanged.size() + " of the " + prior.getTables().size() + " tables in " + snapshotFile +
+                    " haven't changed and " + numRemoved + " no longer exist");
+        return unchanged;
     }
 
     /**
-     * Return a list of basic details of the tables in the schema.
+     * Collect the token (typically a timestamp) that changes whenever the DDL
+     * of each of the tables changes so an incremental run can tell which of the
+     * tables of a snapshot are still current.
      *
-     * @param metadata
-     * @param forTables true if we're getting table data, false if getting view data
      * @param properties
-     * @return
      * @throws SQLException
      */
-    private List<BasicTableMeta> getBasicTableMeta(DatabaseMetaData metadata,
-                                                    boolean forTables,
-                                                    Properties properties,
-                                                    String... types) throws SQLException {
-        String queryName = forTables ? "selectTablesSql" : "selectViewsSql";
-        String sql = properties.getProperty(queryName);
-        List<BasicTableMeta> basics = new ArrayList<BasicTableMeta>();
-        ResultSet rs = null;
-
+    private void initLastDdlTimes(Properties properties) throws SQLException {
+        String sql = properties.getProperty("selectLastDdlTimesSql");
         if (sql != null) {
-            String clazz = forTables ? "table" : "view";
             PreparedStatement stmt = null;
+            ResultSet rs = null;
 
             try {
                 stmt = prepareStatement(sql, null);
                 rs = stmt.executeQuery();
 
                 while (rs.next()) {
-                    String name = rs.getString(clazz + "_name");
-                    String sch = getOptionalString(rs, clazz + "_schema");
-                    if (sch == null)
-                        sch = schema;
-                    String remarks = getOptionalString(rs, clazz + "_comment");
-                    String text = forTables ? null : getOptionalString(rs, "view_definition");
-                    String rows = forTables ? getOptionalString(rs, "table_rows") : null;
-                    int numRows = rows == null ? -1 : Integer.parseInt(rows);
-
-                    basics.add(new BasicTableMeta(sch, name, clazz, remarks, text, numRows));
+                    String lastDdlTime = rs.getString("last_ddl_time");
+                    if (lastDdlTime != null)
+                        lastDdlTimes.put(rs.getString("table_name"), lastDdlTime);
                 }
             } catch (SQLException sqlException) {
-                // don't die just because this failed
-                System.out.flush();
+                // don't die just because this failed, just analyze everything
                 System.err.println();
-                System.err.println("Failed to retrieve " + clazz + " names with custom SQL: " + sqlException);
+                System.err.println("Failed to retrieve last DDL times: " + sqlException);
                 System.err.println(sql);
+                lastDdlTimes.clear();
             } finally {
                 if (rs != null)
                     rs.close();
@@ -380,107 +584,825 @@ public class Database {
                     stmt.close();
             }
         }
+    }
 
-        if (basics.isEmpty()) {
-            rs = metadata.getTables(null, schema, "%", types);
-
-            try {
-                while (rs.next()) {
-                    String name = rs.getString("TABLE_NAME");
-                    String type = rs.getString("TABLE_TYPE");
-                    String schem = rs.getString("TABLE_SCHEM");
-                    String remarks = getOptionalString(rs, "REMARKS");
+    /**
+     * Create/initialize the tables (and views, if they're enabled) in the
+     * schema, harvesting the columns and primary keys of all of them with
+     * one wildcarded metadata query each rather than a pair of queries per table.
+     *
+     * @param metadata
+     * @param entries
+     * @param validator
+     * @param properties
+     * @param config
+     * @throws SQLException
+     */
+    private void initTablesInBulk(DatabaseMetaData metadata, List<BasicTableMeta> entries,
+                                    NameValidator validator, Properties properties, Config config) throws SQLException {
+        Pattern excludeColumns = config.getColumnExclusions();
+        Pattern excludeIndirectColumns = config.getIndirectColumnExclusions();
+        Map<String, Table> harvested = new CaseInsensitiveMap<Table>();
 
-                    basics.add(new BasicTableMeta(schem, name, type, remarks, null, -1));
-                }
-            } catch (SQLException exc) {
-                if (forTables)
-                    throw exc;
+        for (BasicTableMeta entry : entries) {
+            if (validator.isValid(entry.name, entry.type)) {
+                Table table = new Table(this, entry.schema, entry.name, entry.remarks, properties);
+                if (entry.numRows != -1)
+                    table.setNumRows(entry.numRows);
+                harvested.put(table.getName(), table);
+            }
+        }
 
-                System.out.flush();
-                System.err.println();
-                System.err.println("Ignoring view " + rs.getString("TABLE_NAME") + " due to exception:");
-                exc.printStackTrace();
-                System.err.println("Continuing analysis.");
-            } finally {
-                if (rs != null)
-                    rs.close();
+        // the schema-wide queries return the views' columns too, so rather than
+        // making another pass over the schema for them, harvest them at the same time
+        Map<String, View> harvestedViews = new CaseInsensitiveMap<View>();
+        if (config.isViewsEnabled()) {
+            List<BasicTableMeta> viewEntries = getViewEntries(metadata, properties, config);
+            Map<String, String> definitions = getViewDefinitions(viewEntries, properties);
+            for (BasicTableMeta entry : viewEntries) {
+                View view = new View(this, entry.schema, entry.name, entry.remarks,
+                                    getViewSql(entry, definitions), properties);
+                harvestedViews.put(view.getName(), view);
             }
         }
 
-        return basics;
+        Map<String, Table> all = new CaseInsensitiveMap<Table>();
+        all.putAll(harvested);
+        all.putAll(harvestedViews);
+        harvestDetails(metadata, schema, all, config.getMaxDbThreads(), excludeIndirectColumns, excludeColumns);
+        tables.putAll(harvested);
+        views.putAll(harvestedViews);
     }
 
     /**
-     * Return a database-specific array of types from the .properties file
-     * with the specified property name.
-     *
-     * @param propName
-     * @param defaultValue
-     * @param props
-     * @return
+     * Populate the columns, indexes and primary keys of the specified
+     * tables (or views) of <code>harvestedSchema</code>, harvesting the columns
+     * and primary keys with schema-wide queries where the driver allows it.
      */
-    private String[] getTypes(String propName, String defaultValue, Properties props) {
-        String value = props.getProperty(propName, defaultValue);
-        List<String> types = new ArrayList<String>();
-        for (String type : value.split(",")) {
-            type = type.trim();
-            if (type.length() > 0)
-                types.add(type);
+    private void harvestDetails(DatabaseMetaData metadata, String harvestedSchema, Map<String, ? extends Table> harvested,
+                                int maxThreads, Pattern excludeIndirectColumns, Pattern excludeColumns) throws SQLException {
+        if (harvested.isEmpty())
+            return;
+
+        if (!harvestColumns(metadata, harvestedSchema, harvested, excludeIndirectColumns, excludeColumns)) {
+            for (Table table : harvested.values())
+                table.initColumns(excludeIndirectColumns, excludeColumns);
         }
 
-        return types.toArray(new String[types.size()]);
+        // indexes have to be in place before the primary keys are
+        // so the primary key's index can be flagged as such
+        if (maxThreads == 1) {
+            for (Table table : harvested.values())
+                initTableDetails(table);
+        } else {
+            TableWorkers workers = new TableWorkers(maxThreads);
+            for (final Table table : harvested.values()) {
+                workers.submit(new Callable<Void>() {
+                    public Void call() throws SQLException {
+                        initTableDetails(table);
+                        return null;
+                    }
+                });
+            }
+            workers.join();
+        }
+
+        if (!harvestPrimaryKeys(metadata, harvestedSchema, harvested)) {
+            for (Table table : harvested.values())
+                table.initPrimaryKeys(metadata);
+        }
     }
 
     /**
-     * Some databases don't play nice with their metadata.
-     * E.g. Oracle doesn't have a REMARKS column at all.
-     * This method ignores those types of failures, replacing them with null.
+     * Collect the per-table details that can't be harvested schema-wide
      */
-    public String getOptionalString(ResultSet rs, String columnName)
-    {
+    private void initTableDetails(Table table) throws SQLException {
+        if (!table.isView() && !table.isRemote() && !table.isAutoIncrementKnown() && autoIncrementSql == null)
+            table.initColumnAutoUpdate(false);
+        table.initIndexes();
+
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Found details of " + (table.isView() ? "view " : "table ") + table.getName());
+        } else {
+            System.out.print('.');
+        }
+    }
+
+    /**
+     * Returns the catalog that schema-wide metadata queries of the specified
+     * schema are restricted to.  Databases without schemas (e.g. MySQL) have
+     * catalogs instead, and a <code>null</code> catalog matches the tables
+     * of every catalog on the server.
+     *
+     * @param harvestedSchema
+     * @return <code>null</code> if the schema is enough
+     */
+    private String getHarvestedCatalog(String harvestedSchema) {
+        if (harvestedSchema != null)
+            return null;
+
         try {
-            return rs.getString(columnName);
-        } catch (SQLException ignore) {
+            return getConnection().getCatalog();
+        } catch (SQLException exc) {
             return null;
         }
     }
 
-    private void initCheckConstraints(Properties properties) throws SQLException {
-        String sql = properties.getProperty("selectCheckConstraintsSql");
-        if (sql != null) {
-            PreparedStatement stmt = null;
-            ResultSet rs = null;
+    /**
+     * Returns <code>true</code> if the specified schema/catalog is the one that
+     * we're harvesting.  Schema-less (and catalog-less) databases match anything.
+     */
+    private static boolean isHarvested(String harvestedSchema, String harvestedCatalog, String tableSchema, String tableCatalog) {
+        if (harvestedCatalog != null && tableCatalog != null && !harvestedCatalog.equalsIgnoreCase(tableCatalog))
+            return false;
+        return harvestedSchema == null || tableSchema == null || harvestedSchema.equals(tableSchema);
+    }
 
-            try {
-                stmt = prepareStatement(sql, null);
-                rs = stmt.executeQuery();
+    /**
+     * Populate the columns of the specified tables from a single
+     * {@link DatabaseMetaData#getColumns(String, String, String, String)}
+     * call that returns every column in the schema.
+     *
+     * @return <code>false</code> if the driver refused the wildcarded query
+     */
+    private boolean harvestColumns(DatabaseMetaData metadata, String harvestedSchema, Map<String, ? extends Table> harvested,
+                                    Pattern excludeIndirectColumns, Pattern excludeColumns) throws SQLException {
+        String harvestedCatalog = getHarvestedCatalog(harvestedSchema);
+        ResultSet rs = null;
 
-                while (rs.next()) {
-                    String tableName = rs.getString("table_name");
-                    Table table = tables.get(tableName);
-                    if (table != null)
-                        table.addCheckConstraint(rs.getString("constraint_name"), rs.getString("text"));
-                }
-            } catch (SQLException sqlException) {
-                // don't die just because this failed
-                System.err.println();
-                System.err.println("Failed to retrieve check constraints: " + sqlException);
-                System.err.println(sql);
-            } finally {
-                if (rs != null)
-                    rs.close();
-                if (stmt != null)
-                    stmt.close();
+        try {
+            rs = applyFetchSize(metadata.getColumns(harvestedCatalog, harvestedSchema, "%", "%"));
+            boolean autoIncrementReported = new ResultSetColumns(rs).has("IS_AUTOINCREMENT");
+
+            while (rs.next()) {
+                Table table = harvested.get(rs.getString("TABLE_NAME"));
+                if (table != null && isHarvested(harvestedSchema, harvestedCatalog, rs.getString("TABLE_SCHEM"), rs.getString("TABLE_CAT")))
+                    table.addColumn(rs, autoIncrementReported, excludeIndirectColumns, excludeColumns);
             }
+        } catch (SQLException exc) {
+            logger.warning("Failed to collect column details for schema '" + harvestedSchema + "' in bulk, reverting to table by table: " + exc);
+            for (Table table : harvested.values())
+                table.columns.clear();
+            return false;
+        } finally {
+            if (rs != null)
+                rs.close();
         }
+
+        return true;
     }
 
-    private void initTableIds(Properties properties) throws SQLException {
-        String sql = properties.getProperty("selectTableIdsSql");
-        if (sql != null) {
-            PreparedStatement stmt = null;
-            ResultSet rs = null;
+    /**
+     * Populate the primary keys of the specified tables from a single
+     * {@link DatabaseMetaData#getPrimaryKeys(String, String, String)}
+     * call that doesn't restrict the table name.
+     *
+     * @return <code>false</code> if the driver refused the unrestricted query
+     */
+    private boolean harvestPrimaryKeys(DatabaseMetaData metadata, String harvestedSchema, Map<String, ? extends Table> harvested) throws SQLException {
+        String harvestedCatalog = getHarvestedCatalog(harvestedSchema);
+        ResultSet rs = null;
+
+        try {
+            rs = applyFetchSize(metadata.getPrimaryKeys(harvestedCatalog, harvestedSchema, null));
+
+            while (rs.next()) {
+                Table table = harvested.get(rs.getString("TABLE_NAME"));
+                if (table != null && isHarvested(harvestedSchema, harvestedCatalog, rs.getString("TABLE_SCHEM"), rs.getString("TABLE_CAT")))
+                    table.setPrimaryColumn(rs);
+            }
+        } catch (SQLException exc) {
+            logger.warning("Failed to collect primary keys for schema '" + harvestedSchema + "' in bulk, reverting to table by table: " + exc);
+            for (Table table : harvested.values())
+                table.getPrimaryColumns().clear();
+            return false;
+        } finally {
+            if (rs != null)
+                rs.close();
+        }
+
+        return true;
+    }
+
+    /**
+     * Create/initialize any views in the schema.
+     * Like tables, views are created in parallel and their definitions are
+     * queried for the whole schema at once if <code>selectViewDefinitionsSql</code>
+     * is available.  Bulk harvests do the views along with the tables
+     * (see {@link #initTablesInBulk(DatabaseMetaData, List, NameValidator, Properties, Config)}).
+     *
+     * @param metadata
+     * @param properties
+     * @param config
+     * @throws SQLException
+     */
+    private void initViews(DatabaseMetaData metadata, final Properties properties,
+                            Config config) throws SQLException {
+        final Pattern excludeColumns = config.getColumnExclusions();
+        final Pattern excludeIndirectColumns = config.getIndirectColumnExclusions();
+        int maxThreads = config.getMaxDbThreads();
+
+        List<BasicTableMeta> entries = getViewEntries(metadata, properties, config);
+        final Map<String, String> definitions = getViewDefinitions(entries, properties);
+
+        if (maxThreads == 1) {
+            for (BasicTableMeta entry : entries)
+                createView(entry, getViewSql(entry, definitions), properties, excludeIndirectColumns, excludeColumns);
+        } else {
+            TableWorkers workers = new TableWorkers(maxThreads);
+            for (final BasicTableMeta entry : entries) {
+                workers.submit(new Callable<Void>() {
+                    public Void call() throws SQLException {
+                        createView(entry, getViewSql(entry, definitions), properties, excludeIndirectColumns, excludeColumns);
+                        return null;
+                    }
+                });
+            }
+            workers.join();
+        }
+    }
+
+    /**
+     * Returns the views in the schema that pass the inclusion/exclusion filters
+     */
+    private List<BasicTableMeta> getViewEntries(DatabaseMetaData metadata, Properties properties, Config config) throws SQLException {
+        Pattern includeTables = config.getTableInclusions();
+        Pattern excludeTables = config.getTableExclusions();
+
+        String[] types = getTypes("viewTypes", "VIEW", properties);
+        NameValidator validator = new NameValidator("view", includeTables, excludeTables, types);
+        List<BasicTableMeta> entries = new ArrayList<BasicTableMeta>();
+
+        for (BasicTableMeta entry : getBasicTableMeta(metadata, false, includeTables, properties, types)) {
+            if (validator.isValid(entry.name, entry.type))
+                entries.add(entry);
+        }
+
+        return entries;
+    }
+
+    /**
+     * Returns the definitions of all of the views in the schema if any of
+     * the specified views came without one (see {@link #getViewDefinitions(Properties)})
+     */
+    private Map<String, String> getViewDefinitions(List<BasicTableMeta> entries, Properties properties) throws SQLException {
+        for (BasicTableMeta entry : entries) {
+            if (entry.viewSql == null)
+                return getViewDefinitions(properties);
+        }
+
+        return null;
+    }
+
+    /**
+     * Create a view and put it into <code>views</code>
+     */
+    private void createView(BasicTableMeta entry, String viewSql, Properties properties,
+                            Pattern excludeIndirectColumns, Pattern excludeColumns) throws SQLException {
+        View view = new View(this, entry.schema, entry.name, entry.remarks,
+                            viewSql, properties,
+                            excludeIndirectColumns, excludeColumns);
+
+        synchronized (views) {
+            views.put(view.getName(), view);
+        }
+
+        if (logger.isLoggable(Level.FINE)) {
+            logger.fine("Found details of view " + view.getName());
+        } else {
+            System.out.print('.');
+        }
+    }
+
+    /**
+     * Returns the SQL that defines the specified view as far as we know it
+     * without querying the view itself.
+     *
+     * @param entry
+     * @param definitions view definitions harvested for the whole schema,
+     *          <code>null</code> if they weren't available
+     * @return <code>null</code> if the view has to be queried for its definition
+     * @see View#View(Database, String, String, String, String, Properties, Pattern, Pattern)
+     */
+    private String getViewSql(BasicTableMeta entry, Map<String, String> definitions) {
+        if (entry.viewSql != null || definitions == null)
+            return entry.viewSql;
+
+        String viewSql = definitions.get(entry.name);
+        return viewSql == null ? "" : viewSql;  // querying the view on its own won't find it either
+    }
+
+    /**
+     * Returns the definitions of all of the views in the schema, keyed by view name,
+     * as returned by <code>selectViewDefinitionsSql</code>.
+     *
+     * @param properties
+     * @return <code>null</code> if the definitions aren't available
+     * @throws SQLException
+     */
+    private Map<String, String> getViewDefinitions(Properties properties) throws SQLException {
+        String sql = properties.getProperty("selectViewDefinitionsSql");
+        if (sql == null)
+            return null;
+
+        Map<String, String> definitions = new CaseInsensitiveMap<String>();
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+
+        try {
+            stmt = prepareStatement(sql, null);
+            rs = stmt.executeQuery();
+            String definitionColumn = new ResultSetColumns(rs).has("view_definition") ? "view_definition" : "text";
+
+            while (rs.next()) {
+                // like selectViewSql the first row of each view is the one that's used
+                String name = rs.getString("view_name");
+                if (!definitions.containsKey(name))
+                    definitions.put(name, rs.getString(definitionColumn));
+            }
+        } catch (SQLException sqlException) {
+            // don't die just because this failed
+            System.out.flush();
+            System.err.println();
+            System.err.println("Failed to retrieve view definitions with custom SQL, reverting to view by view: " + sqlException);
+            System.err.println(sql);
+            return null;
+        } finally {
+            if (rs != null)
+                rs.close();
+            if (stmt != null)
+                stmt.close();
+        }
+
+        return definitions;
+    }
+
+    /**
+     * Collection of fundamental table/view metadata
+     */
+    private class BasicTableMeta
+    {
+        @SuppressWarnings("hiding")
+        final String schema;
+        final String name;
+        final String type;
+        final String remarks;
+        final String viewSql;
+        final int numRows;  // -1 if not determined
+
+        /**
+         * @param schema
+         * @param name
+         * @param type typically "TABLE" or "VIEW"
+         * @param remarks
+         * @param text optional textual SQL used to create the view
+         * @param numRows number of rows, or -1 if not determined
+         */
+        BasicTableMeta(String schema, String name, String type, String remarks, String text, int numRows)
+        {
+            this.schema = schema;
+            this.name = name;
+            this.type = type;
+            this.remarks = remarks;
+            viewSql = text;
+            this.numRows = numRows;
+        }
+    }
+
+    /**
+     * Return a list of basic details of the tables in the schema.<p/>
+     *
+     * If the inclusion pattern is simple enough to be expressed as <code>LIKE</code>
+     * patterns (see {@link LikePatterns}) then only names that match those
+     * patterns are requested from the database.
+     * The results can still include names that the inclusion pattern doesn't match
+     * so they still have to go through {@link NameValidator}.
+     *
+     * @param metadata
+     * @param forTables true if we're getting table data, false if getting view data
+     * @param include pattern of names to include
+     * @param properties
+     * @return
+     * @throws SQLException
+     */
+    private List<BasicTableMeta> getBasicTableMeta(DatabaseMetaData metadata,
+                                                    boolean forTables,
+                                                    Pattern include,
+                                                    Properties properties,
+                                                    String... types) throws SQLException {
+        String queryName = forTables ? "selectTablesSql" : "selectViewsSql";
+        String sql = properties.getProperty(queryName);
+        List<BasicTableMeta> basics = new ArrayList<BasicTableMeta>();
+        ResultSet rs = null;
+
+        List<String> namePatterns = LikePatterns.fromRegex(include);
+        if (namePatterns != null && namePatterns.size() > MAX_NAME_PATTERNS)
+            namePatterns = null;
+        if (namePatterns != null)
+            logger.fine("Restricting " + (forTables ? "table" : "view") + " names to " + namePatterns);
+
+        if (sql != null) {
+            String clazz = forTables ? "table" : "view";
+            boolean selected = false;
+
+            if (namePatterns != null) {
+                String filteredSql = filterByName(sql, clazz + "_name", namePatterns);
+                if (filteredSql != null) {
+                    try {
+                        selectBasicTableMeta(filteredSql, forTables, basics);
+                        selected = true;
+                    } catch (SQLException exc) {
+                        logger.fine("Failed to restrict " + clazz + " names with custom SQL, so selecting them all: " + exc);
+                        basics.clear();
+                    }
+                }
+            }
+
+            if (!selected) {
+                try {
+                    selectBasicTableMeta(sql, forTables, basics);
+                } catch (SQLException sqlException) {
+                    // don't die just because this failed
+                    System.out.flush();
+                    System.err.println();
+                    System.err.println("Failed to retrieve " + clazz + " names with custom SQL: " + sqlException);
+                    System.err.println(sql);
+                }
+            }
+        }
+
+        if (basics.isEmpty()) {
+            List<String> tablePatterns = namePatterns == null ? Collections.singletonList("%") : namePatterns;
+            Set<String> found = new HashSet<String>();
+
+            for (String tablePattern : tablePatterns) {
+                rs = metadata.getTables(null, schema, tablePattern, types);
+
+                try {
+                    ResultSetColumns columns = new ResultSetColumns(rs);
+
+                    while (rs.next()) {
+                        String name = rs.getString("TABLE_NAME");
+                        String type = rs.getString("TABLE_TYPE");
+                        String schem = rs.getString("TABLE_SCHEM");
+                        String remarks = columns.getString("REMARKS");
+
+                        // the patterns can overlap
+                        if (found.add(schem + '.' + name))
+                            basics.add(new BasicTableMeta(schem, name, type, remarks, null, -1));
+                    }
+                } catch (SQLException exc) {
+                    if (forTables)
+                        throw exc;
+
+                    System.out.flush();
+                    System.err.println();
+                    System.err.println("Ignoring view " + rs.getString("TABLE_NAME") + " due to exception:");
+                    exc.printStackTrace();
+                    System.err.println("Continuing analysis.");
+                } finally {
+                    if (rs != null)
+                        rs.close();
+                }
+            }
+        }
+
+        return basics;
+    }
+
+    /**
+     * Add the basic details of the tables (or views) selected by the
+     * <code>selectTablesSql</code> (or <code>selectViewsSql</code>) to <code>basics</code>
+     *
+     * @param sql
+     * @param forTables
+     * @param basics
+     * @throws SQLException
+     */
+    private void selectBasicTableMeta(String sql, boolean forTables, List<BasicTableMeta> basics) throws SQLException {
+        String clazz = forTables ? "table" : "view";
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+
+        try {
+            stmt = prepareStatement(sql, null);
+            rs = stmt.executeQuery();
+            ResultSetColumns columns = new ResultSetColumns(rs);
+
+            while (rs.next()) {
+                String name = rs.getString(clazz + "_name");
+                String sch = columns.getString(clazz + "_schema");
+                if (sch == null)
+                    sch = schema;
+                String remarks = columns.getString(clazz + "_comment");
+                String text = forTables ? null : columns.getString("view_definition");
+                String rows = forTables ? columns.getString("table_rows") : null;
+                int numRows = rows == null ? -1 : Integer.parseInt(rows);
+
+                basics.add(new BasicTableMeta(sch, name, clazz, remarks, text, numRows));
+            }
+        } finally {
+            if (rs != null)
+                rs.close();
+            if (stmt != null)
+                stmt.close();
+        }
+    }
+
+    /**
+     * Wrap the specified custom SQL so that it only returns rows whose
+     * <code>nameColumn</code> matches one of the <code>LIKE</code> patterns.
+     *
+     * @param sql
+     * @param nameColumn
+     * @param namePatterns
+     * @return <code>null</code> if the patterns can't be safely embedded in the SQL
+     */
+    private static String filterByName(String sql, String nameColumn, List<String> namePatterns) {
+        List<String> names = new ArrayList<String>();
+        List<String> conditions = new ArrayList<String>();
+
+        for (String namePattern : namePatterns) {
+            // would be mistaken for parameters
+            if (namePattern.indexOf(':') != -1 || namePattern.indexOf('?') != -1)
+                return null;
+
+            String literal = "'" + namePattern.replace("'", "''") + "'";
+            if (LikePatterns.hasWildcards(namePattern))
+                conditions.add(nameColumn + " like " + literal);
+            else
+                names.add(literal);
+        }
+
+        if (!names.isEmpty())
+            conditions.add(0, nameColumn + " in (" + join(names, ", ") + ")");
+
+        return "select * from (" + sql + ") filtered where " + join(conditions, " or ");
+    }
+
+    private static String join(List<String> values, String separator) {
+        StringBuilder joined = new StringBuilder();
+        for (String value : values) {
+            if (joined.length() > 0)
+                joined.append(separator);
+            joined.append(value);
+        }
+        return joined.toString();
+    }
+
+    /**
+     * Return a database-specific array of types from the .properties file
+     * with the specified property name.
+     *
+     * @param propName
+     * @param defaultValue
+     * @param props
+     * @return
+     */
+    private String[] getTypes(String propName, String defaultValue, Properties props) {
+        String value = props.getProperty(propName, defaultValue);
+        List<String> types = new ArrayList<String>();
+        for (String type : value.split(",")) {
+            type = type.trim();
+            if (type.length() > 0)
+                types.add(type);
+        }
+
+        return types.toArray(new String[types.size()]);
+    }
+
+    /**
+     * Some databases don't play nice with their metadata.
+     * E.g. Oracle doesn't have a REMARKS column at all.
+     * This method ignores those types of failures, replacing them with null.<p/>
+     *
+     * When reading more than one row use {@link ResultSetColumns} instead
+     * so that a missing column doesn't cost an exception per row.
+     */
+    public String getOptionalString(ResultSet rs, String columnName)
+    {
+        try {
+            return rs.getString(columnName);
+        } catch (SQLException ignore) {
+            return null;
+        }
+    }
+
+    /**
+     * Use the <code>selectRowCountEstimatesSql</code> query to get the approximate
+     * number of rows of every table in one shot, typically from the database's
+     * statistics.  Tables that are estimated to be smaller than
+     * {@link Config#getRowEstimateThreshold()} (or that don't have an estimate)
+     * are left to be counted exactly.
+     *
+     * @param properties
+     * @param config
+     * @throws SQLException
+     */
+    private void initRowCountEstimates(Properties properties, Config config) throws SQLException {
+        String sql = properties.getProperty("selectRowCountEstimatesSql");
+        if (sql != null && config.isNumRowsEnabled()) {
+            int threshold = config.getRowEstimateThreshold();
+            PreparedStatement stmt = null;
+            ResultSet rs = null;
+
+            try {
+                stmt = prepareStatement(sql, null);
+                rs = stmt.executeQuery();
+
+                while (rs.next()) {
+                    String tableName = rs.getString("table_name");
+                    Table table = tables.get(tableName);
+                    if (table != null) {
+                        long estimate = rs.getLong("row_count");
+                        if (!rs.wasNull() && estimate >= threshold)
+                            table.setEstimatedNumRows((int)Math.min(estimate, Integer.MAX_VALUE));
+                    }
+                }
+            } catch (SQLException sqlException) {
+                // don't die just because this failed
+                System.err.println();
+                System.err.println("Failed to retrieve row count estimates: " + sqlException);
+                System.err.println(sql);
+            } finally {
+                if (rs != null)
+                    rs.close();
+                if (stmt != null)
+                    stmt.close();
+            }
+        }
+    }
+
+    /**
+     * Flag the auto increment columns of every table with the
+     * <code>selectAutoIncrementColumnsSql</code> query rather than probing each table.
+     * Reverts to probing the tables that we couldn't determine otherwise if the query fails.
+     *
+     * @throws SQLException
+     */
+    private void initAutoIncrementColumns() throws SQLException {
+        if (autoIncrementSql != null) {
+            PreparedStatement stmt = null;
+            ResultSet rs = null;
+
+            try {
+                stmt = prepareStatement(autoIncrementSql, null);
+                rs = stmt.executeQuery();
+
+                while (rs.next()) {
+                    String tableName = rs.getString("table_name");
+                    final Table table = tables.get(tableName);
+                    if (table != null) {
+                        final String columnName = rs.getString("column_name");
+                        table.afterDetails(new Runnable() {
+                            public void run() {
+                                TableColumn column = table.getColumn(columnName);
+                                if (column != null)
+                                    column.setIsAutoUpdated(true);
+                            }
+                        });
+                    }
+                }
+            } catch (SQLException sqlException) {
+                // don't die just because this failed
+                System.err.println();
+                System.err.println("Failed to retrieve auto increment columns: " + sqlException);
+                System.err.println(autoIncrementSql);
+
+                // deferred tables are probed when their details are collected
+                autoIncrementFailed = true;
+                for (Table table : tables.values()) {
+                    if (!table.isDetailsDeferred() && !table.isAutoIncrementKnown())
+                        table.initColumnAutoUpdate(false);
+                }
+            } finally {
+                if (rs != null)
+                    rs.close();
+                if (stmt != null)
+                    stmt.close();
+            }
+        }
+    }
+
+    /**
+     * Run the schema-wide queries that fill in details (check constraints,
+     * ids and comments) of the tables and views that we've already found.<p/>
+     *
+     * The queries are independent of each other, so given more than one thread
+     * each runs on its own pooled connection and this phase takes as long as
+     * the slowest query rather than the sum of them.
+     *
+     * @param properties
+     * @param maxThreads
+     * @throws SQLException
+     */
+    private void initDetails(final Properties properties, int maxThreads) throws SQLException {
+        List<DetailQuery> queries = new ArrayList<DetailQuery>();
+
+        queries.add(new DetailQuery() {
+            @Override
+            public Void call() throws SQLException {
+                initCheckConstraints(properties);
+                return null;
+            }
+        });
+        queries.add(new DetailQuery() {
+            @Override
+            public Void call() throws SQLException {
+                initTableIds(properties);
+                return null;
+            }
+        });
+        queries.add(new DetailQuery() {
+            @Override
+            public Void call() throws SQLException {
+                initIndexIds(properties);
+                return null;
+            }
+        });
+        queries.add(new DetailQuery() {
+            @Override
+            public Void call() throws SQLException {
+                initTableComments(properties);
+                return null;
+            }
+        });
+        queries.add(new DetailQuery() {
+            @Override
+            public Void call() throws SQLException {
+                initTableColumnComments(properties);
+                return null;
+            }
+        });
+        queries.add(new DetailQuery() {
+            @Override
+            public Void call() throws SQLException {
+                initViewComments(properties);
+                return null;
+            }
+        });
+        queries.add(new DetailQuery() {
+            @Override
+            public Void call() throws SQLException {
+                initViewColumnComments(properties);
+                return null;
+            }
+        });
+
+        if (maxThreads == 1) {
+            for (DetailQuery query : queries)
+                query.call();
+        } else {
+            // only a handful of distinct queries so there's nothing for a controller to learn from
+            TableWorkers workers = new TableWorkers(maxThreads, false);
+            for (DetailQuery query : queries)
+                workers.submit(query);
+            workers.join();
+        }
+    }
+
+    /**
+     * One of the queries run by {@link Database#initDetails(Properties, int)}
+     */
+    private abstract class DetailQuery implements Callable<Void> {
+        public abstract Void call() throws SQLException;
+    }
+
+    private void initCheckConstraints(Properties properties) throws SQLException {
+        String sql = properties.getProperty("selectCheckConstraintsSql");
+        if (sql != null) {
+            PreparedStatement stmt = null;
+            ResultSet rs = null;
+
+            try {
+                stmt = prepareStatement(sql, null);
+                rs = stmt.executeQuery();
+
+                while (rs.next()) {
+                    String tableName = rs.getString("table_name");
+                    Table table = tables.get(tableName);
+                    if (table != null)
+                        table.addCheckConstraint(rs.getString("constraint_name"), rs.getString("text"));
+                }
+            } catch (SQLException sqlException) {
+                // don't die just because this failed
+                System.err.println();
+                System.err.println("Failed to retrieve check constraints: " + sqlException);
+                System.err.println(sql);
+            } finally {
+                if (rs != null)
+                    rs.close();
+                if (stmt != null)
+                    stmt.close();
+            }
+        }
+    }
+
+    private void initTableIds(Properties properties) throws SQLException {
+        String sql = properties.getProperty("selectTableIdsSql");
+        if (sql != null) {
+            PreparedStatement stmt = null;
+            ResultSet rs = null;
 
             try {
                 stmt = prepareStatement(sql, null);
@@ -517,11 +1439,17 @@ public class Database {
 
                 while (rs.next()) {
                     String tableName = rs.getString("table_name");
-                    Table table = tables.get(tableName);
+                    final Table table = tables.get(tableName);
                     if (table != null) {
-                        TableIndex index = table.getIndex(rs.getString("index_name"));
-                        if (index != null)
-                            index.setId(rs.getObject("index_id"));
+                        final String indexName = rs.getString("index_name");
+                        final Object indexId = rs.getObject("index_id");
+                        table.afterDetails(new Runnable() {
+                            public void run() {
+                                TableIndex index = table.getIndex(indexName);
+                                if (index != null)
+                                    index.setId(indexId);
+                            }
+                        });
                     }
                 }
             } catch (SQLException sqlException) {
@@ -558,11 +1486,18 @@ public class Database {
                 while (rs.next()) {
                     String tableName = rs.getString("table_name");
                     Table table = tables.get(tableName);
-                    if (table == null)
-                        table = views.get(tableName);
-
-                    if (table != null)
+                    if (table != null) {
                         table.setComments(rs.getString("comments"));
+                    } else {
+                        // selectViewCommentsSql takes precedence (regardless of which finishes first)
+                        Table view = views.get(tableName);
+                        if (view != null) {
+                            synchronized (view) {
+                                if (!viewCommentsFound.contains(view))
+                                    view.setComments(rs.getString("comments"));
+                            }
+                        }
+                    }
                 }
             } catch (SQLException sqlException) {
                 // don't die just because this failed
@@ -593,15 +1528,20 @@ public class Database {
             try {
                 stmt = prepareStatement(sql, null);
                 rs = stmt.executeQuery();
+                ResultSetColumns columns = new ResultSetColumns(rs);
 
                 while (rs.next()) {
-                    String viewName = rs.getString("view_name");
+                    String viewName = columns.getString("view_name");
                     if (viewName == null)
                         viewName = rs.getString("table_name");
                     Table view = views.get(viewName);
 
-                    if (view != null)
-                        view.setComments(rs.getString("comments"));
+                    if (view != null) {
+                        synchronized (view) {
+                            view.setComments(rs.getString("comments"));
+                            viewCommentsFound.add(view);
+                        }
+                    }
                 }
             } catch (SQLException sqlException) {
                 // don't die just because this failed
@@ -637,14 +1577,27 @@ public class Database {
 
                 while (rs.next()) {
                     String tableName = rs.getString("table_name");
-                    Table table = tables.get(tableName);
-                    if (table == null)
-                        table = views.get(tableName);
-
+                    final Table table = tables.get(tableName);
                     if (table != null) {
-                        TableColumn column = table.getColumn(rs.getString("column_name"));
-                        if (column != null)
-                            column.setComments(rs.getString("comments"));
+                        final String columnName = rs.getString("column_name");
+                        final String comments = rs.getString("comments");
+                        table.afterDetails(new Runnable() {
+                            public void run() {
+                                TableColumn column = table.getColumn(columnName);
+                                if (column != null)
+                                    column.setComments(comments);
+                            }
+                        });
+                    } else {
+                        // selectViewColumnCommentsSql takes precedence (regardless of which finishes first)
+                        Table view = views.get(tableName);
+                        TableColumn column = view == null ? null : view.getColumn(rs.getString("column_name"));
+                        if (column != null) {
+                            synchronized (column) {
+                                if (!viewCommentsFound.contains(column))
+                                    column.setComments(rs.getString("comments"));
+                            }
+                        }
                     }
                 }
             } catch (SQLException sqlException) {
@@ -676,17 +1629,22 @@ public class Database {
             try {
                 stmt = prepareStatement(sql, null);
                 rs = stmt.executeQuery();
+                ResultSetColumns columns = new ResultSetColumns(rs);
 
                 while (rs.next()) {
-                    String viewName = rs.getString("view_name");
+                    String viewName = columns.getString("view_name");
                     if (viewName == null)
                         viewName = rs.getString("table_name");
                     Table view = views.get(viewName);
 
                     if (view != null) {
                         TableColumn column = view.getColumn(rs.getString("column_name"));
-                        if (column != null)
-                            column.setComments(rs.getString("comments"));
+                        if (column != null) {
+                            synchronized (column) {
+                                column.setComments(rs.getString("comments"));
+                                viewCommentsFound.add(column);
+                            }
+                        }
                     }
                 }
             } catch (SQLException sqlException) {
@@ -717,14 +1675,12 @@ public class Database {
      * @return PreparedStatement
      */
     public PreparedStatement prepareStatement(String sql, String tableName) throws SQLException {
-        StringBuilder sqlBuf = new StringBuilder(sql);
-        List<String> sqlParams = getSqlParams(sqlBuf, tableName); // modifies sqlBuf
-        PreparedStatement stmt = getConnection().prepareStatement(sqlBuf.toString());
+        CompiledSql compiled = compile(sql);
+        PreparedStatement stmt = getConnection().prepareStatement(compiled.getSql());
 
         try {
-            for (int i = 0; i < sqlParams.size(); ++i) {
-                stmt.setString(i + 1, sqlParams.get(i).toString());
-            }
+            applyFetchSize(stmt);
+            compiled.bind(stmt, getSchemaParam(), tableName);
         } catch (SQLException exc) {
             stmt.close();
             throw exc;
@@ -733,30 +1689,321 @@ public class Database {
         return stmt;
     }
 
+    /**
+     * Same as {@link #prepareStatement(String, String)} except that the statement
+     * is kept open (one per connection) and rebound each time it's requested,
+     * so SQL that's run for every table is only prepared once per connection.<p/>
+     *
+     * The caller must <b>not</b> close the returned statement
+     * (but is responsible for closing its <code>ResultSet</code>).
+     *
+     * @param sql String - SQL without question marks
+     * @param tableName String - <code>null</code> if the statement doesn't deal with <code>Table</code>-level details.
+     * @throws SQLException
+     * @return PreparedStatement
+     */
+    public PreparedStatement prepareReusableStatement(String sql, String tableName) throws SQLException {
+        CompiledSql compiled = compile(sql);
+        PreparedStatement stmt = pool.prepareStatement(getConnection(), compiled.getSql());
+        stmt.clearParameters();
+        applyFetchSize(stmt);
+        compiled.bind(stmt, getSchemaParam(), tableName);
+        return stmt;
+    }
+
+    /**
+     * Tell the driver how many rows to fetch per round trip (or to stream them)
+     * as configured with <code>fetchSize</code> / <code>streamResults</code>.
+     * Drivers that reject the request are left to their defaults.
+     *
+     * @param stmt
+     */
+    private void applyFetchSize(Statement stmt) {
+        try {
+            if (streamResults)
+                stmt.setFetchSize(Integer.MIN_VALUE);
+            else if (fetchSize > 0)
+                stmt.setFetchSize(fetchSize);
+        } catch (SQLException exc) {
+            logger.fine("Driver rejected fetch size: " + exc);
+        }
+    }
+
+    /**
+     * Same as {@link #applyFetchSize(Statement)} but for the results of
+     * (schema-wide) {@link DatabaseMetaData} queries, where we don't get to
+     * create the statement.  Only <code>fetchSize</code> applies here.
+     *
+     * @param rs
+     * @return <code>rs</code>
+     */
+    private ResultSet applyFetchSize(ResultSet rs) {
+        if (fetchSize > 0) {
+            try {
+                rs.setFetchSize(fetchSize);
+            } catch (SQLException exc) {
+                logger.fine("Driver rejected fetch size: " + exc);
+            }
+        }
+
+        return rs;
+    }
+
+    /**
+     * Returns the specified remote table, creating it if it doesn't already exist.
+     *
+     * @return the remote table or <code>null</code> if remote tables are currently
+     *          being collected, in which case it's created later by {@link #resolveRemoteTables()}
+     * @throws SQLException
+     */
     public Table addRemoteTable(String remoteSchema, String remoteTableName, String baseSchema, Properties properties, Pattern excludeIndirectColumns, Pattern excludeColumns) throws SQLException {
+        return addRemoteTable(remoteSchema, remoteTableName, baseSchema, properties, excludeIndirectColumns, excludeColumns, null);
+    }
+
+    /**
+     * @param pendingParent foreign key column to connect to the remote table
+     *          if it's created later, <code>null</code> if none
+     * @see #addRemoteTable(String, String, String, Properties, Pattern, Pattern)
+     */
+    Table addRemoteTable(String remoteSchema, String remoteTableName, String baseSchema, Properties properties, Pattern excludeIndirectColumns, Pattern excludeColumns, PendingParent pendingParent) throws SQLException {
         String fullName = remoteSchema + "." + remoteTableName;
-        Table remoteTable = remoteTables.get(fullName);
-        if (remoteTable == null) {
-            if (properties != null)
-                remoteTable = new RemoteTable(this, remoteSchema, remoteTableName, baseSchema, properties, excludeIndirectColumns, excludeColumns);
-            else
-                remoteTable = new ExplicitRemoteTable(this, remoteSchema, remoteTableName, baseSchema);
+        Table remoteTable;
+        synchronized (remoteTables) {
+            remoteTable = remoteTables.get(fullName);
+            if (remoteTable != null)
+                return remoteTable;
+
+            if (remoteReferences != null) {
+                RemoteReference reference = remoteReferences.get(fullName);
+                if (reference == null) {
+                    reference = new RemoteReference(remoteSchema, remoteTableName, baseSchema, properties, excludeIndirectColumns, excludeColumns);
+                    remoteReferences.put(fullName, reference);
+                }
+                if (pendingParent != null)
+                    reference.pendingParents.add(pendingParent);
+                return null;
+            }
+        }
+
+        // don't hold the lock while creating it; connecting it can lead to other remote tables
+        remoteTable = createRemoteTable(remoteSchema, remoteTableName, baseSchema, properties, excludeIndirectColumns, excludeColumns);
+        remoteTable.connectForeignKeys(tables, excludeIndirectColumns, excludeColumns);
 
-            logger.fine("Adding remote table " + fullName);
-            remoteTable.connectForeignKeys(tables, excludeIndirectColumns, excludeColumns);
+        synchronized (remoteTables) {
+            Table added = remoteTables.get(fullName);
+            if (added != null)
+                return added;
             remoteTables.put(fullName, remoteTable);
         }
 
         return remoteTable;
     }
 
+    private Table createRemoteTable(String remoteSchema, String remoteTableName, String baseSchema, Properties properties, Pattern excludeIndirectColumns, Pattern excludeColumns) throws SQLException {
+        logger.fine("Adding remote table " + remoteSchema + "." + remoteTableName);
+        if (properties != null)
+            return new RemoteTable(this, remoteSchema, remoteTableName, baseSchema, properties, excludeIndirectColumns, excludeColumns);
+        return new ExplicitRemoteTable(this, remoteSchema, remoteTableName, baseSchema);
+    }
+
+    /**
+     * Collect the columns, indexes and primary keys of a table whose details
+     * were deferred (see <code>-lazy</code>).
+     * Called by the table the first time that any of them are needed.
+     *
+     * @param table
+     * @throws SQLException
+     */
+    void initDeferredDetails(Table table) throws SQLException {
+        Config config = Config.getInstance();
+
+        table.initColumns(config.getIndirectColumnExclusions(), config.getColumnExclusions());
+        if (!table.isAutoIncrementKnown() && (autoIncrementSql == null || autoIncrementFailed))
+            table.initColumnAutoUpdate(false);
+        table.initIndexes();
+        table.initPrimaryKeys(getMetaData());
+
+        logger.fine("Found details of table " + table.getName() + " on demand");
+    }
+
+    /**
+     * Connect the foreign keys of a table whose details were deferred
+     * (see <code>-lazy</code>): the ones that it has and the ones of the
+     * tables that reference it.<p/>
+     *
+     * Connecting them needs the columns of the tables on the other end, and
+     * whatever needs a table's relationships (e.g. its diagrams) typically
+     * needs the details of its relatives as well, so the details of its
+     * deferred neighbors are collected first as a batch (in parallel given
+     * more than one thread).<p/>
+     *
+     * Each foreign key is connected once: by whichever of its two
+     * tables is connected first.
+     *
+     * @param table
+     */
+    void connectDeferred(Table table) {
+        synchronized (connectLock) {
+            if (!table.isRelationshipsDeferred())
+                return;
+
+            table.relationshipsConnected();
+
+            try {
+                connectDeferredKeys(table);
+            } catch (SQLException exc) {
+                queryFailed();
+                logger.warning("Failed to connect the foreign keys of table '" + table.getName() + "' in schema '" + table.getSchema() + "': " + exc);
+            }
+        }
+    }
+
+    private void connectDeferredKeys(Table table) throws SQLException {
+        Pattern excludeColumns = Config.getInstance().getColumnExclusions();
+        Pattern excludeIndirectColumns = Config.getInstance().getIndirectColumnExclusions();
+        DatabaseMetaData metadata = getMetaData();
+
+        List<KeyRow> importedKeys = KeyRow.read(metadata.getImportedKeys(null, table.getSchema(), table.getName()));
+        List<KeyRow> exportedKeys = KeyRow.read(metadata.getExportedKeys(null, table.getSchema(), table.getName()));
+
+        Set<Table> neighbors = new LinkedHashSet<Table>();
+        for (KeyRow key : importedKeys) {
+            Table parent = getLocalTable(key.pkSchema, key.pkTable);
+            if (parent != null && parent.isDetailsDeferred())
+                neighbors.add(parent);
+        }
+        for (KeyRow key : exportedKeys) {
+            Table child = getLocalTable(key.fkSchema, key.fkTable);
+            if (child != null && child.isDetailsDeferred())
+                neighbors.add(child);
+        }
+        requireDetails(neighbors);
+
+        for (KeyRow key : importedKeys) {
+            Table parent = getLocalTable(key.pkSchema, key.pkTable);
+            if (parent != null && parent != table && !parent.isRelationshipsDeferred())
+                continue;   // already connected along with the parent's exported keys
+
+            table.addForeignKey(key.fkName, key.fkColumn, key.pkSchema, key.pkTable, key.pkColumn,
+                                key.updateRule, key.deleteRule,
+                                tables, excludeIndirectColumns, excludeColumns);
+        }
+
+        for (KeyRow key : exportedKeys) {
+            Table child = getLocalTable(key.fkSchema, key.fkTable);
+            if (child == table)
+                continue;   // connected along with our imported keys
+
+            if (child != null) {
+                if (child.isRelationshipsDeferred()) {
+                    child.addForeignKey(key.fkName, key.fkColumn, key.pkSchema, key.pkTable, key.pkColumn,
+                                        key.updateRule, key.deleteRule,
+                                        tables, excludeIndirectColumns, excludeColumns);
+                }
+            } else if (schema != null && key.fkSchema != null && !schema.equals(key.fkSchema)) {
+                // creating the remote table connects it to its parents here
+                addRemoteTable(key.fkSchema, key.fkTable, schema, table.properties, excludeIndirectColumns, excludeColumns);
+            }
+        }
+
+        if (logger.isLoggable(Level.FINE))
+            logger.fine("Connected table " + table.getName() + " after collecting the details of " + neighbors.size() + " of its neighbors");
+    }
+
+    /**
+     * Collect the deferred details of the specified tables,
+     * in parallel if we've been given more than one thread
+     *
+     * @param batch
+     * @throws SQLException
+     */
+    private void requireDetails(Set<Table> batch) throws SQLException {
+        int maxThreads = Config.getInstance().getMaxDbThreads();
+
+        if (maxThreads == 1 || batch.size() < 2) {
+            for (Table table : batch)
+                table.requireDetails();
+        } else {
+            // a handful of tables so there's nothing for a controller to learn from
+            TableWorkers workers = new TableWorkers(maxThreads, false);
+            for (final Table table : batch) {
+                workers.submit(new Callable<Void>() {
+                    public Void call() {
+                        table.requireDetails();
+                        return null;
+                    }
+                });
+            }
+            workers.join();
+        }
+    }
+
+    /**
+     * Returns the specified table if it's one of ours
+     *
+     * @param tableSchema <code>null</code> if not known
+     * @param tableName
+     * @return <code>null</code> if it isn't in our schema or was excluded
+     */
+    private Table getLocalTable(String tableSchema, String tableName) {
+        if (schema != null && tableSchema != null && !schema.equals(tableSchema))
+            return null;
+        return tables.get(tableName);
+    }
+
+    /**
+     * A row of {@link DatabaseMetaData#getImportedKeys(String, String, String)} or
+     * {@link DatabaseMetaData#getExportedKeys(String, String, String)},
+     * read before any of it is connected so that the neighbors that it
+     * involves can be collected as a batch
+     */
+    private static class KeyRow {
+        final String fkName;
+        final String fkSchema;
+        final String fkTable;
+        final String fkColumn;
+        final String pkSchema;
+        final String pkTable;
+        final String pkColumn;
+        final int updateRule;
+        final int deleteRule;
+
+        private KeyRow(ResultSet rs) throws SQLException {
+            fkName = rs.getString("FK_NAME");
+            fkSchema = rs.getString("FKTABLE_SCHEM");
+            fkTable = rs.getString("FKTABLE_NAME");
+            fkColumn = rs.getString("FKCOLUMN_NAME");
+            pkSchema = rs.getString("PKTABLE_SCHEM");
+            pkTable = rs.getString("PKTABLE_NAME");
+            pkColumn = rs.getString("PKCOLUMN_NAME");
+            updateRule = rs.getInt("UPDATE_RULE");
+            deleteRule = rs.getInt("DELETE_RULE");
+        }
+
+        /**
+         * Read (and close) the specified result set
+         */
+        static List<KeyRow> read(ResultSet rs) throws SQLException {
+            List<KeyRow> rows = new ArrayList<KeyRow>();
+
+            try {
+                while (rs.next())
+                    rows.add(new KeyRow(rs));
+            } finally {
+                rs.close();
+            }
+
+            return rows;
+        }
+    }
+
     /**
      * Return an uppercased <code>Set</code> of all SQL keywords used by a database
      *
      * @return
      * @throws SQLException
      */
-    public Set<String> getSqlKeywords() throws SQLException {
+    public synchronized Set<String> getSqlKeywords() throws SQLException {
         if (sqlKeywords == null) {
             // from http://www.contrib.andrew.cmu.edu/~shadow/sql/sql1992.txt:
             String[] sql92Keywords =
@@ -823,7 +2070,7 @@ public class Database {
                 "| YEAR" +
                 "| ZONE").split("|,\\s*");
 
-            String[] nonSql92Keywords = getMetaData().getSQLKeywords().toUpperCase().split(",\\s*");
+            String[] nonSql92Keywords = capabilities.getSqlKeywords().toUpperCase().split(",\\s*");
 
             sqlKeywords = new HashSet<String>();
             sqlKeywords.addAll(Arrays.asList(sql92Keywords));
@@ -848,7 +2095,7 @@ public class Database {
 
         if (quotesRequired) {
             // name contains something that must be quoted
-            String quote = getMetaData().getIdentifierQuoteString().trim();
+            String quote = capabilities.getIdentifierQuoteString();
             return quote + id + quote;
         }
 
@@ -861,11 +2108,11 @@ public class Database {
      * when run against an identifier that contains a character that is not
      * acceptable by the database without being quoted.
      */
-    private Pattern getInvalidIdentifierPattern() throws SQLException {
+    private synchronized Pattern getInvalidIdentifierPattern() throws SQLException {
         if (invalidIdentifierPattern == null) {
             String validChars = "a-zA-Z0-9_";
             String reservedRegexChars = "-&^";
-            String extraValidChars = getMetaData().getExtraNameCharacters();
+            String extraValidChars = capabilities.getExtraNameCharacters();
             for (int i = 0; i < extraValidChars.length(); ++i) {
                 char ch = extraValidChars.charAt(i);
                 if (reservedRegexChars.indexOf(ch) >= 0)
@@ -880,41 +2127,34 @@ public class Database {
     }
 
     /**
-     * Replaces named parameters in <code>sql</code> with question marks and
-     * returns appropriate matching values in the returned <code>List</code> of <code>String</code>s.
+     * Returns the parsed form of the specified SQL with named parameters,
+     * parsing it only the first time it's seen.
      *
-     * @param sql StringBuffer input SQL with named parameters, output named params are replaced with ?'s.
-     * @param tableName String
-     * @return List of Strings
+     * @param sql
+     * @return
      *
      * @see #prepareStatement(String, String)
      */
-    private List<String> getSqlParams(StringBuilder sql, String tableName) {
-        Map<String, String> namedParams = new HashMap<String, String>();
-        @SuppressWarnings("hiding")
-        String schema = getSchema();
-        if (schema == null)
-            schema = getName(); // some 'schema-less' db's treat the db name like a schema (unusual case)
-        namedParams.put(":schema", schema);
-        namedParams.put(":owner", schema); // alias for :schema
-        if (tableName != null) {
-            namedParams.put(":table", tableName);
-            namedParams.put(":view", tableName); // alias for :table
-        }
+    private CompiledSql compile(String sql) {
+        synchronized (compiledSql) {
+            CompiledSql compiled = compiledSql.get(sql);
+            if (compiled == null) {
+                compiled = new CompiledSql(sql);
+                compiledSql.put(sql, compiled);
+            }
 
-        List<String> sqlParams = new ArrayList<String>();
-        int nextColon = sql.indexOf(":");
-        while (nextColon != -1) {
-            String paramName = new StringTokenizer(sql.substring(nextColon), " ,\"')").nextToken();
-            String paramValue = namedParams.get(paramName);
-            if (paramValue == null)
-                throw new InvalidConfigurationException("Unexpected named parameter '" + paramName + "' found in SQL '" + sql + "'");
-            sqlParams.add(paramValue);
-            sql.replace(nextColon, nextColon + paramName.length(), "?"); // replace with a ?
-            nextColon = sql.indexOf(":", nextColon);
+            return compiled;
         }
+    }
 
-        return sqlParams;
+    /**
+     * Returns the value of the <code>:schema</code> named parameter
+     */
+    private String getSchemaParam() {
+        String schemaParam = getSchema();
+        if (schemaParam == null)
+            schemaParam = getName(); // some 'schema-less' db's treat the db name like a schema (unusual case)
+        return schemaParam;
     }
 
     /**
@@ -976,15 +2216,496 @@ public class Database {
         }
     }
 
-    private void connectTables() throws SQLException {
+    private void connectTables(Properties properties) throws SQLException {
         Pattern excludeColumns = Config.getInstance().getColumnExclusions();
         Pattern excludeIndirectColumns = Config.getInstance().getIndirectColumnExclusions();
 
-        for (Table table : tables.values()) {
+        // collect the remote tables that we run into rather than creating each
+        // one on the spot, then create them all in one pass
+        synchronized (remoteTables) {
+            remoteReferences = new CaseInsensitiveMap<RemoteReference>();
+        }
+
+        if (!bulkMetadata || !connectTablesInBulk(properties, excludeIndirectColumns, excludeColumns)) {
+            Map<Table, Table> reused = new HashMap<Table, Table>();
+            for (Table table : tables.values()) {
+                Table prior = priorTables == null ? null : priorTables.get(table.getName());
+                if (prior != null && referencesUnchangedOnly(prior)) {
+                    table.copyForeignKeys(prior, tables);
+                    reused.put(table, prior);
+                } else {
+                    table.connectForeignKeys(tables, excludeIndirectColumns, excludeColumns);
+                }
+            }
+
+            if (!reused.isEmpty())
+                connectExportedKeys(reused, properties, excludeIndirectColumns, excludeColumns);
+        }
+
+        priorTables = null;
+        resolveRemoteTables();
+    }
+
+    /**
+     * Find the remote tables in other schemas that reference the specified
+     * tables, whose foreign keys were taken from their snapshot counterparts.<p/>
+     *
+     * If the database type says that wildcarded key calls work (<code>bulkForeignKeys=true</code>)
+     * that's one schema-wide {@link DatabaseMetaData#getExportedKeys(String, String, String)}.
+     * Otherwise <code>selectRemotelyReferencedTablesSql</code> says which of our tables
+     * are currently referenced from other schemas and only those are asked.
+     * Without it (or if it fails) every one of the tables is asked.
+     *
+     * @param reused our tables keyed to their snapshot counterparts
+     */
+    private void connectExportedKeys(Map<Table, Table> reused, Properties properties,
+                                    Pattern excludeIndirectColumns, Pattern excludeColumns) throws SQLException {
+        if (schema == null)
+            return;
+
+        if (bulkForeignKeys) {
+            ResultSet rs = null;
+            try {
+                rs = applyFetchSize(getMetaData().getExportedKeys(getHarvestedCatalog(schema), schema, null));
+                connectForeignKeys(rs, false, true, properties, excludeIndirectColumns, excludeColumns);
+                return;
+            } catch (SQLException exc) {
+                logger.warning("Failed to collect exported keys for schema '" + schema + "' in bulk, reverting to table by table: " + exc);
+            } finally {
+                if (rs != null)
+                    rs.close();
+            }
+        }
+
+        Set<Table> referenced = getRemotelyReferencedTables(properties);
+
+        int numQueried = 0;
+        for (Table table : reused.keySet()) {
+            if (referenced == null || referenced.contains(table)) {
+                table.connectExportedKeys(excludeIndirectColumns, excludeColumns);
+                ++numQueried;
+            }
+        }
+
+        logger.fine("Queried the exported keys of " + numQueried + " of the " + reused.size() + " unchanged tables");
+    }
+
+    /**
+     * Returns the tables in our schema that are referenced by tables in other
+     * schemas according to <code>selectRemotelyReferencedTablesSql</code>,
+     * or <code>null</code> if that isn't known
+     */
+    private Set<Table> getRemotelyReferencedTables(Properties properties) throws SQLException {
+        String sql = properties.getProperty("selectRemotelyReferencedTablesSql");
+        if (sql == null)
+            return null;
+
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
+
+        try {
+            stmt = prepareStatement(sql, null);
+            rs = stmt.executeQuery();
+
+            Set<Table> referenced = new HashSet<Table>();
+            while (rs.next()) {
+                Table table = tables.get(rs.getString("table_name"));
+                if (table != null)
+                    referenced.add(table);
+            }
+
+            return referenced;
+        } catch (SQLException sqlException) {
+            logger.warning("Failed to find the tables referenced from other schemas, querying them all: " + sqlException);
+            logger.warning(sql);
+            return null;
+        } finally {
+            if (rs != null)
+                rs.close();
+            if (stmt != null)
+                stmt.close();
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if all of the tables that the specified
+     * snapshot table references are unchanged tables in our schema,
+     * so its foreign keys can be taken from the snapshot
+     *
+     * @param prior
+     * @return
+     */
+    private boolean referencesUnchangedOnly(Table prior) {
+        for (ForeignKeyConstraint foreignKey : prior.getForeignKeys()) {
+            Table parent = foreignKey.getParentTable();
+            if (parent == null || parent.isRemote() || priorTables.get(parent.getName()) != parent)
+                return false;
+        }
+
+        for (TableColumn column : prior.getColumns()) {
+            for (TableColumn parent : column.getParents()) {
+                Table parentTable = parent.getTable();
+                if (parentTable.isRemote() || priorTables.get(parentTable.getName()) != parentTable)
+                    return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Create the remote tables that were collected while connecting our tables,
+     * connect our foreign keys that reference them and then connect
+     * them to the tables in our schema that they reference.<p/>
+     *
+     * The remote tables are created in parallel.  With <code>-bulkmeta</code>
+     * the columns and primary keys of the remote tables in a schema are
+     * harvested with a query per schema if they make up a good part of
+     * that schema (at least {@value #MIN_REMOTE_HARVEST_PERCENT}% of its tables).
+     * Otherwise each remote table is queried on its own since the schema
+     * might be huge compared to what's referenced.
+     *
+     * @throws SQLException
+     */
+    private void resolveRemoteTables() throws SQLException {
+        final List<RemoteReference> references;
+        synchronized (remoteTables) {
+            references = new ArrayList<RemoteReference>(remoteReferences.values());
+            remoteReferences = null;
+        }
+
+        if (references.isEmpty())
+            return;
+
+        int maxThreads = Config.getInstance().getMaxDbThreads();
+        List<RemoteReference> individual = new ArrayList<RemoteReference>();
+
+        if (bulkMetadata) {
+            Map<String, List<RemoteReference>> bySchema = new HashMap<String, List<RemoteReference>>();
+            for (RemoteReference reference : references) {
+                if (reference.properties == null) {
+                    individual.add(reference);
+                    continue;
+                }
+
+                List<RemoteReference> inSchema = bySchema.get(reference.schema);
+                if (inSchema == null) {
+                    inSchema = new ArrayList<RemoteReference>();
+                    bySchema.put(reference.schema, inSchema);
+                }
+                inSchema.add(reference);
+            }
+
+            Pattern excludeColumns = Config.getInstance().getColumnExclusions();
+            Pattern excludeIndirectColumns = Config.getInstance().getIndirectColumnExclusions();
+
+            for (Map.Entry<String, List<RemoteReference>> entry : bySchema.entrySet()) {
+                List<RemoteReference> inSchema = entry.getValue();
+
+                // not worth querying a (potentially huge) schema for a few of its tables
+                int numTables = inSchema.size() == 1 ? -1 : countTables(getMetaData(), entry.getKey());
+                if (numTables == -1 || inSchema.size() * 100 < numTables * MIN_REMOTE_HARVEST_PERCENT) {
+                    individual.addAll(inSchema);
+                    continue;
+                }
+
+                Map<String, Table> harvested = new CaseInsensitiveMap<Table>();
+                for (RemoteReference reference : inSchema) {
+                    reference.table = new RemoteTable(this, reference.schema, reference.name, reference.baseSchema, reference.properties);
+                    harvested.put(reference.name, reference.table);
+                }
+
+                logger.fine("Harvesting " + harvested.size() + " remote tables from schema " + entry.getKey());
+                harvestDetails(getMetaData(), entry.getKey(), harvested, maxThreads, excludeIndirectColumns, excludeColumns);
+            }
+        } else {
+            individual.addAll(references);
+        }
+
+        if (maxThreads == 1) {
+            for (RemoteReference reference : individual)
+                reference.create();
+        } else {
+            TableWorkers workers = new TableWorkers(maxThreads);
+            for (final RemoteReference reference : individual) {
+                workers.submit(new Callable<Void>() {
+                    public Void call() throws SQLException {
+                        reference.create();
+                        return null;
+                    }
+                });
+            }
+            workers.join();
+        }
+
+        synchronized (remoteTables) {
+            for (RemoteReference reference : references)
+                remoteTables.put(reference.schema + "." + reference.name, reference.table);
+        }
+
+        for (RemoteReference reference : references) {
+            for (PendingParent pending : reference.pendingParents)
+                pending.connect(reference.table, reference.name);
+        }
+
+        if (maxThreads == 1) {
+            for (RemoteReference reference : references)
+                reference.connect();
+        } else {
+            TableWorkers workers = new TableWorkers(maxThreads);
+            for (final RemoteReference reference : references) {
+                workers.submit(new Callable<Void>() {
+                    public Void call() throws SQLException {
+                        reference.connect();
+                        return null;
+                    }
+                });
+            }
+            workers.join();
+        }
+    }
+
+    /**
+     * Returns the number of tables (of any type) in the specified schema
+     * based on a query of their names only
+     *
+     * @return -1 if the tables couldn't be counted
+     */
+    private int countTables(DatabaseMetaData metadata, String countedSchema) {
+        String countedCatalog = getHarvestedCatalog(countedSchema);
+        ResultSet rs = null;
+        int numTables = 0;
+
+        try {
+            rs = applyFetchSize(metadata.getTables(countedCatalog, countedSchema, "%", null));
+            while (rs.next()) {
+                if (isHarvested(countedSchema, countedCatalog, rs.getString("TABLE_SCHEM"), rs.getString("TABLE_CAT")))
+                    ++numTables;
+            }
+        } catch (SQLException exc) {
+            logger.fine("Failed to count the tables in schema '" + countedSchema + "': " + exc);
+            numTables = -1;
+        } finally {
+            if (rs != null) {
+                try {
+                    rs.close();
+                } catch (SQLException ignore) {}
+            }
+        }
+
+        return numTables;
+    }
+
+    /**
+     * A remote table that's been referenced but not yet created
+     */
+    private class RemoteReference {
+        @SuppressWarnings("hiding")
+        final String schema;
+        final String name;
+        final String baseSchema;
+        final Properties properties;
+        final Pattern excludeIndirectColumns;
+        final Pattern excludeColumns;
+        final List<PendingParent> pendingParents = new ArrayList<PendingParent>();
+        Table table;
+
+        RemoteReference(String schema, String name, String baseSchema, Properties properties,
+                        Pattern excludeIndirectColumns, Pattern excludeColumns) {
+            this.schema = schema;
+            this.name = name;
+            this.baseSchema = baseSchema;
+            this.properties = properties;
+            this.excludeIndirectColumns = excludeIndirectColumns;
+            this.excludeColumns = excludeColumns;
+        }
+
+        void create() throws SQLException {
+            table = createRemoteTable(schema, name, baseSchema, properties, excludeIndirectColumns, excludeColumns);
+        }
+
+        void connect() throws SQLException {
             table.connectForeignKeys(tables, excludeIndirectColumns, excludeColumns);
         }
     }
 
+    /**
+     * A foreign key column whose parent is in a remote table
+     * that hasn't been created yet
+     */
+    static class PendingParent {
+        private final Table child;
+        private final ForeignKeyConstraint foreignKey;
+        private final TableColumn childColumn;
+        private final String pkColName;
+
+        PendingParent(Table child, ForeignKeyConstraint foreignKey, TableColumn childColumn, String pkColName) {
+            this.child = child;
+            this.foreignKey = foreignKey;
+            this.childColumn = childColumn;
+            this.pkColName = pkColName;
+        }
+
+        void connect(Table parentTable, String pkTableName) {
+            child.connectParent(foreignKey, childColumn, parentTable, pkTableName, pkColName);
+        }
+    }
+
+    /**
+     * Wire up the foreign keys of every table in the schema from a single pass
+     * over either the <code>selectAllForeignKeysSql</code> query or
+     * wildcarded {@link DatabaseMetaData#getImportedKeys(String, String, String)} /
+     * {@link DatabaseMetaData#getExportedKeys(String, String, String)} calls.<p/>
+     *
+     * The JDBC spec doesn't say what a <code>null</code> table name means to those
+     * calls and some drivers (e.g. Oracle's) quietly return nothing, so the wildcarded
+     * calls are only made for database types that say they work with
+     * <code>bulkForeignKeys=true</code>, and only trusted to find no foreign keys
+     * if the tables don't have any when asked one at a time.
+     *
+     * @return <code>false</code> if nothing was connected and the caller
+     *          should revert to connecting table by table
+     */
+    private boolean connectTablesInBulk(Properties properties, Pattern excludeIndirectColumns, Pattern excludeColumns) throws SQLException {
+        String sql = properties.getProperty("selectAllForeignKeysSql");
+        if (sql != null) {
+            PreparedStatement stmt = null;
+            ResultSet rs = null;
+
+            try {
+                stmt = prepareStatement(sql, null);
+                rs = stmt.executeQuery();
+            } catch (SQLException sqlException) {
+                if (stmt != null)
+                    stmt.close();
+                logger.warning("Failed to retrieve foreign keys in bulk, reverting to table by table: " + sqlException);
+                logger.warning(sql);
+                return false;
+            }
+
+            try {
+                connectForeignKeys(rs, true, true, properties, excludeIndirectColumns, excludeColumns);
+            } finally {
+                rs.close();
+                stmt.close();
+            }
+
+            return true;
+        }
+
+        if (!bulkForeignKeys) {
+            logger.fine("Collecting foreign keys table by table since this type of database doesn't specify bulkForeignKeys=true");
+            return false;
+        }
+
+        ResultSet rs;
+        try {
+            rs = applyFetchSize(getMetaData().getImportedKeys(getHarvestedCatalog(schema), schema, null));
+        } catch (SQLException exc) {
+            logger.warning("Failed to collect imported keys for schema '" + schema + "' in bulk, reverting to table by table: " + exc);
+            return false;
+        }
+
+        int numImported;
+        try {
+            numImported = connectForeignKeys(rs, true, false, properties, excludeIndirectColumns, excludeColumns);
+        } finally {
+            rs.close();
+        }
+
+        if (numImported == 0) {
+            Table probed = findTableWithImportedKeys();
+            if (probed != null) {
+                logger.warning("Collecting the foreign keys of schema '" + schema + "' in bulk found none but " + probed.getName() +
+                                " has some, so the driver doesn't support it.  Reverting to table by table.");
+                return false;
+            }
+        }
+
+        // also try to find all of the 'remote' tables in other schemas that
+        // point to our primary keys
+        if (schema != null) {
+            try {
+                rs = applyFetchSize(getMetaData().getExportedKeys(getHarvestedCatalog(schema), schema, null));
+            } catch (SQLException exc) {
+                logger.warning("Failed to collect exported keys for schema '" + schema + "' in bulk, reverting to table by table: " + exc);
+                for (Table table : tables.values())
+                    table.connectExportedKeys(excludeIndirectColumns, excludeColumns);
+                return true;
+            }
+
+            try {
+                connectForeignKeys(rs, false, true, properties, excludeIndirectColumns, excludeColumns);
+            } finally {
+                rs.close();
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the first of our tables that has foreign keys according to
+     * {@link DatabaseMetaData#getImportedKeys(String, String, String)}
+     * (asked one table at a time) or <code>null</code> if none of them do.
+     * A schema that really doesn't have foreign keys costs a query per table,
+     * just like not collecting them in bulk does.
+     */
+    private Table findTableWithImportedKeys() throws SQLException {
+        DatabaseMetaData metadata = getMetaData();
+
+        for (Table table : tables.values()) {
+            ResultSet rs = metadata.getImportedKeys(getHarvestedCatalog(schema), table.getSchema(), table.getName());
+            try {
+                if (rs.next())
+                    return table;
+            } finally {
+                rs.close();
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Stream through a result set shaped like the ones returned by
+     * {@link DatabaseMetaData#getImportedKeys(String, String, String)},
+     * connecting our tables to their parents (<code>imported</code>) and/or
+     * discovering the remote tables in other schemas that reference our tables
+     * (<code>exported</code>).
+     *
+     * @return the number of foreign key columns of our schema that were found
+     */
+    private int connectForeignKeys(ResultSet rs, boolean imported, boolean exported, Properties properties,
+                                    Pattern excludeIndirectColumns, Pattern excludeColumns) throws SQLException {
+        String catalog = getHarvestedCatalog(schema);
+        ResultSetColumns columns = new ResultSetColumns(rs);    // selectAllForeignKeysSql might not return the catalogs
+        int numImported = 0;
+
+        while (rs.next()) {
+            String fkSchema = rs.getString("FKTABLE_SCHEM");
+            String pkSchema = rs.getString("PKTABLE_SCHEM");
+
+            if (imported && isHarvested(schema, catalog, fkSchema, columns.getString("FKTABLE_CAT"))) {
+                ++numImported;
+                Table table = tables.get(rs.getString("FKTABLE_NAME"));
+                if (table != null) {
+                    table.addForeignKey(rs.getString("FK_NAME"), rs.getString("FKCOLUMN_NAME"),
+                            pkSchema, rs.getString("PKTABLE_NAME"),
+                            rs.getString("PKCOLUMN_NAME"),
+                            rs.getInt("UPDATE_RULE"), rs.getInt("DELETE_RULE"),
+                            tables, excludeIndirectColumns, excludeColumns);
+                }
+            } else if (exported && schema != null && schema.equals(pkSchema) && !schema.equals(fkSchema) &&
+                        isHarvested(schema, catalog, pkSchema, columns.getString("PKTABLE_CAT"))) {
+                if (tables.containsKey(rs.getString("PKTABLE_NAME")))
+                    addRemoteTable(fkSchema, rs.getString("FKTABLE_NAME"), schema, properties, excludeIndirectColumns, excludeColumns);
+            }
+        }
+
+        return numImported;
+    }
+
     /**
      * Single-threaded implementation of a class that creates tables
      */
@@ -1000,7 +2721,14 @@ public class Database {
         }
 
         protected void createImpl(BasicTableMeta tableMeta, Properties properties) throws SQLException {
-            Table table = new Table(Database.this, tableMeta.schema, tableMeta.name, tableMeta.remarks, properties, excludeIndirectColumns, excludeColumns);
+            Table table;
+            if (lazy) {
+                // everything else is collected the first time that it's needed
+                table = new Table(Database.this, tableMeta.schema, tableMeta.name, tableMeta.remarks, properties);
+                table.deferDetails();
+            } else {
+                table = new Table(Database.this, tableMeta.schema, tableMeta.name, tableMeta.remarks, properties, excludeIndirectColumns, excludeColumns);
+            }
             if (tableMeta.numRows != -1) {
                 table.setNumRows(tableMeta.numRows);
             }
@@ -1010,7 +2738,7 @@ public class Database {
             }
 
             if (logger.isLoggable(Level.FINE)) {
-                logger.fine("Found details of table " + table.getName());
+                logger.fine((lazy ? "Found table " : "Found details of table ") + table.getName());
             } else {
                 System.out.print('.');
             }
@@ -1020,7 +2748,7 @@ public class Database {
          * Wait for all of the tables to be created.
          * By default this does nothing since this implementation isn't threaded.
          */
-        void join() {
+        void join() throws SQLException {
         }
     }
 
@@ -1028,66 +2756,185 @@ public class Database {
      * Multi-threaded implementation of a class that creates tables
      */
     private class ThreadedTableCreator extends TableCreator {
-        private final Set<Thread> threads = new HashSet<Thread>();
-        private final int maxThreads;
+        private final TableWorkers workers;
 
         ThreadedTableCreator(int maxThreads) {
-            this.maxThreads = maxThreads;
+            workers = new TableWorkers(maxThreads);
         }
 
         @Override
         void create(final BasicTableMeta tableMeta, final Properties properties) throws SQLException {
-            Thread runner = new Thread() {
-                @Override
-                public void run() {
+            workers.submit(new Callable<Void>() {
+                public Void call() throws SQLException {
+                    createImpl(tableMeta, properties);
+                    return null;
+                }
+            });
+        }
+
+        /**
+         * Wait for all of the submitted tables to be created
+         */
+        @Override
+        void join() throws SQLException {
+            workers.join();
+        }
+    }
+
+    /**
+     * A bounded set of worker threads that collect table details in parallel.
+     * Each task runs with its own connection from the pool bound to
+     * {@link Database#getConnection()} / {@link Database#getMetaData()}.<p/>
+     *
+     * The first task to fail cancels the remaining ones and its failure
+     * is thrown from {@link #join()}.<p/>
+     *
+     * If <code>-virtualThreads</code> was specified (and the JVM supports it)
+     * each task gets its own virtual thread and the connection pool becomes
+     * the only limit on concurrency.<p/>
+     *
+     * If <code>-adaptiveThreads</code> and/or <code>-maxTableRate</code> were
+     * specified a {@link ConcurrencyController} further limits how many tasks
+     * run at once and how quickly they start (unless the workers are uncontrolled).
+     */
+    private class TableWorkers {
+        private final ExecutorService executor;
+        private final ConcurrencyController controller;
+        private final List<Future<Void>> futures = new ArrayList<Future<Void>>();
+        private volatile boolean failed;
+
+        TableWorkers(int maxThreads) {
+            this(maxThreads, true);
+        }
+
+        /**
+         * @param maxThreads
+         * @param controlled <code>false</code> to ignore <code>-adaptiveThreads</code>
+         *          and <code>-maxTableRate</code>
+         */
+        TableWorkers(int maxThreads, boolean controlled) {
+            Config config = Config.getInstance();
+            ExecutorService virtualExecutor = null;
+            if (config.isVirtualThreadsEnabled())
+                virtualExecutor = newVirtualThreadExecutor();
+
+            // there's no point in having more threads than connections
+            int numThreads = Math.max(Math.min(maxThreads, pool.getMaxConnections()), 1);
+
+            if (controlled && (config.isAdaptiveThreadsEnabled() || config.getMaxTableRate() > 0)) {
+                int maxConcurrency = virtualExecutor != null ? pool.getMaxConnections() : numThreads;
+                controller = new ConcurrencyController(maxConcurrency, config.isAdaptiveThreadsEnabled(), config.getMaxTableRate());
+            } else {
+                controller = null;
+            }
+
+            if (virtualExecutor != null) {
+                executor = virtualExecutor;
+                return;
+            }
+
+            executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+                private int numCreated;
+
+                public synchronized Thread newThread(Runnable runnable) {
+                    Thread thread = new Thread(runnable, "TableWorker-" + ++numCreated);
+                    thread.setDaemon(true);
+                    return thread;
+                }
+            });
+        }
+
+        /**
+         * Queue up a task, silently dropping it if an earlier task has
+         * already failed (that failure will be reported by {@link #join()}).
+         */
+        void submit(final Callable<Void> task) {
+            if (failed)
+                return;
+
+            futures.add(executor.submit(new Callable<Void>() {
+                public Void call() throws Exception {
+                    if (controller != null)
+                        controller.acquire();
+
+                    long started = System.nanoTime();
+                    Connection workerConnection = pool.acquire();
+                    int[] failures = new int[1];
+
                     try {
-                        createImpl(tableMeta, properties);
-                    } catch (SQLException exc) {
-                        exc.printStackTrace(); // nobody above us in call stack...dump it here
+                        useWorkerConnection(workerConnection);
+                        workerFailures.set(failures);
+                        return task.call();
+                    } catch (Exception exc) {
+                        failed = true;
+                        ++failures[0];
+                        throw exc;
                     } finally {
-                        synchronized (threads) {
-                            threads.remove(this);
-                            threads.notify();
-                        }
+                        workerFailures.remove();
+                        releaseWorkerConnection();
+                        pool.release(workerConnection);
+                        if (controller != null)
+                            controller.release(System.nanoTime() - started, failures[0]);
                     }
                 }
-            };
+            }));
+        }
 
-            synchronized (threads) {
-                // wait for enough 'room'
-                while (threads.size() >= maxThreads) {
+        /**
+         * Wait for all of the submitted tasks to complete
+         *
+         * @throws SQLException the first failure encountered by a task
+         */
+        void join() throws SQLException {
+            try {
+                for (Future<Void> future : futures) {
                     try {
-                        threads.wait();
-                    } catch (InterruptedException interrupted) {
+                        future.get();
+                    } catch (ExecutionException exc) {
+                        cancel();
+
+                        Throwable cause = exc.getCause();
+                        if (cause instanceof SQLException)
+                            throw (SQLException)cause;
+                        if (cause instanceof RuntimeException)
+                            throw (RuntimeException)cause;
+                        if (cause instanceof Error)
+                            throw (Error)cause;
+                        SQLException failure = new SQLException(String.valueOf(cause));
+                        failure.initCause(cause);
+                        throw failure;
+                    } catch (InterruptedException exc) {
+                        cancel();
+                        throw new SQLException("Interrupted while collecting table details");
                     }
                 }
-
-                threads.add(runner);
+            } finally {
+                executor.shutdown();
+                if (controller != null)
+                    logger.info("Table workers: " + controller.getSummary());
             }
+        }
 
-            runner.start();
+        private void cancel() {
+            for (Future<Void> future : futures)
+                future.cancel(true);
+            executor.shutdownNow();
         }
 
         /**
-         * Wait for all of the started threads to complete
+         * Returns an executor that starts a new virtual thread for each task or
+         * <code>null</code> if this JVM doesn't support virtual threads.
+         * Reflection is used so we can still run on (and be built for) older JVMs.
          */
-        @Override
-        public void join() {
-            while (true) {
-                Thread thread;
-
-                synchronized (threads) {
-                    Iterator<Thread> iter = threads.iterator();
-                    if (!iter.hasNext())
-                        break;
-
-                    thread = iter.next();
-                }
-
-                try {
-                    thread.join();
-                } catch (InterruptedException exc) {
+        private ExecutorService newVirtualThreadExecutor() {
+            try {
+                return (ExecutorService)Executors.class.getMethod("newVirtualThreadPerTaskExecutor").invoke(null);
+            } catch (Exception exc) {
+                if (!virtualThreadsUnsupported) {
+                    logger.warning("Virtual threads aren't supported by Java " + System.getProperty("java.version") + ", using platform threads instead");
+                    virtualThreadsUnsupported = true;
                 }
+                return null;
             }
         }
     }
@@ -0,0 +1,260 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package schemaspy.model;
+
+import java.io.Serializable;
+import java.sql.DatabaseMetaData;
+import java.util.logging.Logger;
+
+/**
+ * A snapshot of the {@link DatabaseMetaData} capabilities that we consult
+ * over and over again (identifier quoting, keywords, etc.).<p/>
+ *
+ * With some drivers each of these calls is a round trip to the server,
+ * so they're all made once when the snapshot is taken.
+ * The snapshot is {@link Serializable} so things can be rendered later
+ * without a connection to the database.
+ */
+public class DatabaseCapabilities implements Serializable {
+    private static final long serialVersionUID = 1L;
+    private final String identifierQuoteString;
+    private final String extraNameCharacters;
+    private final String sqlKeywords;
+    private final String systemFunctions;
+    private final String numericFunctions;
+    private final String stringFunctions;
+    private final String timeDateFunctions;
+    private final boolean supportsSchemasInTableDefinitions;
+    private final boolean supportsCatalogsInTableDefinitions;
+    private final String databaseProductName;
+    private final String databaseProductVersion;
+    private transient Logger logger;
+
+    /**
+     * Take a snapshot of the specified metadata's capabilities.
+     * Capabilities that the driver fails to report are given
+     * reasonable (SQL-92) defaults.
+     *
+     * @param meta
+     */
+    public DatabaseCapabilities(DatabaseMetaData meta) {
+        String quote;
+        try {
+            quote = meta.getIdentifierQuoteString();
+        } catch (Exception exc) {
+            quote = fail("identifier quote string", exc, "\"");
+        }
+        identifierQuoteString = quote == null ? "" : quote.trim();
+
+        String extra;
+        try {
+            extra = meta.getExtraNameCharacters();
+        } catch (Exception exc) {
+            extra = fail("extra name characters", exc, "");
+        }
+        extraNameCharacters = extra == null ? "" : extra;
+
+        String keywords;
+        try {
+            keywords = meta.getSQLKeywords();
+        } catch (Exception exc) {
+            keywords = fail("SQL keywords", exc, "");
+        }
+        sqlKeywords = keywords == null ? "" : keywords;
+
+        String functions;
+        try {
+            functions = meta.getSystemFunctions();
+        } catch (Exception exc) {
+            functions = fail("system functions", exc, "");
+        }
+        systemFunctions = functions == null ? "" : functions;
+
+        try {
+            functions = meta.getNumericFunctions();
+        } catch (Exception exc) {
+            functions = fail("numeric functions", exc, "");
+        }
+        numericFunctions = functions == null ? "" : functions;
+
+        try {
+            functions = meta.getStringFunctions();
+        } catch (Exception exc) {
+            functions = fail("string functions", exc, "");
+        }
+        stringFunctions = functions == null ? "" : functions;
+
+        try {
+            functions = meta.getTimeDateFunctions();
+        } catch (Exception exc) {
+            functions = fail("time/date functions", exc, "");
+        }
+        timeDateFunctions = functions == null ? "" : functions;
+
+        boolean supported;
+        try {
+            supported = meta.supportsSchemasInTableDefinitions();
+        } catch (Exception exc) {
+            fail("schema support", exc, null);
+            supported = false;
+        }
+        supportsSchemasInTableDefinitions = supported;
+
+        try {
+            supported = meta.supportsCatalogsInTableDefinitions();
+        } catch (Exception exc) {
+            fail("catalog support", exc, null);
+            supported = false;
+        }
+        supportsCatalogsInTableDefinitions = supported;
+
+        String product;
+        try {
+            product = meta.getDatabaseProductName();
+        } catch (Exception exc) {
+            product = fail("database product name", exc, "");
+        }
+        databaseProductName = product;
+
+        try {
+            product = meta.getDatabaseProductVersion();
+        } catch (Exception exc) {
+            product = fail("database product version", exc, "");
+        }
+        databaseProductVersion = product;
+    }
+
+    /**
+     * Capabilities of a database that we don't have a connection to
+     * (e.g. one whose model is built from its DDL), so the SQL-92 defaults.
+     *
+     * @param databaseProductName
+     * @param databaseProductVersion
+     */
+    DatabaseCapabilities(String databaseProductName, String databaseProductVersion) {
+        identifierQuoteString = "\"";
+        extraNameCharacters = "";
+        sqlKeywords = "";
+        systemFunctions = "";
+        numericFunctions = "";
+        stringFunctions = "";
+        timeDateFunctions = "";
+        supportsSchemasInTableDefinitions = true;
+        supportsCatalogsInTableDefinitions = false;
+        this.databaseProductName = databaseProductName;
+        this.databaseProductVersion = databaseProductVersion;
+    }
+
+    /**
+     * Returns the string used to quote identifiers (trimmed, so it's
+     * empty if the database doesn't support quoting)
+     *
+     * @see DatabaseMetaData#getIdentifierQuoteString()
+     */
+    public String getIdentifierQuoteString() {
+        return identifierQuoteString;
+    }
+
+    /**
+     * @see DatabaseMetaData#getExtraNameCharacters()
+     */
+    public String getExtraNameCharacters() {
+        return extraNameCharacters;
+    }
+
+    /**
+     * @see DatabaseMetaData#getSQLKeywords()
+     */
+    public String getSqlKeywords() {
+        return sqlKeywords;
+    }
+
+    /**
+     * @see DatabaseMetaData#getSystemFunctions()
+     */
+    public String getSystemFunctions() {
+        return systemFunctions;
+    }
+
+    /**
+     * @see DatabaseMetaData#getNumericFunctions()
+     */
+    public String getNumericFunctions() {
+        return numericFunctions;
+    }
+
+    /**
+     * @see DatabaseMetaData#getStringFunctions()
+     */
+    public String getStringFunctions() {
+        return stringFunctions;
+    }
+
+    /**
+     * @see DatabaseMetaData#getTimeDateFunctions()
+     */
+    public String getTimeDateFunctions() {
+        return timeDateFunctions;
+    }
+
+    /**
+     * @see DatabaseMetaData#supportsSchemasInTableDefinitions()
+     */
+    public boolean supportsSchemasInTableDefinitions() {
+        return supportsSchemasInTableDefinitions;
+    }
+
+    /**
+     * @see DatabaseMetaData#supportsCatalogsInTableDefinitions()
+     */
+    public boolean supportsCatalogsInTableDefinitions() {
+        return supportsCatalogsInTableDefinitions;
+    }
+
+    /**
+     * @see DatabaseMetaData#getDatabaseProductName()
+     */
+    public String getDatabaseProductName() {
+        return databaseProductName;
+    }
+
+    /**
+     * @see DatabaseMetaData#getDatabaseProductVersion()
+     */
+    public String getDatabaseProductVersion() {
+        return databaseProductVersion;
+    }
+
+    /**
+     * Returns the product name and version in the form "name - version"
+     */
+    public String getDatabaseProduct() {
+        return databaseProductName + " - " + databaseProductVersion;
+    }
+
+    /**
+     * Log that the driver failed to report a capability and return its default
+     */
+    private String fail(String capability, Exception exc, String defaultValue) {
+        if (logger == null)
+            logger = Logger.getLogger(getClass().getName());
+        logger.fine("Failed to determine " + capability + ": " + exc);
+        return defaultValue;
+    }
+}
@@ -0,0 +1,539 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package schemaspy.model;
+
+import java.io.BufferedInputStream;
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.IdentityHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.logging.Logger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * A compact, versioned, binary snapshot of an analyzed {@link Database}
+ * (its tables, views and remote tables along with their columns, indexes,
+ * keys and check constraints, and the database's capabilities) that can be
+ * rendered later without connecting to the database.<p/>
+ *
+ * Things are written as flat records rather than as a graph of serialized
+ * objects (which can recurse as deeply as the relationships go):
+ * the tables first and then the foreign keys, which refer to tables by their
+ * position and to columns by their name.
+ * Relationships that are derived while rendering (implied and Rails-based)
+ * aren't included since they're derived again when the snapshot is rendered.<p/>
+ *
+ * Version 2 added the tables' last DDL times for incremental runs.
+ */
+public class DatabaseSnapshot {
+    private static final int MAGIC = 0x53537370;    // "SSsp"
+    private static final int VERSION = 2;
+    private static final byte TABLE = 0;
+    private static final byte VIEW = 1;
+    private static final byte REMOTE_TABLE = 2;
+    private static final byte NULL_ID = 0;
+    private static final byte INTEGER_ID = 1;
+    private static final byte LONG_ID = 2;
+    private static final byte STRING_ID = 3;
+    private static final Logger logger = Logger.getLogger(DatabaseSnapshot.class.getName());
+
+    private DatabaseSnapshot() {
+    }
+
+    /**
+     * Write a snapshot of the specified database to the specified file
+     *
+     * @param db
+     * @param file
+     * @throws IOException
+     */
+    public static void write(Database db, File file) throws IOException {
+        List<Table> tables = new ArrayList<Table>(db.getTables());
+        tables.addAll(db.getViews());
+        tables.addAll(db.getRemoteTables());
+
+        Map<Table, Integer> positions = new IdentityHashMap<Table, Integer>();
+        for (Table table : tables)
+            positions.put(table, new Integer(positions.size()));
+
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file))));
+
+        try {
+            out.writeInt(MAGIC);
+            out.writeInt(VERSION);
+            writeString(out, db.getName());
+            writeString(out, db.getSchema());
+            writeString(out, db.getDescription());
+            writeString(out, db.getConnectTime());
+            writeCapabilities(out, db.getCapabilities());
+            writeProperties(out, tables);
+
+            out.writeInt(tables.size());
+            for (Table table : tables)
+                writeTable(out, db, table);
+
+            writeForeignKeys(out, tables, positions);
+        } finally {
+            out.close();
+        }
+
+        logger.info("Wrote a snapshot of " + tables.size() + " tables/views to " + file);
+    }
+
+    /**
+     * Read the database that was written to the specified snapshot file
+     *
+     * @param file
+     * @return
+     * @throws IOException if the file can't be read or isn't a snapshot
+     *          that this version understands
+     */
+    public static Database read(File file) throws IOException {
+        DataInputStream in = new DataInputStream(new BufferedInputStream(new GZIPInputStream(new FileInputStream(file))));
+
+        try {
+            if (in.readInt() != MAGIC)
+                throw new IOException(file + " isn't a SchemaSpy snapshot");
+            int version = in.readInt();
+            if (version < 1 || version > VERSION)
+                throw new IOException(file + " is a version " + version + " snapshot, expected version " + VERSION + " or earlier");
+
+            String name = readString(in);
+            String schema = readString(in);
+            String description = readString(in);
+            String connectTime = readString(in);
+            Database db = new Database(readCapabilities(in), name, schema, description, connectTime);
+            Properties properties = readProperties(in);
+
+            int numTables = in.readInt();
+            List<Table> tables = new ArrayList<Table>(numTables);
+            for (int i = 0; i < numTables; ++i) {
+                Table table = readTable(in, version, db, properties);
+                tables.add(table);
+                db.restore(table);
+            }
+
+            readForeignKeys(in, tables);
+
+            logger.info("Read a snapshot of " + tables.size() + " tables/views from " + file);
+            return db;
+        } catch (SQLException exc) {
+            // restored views never have to query their SQL
+            throw new IOException(exc.toString());
+        } finally {
+            in.close();
+        }
+    }
+
+    private static void writeCapabilities(DataOutputStream out, DatabaseCapabilities capabilities) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ObjectOutputStream objects = new ObjectOutputStream(bytes);
+        objects.writeObject(capabilities);
+        objects.close();
+
+        out.writeInt(bytes.size());
+        bytes.writeTo(out);
+    }
+
+    private static DatabaseCapabilities readCapabilities(DataInputStream in) throws IOException {
+        byte[] bytes = new byte[in.readInt()];
+        in.readFully(bytes);
+
+        ObjectInputStream objects = new ObjectInputStream(new ByteArrayInputStream(bytes));
+        try {
+            return (DatabaseCapabilities)objects.readObject();
+        } catch (ClassNotFoundException exc) {
+            throw new IOException(exc.toString());
+        } finally {
+            objects.close();
+        }
+    }
+
+    /**
+     * The tables all share the database's properties (or have none),
+     * so they're only written once
+     */
+    private static void writeProperties(DataOutputStream out, List<Table> tables) throws IOException {
+        Properties properties = null;
+        for (Table table : tables) {
+            if (table.properties != null) {
+                properties = table.properties;
+                break;
+            }
+        }
+
+        if (properties == null) {
+            out.writeInt(-1);
+        } else {
+            List<String> names = new ArrayList<String>();
+            for (Object key : properties.keySet())
+                names.add(key.toString());
+
+            out.writeInt(names.size());
+            for (String key : names) {
+                writeString(out, key);
+                writeString(out, properties.getProperty(key));
+            }
+        }
+    }
+
+    private static Properties readProperties(DataInputStream in) throws IOException {
+        int numProperties = in.readInt();
+        if (numProperties < 0)
+            return null;
+
+        Properties properties = new Properties();
+        for (int i = 0; i < numProperties; ++i) {
+            String key = readString(in);
+            properties.setProperty(key, readString(in));
+        }
+        return properties;
+    }
+
+    private static void writeTable(DataOutputStream out, Database db, Table table) throws IOException {
+        if (table.isView())
+            out.writeByte(VIEW);
+        else if (table.isRemote())
+            out.writeByte(REMOTE_TABLE);
+        else
+            out.writeByte(TABLE);
+
+        writeString(out, table.getSchema());
+        writeString(out, table.getName());
+        writeString(out, table.getComments());
+        out.writeBoolean(table.properties != null);
+        if (table.isView())
+            writeString(out, table.getViewSql());
+        else if (table.isRemote())
+            writeString(out, ((RemoteTable)table).getBaseSchema());
+        else
+            writeString(out, db.getLastDdlTime(table.getName()));
+        writeId(out, table.getId());
+        out.writeInt(table.getNumRows());
+        out.writeBoolean(table.isNumRowsEstimated());
+
+        List<TableColumn> columns = table.getColumns();
+        out.writeInt(columns.size());
+        for (TableColumn column : columns) {
+            writeString(out, column.getName());
+            writeId(out, column.getId());
+            writeString(out, column.getType());
+            out.writeInt(column.getLength());
+            out.writeInt(column.getDecimalDigits());
+            writeString(out, column.getDetailedSize());
+            out.writeBoolean(column.isNullable());
+            Object defaultValue = column.getDefaultValue();
+            writeString(out, defaultValue == null ? null : defaultValue.toString());
+            writeString(out, column.getComments());
+            out.writeBoolean(column.isAutoUpdated());
+            out.writeBoolean(column.allowsImpliedParents());
+            out.writeBoolean(column.allowsImpliedChildren());
+            out.writeBoolean(column.isExcluded());
+            out.writeBoolean(column.isAllExcluded());
+        }
+
+        List<TableColumn> primaryColumns = table.getPrimaryColumns();
+        out.writeInt(primaryColumns.size());
+        for (TableColumn column : primaryColumns)
+            writeString(out, column.getName());
+
+        out.writeInt(table.getIndexes().size());
+        for (TableIndex index : table.getIndexes()) {
+            writeString(out, index.getName());
+            out.writeBoolean(index.isUnique());
+            out.writeBoolean(index.isPrimaryKey());
+            writeId(out, index.getId());
+            out.writeInt(index.getColumns().size());
+            for (TableColumn column : index.getColumns()) {
+                writeString(out, column.getName());
+                out.writeBoolean(index.isAscending(column));
+            }
+        }
+
+        Map<String, String> checkConstraints = table.getCheckConstraints();
+        out.writeInt(checkConstraints.size());
+        for (Map.Entry<String, String> checkConstraint : checkConstraints.entrySet()) {
+            writeString(out, checkConstraint.getKey());
+            writeString(out, checkConstraint.getValue());
+        }
+    }
+
+    private static Table readTable(DataInputStream in, int version, Database db, Properties dbProperties) throws IOException, SQLException {
+        byte kind = in.readByte();
+        String schema = readString(in);
+        String name = readString(in);
+        String comments = readString(in);
+        Properties properties = in.readBoolean() ? dbProperties : null;
+
+        Table table;
+        if (kind == VIEW) {
+            String viewSql = readString(in);
+            table = new View(db, schema, name, comments, viewSql == null ? "" : viewSql, properties);
+        } else if (kind == REMOTE_TABLE) {
+            table = new RemoteTable(db, schema, name, readString(in), properties);
+        } else {
+            table = new Table(db, schema, name, comments, properties);
+            if (version >= 2)
+                db.setLastDdlTime(name, readString(in));
+        }
+
+        table.setId(readId(in));
+        int numRows = in.readInt();
+        if (in.readBoolean())
+            table.setEstimatedNumRows(numRows);
+        else
+            table.setNumRows(numRows);
+
+        int numColumns = in.readInt();
+        for (int i = 0; i < numColumns; ++i) {
+            String columnName = readString(in);
+            Object id = readId(in);
+            String type = readString(in);
+            int length = in.readInt();
+            int decimalDigits = in.readInt();
+            String detailedSize = readString(in);
+            boolean isNullable = in.readBoolean();
+            String defaultValue = readString(in);
+            String columnComments = readString(in);
+
+            TableColumn column = new TableColumn(table, columnName, id, type, length, decimalDigits,
+                                                    detailedSize, isNullable, defaultValue, columnComments);
+            column.setIsAutoUpdated(in.readBoolean());
+            column.restore(in.readBoolean(), in.readBoolean(), in.readBoolean(), in.readBoolean());
+            table.addColumn(column);
+        }
+
+        int numPrimaryColumns = in.readInt();
+        for (int i = 0; i < numPrimaryColumns; ++i)
+            table.setPrimaryColumn(table.getColumn(readString(in)));
+
+        int numIndexes = in.readInt();
+        for (int i = 0; i < numIndexes; ++i) {
+            TableIndex index = new TableIndex(readString(in), in.readBoolean());
+            index.setIsPrimaryKey(in.readBoolean());
+            index.setId(readId(in));
+            int numIndexColumns = in.readInt();
+            for (int c = 0; c < numIndexColumns; ++c)
+                index.addColumn(table.getColumn(readString(in)), in.readBoolean() ? "A" : "D");
+            table.addIndex(index);
+        }
+
+        int numCheckConstraints = in.readInt();
+        for (int i = 0; i < numCheckConstraints; ++i)
+            table.addCheckConstraint(readString(in), readString(in));
+
+        return table;
+    }
+
+    /**
+     * Write the foreign keys (the constraints and the links that they make
+     * between child and parent columns), leaving out the ones that are
+     * derived while rendering
+     */
+    private static void writeForeignKeys(DataOutputStream out, List<Table> tables, Map<Table, Integer> positions) throws IOException {
+        Map<ForeignKeyConstraint, Integer> ordinals = new IdentityHashMap<ForeignKeyConstraint, Integer>();
+        List<ForeignKeyConstraint> constraints = new ArrayList<ForeignKeyConstraint>();
+        List<TableColumn[]> links = new ArrayList<TableColumn[]>();
+
+        for (Table table : tables) {
+            // includes ones whose parents couldn't be resolved
+            for (ForeignKeyConstraint foreignKey : table.getForeignKeys()) {
+                if (!ordinals.containsKey(foreignKey)) {
+                    ordinals.put(foreignKey, new Integer(constraints.size()));
+                    constraints.add(foreignKey);
+                }
+            }
+
+            for (TableColumn column : table.getColumns()) {
+                for (TableColumn parent : column.getParents()) {
+                    ForeignKeyConstraint foreignKey = column.getParentConstraint(parent);
+                    if (isDerived(foreignKey) || !positions.containsKey(parent.getTable()))
+                        continue;
+
+                    if (!ordinals.containsKey(foreignKey)) {
+                        ordinals.put(foreignKey, new Integer(constraints.size()));
+                        constraints.add(foreignKey);
+                    }
+                    links.add(new TableColumn[] {column, parent});
+                }
+            }
+        }
+
+        out.writeInt(constraints.size());
+        for (ForeignKeyConstraint foreignKey : constraints) {
+            Table child = foreignKey.getChildTable();
+            out.writeInt(positions.get(child).intValue());
+            writeString(out, foreignKey.getName());
+            out.writeBoolean(foreignKey.isReal());
+            out.writeBoolean(child.getForeignKeys().contains(foreignKey));
+            out.writeInt(foreignKey.getUpdateRule());
+            out.writeInt(foreignKey.getDeleteRule());
+
+            out.writeInt(foreignKey.getChildColumns().size());
+            for (TableColumn column : foreignKey.getChildColumns())
+                writeString(out, column.getName());
+
+            Integer parent = foreignKey.getParentTable() == null ? null : positions.get(foreignKey.getParentTable());
+            if (parent == null) {
+                out.writeInt(-1);
+                out.writeInt(0);
+            } else {
+                out.writeInt(parent.intValue());
+                out.writeInt(foreignKey.getParentColumns().size());
+                for (TableColumn column : foreignKey.getParentColumns())
+                    writeString(out, column.getName());
+            }
+        }
+
+        out.writeInt(links.size());
+        for (TableColumn[] link : links) {
+            TableColumn child = link[0];
+            TableColumn parent = link[1];
+            out.writeInt(ordinals.get(child.getParentConstraint(parent)).intValue());
+            out.writeInt(positions.get(child.getTable()).intValue());
+            writeString(out, child.getName());
+            out.writeInt(positions.get(parent.getTable()).intValue());
+            writeString(out, parent.getName());
+        }
+    }
+
+    private static void readForeignKeys(DataInputStream in, List<Table> tables) throws IOException {
+        int numConstraints = in.readInt();
+        List<ForeignKeyConstraint> constraints = new ArrayList<ForeignKeyConstraint>(numConstraints);
+
+        for (int i = 0; i < numConstraints; ++i) {
+            Table child = tables.get(in.readInt());
+            String name = readString(in);
+            boolean isReal = in.readBoolean();
+            boolean isRegistered = in.readBoolean();
+            int updateRule = in.readInt();
+            int deleteRule = in.readInt();
+
+            ForeignKeyConstraint foreignKey;
+            if (isReal) {
+                foreignKey = new ForeignKeyConstraint(child, name, updateRule, deleteRule);
+            } else {
+                // anything other than a plain ForeignKeyConstraint isn't "real" (e.g. ones defined in XML)
+                foreignKey = new ForeignKeyConstraint(child, name, updateRule, deleteRule) {};
+            }
+            if (isRegistered)
+                child.addForeignKey(foreignKey);
+
+            int numChildColumns = in.readInt();
+            for (int c = 0; c < numChildColumns; ++c)
+                foreignKey.addChildColumn(child.getColumn(readString(in)));
+
+            int parentPosition = in.readInt();
+            Table parent = parentPosition < 0 ? null : tables.get(parentPosition);
+            int numParentColumns = in.readInt();
+            for (int c = 0; c < numParentColumns; ++c)
+                foreignKey.addParentColumn(parent.getColumn(readString(in)));
+
+            constraints.add(foreignKey);
+        }
+
+        int numLinks = in.readInt();
+        for (int i = 0; i < numLinks; ++i) {
+            ForeignKeyConstraint foreignKey = constraints.get(in.readInt());
+            TableColumn child = tables.get(in.readInt()).getColumn(readString(in));
+            TableColumn parent = tables.get(in.readInt()).getColumn(readString(in));
+
+            child.addParent(parent, foreignKey);
+            parent.addChild(child, foreignKey);
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the constraint is derived while rendering
+     * (and will be derived again when the snapshot is rendered)
+     */
+    private static boolean isDerived(ForeignKeyConstraint foreignKey) {
+        return foreignKey.isImplied() || foreignKey instanceof RailsForeignKeyConstraint;
+    }
+
+    private static void writeId(DataOutputStream out, Object id) throws IOException {
+        if (id == null) {
+            out.writeByte(NULL_ID);
+        } else if (id instanceof Integer) {
+            out.writeByte(INTEGER_ID);
+            out.writeInt(((Integer)id).intValue());
+        } else if (id instanceof Number) {
+            // IDs are compared numerically if they're numbers
+            out.writeByte(LONG_ID);
+            out.writeLong(((Number)id).longValue());
+        } else {
+            out.writeByte(STRING_ID);
+            writeString(out, id.toString());
+        }
+    }
+
+    private static Object readId(DataInputStream in) throws IOException {
+        byte type = in.readByte();
+        switch (type) {
+            case NULL_ID:
+                return null;
+            case INTEGER_ID:
+                return new Integer(in.readInt());
+            case LONG_ID:
+                return new Long(in.readLong());
+            case STRING_ID:
+                return readString(in);
+            default:
+                throw new IOException("Unexpected ID type " + type + " in snapshot");
+        }
+    }
+
+    /**
+     * Strings can be longer than {@link DataOutputStream#writeUTF(String)} allows
+     * (e.g. the SQL of views) and can be <code>null</code>
+     */
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes("UTF-8");
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String readString(DataInputStream in) throws IOException {
+        int length = in.readInt();
+        if (length < 0)
+            return null;
+
+        byte[] bytes = new byte[length];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+}
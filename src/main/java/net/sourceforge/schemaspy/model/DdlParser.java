@@ -0,0 +1,1804 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package schemaspy.model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.Reader;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Level;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import schemaspy.Config;
+import schemaspy.util.SqlStatementReader;
+
+/**
+ * Builds a {@link Database} from DDL (a schema dump or a series of migration
+ * scripts) rather than from a connection to the database.<p/>
+ *
+ * The scripts are streamed a statement at a time (see {@link SqlStatementReader})
+ * and only the statements that define the structure of the schema are parsed:
+ * <code>CREATE TABLE/INDEX/VIEW</code>, <code>ALTER TABLE</code> (adding, altering,
+ * renaming and dropping columns and constraints), <code>DROP TABLE/INDEX/VIEW</code>,
+ * <code>RENAME TABLE</code> and <code>COMMENT ON</code>, in the common dialects
+ * (Oracle, PostgreSQL, MySQL, SQL Server, DB2, H2, etc.).
+ * Anything else is ignored.<p/>
+ *
+ * What's parsed is kept as lightweight definitions and the model is built from
+ * them once everything has been parsed, so foreign keys can reference tables
+ * that are created later in the scripts (as they do in <code>mysqldump</code>
+ * output) and later statements can alter or drop what earlier ones created.<p/>
+ *
+ * Names are used as written (without their quotes) and are matched
+ * without regard to case.
+ */
+public class DdlParser {
+    private static final List<String> KEYWORDS = Arrays.asList(new String[] {"CREATE", "ALTER", "DROP", "RENAME", "COMMENT"});
+    private static final Set<String> CREATE_STOPPERS = toSet(new String[] {
+        "FUNCTION", "PROCEDURE", "TRIGGER", "SEQUENCE", "TYPE", "SCHEMA", "DATABASE", "EXTENSION", "DOMAIN",
+        "ROLE", "USER", "PACKAGE", "SYNONYM", "EVENT", "RULE", "POLICY", "AGGREGATE", "CAST", "OPERATOR",
+        "LANGUAGE", "SERVER", "PUBLICATION", "SUBSCRIPTION", "STATISTICS", "TABLESPACE", "COLLATION", "LOGIN"});
+    private static final Set<String> TABLE_CONSTRAINTS = toSet(new String[] {
+        "CONSTRAINT", "PRIMARY", "UNIQUE", "FOREIGN", "CHECK", "KEY", "INDEX", "FULLTEXT", "SPATIAL", "EXCLUDE", "PERIOD", "LIKE"});
+    private static final Set<String> COLUMN_KEYWORDS = toSet(new String[] {
+        "CONSTRAINT", "NOT", "NULL", "DEFAULT", "PRIMARY", "UNIQUE", "REFERENCES", "CHECK", "AUTO_INCREMENT",
+        "AUTOINCREMENT", "IDENTITY", "GENERATED", "AS", "COMMENT", "COLLATE", "CHARACTER", "CHARSET", "ON",
+        "WITH", "ENCODE", "STORAGE", "COLUMN_FORMAT", "INVISIBLE", "VISIBLE", "SPARSE", "ROWGUIDCOL", "ENABLE", "DISABLE"});
+    private static final Set<String> IGNORED_ALTERATIONS = toSet(new String[] {
+        "OWNER", "ENABLE", "DISABLE", "CHECK", "NOCHECK", "SET", "RESET", "CLUSTER", "REPLICA", "INHERIT", "NO",
+        "ATTACH", "DETACH", "FORCE", "LOCK", "ALGORITHM", "ENGINE", "AUTO_INCREMENT", "DEFAULT", "CHARACTER",
+        "CHARSET", "COLLATE", "CONVERT", "ORDER", "LOGGING", "NOLOGGING", "PARALLEL", "NOPARALLEL", "MOVE",
+        "PCTFREE", "STORAGE", "COMPRESS", "NOCOMPRESS", "CACHE", "NOCACHE", "ROW", "SHRINK", "ALLOCATE",
+        "DEALLOCATE", "REBUILD", "SWITCH", "VALIDATE", "OF", "NOT"});   // alterations that don't affect what we model
+    private static final Set<String> SERIAL_TYPES = toSet(new String[] {
+        "SERIAL", "BIGSERIAL", "SMALLSERIAL", "SERIAL2", "SERIAL4", "SERIAL8"});
+    private static final String UNKNOWN_TYPE = "unknown";
+
+    private final String schema;
+    private final Map<String, TableDef> tables = new LinkedHashMap<String, TableDef>(); // key: see key()
+    private final Map<String, String> indexOwners = new HashMap<String, String>();      // key: lower case index name
+    private int numStatements;
+    private int numParsed;
+    private String parsed;              // what was asked to be parsed, for the "version" of the database
+    private String source;              // what's currently being parsed
+    private int lineNumber;
+    private final Logger logger = Logger.getLogger(getClass().getName());
+    private final boolean fineEnabled = logger.isLoggable(Level.FINE);
+
+    /**
+     * @param schema the schema that's being documented.  Objects that are
+     *          qualified with another schema are only included if they're
+     *          related to the ones in this schema (as remote tables).
+     *          <code>null</code> to ignore schema qualifiers.
+     */
+    public DdlParser(String schema) {
+        this.schema = schema;
+    }
+
+    /**
+     * Convenience method that parses the specified script(s) and builds the database from them
+     *
+     * @param source see {@link #parse(File)}
+     * @param dbName
+     * @param schema see {@link #DdlParser(String)}
+     * @param description
+     * @return
+     * @throws IOException
+     */
+    public static Database read(File source, String dbName, String schema, String description) throws IOException {
+        DdlParser parser = new DdlParser(schema);
+        parser.parse(source);
+        return parser.getDatabase(dbName, description);
+    }
+
+    /**
+     * Parse the specified script, gzip'd script (<code>.gz</code>) or directory
+     * of scripts (its <code>.sql</code> and <code>.sql.gz</code> files in the
+     * order of their names, treating embedded numbers as numbers so that
+     * Flyway's <code>V2__x.sql</code> comes before <code>V10__y.sql</code>).
+     *
+     * @param source
+     * @throws IOException
+     */
+    public void parse(File source) throws IOException {
+        if (parsed == null)
+            parsed = source.getName();
+
+        if (source.isDirectory()) {
+            File[] files = source.listFiles();
+            List<File> scripts = new ArrayList<File>();
+            for (File file : files) {
+                String name = file.getName().toLowerCase();
+                if (file.isFile() && (name.endsWith(".sql") || name.endsWith(".sql.gz")))
+                    scripts.add(file);
+            }
+            Collections.sort(scripts, new ScriptOrder());
+
+            for (File script : scripts)
+                parse(script);
+            return;
+        }
+
+        InputStream in = new FileInputStream(source);
+        try {
+            if (source.getName().toLowerCase().endsWith(".gz"))
+                in = new GZIPInputStream(in, 64 * 1024);
+            parse(new InputStreamReader(in, "UTF-8"), source.getName());
+        } finally {
+            in.close();
+        }
+    }
+
+    /**
+     * Parse the DDL read from the specified reader
+     *
+     * @param reader
+     * @param sourceName name of what's being read, for messages
+     * @throws IOException
+     */
+    public void parse(Reader reader, String sourceName) throws IOException {
+        if (parsed == null)
+            parsed = sourceName;
+        source = sourceName;
+        SqlStatementReader statements = new SqlStatementReader(reader, KEYWORDS);
+        String sql;
+
+        while ((sql = statements.readStatement()) != null) {
+            lineNumber = statements.getLineNumber();
+            ++numStatements;
+
+            try {
+                if (new Statement(sql, statements.hasBackslashEscapes()).parse())
+                    ++numParsed;
+            } catch (RuntimeException exc) {
+                // don't die just because we don't understand a statement
+                logger.warning("Skipping statement at " + source + ":" + lineNumber + " that couldn't be parsed (" + exc + "): " + abbreviate(sql));
+            }
+        }
+    }
+
+    /**
+     * Build the database from what's been parsed.
+     * Table inclusions/exclusions and column exclusions are taken from {@link Config}.
+     *
+     * @param dbName
+     * @param description
+     * @return
+     * @throws IOException
+     */
+    public Database getDatabase(String dbName, String description) throws IOException {
+        Config config = Config.getInstance();
+        Pattern include = config.getTableInclusions();
+        Pattern exclude = config.getTableExclusions();
+        String connectTime = new SimpleDateFormat("EEE MMM dd HH:mm z yyyy").format(new Date());
+        Database db = new Database(new DatabaseCapabilities("DDL", parsed == null ? "" : parsed), dbName, schema, description, connectTime);
+        Properties properties = new Properties();
+        Map<String, Table> built = new HashMap<String, Table>();   // key: same as tables
+        int numTables = 0;
+        int numViews = 0;
+
+        try {
+            for (Map.Entry<String, TableDef> entry : tables.entrySet()) {
+                TableDef def = entry.getValue();
+                if (def.remoteSchema != null || exclude.matcher(def.name).matches() || !include.matcher(def.name).matches())
+                    continue;
+
+                Table table;
+                if (def.isView) {
+                    table = new View(db, schema, def.name, def.comments, def.viewSql == null ? "" : def.viewSql, properties);
+                    ++numViews;
+                } else {
+                    table = new Table(db, schema, def.name, def.comments, properties);
+                    ++numTables;
+                }
+                populate(table, def);
+                db.restore(table);
+                built.put(entry.getKey(), table);
+            }
+
+            for (Map.Entry<String, TableDef> entry : tables.entrySet()) {
+                for (ForeignKeyDef foreignKey : entry.getValue().foreignKeys)
+                    connect(db, entry.getKey(), foreignKey, built, properties);
+            }
+        } catch (SQLException exc) {
+            // views never have to query their SQL
+            throw new IOException(exc.toString());
+        }
+
+        logger.info("Parsed " + numParsed + " of " + numStatements + " DDL statements into " +
+                    numTables + " tables and " + numViews + " views");
+        return db;
+    }
+
+    /**
+     * Populate the model's table with the columns, indexes, etc. of its definition
+     */
+    private void populate(Table table, TableDef def) {
+        Config config = Config.getInstance();
+        Pattern excludeColumns = config.getColumnExclusions();
+        Pattern excludeIndirectColumns = config.getIndirectColumnExclusions();
+
+        table.setNumRows(-1);
+
+        int id = 0;
+        for (ColumnDef columnDef : def.columns.values()) {
+            StringBuilder detailedSize = new StringBuilder();
+            if (columnDef.length > 0) {
+                detailedSize.append(columnDef.length);
+                if (columnDef.decimalDigits > 0) {
+                    detailedSize.append(',');
+                    detailedSize.append(columnDef.decimalDigits);
+                }
+            }
+
+            TableColumn column = new TableColumn(table, columnDef.name, new Integer(id++),
+                                                    columnDef.type == null ? UNKNOWN_TYPE : columnDef.type,
+                                                    columnDef.length, columnDef.decimalDigits, detailedSize.toString(),
+                                                    columnDef.isNullable, columnDef.defaultValue, columnDef.comments);
+            column.setIsAutoUpdated(columnDef.isAutoUpdated);
+            boolean isAllExcluded = column.matches(excludeColumns);
+            column.restore(true, true, isAllExcluded || column.matches(excludeIndirectColumns), isAllExcluded);
+            table.addColumn(column);
+        }
+
+        if (!def.primaryKey.isEmpty() && !table.isView()) {
+            TableIndex index = new TableIndex(def.primaryKeyName == null ? def.name + "_pkey" : def.primaryKeyName, true);
+            index.setIsPrimaryKey(true);
+            for (String columnName : def.primaryKey) {
+                TableColumn column = table.getColumn(columnName);
+                if (column != null) {
+                    index.addColumn(column, "A");
+                    table.setPrimaryColumn(column);
+                } else {
+                    logger.warning("Primary key of '" + def.name + "' references column '" + columnName + "' that doesn't exist");
+                }
+            }
+            table.addIndex(index);
+        }
+
+        for (IndexDef indexDef : def.indexes.values()) {
+            if (table.getIndex(indexDef.name) != null)
+                continue;   // the primary key's
+
+            TableIndex index = new TableIndex(indexDef.name, indexDef.isUnique);
+            for (int i = 0; i < indexDef.columns.size(); ++i) {
+                String columnName = indexDef.columns.get(i);
+                TableColumn column = columnName == null ? null : table.getColumn(columnName);
+                if (column != null)
+                    index.addColumn(column, indexDef.ascending.get(i).booleanValue() ? "A" : "D");
+            }
+            if (!index.getColumns().isEmpty())
+                table.addIndex(index);
+        }
+
+        for (Map.Entry<String, String> check : def.checks.entrySet())
+            table.addCheckConstraint(check.getKey(), check.getValue());
+    }
+
+    /**
+     * Connect the specified foreign key (of the table whose key is <code>childKey</code>)
+     * to the table that it references, creating remote tables as required
+     */
+    private void connect(Database db, String childKey, ForeignKeyDef def, Map<String, Table> built, Properties properties) {
+        TableDef childDef = tables.get(childKey);
+        TableDef parentDef = tables.get(def.parentKey);
+        boolean childRemote = childDef.remoteSchema != null;
+        boolean parentRemote = def.parentSchema != null;
+
+        if (childRemote && parentRemote)
+            return;     // nothing to do with our schema
+
+        Table child = childRemote ? getRemoteTable(db, childKey, childDef.remoteSchema, childDef.name, null, built, properties) : built.get(childKey);
+        if (child == null)
+            return;     // excluded
+
+        Table parent;
+        if (parentRemote) {
+            parent = getRemoteTable(db, def.parentKey, def.parentSchema, def.parentName, def.parentColumns, built, properties);
+        } else {
+            parent = built.get(def.parentKey);
+            if (parent == null && childRemote)
+                return;
+            if (parent == null && parentDef != null)
+                return; // excluded
+        }
+
+        ForeignKeyConstraint foreignKey = new ForeignKeyConstraint(child, def.name, def.updateRule, def.deleteRule);
+        child.addForeignKey(foreignKey);
+
+        List<String> parentColumns = def.parentColumns;
+        if (parentColumns.isEmpty() && parentDef != null)
+            parentColumns = parentDef.primaryKey;
+
+        for (int i = 0; i < def.childColumns.size(); ++i) {
+            TableColumn childColumn = child.getColumn(def.childColumns.get(i));
+            if (childColumn == null) {
+                logger.warning("Couldn't add FK '" + def.name + "' to table '" + child +
+                                "' - Column '" + def.childColumns.get(i) + "' doesn't exist");
+                continue;
+            }
+            foreignKey.addChildColumn(childColumn);
+
+            if (parent == null) {
+                logger.warning("Couldn't add FK '" + def.name + "' to table '" + child +
+                                "' - Unknown Referenced Table '" + def.parentName + "'");
+                continue;
+            }
+
+            TableColumn parentColumn = i < parentColumns.size() ? parent.getColumn(parentColumns.get(i)) : null;
+            if (parentColumn == null) {
+                logger.warning("Couldn't add FK '" + def.name + "' to table '" + child +
+                                "' - Column '" + (i < parentColumns.size() ? parentColumns.get(i) : "") +
+                                "' doesn't exist in table '" + parent + "'");
+                continue;
+            }
+
+            foreignKey.addParentColumn(parentColumn);
+            childColumn.addParent(parentColumn, foreignKey);
+            parentColumn.addChild(childColumn, foreignKey);
+        }
+    }
+
+    /**
+     * Returns the remote table with the specified key, creating it from its
+     * definition (if there is one) or with just the specified columns if needed
+     */
+    private Table getRemoteTable(Database db, String key, String remoteSchema, String name, List<String> columnNames,
+                                    Map<String, Table> built, Properties properties) {
+        Table table = built.get(key);
+        if (table == null) {
+            table = new RemoteTable(db, remoteSchema, name, schema, properties);
+            TableDef def = tables.get(key);
+            if (def != null) {
+                populate(table, def);
+            } else {
+                table.setNumRows(-1);
+            }
+            built.put(key, table);
+            db.restore(table);
+        }
+
+        if (columnNames != null && tables.get(key) == null) {
+            for (String columnName : columnNames) {
+                if (table.getColumn(columnName) == null) {
+                    table.addColumn(new TableColumn(table, columnName, new Integer(table.getColumns().size()),
+                                                    UNKNOWN_TYPE, 0, 0, "", true, null, null));
+                }
+            }
+        }
+
+        return table;
+    }
+
+    /**
+     * Returns the key of the table/view with the specified (possibly qualified) name
+     */
+    private String key(List<String> qualifiedName) {
+        return key(getSchema(qualifiedName), qualifiedName.get(qualifiedName.size() - 1));
+    }
+
+    private static String key(String remoteSchema, String name) {
+        String key = name.toLowerCase();
+        return remoteSchema == null ? key : remoteSchema.toLowerCase() + '\n' + key;
+    }
+
+    /**
+     * Returns the schema that qualifies the specified name if it isn't ours
+     */
+    private String getSchema(List<String> qualifiedName) {
+        if (schema == null || qualifiedName.size() < 2)
+            return null;
+        String qualifier = qualifiedName.get(qualifiedName.size() - 2);
+        return qualifier.equalsIgnoreCase(schema) ? null : qualifier;
+    }
+
+    private static String abbreviate(String sql) {
+        sql = sql.replaceAll("\\s+", " ");
+        return sql.length() > 100 ? sql.substring(0, 100) + "..." : sql;
+    }
+
+    private static Set<String> toSet(String[] words) {
+        return new HashSet<String>(Arrays.asList(words));
+    }
+
+    /**
+     * A table or view as defined so far
+     */
+    private static class TableDef {
+        private String name;
+        private final String remoteSchema;
+        private String comments;
+        private final boolean isView;
+        private String viewSql;
+        private final Map<String, ColumnDef> columns = new LinkedHashMap<String, ColumnDef>();  // key: lower case name
+        private String primaryKeyName;
+        private List<String> primaryKey = new ArrayList<String>();
+        private final Map<String, IndexDef> indexes = new LinkedHashMap<String, IndexDef>();   // key: lower case name
+        private final Map<String, String> checks = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
+        private final List<ForeignKeyDef> foreignKeys = new ArrayList<ForeignKeyDef>();
+
+        TableDef(String remoteSchema, String name, boolean isView) {
+            this.remoteSchema = remoteSchema;
+            this.name = name;
+            this.isView = isView;
+        }
+
+        ColumnDef getColumn(String columnName) {
+            return columns.get(columnName.toLowerCase());
+        }
+
+        void addColumn(ColumnDef column) {
+            columns.put(column.name.toLowerCase(), column);
+        }
+
+        /**
+         * Generate a name for an unnamed constraint (the way PostgreSQL does)
+         */
+        String generateName(List<String> columnNames, String suffix) {
+            StringBuilder generated = new StringBuilder(name);
+            for (String columnName : columnNames)
+                generated.append('_').append(columnName);
+            String base = generated.append('_').append(suffix).toString();
+
+            String unique = base;
+            for (int i = 1; isNameUsed(unique); ++i)
+                unique = base + i;
+            return unique;
+        }
+
+        private boolean isNameUsed(String constraintName) {
+            if (indexes.containsKey(constraintName.toLowerCase()) || checks.containsKey(constraintName))
+                return true;
+            for (ForeignKeyDef foreignKey : foreignKeys) {
+                if (foreignKey.name.equalsIgnoreCase(constraintName))
+                    return true;
+            }
+            return false;
+        }
+
+        /**
+         * Drop the named constraint, whatever it is
+         */
+        boolean dropConstraint(String constraintName) {
+            if (constraintName.equalsIgnoreCase(primaryKeyName)) {
+                primaryKey = new ArrayList<String>();
+                primaryKeyName = null;
+                return true;
+            }
+            if (indexes.remove(constraintName.toLowerCase()) != null || checks.remove(constraintName) != null)
+                return true;
+            for (int i = 0; i < foreignKeys.size(); ++i) {
+                if (foreignKeys.get(i).name.equalsIgnoreCase(constraintName)) {
+                    foreignKeys.remove(i);
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        void renameColumn(String oldName, String newName) {
+            Map<String, ColumnDef> renamed = new LinkedHashMap<String, ColumnDef>();
+            for (ColumnDef column : columns.values()) {
+                if (column.name.equalsIgnoreCase(oldName))
+                    column.name = newName;
+                renamed.put(column.name.toLowerCase(), column);
+            }
+            columns.clear();
+            columns.putAll(renamed);
+
+            rename(primaryKey, oldName, newName);
+            for (IndexDef index : indexes.values())
+                rename(index.columns, oldName, newName);
+            for (ForeignKeyDef foreignKey : foreignKeys)
+                rename(foreignKey.childColumns, oldName, newName);
+        }
+
+        void dropColumn(String columnName) {
+            columns.remove(columnName.toLowerCase());
+        }
+    }
+
+    private static void rename(List<String> names, String oldName, String newName) {
+        for (int i = 0; i < names.size(); ++i) {
+            if (oldName.equalsIgnoreCase(names.get(i)))
+                names.set(i, newName);
+        }
+    }
+
+    private static class ColumnDef {
+        private String name;
+        private String type;
+        private int length;
+        private int decimalDigits;
+        private boolean isNullable = true;
+        private String defaultValue;
+        private String comments;
+        private boolean isAutoUpdated;
+
+        ColumnDef(String name) {
+            this.name = name;
+        }
+    }
+
+    private static class IndexDef {
+        private final String name;
+        private final boolean isUnique;
+        private final List<String> columns;     // null entries for expressions
+        private final List<Boolean> ascending;
+
+        IndexDef(String name, boolean isUnique, List<String> columns, List<Boolean> ascending) {
+            this.name = name;
+            this.isUnique = isUnique;
+            this.columns = columns;
+            this.ascending = ascending;
+        }
+    }
+
+    private static class ForeignKeyDef {
+        private String name;
+        private final List<String> childColumns;
+        private String parentKey;
+        private String parentSchema;        // null if it's in our schema
+        private String parentName;
+        private final List<String> parentColumns; // empty for the parent's primary key
+        private int updateRule = DatabaseMetaData.importedKeyNoAction;
+        private int deleteRule = DatabaseMetaData.importedKeyNoAction;
+
+        ForeignKeyDef(List<String> childColumns, List<String> parentColumns) {
+            this.childColumns = childColumns;
+            this.parentColumns = parentColumns;
+        }
+    }
+
+    /**
+     * Orders scripts by name, comparing embedded numbers numerically
+     */
+    private static class ScriptOrder implements Comparator<File> {
+        public int compare(File file1, File file2) {
+            String name1 = file1.getName();
+            String name2 = file2.getName();
+            int i1 = 0;
+            int i2 = 0;
+
+            while (i1 < name1.length() && i2 < name2.length()) {
+                char ch1 = name1.charAt(i1);
+                char ch2 = name2.charAt(i2);
+
+                if (Character.isDigit(ch1) && Character.isDigit(ch2)) {
+                    int end1 = i1;
+                    while (end1 < name1.length() && Character.isDigit(name1.charAt(end1)))
+                        ++end1;
+                    int end2 = i2;
+                    while (end2 < name2.length() && Character.isDigit(name2.charAt(end2)))
+                        ++end2;
+
+                    String digits1 = name1.substring(i1, end1).replaceFirst("^0+(?=.)", "");
+                    String digits2 = name2.substring(i2, end2).replaceFirst("^0+(?=.)", "");
+                    int rc = digits1.length() != digits2.length() ? digits1.length() - digits2.length() : digits1.compareTo(digits2);
+                    if (rc != 0)
+                        return rc;
+                    i1 = end1;
+                    i2 = end2;
+                } else {
+                    int rc = Character.toLowerCase(ch1) - Character.toLowerCase(ch2);
+                    if (rc != 0)
+                        return rc;
+                    ++i1;
+                    ++i2;
+                }
+            }
+
+            return (name1.length() - i1) - (name2.length() - i2);
+        }
+    }
+
+    /**
+     * A lexical token of a statement
+     */
+    private static class Token {
+        static final int WORD = 0;      // keyword or unquoted identifier
+        static final int QUOTED = 1;    // quoted identifier
+        static final int STRING = 2;
+        static final int NUMBER = 3;
+        static final int SYMBOL = 4;
+
+        final int type;
+        final String text;              // without its quotes
+        final int start;
+        final int end;
+
+        Token(int type, String text, int start, int end) {
+            this.type = type;
+            this.text = text;
+            this.start = start;
+            this.end = end;
+        }
+
+        boolean is(String word) {
+            return type == WORD && text.equalsIgnoreCase(word);
+        }
+
+        boolean isSymbol(String symbol) {
+            return type == SYMBOL && text.equals(symbol);
+        }
+
+        boolean isIdentifier() {
+            return type == WORD || type == QUOTED;
+        }
+
+        @Override
+        public String toString() {
+            return text;
+        }
+    }
+
+    /**
+     * Parses one statement, updating the definitions
+     */
+    private class Statement {
+        private final String sql;
+        private final List<Token> tokens;
+        private int pos;
+
+        /**
+         * @param sql
+         * @param backslashEscapes <code>true</code> if backslashes escape within all strings (MySQL)
+         */
+        Statement(String sql, boolean backslashEscapes) {
+            this.sql = sql;
+            tokens = tokenize(sql, backslashEscapes);
+        }
+
+        /**
+         * @return <code>false</code> if it's not a statement that we're interested in
+         */
+        boolean parse() {
+            if (accept("CREATE"))
+                return parseCreate();
+            if (accept("ALTER", "TABLE"))
+                return parseAlterTable();
+            if (accept("DROP"))
+                return parseDrop();
+            if (accept("RENAME", "TABLE"))
+                return parseRenameTables();
+            if (accept("COMMENT", "ON"))
+                return parseComment();
+            return false;
+        }
+
+        private boolean parseCreate() {
+            boolean isUnique = false;
+
+            // skip things like OR REPLACE, GLOBAL TEMPORARY, DEFINER=x, etc.
+            while (!atEnd()) {
+                Token token = peek();
+                if (token.is("TABLE")) {
+                    next();
+                    return parseCreateTable();
+                }
+                if (token.is("INDEX")) {
+                    next();
+                    return parseCreateIndex(isUnique);
+                }
+                if (token.is("VIEW")) {
+                    next();
+                    return parseCreateView();
+                }
+                if (token.is("UNIQUE"))
+                    isUnique = true;
+                if (token.isSymbol("(") || (token.type == Token.WORD && CREATE_STOPPERS.contains(token.text.toUpperCase())))
+                    return false;
+                next();
+            }
+
+            return false;
+        }
+
+        private boolean parseCreateTable() {
+            boolean ifNotExists = accept("IF", "NOT", "EXISTS");
+            List<String> name = qualifiedName();
+            if (!peekSymbol("("))
+                return false;   // CREATE TABLE AS SELECT, LIKE, PARTITION OF, etc.
+
+            String key = key(name);
+            if (ifNotExists && tables.containsKey(key))
+                return true;
+
+            TableDef table = new TableDef(getSchema(name), last(name), false);
+            expectSymbol("(");
+            while (!atEnd() && !peekSymbol(")")) {
+                parseElement(table);
+                acceptSymbol(",");
+            }
+            expectSymbol(")");
+
+            // not until it's been parsed so a statement that can't be doesn't leave part of a table
+            tables.put(key, table);
+
+            // table options
+            while (!atEnd()) {
+                if (accept("COMMENT")) {
+                    acceptSymbol("=");
+                    table.comments = string();
+                } else {
+                    next();
+                }
+            }
+
+            return true;
+        }
+
+        /**
+         * Parse a column or table constraint, leaving the terminating , or ) to be consumed
+         */
+        private void parseElement(TableDef table) {
+            Token token = peek();
+            if (token.type == Token.WORD && TABLE_CONSTRAINTS.contains(token.text.toUpperCase()) && !isColumnNamed(token)) {
+                String constraintName = null;
+                if (accept("CONSTRAINT") && !peek().is("PRIMARY") && !peek().is("UNIQUE") && !peek().is("FOREIGN") && !peek().is("CHECK"))
+                    constraintName = identifier();
+                parseTableConstraint(table, constraintName);
+            } else {
+                ColumnDef column = new ColumnDef(identifier());
+                parseColumnType(column);
+                table.addColumn(column);
+                parseColumnConstraints(table, column);
+            }
+
+            skipToElementEnd();
+        }
+
+        /**
+         * Returns <code>true</code> if the specified constraint-like word is
+         * really being used as the name of a column (e.g. a column named <code>key</code>)
+         */
+        private boolean isColumnNamed(Token token) {
+            Token following = peek(1);
+            if (following == null || following.type != Token.WORD)
+                return false;
+            if (token.is("KEY") || token.is("INDEX") || token.is("UNIQUE") || token.is("FULLTEXT") || token.is("SPATIAL"))
+                return peek(2) != null && !peek(2).isSymbol("(") && !following.is("KEY") && !following.is("INDEX") && !following.is("USING") && !peek(2).is("USING");
+            return false;
+        }
+
+        private void parseTableConstraint(TableDef table, String constraintName) {
+            if (accept("PRIMARY", "KEY")) {
+                acceptAny("CLUSTERED", "NONCLUSTERED");
+                skipUsing();
+                List<Boolean> ascending = new ArrayList<Boolean>();
+                table.primaryKey = columnList(ascending);
+                table.primaryKeyName = constraintName;
+                for (String columnName : table.primaryKey) {
+                    ColumnDef column = columnName == null ? null : table.getColumn(columnName);
+                    if (column != null)
+                        column.isNullable = false;
+                }
+            } else if (accept("UNIQUE")) {
+                acceptAny("KEY", "INDEX");
+                acceptAny("CLUSTERED", "NONCLUSTERED");
+                String indexName = peekSymbol("(") || peek().is("USING") ? null : identifier();
+                if (constraintName == null)
+                    constraintName = indexName;
+                skipUsing();
+                addIndex(table, constraintName, true);
+            } else if (accept("FOREIGN", "KEY")) {
+                if (!peekSymbol("(")) {
+                    String indexName = identifier();
+                    if (constraintName == null)
+                        constraintName = indexName;
+                }
+                List<String> childColumns = columnList(null);
+                expect("REFERENCES");
+                addForeignKey(table, constraintName, childColumns);
+            } else if (accept("CHECK")) {
+                addCheck(table, constraintName);
+            } else if (acceptAny("KEY", "INDEX") || acceptAny("FULLTEXT", "SPATIAL")) {
+                acceptAny("KEY", "INDEX");
+                String indexName = peekSymbol("(") || peek().is("USING") ? null : identifier();
+                skipUsing();
+                addIndex(table, indexName, false);
+            } else if (accept("DEFAULT")) {
+                // SQL Server: DEFAULT expression FOR column
+                String value = expression();
+                if (accept("FOR")) {
+                    ColumnDef column = table.getColumn(identifier());
+                    if (column != null)
+                        column.defaultValue = value;
+                }
+            }
+            // EXCLUDE, LIKE, etc. are ignored
+        }
+
+        private void addIndex(TableDef table, String indexName, boolean isUnique) {
+            List<Boolean> ascending = new ArrayList<Boolean>();
+            List<String> columns = columnList(ascending);
+            if (indexName == null)
+                indexName = table.generateName(columns, isUnique ? "key" : "idx");
+            table.indexes.put(indexName.toLowerCase(), new IndexDef(indexName, isUnique, columns, ascending));
+            indexOwners.put(indexName.toLowerCase(), key(table.remoteSchema, table.name));
+        }
+
+        private void addCheck(TableDef table, String constraintName) {
+            if (!peekSymbol("("))
+                return;
+            int start = peek().end;
+            int end = skipBalanced().start;
+            String text = sql.substring(start, end).trim();
+            if (constraintName == null)
+                constraintName = table.generateName(Collections.<String>emptyList(), "check");
+            table.checks.put(constraintName, text);
+        }
+
+        /**
+         * Parse what follows <code>REFERENCES</code>
+         */
+        private void addForeignKey(TableDef table, String constraintName, List<String> childColumns) {
+            List<String> parentName = qualifiedName();
+            List<String> parentColumns = peekSymbol("(") ? columnList(null) : new ArrayList<String>();
+
+            ForeignKeyDef foreignKey = new ForeignKeyDef(childColumns, parentColumns);
+            foreignKey.parentKey = key(parentName);
+            foreignKey.parentSchema = getSchema(parentName);
+            foreignKey.parentName = last(parentName);
+
+            while (!atEnd()) {
+                if (accept("ON", "DELETE")) {
+                    foreignKey.deleteRule = referentialAction();
+                } else if (accept("ON", "UPDATE")) {
+                    foreignKey.updateRule = referentialAction();
+                } else if (accept("MATCH")) {
+                    next();
+                } else if (accept("NOT", "DEFERRABLE") || accept("DEFERRABLE") || accept("NOT", "FOR", "REPLICATION")) {
+                    // nothing to record
+                } else if (accept("INITIALLY")) {
+                    next();
+                } else if (acceptAny("ENABLE", "DISABLE") || acceptAny("VALIDATE", "NOVALIDATE") || acceptAny("RELY", "NORELY")) {
+                    // nothing to record
+                } else {
+                    break;
+                }
+            }
+
+            foreignKey.name = constraintName == null ? table.generateName(childColumns, "fkey") : constraintName;
+            table.foreignKeys.add(foreignKey);
+        }
+
+        private int referentialAction() {
+            if (accept("CASCADE"))
+                return DatabaseMetaData.importedKeyCascade;
+            if (accept("SET", "NULL"))
+                return DatabaseMetaData.importedKeySetNull;
+            if (accept("SET", "DEFAULT"))
+                return DatabaseMetaData.importedKeySetDefault;
+            if (accept("RESTRICT"))
+                return DatabaseMetaData.importedKeyRestrict;
+            accept("NO", "ACTION");
+            return DatabaseMetaData.importedKeyNoAction;
+        }
+
+        /**
+         * Parse a column's type (if it has one)
+         */
+        private void parseColumnType(ColumnDef column) {
+            Token token = peek();
+            if (token == null || !token.isIdentifier())
+                return;
+            if (token.type == Token.WORD && COLUMN_KEYWORDS.contains(token.text.toUpperCase()) && !isTypeWord(token, false))
+                return;     // e.g. CHARACTER SET, but not CHARACTER VARYING
+
+            StringBuilder type = new StringBuilder(next().text);
+            while (acceptSymbol("."))   // qualified by its schema
+                type.append('.').append(next().text);
+            boolean isInterval = type.toString().equalsIgnoreCase("INTERVAL");
+
+            // multi-word types like double precision, character varying and long raw
+            while (peek() != null && isTypeWord(peek(), isInterval))
+                type.append(' ').append(next().text);
+
+            if (peekSymbol("(")) {
+                int start = peek().start;
+                List<Token> size = new ArrayList<Token>();
+                next();
+                while (!atEnd() && !peekSymbol(")"))
+                    size.add(next());
+                int end = expectSymbol(")").end;
+
+                if (!size.isEmpty() && size.get(0).type == Token.NUMBER) {
+                    column.length = toInt(size.get(0).text);
+                    if (size.size() > 2 && size.get(1).isSymbol(",") && size.get(2).type == Token.NUMBER)
+                        column.decimalDigits = toInt(size.get(2).text);
+                } else if (!(size.size() == 1 && size.get(0).is("MAX"))) {
+                    type.append(sql.substring(start, end)); // e.g. enum('a','b')
+                }
+            }
+
+            while (peek() != null) {
+                if (isTypeWord(peek(), isInterval)) {
+                    type.append(' ').append(next().text);
+                } else if (peekSymbol("[")) {
+                    next();
+                    acceptNumber();
+                    expectSymbol("]");
+                    type.append("[]");
+                } else if (accept("ARRAY")) {
+                    type.append("[]");
+                } else {
+                    break;
+                }
+            }
+
+            column.type = type.toString();
+            if (SERIAL_TYPES.contains(column.type.toUpperCase()))
+                column.isAutoUpdated = true;
+        }
+
+        private boolean isTypeWord(Token token, boolean isInterval) {
+            if (token.type != Token.WORD)
+                return false;
+            String word = token.text.toUpperCase();
+            if (word.equals("VARYING") || word.equals("PRECISION") || word.equals("UNSIGNED") || word.equals("SIGNED") ||
+                    word.equals("ZEROFILL") || word.equals("RAW") || word.equals("LARGE") || word.equals("OBJECT") ||
+                    word.equals("VARCHAR") || word.equals("TIME") || word.equals("ZONE") || word.equals("LOCAL"))
+                return true;
+            if (word.equals("CHARACTER") || word.equals("CHAR"))
+                return peek(1) != null && (peek(1).is("VARYING") || peek(1).is("LARGE"));
+            if (word.equals("WITH") || word.equals("WITHOUT"))
+                return peek(1) != null && (peek(1).is("TIME") || peek(1).is("LOCAL"));
+            return isInterval && (word.equals("YEAR") || word.equals("MONTH") || word.equals("DAY") || word.equals("HOUR") ||
+                                  word.equals("MINUTE") || word.equals("SECOND") || word.equals("TO"));
+        }
+
+        /**
+         * Parse a column's constraints and other attributes up to the end of its definition
+         */
+        private void parseColumnConstraints(TableDef table, ColumnDef column) {
+            String constraintName = null;
+            List<String> columnNames = Collections.singletonList(column.name);
+
+            while (!atEnd() && !peekSymbol(",") && !peekSymbol(")")) {
+                if (accept("CONSTRAINT")) {
+                    constraintName = identifier();
+                    continue;
+                }
+
+                if (accept("NOT", "NULL")) {
+                    column.isNullable = false;
+                } else if (accept("NULL")) {
+                    column.isNullable = true;
+                } else if (accept("DEFAULT")) {
+                    column.defaultValue = expression();
+                } else if (accept("PRIMARY", "KEY")) {
+                    table.primaryKey = new ArrayList<String>(columnNames);
+                    table.primaryKeyName = constraintName;
+                    column.isNullable = false;
+                } else if (accept("UNIQUE")) {
+                    accept("KEY");
+                    String indexName = constraintName == null ? table.generateName(columnNames, "key") : constraintName;
+                    table.indexes.put(indexName.toLowerCase(), new IndexDef(indexName, true,
+                                        new ArrayList<String>(columnNames), new ArrayList<Boolean>(Collections.singletonList(Boolean.TRUE))));
+                    indexOwners.put(indexName.toLowerCase(), key(table.remoteSchema, table.name));
+                } else if (accept("REFERENCES")) {
+                    addForeignKey(table, constraintName, new ArrayList<String>(columnNames));
+                } else if (accept("CHECK")) {
+                    addCheck(table, constraintName);
+                } else if (acceptAny("AUTO_INCREMENT", "AUTOINCREMENT")) {
+                    column.isAutoUpdated = true;
+                } else if (accept("IDENTITY")) {
+                    column.isAutoUpdated = true;
+                    skipBalanced();
+                } else if (accept("GENERATED")) {
+                    // GENERATED {ALWAYS | BY DEFAULT} AS {IDENTITY | (expression)}
+                    while (!atEnd() && !peek().is("AS"))
+                        next();
+                    accept("AS");
+                    if (accept("IDENTITY")) {
+                        column.isAutoUpdated = true;
+                        skipBalanced();
+                    } else {
+                        skipBalanced();
+                    }
+                } else if (accept("AS")) {
+                    skipBalanced();     // computed column
+                } else if (accept("COMMENT")) {
+                    column.comments = string();
+                } else if (accept("COLLATE") || accept("CHARACTER", "SET") || accept("CHARSET")) {
+                    next();
+                } else if (accept("ON", "UPDATE")) {
+                    expression();
+                } else {
+                    skip();
+                    continue;
+                }
+
+                constraintName = null;
+            }
+        }
+
+        /**
+         * Returns the text of the (default value) expression that's next
+         */
+        private String expression() {
+            if (atEnd())
+                return null;
+
+            int start = peek().start;
+            int end = operand();
+            while (peek() != null && peek().type == Token.SYMBOL && !peekSymbol(",") && !peekSymbol(")") && !peekSymbol("(")) {
+                boolean isCast = peekSymbol("::");
+                next();
+                if (atEnd())
+                    break;
+                if (isCast) {
+                    end = next().end;
+                    while (peek() != null && isTypeWord(peek(), false))
+                        end = next().end;
+                    if (peekSymbol("("))
+                        end = skipBalanced().end;
+                    while (peekSymbol("[")) {
+                        next();
+                        end = expectSymbol("]").end;
+                    }
+                } else {
+                    end = operand();
+                }
+            }
+
+            return sql.substring(start, end);
+        }
+
+        /**
+         * Consume an operand of an expression, returning where it ends
+         */
+        private int operand() {
+            if (peekSymbol("-") || peekSymbol("+"))
+                next();
+            if (peekSymbol("("))
+                return skipBalanced().end;
+
+            Token token = next();
+            int end = token.end;
+            if (token.type == Token.WORD) {
+                // multi-word operands like NEXT VALUE FOR seq and CURRENT TIMESTAMP
+                while (peek() != null && peek().type == Token.WORD && !COLUMN_KEYWORDS.contains(peek().text.toUpperCase()))
+                    end = next().end;
+                while (acceptSymbol("."))
+                    end = next().end;
+            }
+            if (token.isIdentifier() && peekSymbol("("))
+                end = skipBalanced().end;   // function call
+            return end;
+        }
+
+        private boolean parseCreateIndex(boolean isUnique) {
+            accept("CONCURRENTLY");
+            accept("IF", "NOT", "EXISTS");
+            String indexName = peek().is("ON") ? null : last(qualifiedName());
+            expect("ON");
+            accept("ONLY");
+            List<String> tableName = qualifiedName();
+            TableDef table = tables.get(key(tableName));
+            if (table == null) {
+                warn("Index " + indexName + " is on table " + last(tableName) + " that hasn't been created");
+                return false;
+            }
+
+            skipUsing();
+            addIndex(table, indexName, isUnique);
+            return true;
+        }
+
+        private boolean parseCreateView() {
+            accept("IF", "NOT", "EXISTS");
+            List<String> name = qualifiedName();
+            TableDef view = new TableDef(getSchema(name), last(name), true);
+
+            List<String> columns = peekSymbol("(") ? columnList(null) : null;
+            while (!atEnd() && !peek().is("AS"))
+                skip();
+            expect("AS");
+            if (atEnd())
+                return false;
+            view.viewSql = sql.substring(peek().start).trim();
+
+            if (columns == null)
+                columns = selectedColumns();
+            for (String column : columns)
+                view.addColumn(new ColumnDef(column));
+
+            tables.put(key(name), view);
+            return true;
+        }
+
+        /**
+         * Returns the names of the columns of the view's (top level) <code>SELECT</code>,
+         * as far as they can be determined (none if it selects <code>*</code>)
+         */
+        private List<String> selectedColumns() {
+            List<String> columns = new ArrayList<String>();
+            while (!atEnd() && !peek().is("SELECT"))
+                skip();
+            if (!accept("SELECT"))
+                return columns;
+            acceptAny("DISTINCT", "ALL");
+
+            while (!atEnd() && !peek().is("FROM")) {
+                Token last = null;
+                Token previous = null;
+                int numTokens = 0;
+                while (!atEnd() && !peekSymbol(",") && !peek().is("FROM")) {
+                    previous = last;
+                    last = peek();
+                    if (peekSymbol("*"))
+                        return new ArrayList<String>();
+                    skip();
+                    ++numTokens;
+                }
+                acceptSymbol(",");
+
+                // an alias, a column or table.column
+                if (last != null && last.isIdentifier() && (numTokens == 1 || previous.isSymbol(".") || previous.is("AS") || previous.type != Token.SYMBOL))
+                    columns.add(last.text);
+                else if (last != null)
+                    columns.add("column" + (columns.size() + 1));
+            }
+
+            return columns;
+        }
+
+        private boolean parseAlterTable() {
+            accept("ONLY");
+            accept("IF", "EXISTS");
+            List<String> name = qualifiedName();
+            acceptSymbol("*");
+            String key = key(name);
+            TableDef table = tables.get(key);
+            if (table == null) {
+                if (!isIgnoredAlteration(peek()))
+                    warn("Ignoring ALTER of " + last(name) + " that hasn't been created");
+                else if (fineEnabled)
+                    logger.fine("Ignoring ALTER of " + last(name) + " that hasn't been created at " + source + ":" + lineNumber);
+                return false;
+            }
+
+            boolean understood = false;
+            while (!atEnd()) {
+                Token alteration = peek();
+                if (parseAlteration(table, key))
+                    understood = true;
+                else if (!isIgnoredAlteration(alteration))
+                    warn("Skipping alteration of " + table.name + " that isn't understood: " + abbreviate(sql));
+                skipToElementEnd();
+                if (!acceptSymbol(","))
+                    break;
+            }
+
+            return understood;
+        }
+
+        /**
+         * Returns <code>true</code> if the alteration starting with the specified
+         * token is one that we know doesn't affect what we model (owners, storage, etc.)
+         */
+        private boolean isIgnoredAlteration(Token token) {
+            return token != null && token.type == Token.WORD && IGNORED_ALTERATIONS.contains(token.text.toUpperCase());
+        }
+
+        private boolean parseAlteration(TableDef table, String key) {
+            // SQL Server: WITH [NO]CHECK ADD CONSTRAINT...
+            if (accept("WITH", "CHECK") || accept("WITH", "NOCHECK"))
+                return accept("ADD") && parseAddition(table);
+
+            if (accept("ADD"))
+                return parseAddition(table);
+
+            if (accept("COMMENT")) {
+                // MySQL: COMMENT [=] 'comment'
+                acceptSymbol("=");
+                table.comments = string();
+                return true;
+            }
+
+            if (accept("DROP")) {
+                if (accept("PRIMARY", "KEY")) {
+                    table.primaryKey = new ArrayList<String>();
+                    table.primaryKeyName = null;
+                } else if (acceptAny("CONSTRAINT", "INDEX", "KEY", "CHECK") || accept("FOREIGN", "KEY")) {
+                    accept("IF", "EXISTS");
+                    table.dropConstraint(identifier());
+                } else {
+                    accept("COLUMN");
+                    accept("IF", "EXISTS");
+                    if (acceptSymbol("(")) {
+                        while (!atEnd() && !peekSymbol(")")) {
+                            table.dropColumn(identifier());
+                            acceptSymbol(",");
+                        }
+                    } else {
+                        table.dropColumn(identifier());
+                    }
+                }
+                return true;
+            }
+
+            if (accept("MODIFY") || accept("ALTER")) {
+                accept("COLUMN");
+                if (acceptSymbol("(")) {
+                    // Oracle: MODIFY (column, column...)
+                    while (!atEnd() && !peekSymbol(")")) {
+                        modifyColumn(table, identifier());
+                        skipToElementEnd();
+                        acceptSymbol(",");
+                    }
+                    expectSymbol(")");
+                } else {
+                    modifyColumn(table, identifier());
+                }
+                return true;
+            }
+
+            if (accept("CHANGE")) {
+                accept("COLUMN");
+                String oldName = identifier();
+                String newName = identifier();
+                table.renameColumn(oldName, newName);
+                renameReferences(key, oldName, newName);
+                modifyColumn(table, newName);
+                return true;
+            }
+
+            if (accept("RENAME")) {
+                if (accept("COLUMN") || (peek(1) != null && peek(1).is("TO") && !peek().is("TO"))) {
+                    String oldName = identifier();
+                    expect("TO");
+                    String newName = identifier();
+                    table.renameColumn(oldName, newName);
+                    renameReferences(key, oldName, newName);
+                } else if (acceptAny("INDEX", "KEY", "CONSTRAINT")) {
+                    String oldName = identifier();
+                    expect("TO");
+                    renameConstraint(table, oldName, identifier());
+                } else {
+                    acceptAny("TO", "AS");
+                    renameTable(key, qualifiedName());
+                }
+                return true;
+            }
+
+            return false;
+        }
+
+        /**
+         * Parse what follows <code>ADD</code>
+         */
+        private boolean parseAddition(TableDef table) {
+            accept("COLUMN");
+            accept("IF", "NOT", "EXISTS");
+            if (acceptSymbol("(")) {
+                // Oracle: ADD (column, column...)
+                while (!atEnd() && !peekSymbol(")")) {
+                    parseElement(table);
+                    acceptSymbol(",");
+                }
+                expectSymbol(")");
+            } else if (peek() != null && peek().is("DEFAULT")) {
+                parseTableConstraint(table, null);
+            } else {
+                parseElement(table);
+            }
+            return true;
+        }
+
+        /**
+         * Apply a <code>MODIFY</code> or <code>ALTER COLUMN</code> to the specified column
+         */
+        private void modifyColumn(TableDef table, String columnName) {
+            ColumnDef column = table.getColumn(columnName);
+            if (column == null) {
+                warn("Column " + columnName + " of " + table.name + " doesn't exist");
+                return;
+            }
+
+            if (accept("SET", "DATA", "TYPE") || accept("TYPE")) {
+                column.length = 0;
+                column.decimalDigits = 0;
+                parseColumnType(column);
+            } else if (accept("SET", "NOT", "NULL")) {
+                column.isNullable = false;
+            } else if (accept("DROP", "NOT", "NULL")) {
+                column.isNullable = true;
+            } else if (accept("SET", "DEFAULT")) {
+                column.defaultValue = expression();
+            } else if (accept("DROP", "DEFAULT")) {
+                column.defaultValue = null;
+            } else if (peek() != null && peek().isIdentifier() && !COLUMN_KEYWORDS.contains(peek().text.toUpperCase())) {
+                // a new definition (MySQL, SQL Server)
+                ColumnDef redefined = new ColumnDef(column.name);
+                parseColumnType(redefined);
+                table.addColumn(redefined);
+                parseColumnConstraints(table, redefined);
+            } else {
+                // just constraints (Oracle)
+                parseColumnConstraints(table, column);
+            }
+        }
+
+        private void renameConstraint(TableDef table, String oldName, String newName) {
+            IndexDef index = table.indexes.remove(oldName.toLowerCase());
+            if (index != null) {
+                table.indexes.put(newName.toLowerCase(), new IndexDef(newName, index.isUnique, index.columns, index.ascending));
+                indexOwners.put(newName.toLowerCase(), key(table.remoteSchema, table.name));
+            }
+            if (oldName.equalsIgnoreCase(table.primaryKeyName))
+                table.primaryKeyName = newName;
+            String check = table.checks.remove(oldName);
+            if (check != null)
+                table.checks.put(newName, check);
+            for (ForeignKeyDef foreignKey : table.foreignKeys) {
+                if (foreignKey.name.equalsIgnoreCase(oldName))
+                    foreignKey.name = newName;
+            }
+        }
+
+        /**
+         * Rename a column of the specified table where foreign keys reference it
+         */
+        private void renameReferences(String key, String oldName, String newName) {
+            for (TableDef table : tables.values()) {
+                for (ForeignKeyDef foreignKey : table.foreignKeys) {
+                    if (foreignKey.parentKey.equals(key))
+                        rename(foreignKey.parentColumns, oldName, newName);
+                }
+            }
+        }
+
+        private void renameTable(String oldKey, List<String> newName) {
+            TableDef table = tables.remove(oldKey);
+            if (table == null)
+                return;
+
+            TableDef renamed = table;
+            if (getSchema(newName) != table.remoteSchema) {
+                warn("Moving " + table.name + " to another schema isn't supported");
+                tables.put(oldKey, table);
+                return;
+            }
+            renamed.name = last(newName);
+            String newKey = key(newName);
+            tables.put(newKey, renamed);
+
+            for (TableDef other : tables.values()) {
+                for (ForeignKeyDef foreignKey : other.foreignKeys) {
+                    if (foreignKey.parentKey.equals(oldKey)) {
+                        foreignKey.parentKey = newKey;
+                        foreignKey.parentName = renamed.name;
+                    }
+                }
+            }
+            for (String index : renamed.indexes.keySet())
+                indexOwners.put(index, newKey);
+        }
+
+        private boolean parseRenameTables() {
+            // MySQL: RENAME TABLE a TO b, c TO d
+            while (!atEnd()) {
+                String oldKey = key(qualifiedName());
+                expect("TO");
+                renameTable(oldKey, qualifiedName());
+                if (!acceptSymbol(","))
+                    break;
+            }
+            return true;
+        }
+
+        private boolean parseDrop() {
+            boolean isView;
+            if (accept("TABLE")) {
+                isView = false;
+            } else if (accept("VIEW") || accept("MATERIALIZED", "VIEW")) {
+                isView = true;
+            } else if (accept("INDEX")) {
+                return parseDropIndex();
+            } else {
+                return false;
+            }
+
+            accept("IF", "EXISTS");
+            while (!atEnd()) {
+                String key = key(qualifiedName());
+                TableDef dropped = tables.get(key);
+                if (dropped != null && dropped.isView == isView) {
+                    tables.remove(key);
+                    // the foreign keys that reference it are dropped with it (or it couldn't be dropped)
+                    for (TableDef table : tables.values()) {
+                        for (int i = table.foreignKeys.size() - 1; i >= 0; --i) {
+                            if (table.foreignKeys.get(i).parentKey.equals(key))
+                                table.foreignKeys.remove(i);
+                        }
+                    }
+                }
+                if (!acceptSymbol(","))
+                    break;
+            }
+            return true;
+        }
+
+        private boolean parseDropIndex() {
+            accept("CONCURRENTLY");
+            accept("IF", "EXISTS");
+            String indexName = last(qualifiedName());
+            String owner;
+            if (accept("ON")) {
+                owner = key(qualifiedName());
+            } else if (acceptSymbol(".")) {
+                // SQL Server: DROP INDEX table.index
+                owner = key(Collections.singletonList(indexName));
+                indexName = identifier();
+            } else {
+                owner = indexOwners.get(indexName.toLowerCase());
+            }
+
+            TableDef table = owner == null ? null : tables.get(owner);
+            if (table != null)
+                table.dropConstraint(indexName);
+            indexOwners.remove(indexName.toLowerCase());
+            return true;
+        }
+
+        private boolean parseComment() {
+            boolean isColumn;
+            if (accept("COLUMN")) {
+                isColumn = true;
+            } else if (accept("TABLE") || accept("VIEW") || accept("MATERIALIZED", "VIEW")) {
+                isColumn = false;
+            } else {
+                return false;
+            }
+
+            List<String> name = qualifiedName();
+            expect("IS");
+            String comments = accept("NULL") ? null : string();
+
+            if (isColumn) {
+                String columnName = last(name);
+                name = name.subList(0, name.size() - 1);
+                TableDef table = name.isEmpty() ? null : tables.get(key(name));
+                ColumnDef column = table == null ? null : table.getColumn(columnName);
+                if (column == null)
+                    return false;
+                column.comments = comments;
+            } else {
+                TableDef table = tables.get(key(name));
+                if (table == null)
+                    return false;
+                table.comments = comments;
+            }
+
+            return true;
+        }
+
+        /**
+         * Skip a <code>USING method</code> clause
+         */
+        private void skipUsing() {
+            if (accept("USING"))
+                next();
+        }
+
+        /**
+         * Parse a parenthesized list of column names (of an index, key, etc.),
+         * optionally collecting whether each is ascending.
+         * Expressions are given <code>null</code> names.
+         */
+        private List<String> columnList(List<Boolean> ascending) {
+            List<String> columns = new ArrayList<String>();
+            expectSymbol("(");
+
+            while (!atEnd() && !peekSymbol(")")) {
+                List<Token> entry = new ArrayList<Token>();
+                int depth = 0;
+                while (!atEnd() && !(depth == 0 && (peekSymbol(",") || peekSymbol(")")))) {
+                    Token token = next();
+                    if (token.isSymbol("("))
+                        ++depth;
+                    else if (token.isSymbol(")"))
+                        --depth;
+                    entry.add(token);
+                }
+                acceptSymbol(",");
+
+                boolean isColumn = !entry.isEmpty() && entry.get(0).isIdentifier() &&
+                                    (entry.size() == 1 || entry.get(1).type == Token.WORD ||
+                                     (entry.size() >= 4 && entry.get(1).isSymbol("(") && entry.get(2).type == Token.NUMBER));
+                columns.add(isColumn ? entry.get(0).text : null);
+                if (ascending != null) {
+                    boolean isAscending = true;
+                    for (Token token : entry) {
+                        if (token.is("DESC"))
+                            isAscending = false;
+                    }
+                    ascending.add(Boolean.valueOf(isAscending));
+                }
+            }
+
+            expectSymbol(")");
+            return columns;
+        }
+
+        private List<String> qualifiedName() {
+            List<String> name = new ArrayList<String>();
+            name.add(identifier());
+            while (acceptSymbol("."))
+                name.add(identifier());
+            return name;
+        }
+
+        private String identifier() {
+            Token token = next();
+            if (!token.isIdentifier())
+                throw new IllegalStateException("expected a name but found '" + token + "'");
+            return token.text;
+        }
+
+        private String string() {
+            Token token = next();
+            if (token.type != Token.STRING)
+                throw new IllegalStateException("expected a string but found '" + token + "'");
+            return token.text;
+        }
+
+        private boolean atEnd() {
+            return pos >= tokens.size();
+        }
+
+        private Token peek() {
+            return peek(0);
+        }
+
+        private Token peek(int ahead) {
+            return pos + ahead < tokens.size() ? tokens.get(pos + ahead) : null;
+        }
+
+        private Token next() {
+            if (atEnd())
+                throw new IllegalStateException("unexpected end of statement");
+            return tokens.get(pos++);
+        }
+
+        /**
+         * Consume the specified sequence of words if they're next
+         */
+        private boolean accept(String... words) {
+            for (int i = 0; i < words.length; ++i) {
+                Token token = peek(i);
+                if (token == null || !token.is(words[i]))
+                    return false;
+            }
+            pos += words.length;
+            return true;
+        }
+
+        /**
+         * Consume any one of the specified words if it's next
+         */
+        private boolean acceptAny(String... words) {
+            for (String word : words) {
+                if (accept(word))
+                    return true;
+            }
+            return false;
+        }
+
+        private void expect(String word) {
+            if (!accept(word))
+                throw new IllegalStateException("expected " + word + " but found '" + peek() + "'");
+        }
+
+        private boolean peekSymbol(String symbol) {
+            Token token = peek();
+            return token != null && token.isSymbol(symbol);
+        }
+
+        private boolean acceptSymbol(String symbol) {
+            if (peekSymbol(symbol)) {
+                ++pos;
+                return true;
+            }
+            return false;
+        }
+
+        private Token expectSymbol(String symbol) {
+            if (!peekSymbol(symbol))
+                throw new IllegalStateException("expected " + symbol + " but found '" + peek() + "'");
+            return next();
+        }
+
+        private void acceptNumber() {
+            if (peek() != null && peek().type == Token.NUMBER)
+                next();
+        }
+
+        /**
+         * Skip a token, or a parenthesized group if that's what's next
+         */
+        private void skip() {
+            if (peekSymbol("("))
+                skipBalanced();
+            else
+                next();
+        }
+
+        /**
+         * Skip a parenthesized group (if one is next), returning its closing parenthesis
+         */
+        private Token skipBalanced() {
+            if (!peekSymbol("("))
+                return peek(-1);
+
+            int depth = 0;
+            while (!atEnd()) {
+                Token token = next();
+                if (token.isSymbol("("))
+                    ++depth;
+                else if (token.isSymbol(")") && --depth == 0)
+                    return token;
+            }
+            throw new IllegalStateException("unbalanced parentheses");
+        }
+
+        /**
+         * Skip to the , or ) that ends the current element of a list
+         */
+        private void skipToElementEnd() {
+            while (!atEnd() && !peekSymbol(",") && !peekSymbol(")"))
+                skip();
+        }
+
+        private void warn(String message) {
+            logger.warning(message + " at " + source + ":" + lineNumber);
+        }
+    }
+
+    private static String last(List<String> name) {
+        return name.get(name.size() - 1);
+    }
+
+    private static int toInt(String number) {
+        try {
+            return (int)Double.parseDouble(number);
+        } catch (NumberFormatException exc) {
+            return 0;
+        }
+    }
+
+    /**
+     * Split a statement into its tokens
+     */
+    private static List<Token> tokenize(String sql, boolean backslashEscapes) {
+        List<Token> tokens = new ArrayList<Token>();
+        int length = sql.length();
+        int i = 0;
+
+        while (i < length) {
+            char ch = sql.charAt(i);
+            int start = i;
+
+            if (Character.isWhitespace(ch)) {
+                ++i;
+            } else if (ch == '\'' || ((ch == 'E' || ch == 'e') && i + 1 < length && sql.charAt(i + 1) == '\'' && SqlStatementReader.isEscapePrefix(sql, i + 1))) {
+                // a string, perhaps PostgreSQL's E'...' (whose backslashes escape)
+                boolean escaping = backslashEscapes || ch != '\'';
+                StringBuilder value = new StringBuilder();
+                i = sql.indexOf('\'', i) + 1;
+                while (i < length) {
+                    char c = sql.charAt(i++);
+                    if (c == '\\' && escaping && i < length) {
+                        value.append(sql.charAt(i++));
+                    } else if (c == '\'') {
+                        if (i < length && sql.charAt(i) == '\'')
+                            value.append(sql.charAt(i++));
+                        else
+                            break;
+                    } else {
+                        value.append(c);
+                    }
+                }
+                tokens.add(new Token(Token.STRING, value.toString(), start, i));
+            } else if (Character.isLetter(ch) || ch == '_' || ch == '@' || ch == '#') {
+                while (i < length && isWordChar(sql.charAt(i)))
+                    ++i;
+                tokens.add(new Token(Token.WORD, sql.substring(start, i), start, i));
+            } else if (Character.isDigit(ch) || (ch == '.' && i + 1 < length && Character.isDigit(sql.charAt(i + 1)))) {
+                while (i < length && (Character.isLetterOrDigit(sql.charAt(i)) || sql.charAt(i) == '.'))
+                    ++i;
+                tokens.add(new Token(Token.NUMBER, sql.substring(start, i), start, i));
+            } else if (ch == '"' || ch == '`' || ch == '[') {
+                char close = ch == '[' ? ']' : ch;
+                StringBuilder value = new StringBuilder();
+                ++i;
+                while (i < length) {
+                    char c = sql.charAt(i++);
+                    if (c == close) {
+                        if (close != ']' && i < length && sql.charAt(i) == close)
+                            value.append(sql.charAt(i++));
+                        else
+                            break;
+                    } else {
+                        value.append(c);
+                    }
+                }
+                if (ch == '[' && (value.length() == 0 || Character.isDigit(value.charAt(0)))) {
+                    // an array's brackets rather than a quoted name
+                    tokens.add(new Token(Token.SYMBOL, "[", start, start + 1));
+                    i = start + 1;
+                } else {
+                    tokens.add(new Token(Token.QUOTED, value.toString(), start, i));
+                }
+            } else if (ch == '$' && dollarQuoteEnd(sql, i) > i) {
+                int tagEnd = sql.indexOf('$', i + 1) + 1;
+                String tag = sql.substring(i, tagEnd);
+                int close = sql.indexOf(tag, tagEnd);
+                if (close == -1)
+                    close = length;
+                tokens.add(new Token(Token.STRING, sql.substring(tagEnd, close), start, Math.min(length, close + tag.length())));
+                i = Math.min(length, close + tag.length());
+            } else {
+                if (ch == ':' && i + 1 < length && sql.charAt(i + 1) == ':')
+                    ++i;
+                ++i;
+                tokens.add(new Token(Token.SYMBOL, sql.substring(start, i), start, i));
+            }
+        }
+
+        return tokens;
+    }
+
+    private static boolean isWordChar(char ch) {
+        return Character.isLetterOrDigit(ch) || ch == '_' || ch == '$' || ch == '@' || ch == '#';
+    }
+
+    /**
+     * Returns where the <code>$tag$</code> that starts at the specified position ends,
+     * or the position if there isn't one
+     */
+    private static int dollarQuoteEnd(String sql, int start) {
+        int i = start + 1;
+        while (i < sql.length() && (Character.isLetter(sql.charAt(i)) || sql.charAt(i) == '_'))
+            ++i;
+        return i < sql.length() && sql.charAt(i) == '$' ? i + 1 : start;
+    }
+}
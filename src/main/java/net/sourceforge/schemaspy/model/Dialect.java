@@ -0,0 +1,137 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package schemaspy.model;
+
+import java.sql.SQLException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.logging.Logger;
+
+/**
+ * Remembers which of the SQL variants that we fall back on (custom SQL from
+ * the .properties, quoted vs. unquoted table names, etc.) work with the
+ * database that we're analyzing.<p/>
+ *
+ * Without this every table would pay for the same failed attempt
+ * (a round trip to the server plus an exception) before getting to
+ * the variant that works.
+ * Once a variant has worked it's never considered unsupported, so a
+ * failure that's specific to one table doesn't affect the others.
+ * Failures that don't show that the variant itself is unsupported
+ * (e.g. a lack of permissions or a table that's been dropped since
+ * it was listed) aren't learned from at all.
+ */
+public class Dialect {
+    public static final String UNQUOTED_NAMES = "unquoted table names";
+    public static final String QUOTED_NAMES = "quoted table names";
+    // SQLStates (class 42, but not the SQL's fault) of tables or other objects that don't exist
+    private static final String[] OBJECT_NOT_FOUND_STATES = new String[] {
+        "42P01",    // PostgreSQL undefined table
+        "42S02",    // ODBC-style (MySQL, SQL Server, H2, etc.) table not found
+        "42704"     // DB2 undefined object
+    };
+    private final Map<String, Boolean> supported = new HashMap<String, Boolean>();
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * Returns <code>true</code> if the specified variant has failed
+     * and has never worked.
+     *
+     * @param variant
+     * @return
+     */
+    public synchronized boolean isUnsupported(String variant) {
+        return Boolean.FALSE.equals(supported.get(variant));
+    }
+
+    /**
+     * Record that the specified variant worked
+     *
+     * @param variant
+     */
+    public synchronized void succeeded(String variant) {
+        supported.put(variant, Boolean.TRUE);
+    }
+
+    /**
+     * Record that the specified variant failed (unless it's worked before)
+     * if the failure shows that the database doesn't support it
+     *
+     * @param variant
+     * @param failure
+     */
+    public synchronized void failed(String variant, SQLException failure) {
+        if (!isUnsupportedSql(failure))
+            return;
+
+        if (!supported.containsKey(variant)) {
+            supported.put(variant, Boolean.FALSE);
+            logger.info("Not using " + variant + " for the remaining tables");
+        }
+    }
+
+    /**
+     * Record that <code>working</code> worked where <code>failed</code> didn't
+     *
+     * @param failed
+     * @param working
+     */
+    public synchronized void learn(String failed, String working) {
+        supported.put(working, Boolean.TRUE);
+        if (!supported.containsKey(failed)) {
+            supported.put(failed, Boolean.FALSE);
+            logger.info("Using " + working + " rather than " + failed + " for the remaining tables");
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the specified failure indicates that the
+     * SQL isn't supported by the database (a syntax error, unknown
+     * column or function, unsupported feature, etc.) rather than something
+     * that's specific to what it was run against (permissions, locks,
+     * a table that doesn't exist (anymore), etc.)
+     *
+     * @param failure
+     * @return
+     */
+    static boolean isUnsupportedSql(SQLException failure) {
+        String state = failure.getSQLState();
+        if (state == null || state.length() < 2)
+            return false;
+
+        // class 42 is "syntax error or access rule violation" so weed out the latter
+        if (state.equals("42501"))
+            return false;
+        String message = String.valueOf(failure.getMessage()).toLowerCase();
+        if (message.indexOf("denied") != -1 || message.indexOf("privilege") != -1 || message.indexOf("permission") != -1)
+            return false;
+
+        // and the table that it was run against not being there (e.g. dropped mid-run)
+        for (String notFound : OBJECT_NOT_FOUND_STATES) {
+            if (state.equals(notFound))
+                return false;
+        }
+        if (message.indexOf("ora-00942") != -1 || message.indexOf("table or view does not exist") != -1 ||
+                message.indexOf("invalid object name") != -1)
+            return false;
+
+        String stateClass = state.substring(0, 2);
+        return stateClass.equals("42") || stateClass.equals("0A");
+    }
+}
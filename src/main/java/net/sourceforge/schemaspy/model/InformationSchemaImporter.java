@@ -0,0 +1,781 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package schemaspy.model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.sql.DatabaseMetaData;
+import java.sql.SQLException;
+import java.text.SimpleDateFormat;
+import java.util.ArrayList;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.logging.Logger;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPInputStream;
+import schemaspy.Config;
+import schemaspy.util.CaseInsensitiveMap;
+import schemaspy.util.DelimitedReader;
+
+/**
+ * Builds a {@link Database} from exports of the database's
+ * <code>INFORMATION_SCHEMA</code> rather than from a connection to the database.<p/>
+ *
+ * The exports are CSV or TSV files (see {@link DelimitedReader}), each with a
+ * header row of <code>INFORMATION_SCHEMA</code> column names, taken with a single
+ * query apiece, e.g. <code>select * from information_schema.columns where
+ * table_schema = 'x'</code>.  They're found in a directory by the names of the
+ * views that they were exported from (<code>columns.csv</code>,
+ * <code>COLUMNS.tsv</code>, <code>columns.csv.gz</code>, etc.):
+ * <ul>
+ * <li><code>tables</code> and <code>columns</code> are required</li>
+ * <li><code>statistics</code> (MySQL) provides indexes and primary keys</li>
+ * <li><code>key_column_usage</code> and <code>referential_constraints</code>
+ *      provide foreign keys</li>
+ * <li><code>table_constraints</code> provides primary keys and unique constraints
+ *      where there's no <code>statistics</code> (PostgreSQL, etc.)</li>
+ * <li><code>views</code> provides the SQL of views</li>
+ * </ul>
+ * Each file is streamed a row at a time and only the rows of the schema
+ * being documented (and the foreign keys that relate it to other schemas)
+ * are kept.
+ */
+public class InformationSchemaImporter {
+    private static final String UNKNOWN_TYPE = "unknown";
+
+    private final File dir;
+    private final Map<String, File> files = new HashMap<String, File>();   // key: lower case name of the view
+    private String schema;
+    private final Pattern include;
+    private final Pattern exclude;
+    private final Pattern excludeColumns;
+    private final Pattern excludeIndirectColumns;
+    private final Properties properties = new Properties();
+    private final CaseInsensitiveMap<Table> tables = new CaseInsensitiveMap<Table>();
+    private final Map<String, Table> remoteTables = new HashMap<String, Table>();    // key: lower case schema.table
+    private final Map<Table, List<String>> primaryKeyCandidates = new LinkedHashMap<Table, List<String>>();
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * @param dir directory that contains the exports
+     * @param schema the schema to document, <code>null</code> for the
+     *          schema of the first table that's exported
+     * @throws IOException if the required exports aren't there
+     */
+    public InformationSchemaImporter(File dir, String schema) throws IOException {
+        this.dir = dir;
+        this.schema = schema;
+
+        File[] exports = dir.listFiles();
+        if (exports == null)
+            throw new IOException("Directory '" + dir + "' of INFORMATION_SCHEMA exports doesn't exist");
+        for (File file : exports) {
+            String name = file.getName().toLowerCase();
+            int dot = name.indexOf('.');
+            if (file.isFile() && dot > 0 && name.matches(".*\\.(csv|tsv|txt)(\\.gz)?"))
+                files.put(name.substring(0, dot), file);
+        }
+
+        for (String required : new String[] {"tables", "columns"}) {
+            if (!files.containsKey(required))
+                throw new IOException("Directory '" + dir + "' doesn't contain an export of INFORMATION_SCHEMA." + required.toUpperCase());
+        }
+
+        Config config = Config.getInstance();
+        include = config.getTableInclusions();
+        exclude = config.getTableExclusions();
+        excludeColumns = config.getColumnExclusions();
+        excludeIndirectColumns = config.getIndirectColumnExclusions();
+    }
+
+    /**
+     * Convenience method that builds the database from the exports in the specified directory
+     *
+     * @param dir
+     * @param dbName
+     * @param schema see {@link #InformationSchemaImporter(File, String)}
+     * @param description
+     * @return
+     * @throws IOException
+     */
+    public static Database read(File dir, String dbName, String schema, String description) throws IOException {
+        return new InformationSchemaImporter(dir, schema).getDatabase(dbName, description);
+    }
+
+    /**
+     * Build the database from the exports.
+     * Table inclusions/exclusions and column exclusions are taken from {@link Config}.
+     *
+     * @param dbName
+     * @param description
+     * @return
+     * @throws IOException
+     */
+    public Database getDatabase(String dbName, String description) throws IOException {
+        List<Row> tableRows = readTableRows();
+        Map<String, String> viewSql = readViews();
+
+        String connectTime = new SimpleDateFormat("EEE MMM dd HH:mm z yyyy").format(new Date());
+        Database db = new Database(new DatabaseCapabilities("INFORMATION_SCHEMA", dir.getName()), dbName, schema, description, connectTime);
+
+        try {
+            for (Row row : tableRows)
+                addTable(db, row, viewSql);
+        } catch (SQLException exc) {
+            // views never have to query their SQL
+            throw new IOException(exc.toString());
+        }
+
+        readColumns();
+        boolean indexed = readStatistics();
+        Map<String, String> constraintTypes = readTableConstraints();
+        Map<String, Row> references = readReferentialConstraints();
+        Map<String, KeyDef> keys = readKeyColumnUsage(references);
+
+        // constraint names are only unique within a table in some databases
+        Map<String, List<KeyDef>> keysByConstraint = new HashMap<String, List<KeyDef>>();
+        for (KeyDef key : keys.values()) {
+            String constraint = toKey(key.constraintSchema, key.constraintName);
+            List<KeyDef> sameName = keysByConstraint.get(constraint);
+            if (sameName == null) {
+                sameName = new ArrayList<KeyDef>(1);
+                keysByConstraint.put(constraint, sameName);
+            }
+            sameName.add(key);
+        }
+
+        int numForeignKeys = 0;
+        for (KeyDef key : keys.values()) {
+            String type = constraintTypes.get(key.getTableKey());
+            if (key.isForeignKey(type, references)) {
+                if (connect(db, key, keysByConstraint, references))
+                    ++numForeignKeys;
+            } else if (!indexed && key.table != null) {
+                addKey(key, type);
+            }
+        }
+
+        // MySQL's COLUMN_KEY if there's nothing better
+        for (Map.Entry<Table, List<String>> entry : primaryKeyCandidates.entrySet()) {
+            Table table = entry.getKey();
+            if (table.getPrimaryColumns().isEmpty()) {
+                for (String columnName : entry.getValue())
+                    table.setPrimaryColumn(table.getColumn(columnName));
+            }
+        }
+
+        logger.info("Imported " + tables.size() + " tables/views and " + numForeignKeys +
+                    " foreign keys from INFORMATION_SCHEMA exports in " + dir);
+        return db;
+    }
+
+    /**
+     * Returns the SQL of the exported views, keyed by view name
+     */
+    private Map<String, String> readViews() throws IOException {
+        Map<String, String> viewSql = new CaseInsensitiveMap<String>();
+        Rows rows = open("views");
+        if (rows == null)
+            return viewSql;
+
+        try {
+            Row row;
+            while ((row = rows.next()) != null) {
+                if (isOurs(row.get("TABLE_SCHEMA")))
+                    viewSql.put(row.getRequired("TABLE_NAME"), row.get("VIEW_DEFINITION"));
+            }
+        } finally {
+            rows.close();
+        }
+
+        return viewSql;
+    }
+
+    /**
+     * Returns the rows of our tables, determining our schema from them if it wasn't specified
+     */
+    private List<Row> readTableRows() throws IOException {
+        List<Row> tableRows = new ArrayList<Row>();
+        Rows rows = open("tables");
+
+        try {
+            Row row;
+            while ((row = rows.next()) != null) {
+                if (schema == null) {
+                    schema = row.get("TABLE_SCHEMA");
+                    if (schema != null)
+                        logger.info("Importing schema " + schema);
+                }
+                String name = row.getRequired("TABLE_NAME");
+                if (isOurs(row.get("TABLE_SCHEMA")) && !exclude.matcher(name).matches() && include.matcher(name).matches())
+                    tableRows.add(row);
+            }
+        } finally {
+            rows.close();
+        }
+
+        return tableRows;
+    }
+
+    private void addTable(Database db, Row row, Map<String, String> viewSql) throws SQLException, IOException {
+        String name = row.getRequired("TABLE_NAME");
+        String type = row.get("TABLE_TYPE");
+        boolean isView = type != null && type.toUpperCase().indexOf("VIEW") != -1;
+        String comments = row.get("TABLE_COMMENT");
+        if (comments == null)
+            comments = row.get("REMARKS");
+        if (comments != null && (comments.length() == 0 || (isView && comments.equals("VIEW"))))
+            comments = null;    // MySQL's placeholders
+
+        Table table;
+        if (isView) {
+            String sql = viewSql.get(name);
+            table = new View(db, schema, name, comments, sql == null ? "" : sql, properties);
+        } else {
+            table = new Table(db, schema, name, comments, properties);
+        }
+
+        String numRows = row.get("TABLE_ROWS");
+        if (numRows != null && !isView)
+            table.setEstimatedNumRows(toInt(numRows));
+        else
+            table.setNumRows(-1);
+
+        db.restore(table);
+        tables.put(name, table);
+    }
+
+    private void readColumns() throws IOException {
+        Rows rows = open("columns");
+
+        try {
+            Row row;
+            while ((row = rows.next()) != null) {
+                Table table = isOurs(row.get("TABLE_SCHEMA")) ? tables.get(row.getRequired("TABLE_NAME")) : null;
+                if (table != null)
+                    addColumn(table, row);
+            }
+        } finally {
+            rows.close();
+        }
+    }
+
+    private void addColumn(Table table, Row row) throws IOException {
+        String name = row.getRequired("COLUMN_NAME");
+        String type = row.get("DATA_TYPE");
+        String columnType = row.get("COLUMN_TYPE");    // MySQL's full type, e.g. int(10) unsigned
+        if (columnType != null) {
+            if (type == null || type.equalsIgnoreCase("enum") || type.equalsIgnoreCase("set"))
+                type = columnType;
+            else if (columnType.toLowerCase().indexOf("unsigned") != -1)
+                type += " unsigned";
+        }
+
+        String length = row.get("CHARACTER_MAXIMUM_LENGTH");
+        if (length == null)
+            length = row.get("NUMERIC_PRECISION");
+        int size = length == null ? 0 : toInt(length);
+        String scale = row.get("NUMERIC_SCALE");
+        int decimalDigits = scale == null ? 0 : toInt(scale);
+        String detailedSize = size > 0 ? size + (decimalDigits > 0 ? "," + decimalDigits : "") : "";
+        int position = toInt(row.getRequired("ORDINAL_POSITION"));
+        String comments = row.get("COLUMN_COMMENT");
+        if (comments == null || comments.length() == 0)
+            comments = row.get("REMARKS");
+
+        TableColumn column = new TableColumn(table, name, new Integer(position - 1),
+                                                type == null ? UNKNOWN_TYPE : type, size, decimalDigits, detailedSize,
+                                                !"NO".equalsIgnoreCase(row.get("IS_NULLABLE")),
+                                                row.get("COLUMN_DEFAULT"), comments);
+
+        String extra = row.get("EXTRA");
+        String defaultValue = row.get("COLUMN_DEFAULT");
+        column.setIsAutoUpdated((extra != null && extra.toLowerCase().indexOf("auto_increment") != -1) ||
+                                "YES".equalsIgnoreCase(row.get("IS_IDENTITY")) ||
+                                (defaultValue != null && defaultValue.startsWith("nextval(")));
+
+        boolean isAllExcluded = column.matches(excludeColumns);
+        column.restore(true, true, isAllExcluded || column.matches(excludeIndirectColumns), isAllExcluded);
+        table.addColumn(column);
+
+        if ("PRI".equalsIgnoreCase(row.get("COLUMN_KEY"))) {
+            List<String> candidates = primaryKeyCandidates.get(table);
+            if (candidates == null) {
+                candidates = new ArrayList<String>();
+                primaryKeyCandidates.put(table, candidates);
+            }
+            candidates.add(name);
+        }
+    }
+
+    /**
+     * Add the indexes (and primary keys) described by MySQL's <code>STATISTICS</code>
+     *
+     * @return <code>true</code> if there was an export of <code>STATISTICS</code>
+     */
+    private boolean readStatistics() throws IOException {
+        Rows rows = open("statistics");
+        if (rows == null)
+            return false;
+
+        // key: table name + index name, value: columns (with their collation) by position
+        Map<String, TreeMap<Integer, String[]>> indexes = new LinkedHashMap<String, TreeMap<Integer, String[]>>();
+        Map<String, Boolean> uniqueness = new HashMap<String, Boolean>();
+
+        try {
+            Row row;
+            while ((row = rows.next()) != null) {
+                String tableName = row.getRequired("TABLE_NAME");
+                String columnName = row.get("COLUMN_NAME");
+                if (!isOurs(row.get("TABLE_SCHEMA")) || !tables.containsKey(tableName) || columnName == null)
+                    continue;   // not ours or a functional index part
+
+                String key = tableName + '\n' + row.getRequired("INDEX_NAME");
+                TreeMap<Integer, String[]> columns = indexes.get(key);
+                if (columns == null) {
+                    columns = new TreeMap<Integer, String[]>();
+                    indexes.put(key, columns);
+                    uniqueness.put(key, Boolean.valueOf("0".equals(row.get("NON_UNIQUE"))));
+                }
+                columns.put(new Integer(toInt(row.getRequired("SEQ_IN_INDEX"))), new String[] {columnName, row.get("COLLATION")});
+            }
+        } finally {
+            rows.close();
+        }
+
+        for (Map.Entry<String, TreeMap<Integer, String[]>> entry : indexes.entrySet()) {
+            String key = entry.getKey();
+            int newline = key.indexOf('\n');
+            Table table = tables.get(key.substring(0, newline));
+            String indexName = key.substring(newline + 1);
+            TableIndex index = new TableIndex(indexName, uniqueness.get(key).booleanValue());
+            boolean isPrimaryKey = indexName.equals("PRIMARY");
+            index.setIsPrimaryKey(isPrimaryKey);
+
+            for (String[] indexed : entry.getValue().values()) {
+                TableColumn column = table.getColumn(indexed[0]);
+                if (column == null)
+                    continue;
+                index.addColumn(column, "D".equals(indexed[1]) ? "D" : "A");
+                if (isPrimaryKey)
+                    table.setPrimaryColumn(column);
+            }
+
+            if (!index.getColumns().isEmpty())
+                table.addIndex(index);
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the types of the exported constraints (<code>PRIMARY KEY</code>, etc.)
+     * keyed by table and constraint name (see {@link KeyDef#getTableKey()})
+     */
+    private Map<String, String> readTableConstraints() throws IOException {
+        Map<String, String> types = new HashMap<String, String>();
+        Rows rows = open("table_constraints");
+        if (rows == null)
+            return types;
+
+        try {
+            Row row;
+            while ((row = rows.next()) != null) {
+                types.put(toKey(row.get("TABLE_SCHEMA"), row.getRequired("TABLE_NAME"), row.getRequired("CONSTRAINT_NAME")),
+                          row.get("CONSTRAINT_TYPE"));
+            }
+        } finally {
+            rows.close();
+        }
+
+        return types;
+    }
+
+    /**
+     * Returns the exported foreign key constraints keyed by constraint schema and name
+     */
+    private Map<String, Row> readReferentialConstraints() throws IOException {
+        Map<String, Row> references = new HashMap<String, Row>();
+        Rows rows = open("referential_constraints");
+        if (rows == null)
+            return references;
+
+        try {
+            Row row;
+            while ((row = rows.next()) != null)
+                references.put(toKey(row.get("CONSTRAINT_SCHEMA"), row.getRequired("CONSTRAINT_NAME")), row);
+        } finally {
+            rows.close();
+        }
+
+        return references;
+    }
+
+    /**
+     * Returns the columns of the exported keys (primary, unique and foreign)
+     * keyed by table and constraint name.  Keys that don't involve our schema
+     * are only kept if a foreign key might reference them.
+     */
+    private Map<String, KeyDef> readKeyColumnUsage(Map<String, Row> references) throws IOException {
+        Map<String, KeyDef> keys = new LinkedHashMap<String, KeyDef>();
+        Rows rows = open("key_column_usage");
+        if (rows == null)
+            return keys;
+
+        // the unique constraints that foreign keys reference
+        Set<String> referenced = new HashSet<String>();
+        for (Row reference : references.values())
+            referenced.add(toKey(reference.get("UNIQUE_CONSTRAINT_SCHEMA"), reference.get("UNIQUE_CONSTRAINT_NAME")));
+
+        try {
+            Row row;
+            while ((row = rows.next()) != null) {
+                String tableSchema = row.get("TABLE_SCHEMA");
+                String tableName = row.getRequired("TABLE_NAME");
+                String constraintSchema = row.get("CONSTRAINT_SCHEMA");
+                String constraintName = row.getRequired("CONSTRAINT_NAME");
+                String parentSchema = row.get("REFERENCED_TABLE_SCHEMA");
+                String parentName = row.get("REFERENCED_TABLE_NAME");
+                boolean ours = isOurs(tableSchema);
+
+                if (ours && !tables.containsKey(tableName))
+                    continue;   // excluded
+                if (!ours) {
+                    String constraint = toKey(constraintSchema, constraintName);
+                    if (parentName != null ? !isOurs(parentSchema) : !references.containsKey(constraint) && !referenced.contains(constraint))
+                        continue;   // doesn't involve us
+                }
+
+                String key = toKey(tableSchema, tableName, constraintName);
+                KeyDef keyDef = keys.get(key);
+                if (keyDef == null) {
+                    keyDef = new KeyDef(constraintSchema, constraintName, tableSchema, tableName, ours ? tables.get(tableName) : null);
+                    keyDef.parentSchema = parentSchema;
+                    keyDef.parentName = parentName;
+                    keys.put(key, keyDef);
+                }
+
+                Integer position = new Integer(toInt(row.getRequired("ORDINAL_POSITION")));
+                keyDef.columns.put(position, row.getRequired("COLUMN_NAME"));
+                String parentColumn = row.get("REFERENCED_COLUMN_NAME");
+                if (parentColumn != null)
+                    keyDef.parentColumns.put(position, parentColumn);
+                String uniquePosition = row.get("POSITION_IN_UNIQUE_CONSTRAINT");
+                if (uniquePosition != null)
+                    keyDef.uniquePositions.put(position, new Integer(toInt(uniquePosition)));
+            }
+        } finally {
+            rows.close();
+        }
+
+        return keys;
+    }
+
+    /**
+     * Add a primary key or unique constraint of one of our tables
+     * (for databases that don't have <code>STATISTICS</code>)
+     */
+    private void addKey(KeyDef key, String type) {
+        boolean isPrimaryKey = "PRIMARY KEY".equalsIgnoreCase(type) || (type == null && key.constraintName.equals("PRIMARY"));
+        if (!isPrimaryKey && !"UNIQUE".equalsIgnoreCase(type))
+            return;
+
+        TableIndex index = new TableIndex(key.constraintName, true);
+        index.setIsPrimaryKey(isPrimaryKey);
+        for (String columnName : key.columns.values()) {
+            TableColumn column = key.table.getColumn(columnName);
+            if (column == null)
+                continue;
+            index.addColumn(column, "A");
+            if (isPrimaryKey)
+                key.table.setPrimaryColumn(column);
+        }
+
+        if (!index.getColumns().isEmpty())
+            key.table.addIndex(index);
+    }
+
+    /**
+     * Connect the specified foreign key to the table that it references,
+     * creating remote tables as required
+     *
+     * @return <code>true</code> if the foreign key was added
+     */
+    private boolean connect(Database db, KeyDef key, Map<String, List<KeyDef>> keysByConstraint, Map<String, Row> references) {
+        Row reference = references.get(toKey(key.constraintSchema, key.constraintName));
+        List<String> parentColumns = new ArrayList<String>(key.parentColumns.values());
+        String parentSchema = key.parentSchema;
+        String parentName = key.parentName;
+
+        if (parentName == null && reference != null) {
+            // resolve it through the unique constraint that it references
+            KeyDef unique = findKey(keysByConstraint, reference.get("UNIQUE_CONSTRAINT_SCHEMA"), reference.get("UNIQUE_CONSTRAINT_NAME"), reference.get("REFERENCED_TABLE_NAME"));
+            if (unique != null) {
+                parentSchema = unique.tableSchema;
+                parentName = unique.tableName;
+                List<String> uniqueColumns = new ArrayList<String>(unique.columns.values());
+                for (Integer position : key.columns.keySet()) {
+                    Integer uniquePosition = key.uniquePositions.get(position);
+                    int index = (uniquePosition == null ? position.intValue() : uniquePosition.intValue()) - 1;
+                    parentColumns.add(index >= 0 && index < uniqueColumns.size() ? uniqueColumns.get(index) : null);
+                }
+            }
+        }
+
+        if (parentName == null) {
+            logger.warning("Couldn't determine the table referenced by FK '" + key.constraintName + "' of table '" + key.tableName + "'");
+            return false;
+        }
+
+        boolean childOurs = key.table != null;
+        boolean parentOurs = isOurs(parentSchema);
+        if (!childOurs && !parentOurs)
+            return false;
+        if (parentOurs && !tables.containsKey(parentName) && !childOurs)
+            return false;
+
+        Table child = childOurs ? key.table : getRemoteTable(db, key.tableSchema, key.tableName, key.columns.values());
+        Table parent = parentOurs ? tables.get(parentName) : getRemoteTable(db, parentSchema, parentName, parentColumns);
+        if (parent == null)
+            return false;   // excluded
+
+        int updateRule = reference == null ? DatabaseMetaData.importedKeyNoAction : toRule(reference.get("UPDATE_RULE"));
+        int deleteRule = reference == null ? DatabaseMetaData.importedKeyNoAction : toRule(reference.get("DELETE_RULE"));
+        ForeignKeyConstraint foreignKey = new ForeignKeyConstraint(child, key.constraintName, updateRule, deleteRule);
+        child.addForeignKey(foreignKey);
+
+        int i = 0;
+        for (String columnName : key.columns.values()) {
+            String parentColumnName = i < parentColumns.size() ? parentColumns.get(i) : null;
+            ++i;
+
+            TableColumn childColumn = child.getColumn(columnName);
+            TableColumn parentColumn = parentColumnName == null ? null : parent.getColumn(parentColumnName);
+            if (childColumn == null || parentColumn == null) {
+                logger.warning("Couldn't add FK '" + key.constraintName + "' to table '" + child +
+                                "' - Column '" + (childColumn == null ? columnName : parentColumnName) + "' doesn't exist");
+                continue;
+            }
+
+            foreignKey.addChildColumn(childColumn);
+            foreignKey.addParentColumn(parentColumn);
+            childColumn.addParent(parentColumn, foreignKey);
+            parentColumn.addChild(childColumn, foreignKey);
+        }
+
+        return true;
+    }
+
+    /**
+     * Returns the key with the specified constraint schema and name
+     * (and table, if known), <code>null</code> if it wasn't exported
+     */
+    private static KeyDef findKey(Map<String, List<KeyDef>> keysByConstraint, String constraintSchema, String constraintName, String tableName) {
+        List<KeyDef> candidates = keysByConstraint.get(toKey(constraintSchema, constraintName));
+        if (candidates != null) {
+            for (KeyDef key : candidates) {
+                if (tableName == null || tableName.equalsIgnoreCase(key.tableName))
+                    return key;
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Returns the remote table with the specified name, creating it if needed
+     * with (at least) the specified columns.  We don't know anything else about them.
+     */
+    private Table getRemoteTable(Database db, String remoteSchema, String name, Iterable<String> columnNames) {
+        String key = (remoteSchema + '.' + name).toLowerCase();
+        Table table = remoteTables.get(key);
+        if (table == null) {
+            table = new RemoteTable(db, remoteSchema, name, schema, properties);
+            table.setNumRows(-1);
+            db.restore(table);
+            remoteTables.put(key, table);
+        }
+
+        for (String columnName : columnNames) {
+            if (columnName != null && table.getColumn(columnName) == null) {
+                table.addColumn(new TableColumn(table, columnName, new Integer(table.getColumns().size()),
+                                                UNKNOWN_TYPE, 0, 0, "", true, null, null));
+            }
+        }
+
+        return table;
+    }
+
+    private boolean isOurs(String tableSchema) {
+        return schema == null || tableSchema == null || schema.equalsIgnoreCase(tableSchema);
+    }
+
+    private static String toKey(String... parts) {
+        StringBuilder key = new StringBuilder();
+        for (String part : parts) {
+            if (key.length() > 0)
+                key.append('\n');
+            if (part != null)
+                key.append(part.toLowerCase());
+        }
+        return key.toString();
+    }
+
+    private static int toRule(String rule) {
+        if (rule == null)
+            return DatabaseMetaData.importedKeyNoAction;
+        rule = rule.toUpperCase();
+        if (rule.equals("CASCADE"))
+            return DatabaseMetaData.importedKeyCascade;
+        if (rule.equals("SET NULL"))
+            return DatabaseMetaData.importedKeySetNull;
+        if (rule.equals("SET DEFAULT"))
+            return DatabaseMetaData.importedKeySetDefault;
+        if (rule.equals("RESTRICT"))
+            return DatabaseMetaData.importedKeyRestrict;
+        return DatabaseMetaData.importedKeyNoAction;
+    }
+
+    private static int toInt(String number) {
+        try {
+            return (int)Math.min(Long.parseLong(number.trim()), Integer.MAX_VALUE);
+        } catch (NumberFormatException exc) {
+            return 0;
+        }
+    }
+
+    /**
+     * Opens the export of the specified view, <code>null</code> if there isn't one
+     */
+    private Rows open(String view) throws IOException {
+        File file = files.get(view);
+        return file == null ? null : new Rows(file);
+    }
+
+    /**
+     * The rows of an export, the first of which names its columns
+     */
+    private static class Rows {
+        private final File file;
+        private final DelimitedReader reader;
+        private final Map<String, Integer> columns = new HashMap<String, Integer>();   // key: upper case name
+
+        Rows(File file) throws IOException {
+            this.file = file;
+            InputStream in = new FileInputStream(file);
+            if (file.getName().toLowerCase().endsWith(".gz"))
+                in = new GZIPInputStream(in, 64 * 1024);
+            reader = new DelimitedReader(new InputStreamReader(in, "UTF-8"), DelimitedReader.getDelimiter(file.getName()));
+
+            String[] header = reader.readRecord();
+            if (header == null)
+                throw new IOException("Export '" + file + "' is empty - it should at least have a header row of column names");
+            for (int i = 0; i < header.length; ++i) {
+                if (header[i] != null)
+                    columns.put(header[i].trim().toUpperCase(), new Integer(i));
+            }
+        }
+
+        Row next() throws IOException {
+            String[] values = reader.readRecord();
+            return values == null ? null : new Row(this, values);
+        }
+
+        void close() throws IOException {
+            reader.close();
+        }
+    }
+
+    /**
+     * A row of an export
+     */
+    private static class Row {
+        private final Rows rows;
+        private final String[] values;
+        private final int lineNumber;
+
+        Row(Rows rows, String[] values) {
+            this.rows = rows;
+            this.values = values;
+            lineNumber = rows.reader.getLineNumber();
+        }
+
+        /**
+         * Returns the value of the specified column, <code>null</code> if it's
+         * null or the export doesn't have the column
+         */
+        String get(String column) {
+            Integer index = rows.columns.get(column);
+            return index == null || index.intValue() >= values.length ? null : values[index.intValue()];
+        }
+
+        String getRequired(String column) throws IOException {
+            String value = get(column);
+            if (value == null) {
+                if (!rows.columns.containsKey(column))
+                    throw new IOException("Export '" + rows.file + "' doesn't have a " + column + " column");
+                throw new IOException("Line " + lineNumber + " of '" + rows.file + "' doesn't have a " + column);
+            }
+            return value;
+        }
+    }
+
+    /**
+     * The columns of a key (primary, unique or foreign) from <code>KEY_COLUMN_USAGE</code>
+     */
+    private static class KeyDef {
+        private final String constraintSchema;
+        private final String constraintName;
+        private final String tableSchema;
+        private final String tableName;
+        private final Table table;      // null if it isn't one of ours
+        private String parentSchema;    // MySQL's REFERENCED_TABLE_SCHEMA
+        private String parentName;
+        private final TreeMap<Integer, String> columns = new TreeMap<Integer, String>();
+        private final TreeMap<Integer, String> parentColumns = new TreeMap<Integer, String>();
+        private final Map<Integer, Integer> uniquePositions = new HashMap<Integer, Integer>();
+
+        KeyDef(String constraintSchema, String constraintName, String tableSchema, String tableName, Table table) {
+            this.constraintSchema = constraintSchema;
+            this.constraintName = constraintName;
+            this.tableSchema = tableSchema;
+            this.tableName = tableName;
+            this.table = table;
+        }
+
+        String getTableKey() {
+            return toKey(tableSchema, tableName, constraintName);
+        }
+
+        boolean isForeignKey(String type, Map<String, Row> references) {
+            if (type != null)
+                return type.equalsIgnoreCase("FOREIGN KEY");
+            return parentName != null || references.containsKey(toKey(constraintSchema, constraintName));
+        }
+    }
+}
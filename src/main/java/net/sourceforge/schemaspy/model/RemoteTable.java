@@ -40,7 +40,20 @@ public class RemoteTable extends Table {
     }
 
     /**
-     * Connect to the PK's referenced by this table that live in the original schema
+     * Construct a remote table without querying any of its details.
+     * The caller is responsible for populating its columns, indexes and
+     * primary keys (e.g. from metadata that was harvested for its whole schema).
+     */
+    RemoteTable(Database db, String schema, String name, String baseSchema, Properties properties) {
+        super(db, schema, name, null, properties);
+        this.baseSchema = baseSchema;
+    }
+
+    /**
+     * Connect to the PK's referenced by this table that live in the original schema.
+     * Remote tables can be connected in parallel so the changes to
+     * the original schema's tables are synchronized on <code>tables</code>.
+     *
      * @param tables
      * @param excludeIndirectColumns
      * @param excludeColumns
@@ -57,11 +70,13 @@ public class RemoteTable extends Table {
             while (rs.next()) {
                 String otherSchema = rs.getString("PKTABLE_SCHEM");
                 if (otherSchema != null && otherSchema.equals(baseSchema)) {
-                    addForeignKey(rs.getString("FK_NAME"), rs.getString("FKCOLUMN_NAME"),
-                            rs.getString("PKTABLE_SCHEM"), rs.getString("PKTABLE_NAME"),
-                            rs.getString("PKCOLUMN_NAME"),
-                            rs.getInt("UPDATE_RULE"), rs.getInt("DELETE_RULE"),
-                            tables, excludeIndirectColumns, excludeColumns);
+                    synchronized (tables) {
+                        addForeignKey(rs.getString("FK_NAME"), rs.getString("FKCOLUMN_NAME"),
+                                rs.getString("PKTABLE_SCHEM"), rs.getString("PKTABLE_NAME"),
+                                rs.getString("PKCOLUMN_NAME"),
+                                rs.getInt("UPDATE_RULE"), rs.getInt("DELETE_RULE"),
+                                tables, excludeIndirectColumns, excludeColumns);
+                    }
                 }
             }
         } catch (SQLException sqlExc) {
@@ -70,6 +85,7 @@ public class RemoteTable extends Table {
                 throw sqlExc;
 
             // otherwise just report the fact that we tried & couldn't
+            db.queryFailed();
             System.err.println("Couldn't resolve foreign keys for remote table " + getSchema() + "." + getName() + ": " + sqlExc);
         } finally {
             if (rs != null)
@@ -77,6 +93,13 @@ public class RemoteTable extends Table {
         }
     }
 
+    /**
+     * Returns the schema that was being analyzed when this table was found
+     */
+    String getBaseSchema() {
+        return baseSchema;
+    }
+
     @Override
     public boolean isRemote() {
         return true;
@@ -0,0 +1,197 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package schemaspy.model;
+
+import java.sql.Connection;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.logging.Logger;
+import schemaspy.Config;
+import schemaspy.util.ConnectionPool;
+
+/**
+ * Counts the rows of a database's tables as a stage of its own.<p/>
+ *
+ * If the connection pool can provide connections beyond the primary one
+ * (which the caller keeps using) then the counting is done in the background
+ * on a bounded number of threads while the caller goes on to do other things
+ * (e.g. generate diagrams) until it needs the results and calls {@link #join()}.
+ * Otherwise the counting is done by {@link #join()} itself.<p/>
+ *
+ * Each table's counting queries are limited to <code>-rowCountTimeout</code>
+ * seconds and the whole stage to <code>-rowCountDeadline</code> seconds.
+ * Tables that run out of time are reported as having -1 (unknown) rows.
+ */
+public class RowCounter {
+    private final Database db;
+    private final ConnectionPool pool;
+    private final int timeout;
+    private final int deadline;
+    private final List<Table> tables = new ArrayList<Table>();
+    private final Map<Table, Future<Integer>> counts = new LinkedHashMap<Table, Future<Integer>>();
+    private ExecutorService executor;
+    private long started;
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * @param db
+     * @param pool pool that provides the connections to count with
+     * @param config
+     */
+    public RowCounter(Database db, ConnectionPool pool, Config config) {
+        this.db = db;
+        this.pool = pool;
+        timeout = config.getRowCountTimeout();
+        deadline = config.getRowCountDeadline();
+
+        if (config.isNumRowsEnabled()) {
+            for (Table table : db.getTables()) {
+                if (!table.hasNumRows())
+                    tables.add(table);
+            }
+        }
+    }
+
+    /**
+     * Start counting in the background if we have the connections to do so
+     *
+     * @param maxThreads maximum number of threads to count with
+     */
+    public void start(int maxThreads) {
+        started = System.currentTimeMillis();
+
+        // the primary connection is reserved for the caller
+        int numThreads = Math.min(maxThreads, pool.getMaxConnections() - 1);
+        if (tables.isEmpty() || numThreads < 1)
+            return;
+
+        executor = Executors.newFixedThreadPool(numThreads, new ThreadFactory() {
+            private int numCreated;
+
+            public synchronized Thread newThread(Runnable runnable) {
+                Thread thread = new Thread(runnable, "RowCounter-" + ++numCreated);
+                thread.setDaemon(true);
+                return thread;
+            }
+        });
+
+        for (final Table table : tables) {
+            counts.put(table, executor.submit(new Callable<Integer>() {
+                public Integer call() throws Exception {
+                    Connection connection = pool.acquire(false);
+
+                    try {
+                        db.useWorkerConnection(connection);
+                        return new Integer(table.countRows(timeout));
+                    } finally {
+                        db.releaseWorkerConnection();
+                        pool.release(connection);
+                    }
+                }
+            }));
+        }
+
+        executor.shutdown();
+    }
+
+    /**
+     * Wait for the counting to complete (or do it if it wasn't done in the background),
+     * recording the number of rows of each table.
+     */
+    public void join() {
+        int numUnknown = 0;
+
+        if (executor == null) {
+            for (Table table : tables) {
+                if (isPastDeadline()) {
+                    table.setNumRows(-1);
+                    ++numUnknown;
+                } else {
+                    table.setNumRows(table.countRows(timeout));
+                }
+            }
+        } else {
+            for (Map.Entry<Table, Future<Integer>> entry : counts.entrySet()) {
+                Table table = entry.getKey();
+                Future<Integer> count = entry.getValue();
+                int numRows = -1;
+
+                try {
+                    if (deadline > 0) {
+                        long remaining = started + deadline * 1000L - System.currentTimeMillis();
+                        numRows = count.get(Math.max(remaining, 0), TimeUnit.MILLISECONDS).intValue();
+                    } else {
+                        numRows = count.get().intValue();
+                    }
+                } catch (TimeoutException exc) {
+                    table.abandonRowCount();
+                    count.cancel(true);
+                    ++numUnknown;
+                } catch (ExecutionException exc) {
+                    logger.warning("Unable to count the rows of table " + table.getName() + ", using '-1': " + exc.getCause());
+                } catch (InterruptedException exc) {
+                    table.abandonRowCount();
+                    count.cancel(true);
+                    ++numUnknown;
+                }
+
+                table.setNumRows(numRows);
+            }
+
+            executor.shutdownNow();
+        }
+
+        if (numUnknown > 0)
+            logger.warning("Ran out of time counting rows; " + numUnknown + " table(s) will show '-1'");
+    }
+
+    /**
+     * Stop any counting that's still going on in the background, leaving
+     * those tables' row counts unknown.  Does nothing once {@link #join()}
+     * has completed, so it can be called unconditionally when done.
+     */
+    public void cancel() {
+        if (executor == null)
+            return;
+
+        for (Map.Entry<Table, Future<Integer>> entry : counts.entrySet()) {
+            Future<Integer> count = entry.getValue();
+            if (!count.isDone()) {
+                entry.getKey().abandonRowCount();
+                count.cancel(true);
+            }
+        }
+
+        executor.shutdownNow();
+    }
+
+    private boolean isPastDeadline() {
+        return deadline > 0 && System.currentTimeMillis() - started >= deadline * 1000L;
+    }
+}
@@ -0,0 +1,343 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package schemaspy.model;
+
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.io.UnsupportedEncodingException;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.List;
+import java.util.Properties;
+import java.util.logging.Logger;
+import schemaspy.Config;
+
+/**
+ * A directory of {@link DatabaseSnapshot}s that lets runs against the same
+ * database, schema and filters render from what a recent run analyzed
+ * rather than analyzing the database again.<p/>
+ *
+ * Snapshots are used for a limited time (their TTL) after they're written.
+ * When the snapshots take up more than the directory's limit the least
+ * recently used ones are evicted.  Hit/miss statistics are kept in the
+ * directory across runs.<p/>
+ *
+ * Snapshots are written to a temporary file and then renamed, so concurrent
+ * runs sharing the directory never see a partially written snapshot.
+ */
+public class SnapshotCache {
+    private static final String SNAPSHOT = ".snapshot";
+    private static final String USED = ".used";             // touched when its snapshot is used
+    private static final String STATS = "cache.properties";
+
+    private final File dir;
+    private final long ttlMillis;
+    private final long maxBytes;
+    private String outcome = "not consulted";
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * @param dir
+     * @param ttlMinutes how long snapshots can be used for after they're written
+     * @param maxMegabytes the most space that the snapshots can take up
+     * @throws IOException if the directory can't be created
+     */
+    public SnapshotCache(File dir, int ttlMinutes, int maxMegabytes) throws IOException {
+        this.dir = dir;
+        ttlMillis = ttlMinutes * 60L * 1000;
+        maxBytes = maxMegabytes * 1024L * 1024;
+
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Failed to create cache directory '" + dir + "'");
+    }
+
+    /**
+     * Returns the key of the analysis of the specified database given the
+     * options (schema, user, filters, etc.) that affect what's analyzed
+     *
+     * @param config
+     * @param connectionURL
+     * @return
+     */
+    public static String getKey(Config config, String connectionURL) {
+        String meta = config.getMeta();
+        File metaFile = meta == null ? null : new File(meta);
+
+        return hash(new String[] {
+            config.getDbType(),
+            connectionURL,
+            config.getSchema(),
+            config.getUser(),
+            config.getTableInclusions().pattern(),
+            config.getTableExclusions().pattern(),
+            config.getColumnExclusions().pattern(),
+            config.getIndirectColumnExclusions().pattern(),
+            String.valueOf(config.isViewsEnabled()),
+            String.valueOf(config.isNumRowsEnabled()),
+            String.valueOf(config.getRowEstimateThreshold()),
+            meta,
+            metaFile != null && metaFile.isFile() ? String.valueOf(metaFile.lastModified()) : null
+        });
+    }
+
+    /**
+     * Returns the cached database with the specified key or <code>null</code>
+     * if there isn't one, it's expired or it's to be refreshed
+     *
+     * @param key
+     * @param refresh <code>true</code> to ignore what's cached
+     * @return
+     */
+    public Database get(String key, boolean refresh) {
+        File snapshot = new File(dir, key + SNAPSHOT);
+        Database db = null;
+
+        if (refresh) {
+            outcome = "miss (refresh forced)";
+        } else if (!snapshot.isFile()) {
+            outcome = "miss";
+        } else {
+            long age = System.currentTimeMillis() - snapshot.lastModified();
+            if (age > ttlMillis) {
+                outcome = "miss (expired " + toMinutes(age - ttlMillis) + " minutes ago)";
+                remove(key);
+            } else {
+                try {
+                    db = DatabaseSnapshot.read(snapshot);
+                    touch(new File(dir, key + USED));
+                    outcome = "hit (" + toMinutes(age) + " minutes old)";
+                } catch (IOException exc) {
+                    logger.warning("Ignoring unreadable cached snapshot " + snapshot + ": " + exc);
+                    outcome = "miss (unreadable)";
+                    remove(key);
+                }
+            }
+        }
+
+        updateStats(db != null ? "hits" : "misses", 1);
+        return db;
+    }
+
+    /**
+     * Cache the specified database with the specified key,
+     * evicting the least recently used snapshots if needed
+     *
+     * @param key
+     * @param db
+     * @throws IOException
+     */
+    public void put(String key, Database db) throws IOException {
+        File temp = File.createTempFile(key, ".tmp", dir);
+        try {
+            DatabaseSnapshot.write(db, temp);
+            File snapshot = new File(dir, key + SNAPSHOT);
+            snapshot.delete();
+            if (!temp.renameTo(snapshot))
+                throw new IOException("Failed to rename " + temp + " to " + snapshot);
+            touch(new File(dir, key + USED));
+        } finally {
+            temp.delete();
+        }
+
+        evict();
+    }
+
+    /**
+     * Returns a one-line summary of what happened this run and
+     * the statistics across runs
+     */
+    public String getSummary() {
+        Properties stats = loadStats();
+        int hits = getStat(stats, "hits");
+        int misses = getStat(stats, "misses");
+        int total = hits + misses;
+
+        List<File> snapshots = getSnapshots();
+        long bytes = 0;
+        for (File snapshot : snapshots)
+            bytes += snapshot.length();
+
+        StringBuilder summary = new StringBuilder("Analysis cache ");
+        summary.append(outcome).append("; ");
+        summary.append(hits).append(" hits and ").append(misses).append(" misses");
+        if (total > 0)
+            summary.append(" (").append(hits * 100 / total).append("% hit rate)");
+        summary.append(" and ").append(getStat(stats, "evictions")).append(" evictions to date, ");
+        summary.append(snapshots.size()).append(" snapshots using ");
+        summary.append(bytes / 1024).append("KB of ").append(maxBytes / 1024).append("KB");
+        return summary.toString();
+    }
+
+    /**
+     * Remove expired snapshots and then the least recently used ones
+     * until the snapshots fit within the limit
+     */
+    private void evict() {
+        List<File> snapshots = getSnapshots();
+        long now = System.currentTimeMillis();
+        long bytes = 0;
+        int evicted = 0;
+
+        for (File snapshot : new ArrayList<File>(snapshots)) {
+            if (now - snapshot.lastModified() > ttlMillis) {
+                remove(getKey(snapshot));
+                snapshots.remove(snapshot);
+                ++evicted;
+            } else {
+                bytes += snapshot.length();
+            }
+        }
+
+        // least recently used first
+        Collections.sort(snapshots, new Comparator<File>() {
+            public int compare(File snapshot1, File snapshot2) {
+                long used1 = getLastUsed(snapshot1);
+                long used2 = getLastUsed(snapshot2);
+                return used1 < used2 ? -1 : used1 == used2 ? 0 : 1;
+            }
+        });
+
+        for (File snapshot : snapshots) {
+            if (bytes <= maxBytes)
+                break;
+            bytes -= snapshot.length();
+            logger.info("Evicting " + snapshot + " from the analysis cache");
+            remove(getKey(snapshot));
+            ++evicted;
+        }
+
+        if (evicted > 0)
+            updateStats("evictions", evicted);
+    }
+
+    private List<File> getSnapshots() {
+        List<File> snapshots = new ArrayList<File>();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(SNAPSHOT) && file.isFile())
+                    snapshots.add(file);
+            }
+        }
+        return snapshots;
+    }
+
+    private long getLastUsed(File snapshot) {
+        File used = new File(dir, getKey(snapshot) + USED);
+        return Math.max(snapshot.lastModified(), used.lastModified());
+    }
+
+    private static String getKey(File snapshot) {
+        String name = snapshot.getName();
+        return name.substring(0, name.length() - SNAPSHOT.length());
+    }
+
+    private void remove(String key) {
+        new File(dir, key + SNAPSHOT).delete();
+        new File(dir, key + USED).delete();
+    }
+
+    private static void touch(File file) throws IOException {
+        if (!file.exists())
+            new FileOutputStream(file).close();
+        file.setLastModified(System.currentTimeMillis());
+    }
+
+    /**
+     * Add to one of the statistics that are kept across runs.
+     * Best effort: statistics aren't worth failing a run over.
+     */
+    private void updateStats(String name, int increment) {
+        Properties stats = loadStats();
+        stats.setProperty(name, String.valueOf(getStat(stats, name) + increment));
+
+        try {
+            OutputStream out = new FileOutputStream(new File(dir, STATS));
+            try {
+                stats.store(out, "SchemaSpy analysis cache statistics");
+            } finally {
+                out.close();
+            }
+        } catch (IOException exc) {
+            logger.fine("Failed to update cache statistics: " + exc);
+        }
+    }
+
+    private Properties loadStats() {
+        Properties stats = new Properties();
+        File file = new File(dir, STATS);
+
+        if (file.isFile()) {
+            try {
+                InputStream in = new FileInputStream(file);
+                try {
+                    stats.load(in);
+                } finally {
+                    in.close();
+                }
+            } catch (IOException exc) {
+                logger.fine("Failed to read cache statistics: " + exc);
+            }
+        }
+
+        return stats;
+    }
+
+    private static int getStat(Properties stats, String name) {
+        try {
+            return Integer.parseInt(stats.getProperty(name, "0"));
+        } catch (NumberFormatException exc) {
+            return 0;
+        }
+    }
+
+    private static long toMinutes(long millis) {
+        return millis / (60 * 1000);
+    }
+
+    /**
+     * Returns a hex SHA-1 hash of the specified values
+     */
+    private static String hash(String[] values) {
+        try {
+            MessageDigest digest = MessageDigest.getInstance("SHA-1");
+            for (String value : values) {
+                if (value != null)
+                    digest.update(value.getBytes("UTF-8"));
+                digest.update((byte)0);
+            }
+
+            StringBuilder hex = new StringBuilder();
+            for (byte b : digest.digest())
+                hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException exc) {
+            throw new RuntimeException(exc);    // every JRE has SHA-1
+        } catch (UnsupportedEncodingException exc) {
+            throw new RuntimeException(exc);    // every JRE has UTF-8
+        }
+    }
+}
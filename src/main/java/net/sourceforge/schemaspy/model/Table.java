@@ -28,6 +28,7 @@ import java.util.Collection;
 import java.util.Collections;
 import java.util.Comparator;
 import java.util.HashSet;
+import java.util.IdentityHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Properties;
@@ -41,6 +42,7 @@ import schemaspy.model.xml.ForeignKeyMeta;
 import schemaspy.model.xml.TableColumnMeta;
 import schemaspy.model.xml.TableMeta;
 import schemaspy.util.CaseInsensitiveMap;
+import schemaspy.util.ResultSetColumns;
 
 /**
  * A <code>Table</code> is one of the basic building blocks of SchemaSpy
@@ -58,11 +60,20 @@ public class Table implements Comparable<Table> {
     private       Object id;
     private final Map<String, String> checkConstraints = new TreeMap<String, String>(String.CASE_INSENSITIVE_ORDER);
     private Integer numRows;
+    private boolean numRowsEstimated;
+    private int rowCountTimeout;
+    private long rowCountStarted;
+    private volatile boolean rowCountAbandoned;
     protected final Database db;
     protected final Properties properties;
     private       String comments;
     private int maxChildren;
     private int maxParents;
+    private boolean autoIncrementUnknown;
+    private volatile boolean detailsDeferred;
+    private boolean loadingDetails;
+    private volatile boolean relationshipsDeferred;
+    private List<Runnable> deferredTasks;
     private final static Logger logger = Logger.getLogger(Table.class.getName());
 
     /**
@@ -78,6 +89,27 @@ public class Table implements Comparable<Table> {
      * @throws SQLException
      */
     public Table(Database db, String schema, String name, String comments, Properties properties, Pattern excludeIndirectColumns, Pattern excludeColumns) throws SQLException {
+        this(db, schema, name, comments, properties);
+        initColumns(excludeIndirectColumns, excludeColumns);
+        if (!isView() && !isRemote() && !isAutoIncrementKnown() &&
+                (properties == null || properties.getProperty("selectAutoIncrementColumnsSql") == null))
+            initColumnAutoUpdate(false);
+        initIndexes();
+        initPrimaryKeys(db.getMetaData());
+    }
+
+    /**
+     * Construct a table without querying any of its details.
+     * The caller is responsible for populating its columns, indexes and
+     * primary keys (e.g. from metadata that was harvested for the whole schema).
+     *
+     * @param db
+     * @param schema
+     * @param name
+     * @param comments
+     * @param properties
+     */
+    Table(Database db, String schema, String name, String comments, Properties properties) {
         this.schema = schema;
         this.name = name;
         this.db = db;
@@ -85,9 +117,6 @@ public class Table implements Comparable<Table> {
         logger.fine("Creating " + getClass().getSimpleName().toLowerCase() + " " +
                 schema == null ? name : (schema + '.' + name));
         setComments(comments);
-        initColumns(excludeIndirectColumns, excludeColumns);
-        initIndexes();
-        initPrimaryKeys(db.getMetaData());
     }
 
     /**
@@ -117,9 +146,21 @@ public class Table implements Comparable<Table> {
                 rs.close();
         }
 
-        // also try to find all of the 'remote' tables in other schemas that
-        // point to our primary keys (not necessary in the normal case
-        // as we infer this from the opposite direction)
+        connectExportedKeys(excludeIndirectColumns, excludeColumns);
+    }
+
+    /**
+     * Try to find all of the 'remote' tables in other schemas that
+     * point to our primary keys (not necessary in the normal case
+     * as we infer this from the opposite direction)
+     *
+     * @param excludeIndirectColumns
+     * @param excludeColumns
+     * @throws SQLException
+     */
+    void connectExportedKeys(Pattern excludeIndirectColumns, Pattern excludeColumns) throws SQLException {
+        ResultSet rs = null;
+
         if (getSchema() != null) {
             try {
                 rs = db.getMetaData().getExportedKeys(null, getSchema(), getName());
@@ -142,6 +183,7 @@ public class Table implements Comparable<Table> {
      * @return
      */
     public Collection<ForeignKeyConstraint> getForeignKeys() {
+        requireRelationships();
         return Collections.unmodifiableCollection(foreignKeys.values());
     }
 
@@ -197,27 +239,45 @@ public class Table implements Comparable<Table> {
                     (baseSchema != null && parentSchema != null &&
                      !baseSchema.equals(parentSchema))) {
                 parentTable = db.addRemoteTable(parentSchema, pkTableName, baseSchema,
-                                        properties, excludeIndirectColumns, excludeColumns);
+                                        properties, excludeIndirectColumns, excludeColumns,
+                                        new Database.PendingParent(this, foreignKey, childColumn, pkColName));
+                if (parentTable == null)
+                    return; // connected once the remote table has been created
             }
 
-            if (parentTable != null) {
-                TableColumn parentColumn = parentTable.getColumn(pkColName);
-                if (parentColumn != null) {
-                    foreignKey.addParentColumn(parentColumn);
+            connectParent(foreignKey, childColumn, parentTable, pkTableName, pkColName);
+        } else {
+            logger.warning("Couldn't add FK '" + foreignKey.getName() + "' to table '" + this +
+                                "' - Column '" + fkColName + "' doesn't exist");
+        }
+    }
 
-                    childColumn.addParent(parentColumn, foreignKey);
-                    parentColumn.addChild(childColumn, foreignKey);
-                } else {
-                    logger.warning("Couldn't add FK '" + foreignKey.getName() + "' to table '" + this +
-                                        "' - Column '" + pkColName + "' doesn't exist in table '" + parentTable + "'");
-                }
+    /**
+     * Connect the child column of one of our foreign keys to the column
+     * that it references in <code>parentTable</code>
+     *
+     * @param foreignKey
+     * @param childColumn
+     * @param parentTable
+     * @param pkTableName
+     * @param pkColName
+     */
+    void connectParent(ForeignKeyConstraint foreignKey, TableColumn childColumn,
+                        Table parentTable, String pkTableName, String pkColName) {
+        if (parentTable != null) {
+            TableColumn parentColumn = parentTable.getColumn(pkColName);
+            if (parentColumn != null) {
+                foreignKey.addParentColumn(parentColumn);
+
+                childColumn.addParent(parentColumn, foreignKey);
+                parentColumn.addChild(childColumn, foreignKey);
             } else {
                 logger.warning("Couldn't add FK '" + foreignKey.getName() + "' to table '" + this +
-                                    "' - Unknown Referenced Table '" + pkTableName + "'");
+                                    "' - Column '" + pkColName + "' doesn't exist in table '" + parentTable + "'");
             }
         } else {
             logger.warning("Couldn't add FK '" + foreignKey.getName() + "' to table '" + this +
-                                "' - Column '" + fkColName + "' doesn't exist");
+                                "' - Unknown Referenced Table '" + pkTableName + "'");
         }
     }
 
@@ -225,7 +285,7 @@ public class Table implements Comparable<Table> {
      * @param meta
      * @throws SQLException
      */
-    private void initPrimaryKeys(DatabaseMetaData meta) throws SQLException {
+    void initPrimaryKeys(DatabaseMetaData meta) throws SQLException {
         if (properties == null)
             return;
 
@@ -243,15 +303,15 @@ public class Table implements Comparable<Table> {
     }
 
     /**
-     * @param rs
+     * @param rs from {@link DatabaseMetaData#getPrimaryKeys(String, String, String)}
      * @throws SQLException
      */
-    private void setPrimaryColumn(ResultSet rs) throws SQLException {
+    void setPrimaryColumn(ResultSet rs) throws SQLException {
         String pkName = rs.getString("PK_NAME");
         if (pkName == null)
             return;
 
-        TableIndex index = getIndex(pkName);
+        TableIndex index = indexes.get(pkName);
         if (index != null) {
             index.setIsPrimaryKey(true);
         }
@@ -273,63 +333,84 @@ public class Table implements Comparable<Table> {
      * @param excludeColumns
      * @throws SQLException
      */
-    private void initColumns(Pattern excludeIndirectColumns, Pattern excludeColumns) throws SQLException {
+    void initColumns(Pattern excludeIndirectColumns, Pattern excludeColumns) throws SQLException {
         ResultSet rs = null;
 
-        synchronized (Table.class) {
-            try {
-                rs = db.getMetaData().getColumns(null, getSchema(), getName(), "%");
+        try {
+            rs = db.getMetaData().getColumns(null, getSchema(), getName(), "%");
+            boolean autoIncrementReported = !isView() && new ResultSetColumns(rs).has("IS_AUTOINCREMENT");
 
-                while (rs.next())
-                    addColumn(rs, excludeIndirectColumns, excludeColumns);
-            } catch (SQLException exc) {
-                class ColumnInitializationFailure extends SQLException {
-                    private static final long serialVersionUID = 1L;
+            while (rs.next())
+                addColumn(rs, autoIncrementReported, excludeIndirectColumns, excludeColumns);
+        } catch (SQLException exc) {
+            class ColumnInitializationFailure extends SQLException {
+                private static final long serialVersionUID = 1L;
 
-                    public ColumnInitializationFailure(SQLException failure) {
-                        super("Failed to collect column details for " + (isView() ? "view" : "table") + " '" + getName() + "' in schema '" + getSchema() + "'");
-                        initCause(failure);
-                    }
+                public ColumnInitializationFailure(SQLException failure) {
+                    super("Failed to collect column details for " + (isView() ? "view" : "table") + " '" + getName() + "' in schema '" + getSchema() + "'");
+                    initCause(failure);
                 }
-
-                throw new ColumnInitializationFailure(exc);
-            } finally {
-                if (rs != null)
-                    rs.close();
             }
-        }
 
-        if (!isView() && !isRemote())
-            initColumnAutoUpdate(false);
+            throw new ColumnInitializationFailure(exc);
+        } finally {
+            if (rs != null)
+                rs.close();
+        }
     }
 
     /**
      * @param forceQuotes
      * @throws SQLException
      */
-    private void initColumnAutoUpdate(boolean forceQuotes) throws SQLException {
-        ResultSet rs = null;
-        PreparedStatement stmt = null;
+    void initColumnAutoUpdate(boolean forceQuotes) throws SQLException {
+        Dialect dialect = db.getDialect();
+
+        // go straight to quoting the name if that's what it took for other tables
+        boolean quoted = forceQuotes || dialect.isUnsupported(Dialect.UNQUOTED_NAMES);
 
         // we've got to get a result set with all the columns in it
         // so we can ask if the columns are auto updated
         // Ugh!!!  Should have been in DatabaseMetaData instead!!!
-        StringBuilder sql = new StringBuilder("select * from ");
-        if (getSchema() != null) {
-            sql.append(getSchema());
-            sql.append('.');
+        String sql = "select * from " + getSelectableName(quoted) + " where 0 = 1";
+        SQLException failure;
+
+        try {
+            initColumnAutoUpdate(sql);
+            return;
+        } catch (SQLException exc) {
+            failure = exc;
         }
 
-        if (forceQuotes) {
-            String quote = db.getMetaData().getIdentifierQuoteString().trim();
-            sql.append(quote + getName() + quote);
-        } else
-            sql.append(db.getQuotedIdentifier(getName()));
+        if (!forceQuotes) {
+            sql = "select * from " + getSelectableName(!quoted) + " where 0 = 1";
+
+            try {
+                initColumnAutoUpdate(sql);
+                if (!quoted)
+                    dialect.learn(Dialect.UNQUOTED_NAMES, Dialect.QUOTED_NAMES);
+                return;
+            } catch (SQLException exc) {
+                failure = exc;
+            }
+        }
+
+        // don't completely choke just because we couldn't do this....
+        db.queryFailed();
+        logger.warning("Failed to determine auto increment status: " + failure);
+        logger.warning("SQL: " + sql);
+    }
 
-        sql.append(" where 0 = 1");
+    /**
+     * @param sql query that returns all of the table's columns
+     * @throws SQLException
+     */
+    private void initColumnAutoUpdate(String sql) throws SQLException {
+        ResultSet rs = null;
+        PreparedStatement stmt = null;
 
         try {
-            stmt = db.getMetaData().getConnection().prepareStatement(sql.toString());
+            stmt = db.getMetaData().getConnection().prepareStatement(sql);
             rs = stmt.executeQuery();
 
             ResultSetMetaData rsMeta = rs.getMetaData();
@@ -337,14 +418,6 @@ public class Table implements Comparable<Table> {
                 TableColumn column = getColumn(rsMeta.getColumnName(i));
                 column.setIsAutoUpdated(rsMeta.isAutoIncrement(i));
             }
-        } catch (SQLException exc) {
-            if (forceQuotes) {
-                // don't completely choke just because we couldn't do this....
-                logger.warning("Failed to determine auto increment status: " + exc);
-                logger.warning("SQL: " + sql.toString());
-            } else {
-                initColumnAutoUpdate(true);
-            }
         } finally {
             if (rs != null)
                 rs.close();
@@ -360,6 +433,19 @@ public class Table implements Comparable<Table> {
      * @throws SQLException
      */
     protected void addColumn(ResultSet rs, Pattern excludeIndirectColumns, Pattern excludeColumns) throws SQLException {
+        addColumn(rs, false, excludeIndirectColumns, excludeColumns);
+    }
+
+    /**
+     * @param rs - from {@link DatabaseMetaData#getColumns(String, String, String, String)}
+     * @param autoIncrementReported <code>true</code> if <code>rs</code> has an
+     *          <code>IS_AUTOINCREMENT</code> column that we can take the column's
+     *          auto increment status from
+     * @param excludeIndirectColumns
+     * @param excludeColumns
+     * @throws SQLException
+     */
+    void addColumn(ResultSet rs, boolean autoIncrementReported, Pattern excludeIndirectColumns, Pattern excludeColumns) throws SQLException {
         String columnName = rs.getString("COLUMN_NAME");
 
         if (columnName == null)
@@ -369,9 +455,25 @@ public class Table implements Comparable<Table> {
             TableColumn column = new TableColumn(this, rs, excludeIndirectColumns, excludeColumns);
 
             columns.put(column.getName(), column);
+
+            // JDBC 4 drivers tell us "YES", "NO" or "" (can't tell)
+            String autoIncrement = autoIncrementReported ? rs.getString("IS_AUTOINCREMENT") : null;
+            if ("YES".equalsIgnoreCase(autoIncrement))
+                column.setIsAutoUpdated(true);
+            else if (!"NO".equalsIgnoreCase(autoIncrement))
+                autoIncrementUnknown = true;
         }
     }
 
+    /**
+     * Returns <code>true</code> if the auto increment status of all of our columns
+     * was reported along with the rest of their details, making the
+     * {@link #initColumnAutoUpdate(boolean)} probe unnecessary.
+     */
+    boolean isAutoIncrementKnown() {
+        return !autoIncrementUnknown;
+    }
+
     /**
      * Add a column that's defined in xml metadata.
      * Assumes that a column named colMeta.getName() doesn't already exist in <code>columns</code>.
@@ -386,20 +488,116 @@ public class Table implements Comparable<Table> {
         return column;
     }
 
+    /**
+     * Add a column that was restored from a {@link DatabaseSnapshot}
+     *
+     * @param column
+     */
+    void addColumn(TableColumn column) {
+        columns.put(column.getName(), column);
+    }
+
+    /**
+     * Add an index that was restored from a {@link DatabaseSnapshot}
+     *
+     * @param index
+     */
+    void addIndex(TableIndex index) {
+        indexes.put(index.getName(), index);
+    }
+
+    /**
+     * Add a foreign key that was restored from a {@link DatabaseSnapshot}
+     *
+     * @param foreignKey
+     */
+    void addForeignKey(ForeignKeyConstraint foreignKey) {
+        foreignKeys.put(foreignKey.getName(), foreignKey);
+    }
+
+    /**
+     * Take our columns, indexes and primary keys from the specified table
+     * (this table in a {@link DatabaseSnapshot}) rather than querying them
+     *
+     * @param prior
+     * @param excludeIndirectColumns
+     * @param excludeColumns
+     */
+    void copyDetails(Table prior, Pattern excludeIndirectColumns, Pattern excludeColumns) {
+        for (TableColumn column : prior.getColumns())
+            addColumn(new TableColumn(this, column, excludeIndirectColumns, excludeColumns));
+
+        for (TableIndex priorIndex : prior.getIndexes()) {
+            TableIndex index = new TableIndex(priorIndex.getName(), priorIndex.isUnique());
+            index.setIsPrimaryKey(priorIndex.isPrimaryKey());
+            index.setId(priorIndex.getId());
+            for (TableColumn column : priorIndex.getColumns())
+                index.addColumn(getColumn(column.getName()), priorIndex.isAscending(column) ? "A" : "D");
+            addIndex(index);
+        }
+
+        for (TableColumn column : prior.getPrimaryColumns())
+            setPrimaryColumn(getColumn(column.getName()));
+    }
+
+    /**
+     * Take our foreign keys from the specified table (this table in a
+     * {@link DatabaseSnapshot}) rather than querying them.
+     * The tables that they reference must be in <code>tables</code>.
+     *
+     * @param prior
+     * @param tables
+     */
+    void copyForeignKeys(Table prior, Map<String, Table> tables) {
+        Map<ForeignKeyConstraint, ForeignKeyConstraint> copies = new IdentityHashMap<ForeignKeyConstraint, ForeignKeyConstraint>();
+
+        for (ForeignKeyConstraint priorKey : prior.getForeignKeys()) {
+            ForeignKeyConstraint foreignKey = new ForeignKeyConstraint(this, priorKey.getName(),
+                                                    priorKey.getUpdateRule(), priorKey.getDeleteRule());
+            for (TableColumn column : priorKey.getChildColumns())
+                foreignKey.addChildColumn(getColumn(column.getName()));
+
+            Table parentTable = tables.get(priorKey.getParentTable().getName());
+            for (TableColumn column : priorKey.getParentColumns())
+                foreignKey.addParentColumn(parentTable.getColumn(column.getName()));
+
+            foreignKeys.put(foreignKey.getName(), foreignKey);
+            copies.put(priorKey, foreignKey);
+        }
+
+        for (TableColumn priorColumn : prior.getColumns()) {
+            for (TableColumn priorParent : priorColumn.getParents()) {
+                ForeignKeyConstraint foreignKey = copies.get(priorColumn.getParentConstraint(priorParent));
+                if (foreignKey != null) {
+                    TableColumn childColumn = getColumn(priorColumn.getName());
+                    TableColumn parentColumn = tables.get(priorParent.getTable().getName()).getColumn(priorParent.getName());
+
+                    childColumn.addParent(parentColumn, foreignKey);
+                    parentColumn.addChild(childColumn, foreignKey);
+                }
+            }
+        }
+    }
+
     /**
      * Initialize index information
      *
      * @throws SQLException
      */
-    private void initIndexes() throws SQLException {
+    void initIndexes() throws SQLException {
         if (isView() || isRemote())
             return;
 
         // first try to initialize using the index query spec'd in the .properties
         // do this first because some DB's (e.g. Oracle) do 'bad' things with getIndexInfo()
         // (they try to do a DDL analyze command that has some bad side-effects)
-        if (initIndexes(properties.getProperty("selectIndexesSql")))
-            return;
+        Dialect dialect = db.getDialect();
+        if (!dialect.isUnsupported("selectIndexesSql")) {
+            if (initIndexes(properties.getProperty("selectIndexesSql"))) {
+                dialect.succeeded("selectIndexesSql");
+                return;
+            }
+        }
 
         // couldn't, so try the old fashioned approach
         ResultSet rs = null;
@@ -412,6 +610,7 @@ public class Table implements Comparable<Table> {
                     addIndex(rs);
             }
         } catch (SQLException exc) {
+            db.queryFailed();
             logger.warning("Unable to extract index info for table '" + getName() + "' in schema '" + getSchema() + "': " + exc);
         } finally {
             if (rs != null)
@@ -428,20 +627,21 @@ public class Table implements Comparable<Table> {
         if (selectIndexesSql == null)
             return false;
 
-        PreparedStatement stmt = null;
         ResultSet rs = null;
 
         try {
-            stmt = db.prepareStatement(selectIndexesSql, getName());
-            rs = stmt.executeQuery();
+            // the same statement is reused for each table (so it's not ours to close)
+            rs = db.prepareReusableStatement(selectIndexesSql, getName()).executeQuery();
 
             while (rs.next()) {
                 if (rs.getShort("TYPE") != DatabaseMetaData.tableIndexStatistic)
                     addIndex(rs);
             }
         } catch (SQLException sqlException) {
+            db.queryFailed();
             logger.warning("Failed to query index information with SQL: " + selectIndexesSql);
             logger.warning(sqlException.toString());
+            db.getDialect().failed("selectIndexesSql", sqlException);
             return false;
         } finally {
             if (rs != null) {
@@ -451,13 +651,6 @@ public class Table implements Comparable<Table> {
                     exc.printStackTrace();
                 }
             }
-            if (stmt != null)  {
-                try {
-                    stmt.close();
-                } catch (Exception exc) {
-                    exc.printStackTrace();
-                }
-            }
         }
 
         return true;
@@ -468,9 +661,106 @@ public class Table implements Comparable<Table> {
      * @return
      */
     public TableIndex getIndex(String indexName) {
+        requireDetails();
         return indexes.get(indexName);
     }
 
+    /**
+     * Don't collect our columns, indexes, primary keys or foreign keys
+     * until they're first needed (see <code>-lazy</code>)
+     */
+    void deferDetails() {
+        detailsDeferred = true;
+        relationshipsDeferred = true;
+    }
+
+    /**
+     * Returns <code>true</code> if our columns, indexes and primary keys
+     * have been deferred and haven't been collected yet
+     */
+    boolean isDetailsDeferred() {
+        return detailsDeferred;
+    }
+
+    /**
+     * Returns <code>true</code> if our foreign keys (in either direction)
+     * have been deferred and haven't been connected yet
+     */
+    boolean isRelationshipsDeferred() {
+        return relationshipsDeferred;
+    }
+
+    /**
+     * Note that our relationships are being connected
+     * by {@link Database#connectDeferred(Table)}
+     */
+    void relationshipsConnected() {
+        relationshipsDeferred = false;
+    }
+
+    /**
+     * Run the specified task once our details have been collected
+     * (immediately if they weren't deferred).
+     * Used to apply schema-wide details (e.g. column comments) to our columns.
+     *
+     * @param task
+     */
+    synchronized void afterDetails(Runnable task) {
+        if (detailsDeferred) {
+            if (deferredTasks == null)
+                deferredTasks = new ArrayList<Runnable>();
+            deferredTasks.add(task);
+        } else {
+            task.run();
+        }
+    }
+
+    /**
+     * Collect our deferred details before they're used
+     */
+    void requireDetails() {
+        if (detailsDeferred)
+            loadDetails();
+    }
+
+    /**
+     * Connect our deferred foreign keys (and those of our neighbors that
+     * reference us) before they're used
+     */
+    void requireRelationships() {
+        if (relationshipsDeferred) {
+            requireDetails();
+            db.connectDeferred(this);
+        }
+    }
+
+    /**
+     * Collect our deferred columns, indexes and primary keys.
+     * Calls made while we're collecting them (by this thread) see what's
+     * been collected so far rather than trying again.
+     */
+    private synchronized void loadDetails() {
+        if (!detailsDeferred || loadingDetails)
+            return;
+
+        loadingDetails = true;
+        try {
+            db.initDeferredDetails(this);
+        } catch (SQLException exc) {
+            db.queryFailed();
+            logger.warning("Failed to collect the details of table '" + getName() + "' in schema '" + getSchema() + "': " + exc);
+        } finally {
+            detailsDeferred = false;
+            loadingDetails = false;
+
+            if (deferredTasks != null) {
+                for (Runnable task : deferredTasks)
+                    task.run();
+                deferredTasks = null;
+            }
+        }
+    }
+
     /**
      * @param rs
      * @throws SQLException
@@ -481,7 +771,7 @@ public class Table implements Comparable<Table> {
         if (indexName == null)
             return;
 
-        TableIndex index = getIndex(indexName);
+        TableIndex index = indexes.get(indexName);
 
         if (index == null) {
             index = new TableIndex(rs);
@@ -544,6 +834,7 @@ public class Table implements Comparable<Table> {
      * @return
      */
     public Set<TableIndex> getIndexes() {
+        requireDetails();
         return new HashSet<TableIndex>(indexes.values());
     }
 
@@ -553,6 +844,7 @@ public class Table implements Comparable<Table> {
      * @return
      */
     public List<TableColumn> getPrimaryColumns() {
+        requireDetails();
         return primaryKeys;
     }
 
@@ -596,6 +888,7 @@ public class Table implements Comparable<Table> {
      * @return
      */
     public TableColumn getColumn(String columnName) {
+        requireDetails();
         return columns.get(columnName);
     }
 
@@ -605,6 +898,7 @@ public class Table implements Comparable<Table> {
      * @return
      */
     public List<TableColumn> getColumns() {
+        requireDetails();
         Set<TableColumn> sorted = new TreeSet<TableColumn>(new ByColumnIdComparator());
         sorted.addAll(columns.values());
         return new ArrayList<TableColumn>(sorted);
@@ -616,6 +910,7 @@ public class Table implements Comparable<Table> {
      * @return
      */
     public boolean isRoot() {
+        requireRelationships();
         for (TableColumn column : columns.values()) {
             if (column.isForeignKey()) {
                 return false;
@@ -631,6 +926,7 @@ public class Table implements Comparable<Table> {
      * @return
      */
     public boolean isLeaf() {
+        requireRelationships();
         for (TableColumn column : columns.values()) {
             if (!column.getChildren().isEmpty()) {
                 return false;
@@ -647,6 +943,7 @@ public class Table implements Comparable<Table> {
      * @return
      */
     public int getMaxParents() {
+        requireRelationships();
         return maxParents;
     }
 
@@ -662,6 +959,7 @@ public class Table implements Comparable<Table> {
      * "Unlink" all of the parent tables from this table
      */
     public void unlinkParents() {
+        requireRelationships();
         for (TableColumn column : columns.values()) {
             column.unlinkParents();
         }
@@ -674,6 +972,7 @@ public class Table implements Comparable<Table> {
      * @return
      */
     public int getMaxChildren() {
+        requireRelationships();
         return maxChildren;
     }
 
@@ -689,6 +988,7 @@ public class Table implements Comparable<Table> {
      * "Unlink" all of the child tables from this table
      */
     public void unlinkChildren() {
+        requireRelationships();
         for (TableColumn column : columns.values()) {
             column.unlinkChildren();
         }
@@ -728,6 +1028,7 @@ public class Table implements Comparable<Table> {
      * @return
      */
     private ForeignKeyConstraint getSelfReferencingConstraint() {
+        requireRelationships();
         for (TableColumn column : columns.values()) {
             for (TableColumn parentColumn : column.getParents()) {
                 if (compareTo(parentColumn.getTable()) == 0) {
@@ -744,6 +1045,7 @@ public class Table implements Comparable<Table> {
      * @return
      */
     public List<ForeignKeyConstraint> removeNonRealForeignKeys() {
+        requireRelationships();
         List<ForeignKeyConstraint> nonReals = new ArrayList<ForeignKeyConstraint>();
 
         for (TableColumn column : columns.values()) {
@@ -770,6 +1072,7 @@ public class Table implements Comparable<Table> {
      * @return
      */
     public int getNumChildren() {
+        requireRelationships();
         int numChildren = 0;
 
         for (TableColumn column : columns.values()) {
@@ -784,6 +1087,7 @@ public class Table implements Comparable<Table> {
      * @return
      */
     public int getNumNonImpliedChildren() {
+        requireRelationships();
         int numChildren = 0;
 
         for (TableColumn column : columns.values()) {
@@ -802,6 +1106,7 @@ public class Table implements Comparable<Table> {
      * @return
      */
     public int getNumParents() {
+        requireRelationships();
         int numParents = 0;
 
         for (TableColumn column : columns.values()) {
@@ -817,6 +1122,7 @@ public class Table implements Comparable<Table> {
      * @return
      */
     public int getNumNonImpliedParents() {
+        requireRelationships();
         int numParents = 0;
 
         for (TableColumn column : columns.values()) {
@@ -910,6 +1216,64 @@ public class Table implements Comparable<Table> {
      */
     public void setNumRows(int numRows) {
         this.numRows = numRows;
+        numRowsEstimated = false;
+    }
+
+    /**
+     * Returns <code>true</code> if the number of rows has already been determined
+     */
+    boolean hasNumRows() {
+        return numRows != null;
+    }
+
+    /**
+     * Count the number of rows in this table, giving up on each query
+     * that takes longer than the specified number of seconds.
+     *
+     * @param timeout query timeout in seconds, 0 for no limit
+     * @return the number of rows or -1 if unable to determine it
+     */
+    int countRows(int timeout) {
+        rowCountTimeout = timeout;
+        rowCountStarted = System.currentTimeMillis();
+        return fetchNumRows();
+    }
+
+    /**
+     * Indicates that whoever asked us to {@link #countRows(int)} is no longer
+     * interested in the results (e.g. they ran out of time)
+     */
+    void abandonRowCount() {
+        rowCountAbandoned = true;
+    }
+
+    /**
+     * Returns <code>true</code> if we've used up the time allotted by {@link #countRows(int)},
+     * in which case there's no point in trying alternative ways of counting.
+     */
+    private boolean isRowCountTimedOut() {
+        return rowCountAbandoned ||
+                rowCountTimeout > 0 && System.currentTimeMillis() - rowCountStarted >= rowCountTimeout * 1000L;
+    }
+
+    /**
+     * Set the number of rows in this table to an estimate
+     * (typically from the database's statistics) rather than an exact count
+     *
+     * @param numRows
+     */
+    public void setEstimatedNumRows(int numRows) {
+        this.numRows = numRows;
+        numRowsEstimated = true;
+    }
+
+    /**
+     * Returns <code>true</code> if {@link #getNumRows()} is an estimate
+     *
+     * @return
+     */
+    public boolean isNumRowsEstimated() {
+        return numRowsEstimated;
     }
 
     /**
@@ -926,45 +1290,73 @@ public class Table implements Comparable<Table> {
             return 0;
 
         SQLException originalFailure = null;
+        Dialect dialect = db.getDialect();
 
         String sql = properties.getProperty("selectRowCountSql");
-        if (sql != null) {
-            PreparedStatement stmt = null;
+        if (sql != null && !dialect.isUnsupported("selectRowCountSql")) {
             ResultSet rs = null;
 
             try {
-                stmt = db.prepareStatement(sql, getName());
+                // the same statement is reused for each table (so it's not ours to close)
+                PreparedStatement stmt = db.prepareReusableStatement(sql, getName());
+                if (rowCountTimeout > 0)
+                    stmt.setQueryTimeout(rowCountTimeout);
                 rs = stmt.executeQuery();
 
                 while (rs.next()) {
-                    return rs.getInt("row_count");
+                    int numRows = rs.getInt("row_count");
+                    dialect.succeeded("selectRowCountSql");
+                    return numRows;
                 }
             } catch (SQLException sqlException) {
                 // don't die just because this failed
             	originalFailure = sqlException;
+                if (!isRowCountTimedOut())
+                    dialect.failed("selectRowCountSql", sqlException);
             } finally {
                 if (rs != null) {
                     try {
                         rs.close();
                     } catch (SQLException exc) {}
                 }
-                if (stmt != null) {
-                    try {
-                        stmt.close();
-                    } catch (SQLException exc) {}
-                }
             }
         }
 
+        if (isRowCountTimedOut()) {
+            if (!rowCountAbandoned) {
+                db.queryFailed();
+                logger.warning("Timed out counting the rows of table " + getName() + ", using '-1'");
+            }
+            return -1;
+        }
+
         // if we get here then we either didn't have custom SQL or it didn't work
+        // '*' should work best for the majority of cases
+        // except nested tables...where we'll try using '1' instead
+        String clause = "count(*)";
+        String alternative = "count(1)";
+        if (dialect.isUnsupported(clause)) {
+            clause = alternative;
+            alternative = "count(*)";
+        }
+
         try {
-            // '*' should work best for the majority of cases
-            return fetchNumRows("count(*)", false);
+            return fetchNumRows(clause, false);
         } catch (SQLException try2Exception) {
+            if (isRowCountTimedOut()) {
+                if (!rowCountAbandoned) {
+                    db.queryFailed();
+                    logger.warning("Timed out counting the rows of table " + getName() + ", using '-1'");
+                }
+                return -1;
+            }
+
             try {
-                // except nested tables...try using '1' instead
-                return fetchNumRows("count(1)", false);
+                int numRows = fetchNumRows(alternative, false);
+                dialect.learn(clause, alternative);
+                return numRows;
             } catch (SQLException try3Exception) {
+                db.queryFailed();
                 logger.warning("Unable to extract the number of rows for table " + getName() + ", using '-1'");
                 if (originalFailure != null)
                     logger.warning(originalFailure.toString());
@@ -976,34 +1368,61 @@ public class Table implements Comparable<Table> {
     }
 
     protected int fetchNumRows(String clause, boolean forceQuotes) throws SQLException {
-        PreparedStatement stmt = null;
-        ResultSet rs = null;
-        StringBuilder sql = new StringBuilder("select ");
-        sql.append(clause);
-        sql.append(" from ");
+        Dialect dialect = db.getDialect();
+
+        // go straight to quoting the name if that's what it took for other tables
+        boolean quoted = forceQuotes || dialect.isUnsupported(Dialect.UNQUOTED_NAMES);
+
+        try {
+            return queryNumRows("select " + clause + " from " + getSelectableName(quoted));
+        } catch (SQLException exc) {
+            if (forceQuotes || isRowCountTimedOut()) // we tried with and w/o quotes...fail this attempt
+                throw exc;
+
+            int numRows = queryNumRows("select " + clause + " from " + getSelectableName(!quoted));
+            if (!quoted)
+                dialect.learn(Dialect.UNQUOTED_NAMES, Dialect.QUOTED_NAMES);
+            return numRows;
+        }
+    }
+
+    /**
+     * Returns the (optionally schema-qualified) name of this table
+     * in a form that can be selected from
+     *
+     * @param forceQuotes <code>true</code> to quote the name even if it doesn't appear to need it
+     * @return
+     * @throws SQLException
+     */
+    private String getSelectableName(boolean forceQuotes) throws SQLException {
+        StringBuilder name = new StringBuilder();
         if (getSchema() != null) {
-            sql.append(getSchema());
-            sql.append('.');
+            name.append(getSchema());
+            name.append('.');
         }
 
         if (forceQuotes) {
-            String quote = db.getMetaData().getIdentifierQuoteString().trim();
-            sql.append(quote + getName() + quote);
+            String quote = db.getCapabilities().getIdentifierQuoteString();
+            name.append(quote + getName() + quote);
         } else
-            sql.append(db.getQuotedIdentifier(getName()));
+            name.append(db.getQuotedIdentifier(getName()));
+
+        return name.toString();
+    }
+
+    private int queryNumRows(String sql) throws SQLException {
+        PreparedStatement stmt = null;
+        ResultSet rs = null;
 
         try {
-            stmt = db.getConnection().prepareStatement(sql.toString());
+            stmt = db.getConnection().prepareStatement(sql);
+            if (rowCountTimeout > 0)
+                stmt.setQueryTimeout(rowCountTimeout);
             rs = stmt.executeQuery();
             while (rs.next()) {
                 return rs.getInt(1);
             }
             return -1;
-        } catch (SQLException exc) {
-            if (forceQuotes) // we tried with and w/o quotes...fail this attempt
-                throw exc;
-
-            return fetchNumRows(clause, true);
         } finally {
             if (rs != null)
                 rs.close();
@@ -1091,6 +1510,7 @@ public class Table implements Comparable<Table> {
      * @return boolean
      */
     public boolean isOrphan(boolean withImpliedRelationships) {
+        requireRelationships();
         if (withImpliedRelationships)
             return getMaxParents() == 0 && getMaxChildren() == 0;
 
@@ -1150,4 +1570,4 @@ public class Table implements Comparable<Table> {
             return column1.getId().toString().compareToIgnoreCase(column2.getId().toString());
         }
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -122,6 +122,60 @@ public class TableColumn {
         comments = colMeta.getComments();
     }
 
+    /**
+     * A column that was restored from a {@link DatabaseSnapshot}
+     *
+     * @param table
+     * @param name
+     * @param id
+     * @param type
+     * @param length
+     * @param decimalDigits
+     * @param detailedSize
+     * @param isNullable
+     * @param defaultValue
+     * @param comments
+     */
+    TableColumn(Table table, String name, Object id, String type, int length, int decimalDigits,
+                String detailedSize, boolean isNullable, Object defaultValue, String comments) {
+        this.table = table;
+        this.name = name == null ? null : name.intern();
+        this.id = id;
+        this.type = type == null ? null : type.intern();
+        this.length = length;
+        this.decimalDigits = decimalDigits;
+        this.detailedSize = detailedSize;
+        this.isNullable = isNullable;
+        this.defaultValue = defaultValue;
+        this.comments = comments;
+    }
+
+    /**
+     * A copy of the specified column (of the same table in a {@link DatabaseSnapshot})
+     * that belongs to <code>table</code>.  Whether it's excluded is reevaluated.
+     *
+     * @param table
+     * @param prior
+     * @param excludeIndirectColumns
+     * @param excludeColumns
+     */
+    TableColumn(Table table, TableColumn prior, Pattern excludeIndirectColumns, Pattern excludeColumns) {
+        this.table = table;
+        name = prior.name;
+        id = prior.id;
+        type = prior.type;
+        length = prior.length;
+        decimalDigits = prior.decimalDigits;
+        detailedSize = prior.detailedSize;
+        isNullable = prior.isNullable;
+        isAutoUpdated = prior.isAutoUpdated;
+        defaultValue = prior.defaultValue;
+        comments = prior.comments;
+
+        isAllExcluded = matches(excludeColumns);
+        isExcluded = isAllExcluded || matches(excludeIndirectColumns);
+    }
+
     /**
      * Returns the {@link Table} that this column belongs to.
      *
@@ -256,6 +310,7 @@ public class TableColumn {
      * @return
      */
     public boolean isForeignKey() {
+        table.requireRelationships();
         return !parents.isEmpty();
     }
     ////////////////////////////////////////
@@ -334,6 +389,7 @@ public class TableColumn {
      * Disassociate all parents from this column
      */
     public void unlinkParents() {
+        table.requireRelationships();
         for (TableColumn parent : parents.keySet()) {
             parent.removeChild(this);
         }
@@ -346,6 +402,7 @@ public class TableColumn {
      * @return
      */
     public Set<TableColumn> getParents() {
+        table.requireRelationships();
         return parents.keySet();
     }
 
@@ -353,6 +410,7 @@ public class TableColumn {
      * Returns the constraint that connects this column to the specified column (this 'child' column to specified 'parent' column)
      */
     public ForeignKeyConstraint getParentConstraint(TableColumn parent) {
+        table.requireRelationships();
         return parents.get(parent);
     }
 
@@ -362,6 +420,7 @@ public class TableColumn {
      * @return the removed {@link ForeignKeyConstraint}
      */
     public ForeignKeyConstraint removeAParentFKConstraint() {
+        table.requireRelationships();
         for (TableColumn relatedColumn : parents.keySet()) {
             ForeignKeyConstraint constraint = parents.remove(relatedColumn);
             relatedColumn.removeChild(this);
@@ -377,6 +436,7 @@ public class TableColumn {
      * @return the removed constraint, or <code>null</code> if none were available to be removed
      */
     public ForeignKeyConstraint removeAChildFKConstraint() {
+        table.requireRelationships();
         for (TableColumn relatedColumn : children.keySet()) {
             ForeignKeyConstraint constraint = children.remove(relatedColumn);
             relatedColumn.removeParent(this);
@@ -410,6 +470,7 @@ public class TableColumn {
      * Disassociate all children from this column
      */
     public void unlinkChildren() {
+        table.requireRelationships();
         for (TableColumn child : children.keySet())
             child.removeParent(this);
         children.clear();
@@ -421,6 +482,7 @@ public class TableColumn {
      * @return Set
      */
     public Set<TableColumn> getChildren() {
+        table.requireRelationships();
         return children.keySet();
     }
 
@@ -429,6 +491,7 @@ public class TableColumn {
      * (specified 'child' to this 'parent' column)
      */
     public ForeignKeyConstraint getChildConstraint(TableColumn child) {
+        table.requireRelationships();
         return children.get(child);
     }
 
@@ -503,4 +566,20 @@ public class TableColumn {
     public boolean allowsImpliedChildren() {
         return allowImpliedChildren;
     }
-}
\ No newline at end of file
+
+    /**
+     * Restore the state that isn't covered by
+     * {@link #TableColumn(Table, String, Object, String, int, int, String, boolean, Object, String)}
+     *
+     * @param allowImpliedParents
+     * @param allowImpliedChildren
+     * @param isExcluded
+     * @param isAllExcluded
+     */
+    void restore(boolean allowImpliedParents, boolean allowImpliedChildren, boolean isExcluded, boolean isAllExcluded) {
+        this.allowImpliedParents = allowImpliedParents;
+        this.allowImpliedChildren = allowImpliedChildren;
+        this.isExcluded = isExcluded;
+        this.isAllExcluded = isAllExcluded;
+    }
+}
\ No newline at end of file
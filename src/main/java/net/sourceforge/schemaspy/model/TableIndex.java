@@ -41,6 +41,17 @@ public class TableIndex implements Comparable<TableIndex> {
         isUnique = !rs.getBoolean("NON_UNIQUE");
     }
 
+    /**
+     * An index that was restored from a {@link DatabaseSnapshot}
+     *
+     * @param name
+     * @param isUnique
+     */
+    TableIndex(String name, boolean isUnique) {
+        this.name = name;
+        this.isUnique = isUnique;
+    }
+
     public void setId(Object id) {
         this.id = id;
     }
@@ -157,4 +168,4 @@ public class TableIndex implements Comparable<TableIndex> {
             return ((Number)thisId).intValue() - ((Number)otherId).intValue();
         return thisId.toString().compareToIgnoreCase(otherId.toString());
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
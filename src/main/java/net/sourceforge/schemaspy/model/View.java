@@ -18,11 +18,11 @@
  */
 package schemaspy.model;
 
-import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.SQLException;
 import java.util.Properties;
 import java.util.regex.Pattern;
+import schemaspy.util.ResultSetColumns;
 
 /**
  * Treat views as tables that have no rows and are represented by the SQL that
@@ -36,7 +36,9 @@ public class View extends Table {
      * @param schema
      * @param name
      * @param remarks
-     * @param viewSql
+     * @param viewSql the SQL that defines the view, <code>null</code> to
+     *          query it with <code>selectViewSql</code> or an empty string if
+     *          it's already known that it can't be determined
      * @param properties
      * @param excludeIndirectColumns
      * @param excludeColumns
@@ -46,7 +48,23 @@ public class View extends Table {
                 Properties properties,
                 Pattern excludeIndirectColumns, Pattern excludeColumns) throws SQLException {
         super(db, schema, name, remarks, properties, excludeIndirectColumns, excludeColumns);
+        setViewSql(viewSql);
+    }
+
+    /**
+     * Construct a view without querying any of its details.
+     * The caller is responsible for populating its columns, indexes and
+     * primary keys (e.g. from metadata that was harvested for the whole schema).
+     *
+     * @see #View(Database, String, String, String, String, Properties, Pattern, Pattern)
+     */
+    View(Database db, String schema, String name, String remarks, String viewSql,
+                Properties properties) throws SQLException {
+        super(db, schema, name, remarks, properties);
+        setViewSql(viewSql);
+    }
 
+    private void setViewSql(String viewSql) throws SQLException {
         if (viewSql == null)
             viewSql = fetchViewSql();
 
@@ -83,18 +101,16 @@ public class View extends Table {
         if (selectViewSql == null)
             return null;
 
-        PreparedStatement stmt = null;
         ResultSet rs = null;
 
         try {
-            stmt = db.prepareStatement(selectViewSql, getName());
-            rs = stmt.executeQuery();
+            // the same statement is reused for each view (so it's not ours to close)
+            rs = db.prepareReusableStatement(selectViewSql, getName()).executeQuery();
+            ResultSetColumns columns = new ResultSetColumns(rs);
             while (rs.next()) {
-                try {
+                if (columns.has("view_definition"))
                     return rs.getString("view_definition");
-                } catch (SQLException tryOldName) {
-                    return rs.getString("text");
-                }
+                return rs.getString("text");
             }
             return null;
         } catch (SQLException sqlException) {
@@ -103,8 +119,6 @@ public class View extends Table {
         } finally {
             if (rs != null)
                 rs.close();
-            if (stmt != null)
-                stmt.close();
         }
     }
 }
@@ -0,0 +1,245 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package schemaspy.util;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * Limits how many units of work (e.g. collecting the details of a table)
+ * run against the database at once and, optionally, how many start per second.<p/>
+ *
+ * When adaptive, the limit is adjusted AIMD-style (additive increase,
+ * multiplicative decrease) based on the latency and failures of the
+ * completed work: it starts at 1 and grows by one while latency stays
+ * close to the best that we've seen, and is halved as soon as latency
+ * degrades or more than a tenth of the work has queries fail (timeouts,
+ * too many sessions, etc.).  It never exceeds the hard cap.<p/>
+ *
+ * Waiting is done with {@link Lock}s so that virtual threads
+ * don't pin their carrier threads.
+ */
+public class ConcurrencyController {
+    private static final int MIN_WINDOW = 8;
+    private static final double FLAT = 1.2;        // p50 within 20% of the best is "flat"
+    private static final double DEGRADED_P50 = 1.5;
+    private static final double DEGRADED_P95 = 2.0;
+    private static final double ERROR_RATE = 0.1;
+    private static final double BASELINE_DRIFT = 1.1;  // let the baseline follow a database that's just slower now
+
+    private final int maxConcurrency;
+    private final boolean adaptive;
+    private final long minNanosBetweenStarts;
+    private int limit;
+    private int peakLimit;
+    private int inFlight;
+    private long nextStart;
+    private final List<Long> window = new ArrayList<Long>();
+    private int windowFailures;     // units of work in the window that had failures
+    private double baselineP50 = Double.MAX_VALUE;
+    private double baselineP95 = Double.MAX_VALUE;
+    private int numCompleted;
+    private int numFailures;
+    private int numIncreases;
+    private int numDecreases;
+    private long totalNanos;
+    private final Lock lock = new ReentrantLock();
+    private final Condition changed = lock.newCondition();
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * @param maxConcurrency hard cap on the number of concurrent units of work
+     * @param adaptive <code>true</code> to adjust the limit based on latency and failures,
+     *          <code>false</code> to always allow <code>maxConcurrency</code>
+     * @param maxStartsPerSecond maximum rate at which units of work can start,
+     *          0 for no limit
+     */
+    public ConcurrencyController(int maxConcurrency, boolean adaptive, int maxStartsPerSecond) {
+        this.maxConcurrency = Math.max(maxConcurrency, 1);
+        this.adaptive = adaptive;
+        minNanosBetweenStarts = maxStartsPerSecond > 0 ? TimeUnit.SECONDS.toNanos(1) / maxStartsPerSecond : 0;
+        limit = adaptive ? 1 : this.maxConcurrency;
+        peakLimit = limit;
+        nextStart = System.nanoTime();
+    }
+
+    /**
+     * Wait until another unit of work is allowed to start
+     *
+     * @throws InterruptedException
+     */
+    public void acquire() throws InterruptedException {
+        lock.lock();
+        try {
+            while (inFlight >= limit)
+                changed.await();
+
+            ++inFlight;
+
+            if (minNanosBetweenStarts > 0) {
+                long now = System.nanoTime();
+                long start = Math.max(now, nextStart);
+                nextStart = start + minNanosBetweenStarts;
+                long delay = start - now;
+                while (delay > 0)
+                    delay = changed.awaitNanos(delay);
+            }
+        } catch (InterruptedException exc) {
+            --inFlight;
+            changed.signalAll();
+            throw exc;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Record the completion of a unit of work that was {@link #acquire() acquired}
+     *
+     * @param elapsedNanos how long the work took
+     * @param failures how many of its queries failed (whether or not the work itself did)
+     */
+    public void release(long elapsedNanos, int failures) {
+        lock.lock();
+        try {
+            --inFlight;
+            ++numCompleted;
+            totalNanos += elapsedNanos;
+            numFailures += failures;
+
+            if (adaptive) {
+                window.add(new Long(elapsedNanos));
+                if (failures > 0)
+                    ++windowFailures;
+                if (window.size() >= Math.max(MIN_WINDOW, 2 * limit))
+                    adjust();
+            }
+
+            changed.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the current limit on concurrent units of work
+     */
+    public int getLimit() {
+        lock.lock();
+        try {
+            return limit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the highest limit reached
+     */
+    public int getPeakLimit() {
+        lock.lock();
+        try {
+            return peakLimit;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a one-line summary of what the controller saw and did
+     */
+    public String getSummary() {
+        lock.lock();
+        try {
+            StringBuilder summary = new StringBuilder();
+            summary.append(numCompleted).append(" completed");
+            if (numCompleted > 0)
+                summary.append(" (average ").append(toMillis(totalNanos / numCompleted)).append("ms)");
+            summary.append(" with ").append(numFailures).append(" failed queries");
+            if (adaptive) {
+                summary.append(", concurrency peaked at ").append(peakLimit);
+                summary.append(" and ended at ").append(limit);
+                summary.append(" of ").append(maxConcurrency);
+                summary.append(" after ").append(numIncreases).append(" increases");
+                summary.append(" and ").append(numDecreases).append(" decreases");
+            } else {
+                summary.append(", concurrency ").append(limit);
+            }
+            if (minNanosBetweenStarts > 0)
+                summary.append(", at most ").append(TimeUnit.SECONDS.toNanos(1) / minNanosBetweenStarts).append("/sec");
+            return summary.toString();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Evaluate the latest window of completed work and adjust the limit.
+     * Must be called with the lock held.
+     */
+    private void adjust() {
+        List<Long> sorted = new ArrayList<Long>(window);
+        Collections.sort(sorted);
+        double p50 = sorted.get(sorted.size() / 2).longValue();
+        double p95 = sorted.get(Math.min(sorted.size() - 1, (int)(sorted.size() * 0.95))).longValue();
+        double errorRate = (double)windowFailures / window.size();
+        int previous = limit;
+        String reason;
+
+        if (errorRate > ERROR_RATE) {
+            limit = Math.max(1, limit / 2);
+            reason = "failures";
+        } else if (p50 > baselineP50 * DEGRADED_P50 || p95 > baselineP95 * DEGRADED_P95) {
+            limit = Math.max(1, limit / 2);
+            reason = "latency degraded";
+        } else if (p50 <= baselineP50 * FLAT && limit < maxConcurrency) {
+            ++limit;
+            reason = "latency flat";
+        } else {
+            reason = null;
+        }
+
+        if (limit > previous)
+            ++numIncreases;
+        else if (limit < previous)
+            ++numDecreases;
+        peakLimit = Math.max(peakLimit, limit);
+
+        if (limit != previous) {
+            logger.info("Concurrency " + previous + " -> " + limit + " (" + reason +
+                        ": p50 " + toMillis((long)p50) + "ms, p95 " + toMillis((long)p95) + "ms, " +
+                        windowFailures + " of " + window.size() + " had failures)");
+        }
+
+        baselineP50 = Math.min(p50, baselineP50 * BASELINE_DRIFT);
+        baselineP95 = Math.min(p95, baselineP95 * BASELINE_DRIFT);
+        window.clear();
+        windowFailures = 0;
+    }
+
+    private static long toMillis(long nanos) {
+        return TimeUnit.NANOSECONDS.toMillis(nanos);
+    }
+}
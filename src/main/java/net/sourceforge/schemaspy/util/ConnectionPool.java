@@ -0,0 +1,349 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package schemaspy.util;
+
+import java.sql.Connection;
+import java.sql.DatabaseMetaData;
+import java.sql.Driver;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.Iterator;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.concurrent.locks.Condition;
+import java.util.concurrent.locks.Lock;
+import java.util.concurrent.locks.ReentrantLock;
+import java.util.logging.Logger;
+
+/**
+ * A small pool of connections to the database being analyzed so that each
+ * metadata worker can own its own {@link Connection} and {@link DatabaseMetaData}
+ * rather than having all of them serialized on a single connection.<p/>
+ *
+ * The pool starts out with the primary connection and lazily opens
+ * additional connections (with the same driver, URL and properties)
+ * as workers ask for them, up to the specified maximum.  Connections are
+ * opened without holding the pool's lock so a slow login doesn't hold up
+ * threads that are acquiring or releasing other connections.<p/>
+ *
+ * Waiting is done with {@link Lock}s rather than <code>synchronized</code>/<code>wait()</code>
+ * so that virtual threads blocked on the pool don't pin their carrier threads.
+ */
+public class ConnectionPool {
+    private final Driver driver;
+    private final String connectionURL;
+    private final Properties connectionProperties;
+    private final Connection primary;
+    private int maxConnections;
+    private int numOpening;     // connections being opened (outside of the lock)
+    private final List<Connection> connections = new ArrayList<Connection>();
+    private final LinkedList<Connection> idle = new LinkedList<Connection>();
+    private final Map<Connection, DatabaseMetaData> metadata = new HashMap<Connection, DatabaseMetaData>();
+    private final Map<Connection, StatementCache> statements = new HashMap<Connection, StatementCache>();
+    private final Lock lock = new ReentrantLock();
+    private final Condition released = lock.newCondition();
+    private boolean closed;
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * @param driver driver used to open additional connections
+     * @param connectionURL URL used to open additional connections
+     * @param connectionProperties properties (user, password, etc.) used to open additional connections
+     * @param primary the connection that's already been established
+     * @param maxConnections maximum number of connections (including <code>primary</code>)
+     */
+    public ConnectionPool(Driver driver, String connectionURL, Properties connectionProperties,
+                            Connection primary, int maxConnections) {
+        this.driver = driver;
+        this.connectionURL = connectionURL;
+        this.connectionProperties = connectionProperties;
+        this.primary = primary;
+        this.maxConnections = Math.max(maxConnections, 1);
+
+        connections.add(primary);
+        idle.add(primary);
+    }
+
+    /**
+     * Returns the connection that the pool was created with.
+     * It remains open after the pool is {@link #close() closed}.
+     */
+    public Connection getConnection() {
+        return primary;
+    }
+
+    /**
+     * Returns the maximum number of connections that this pool will hand out
+     */
+    public int getMaxConnections() {
+        lock.lock();
+        try {
+            return maxConnections;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Take a connection for the exclusive use of the calling thread,
+     * waiting for one to be {@link #release(Connection) released} if
+     * the pool is exhausted.
+     *
+     * @return
+     * @throws SQLException
+     */
+    public Connection acquire() throws SQLException {
+        return acquire(true);
+    }
+
+    /**
+     * Take a connection for the exclusive use of the calling thread,
+     * waiting for one to be {@link #release(Connection) released} if
+     * the pool is exhausted.
+     *
+     * @param includePrimary <code>false</code> if the primary connection must not be
+     *          handed out (e.g. because another thread is still using it outside of the pool)
+     * @return
+     * @throws SQLException if the primary connection is excluded and the
+     *          pool can't grow beyond it
+     */
+    public Connection acquire(boolean includePrimary) throws SQLException {
+        lock.lock();
+        try {
+            while (true) {
+                for (Iterator<Connection> iter = idle.iterator(); iter.hasNext(); ) {
+                    Connection connection = iter.next();
+                    if (includePrimary || connection != primary) {
+                        iter.remove();
+                        return connection;
+                    }
+                }
+
+                if (connections.size() + numOpening < maxConnections) {
+                    int number = connections.size() + numOpening + 1;
+                    Connection connection;
+                    ++numOpening;
+                    lock.unlock();
+                    try {
+                        connection = open(number);
+                    } finally {
+                        lock.lock();
+                        --numOpening;
+                    }
+
+                    if (connection == null) {
+                        // make do with what we've got (or are about to get)
+                        maxConnections = connections.size() + numOpening;
+                        logger.warning("Limiting metadata collection to " + Math.max(maxConnections, 1) + " connection(s)");
+                        released.signalAll();
+                    } else if (closed) {
+                        close(connection);
+                    } else {
+                        connections.add(connection);
+                        return connection;
+                    }
+                } else if (!includePrimary && connections.size() + numOpening == 1) {
+                    throw new SQLException("No connections are available other than the primary connection");
+                } else {
+                    try {
+                        released.await();
+                    } catch (InterruptedException interrupted) {
+                        throw new SQLException("Interrupted while waiting for a connection");
+                    }
+                }
+            }
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Return a connection that was {@link #acquire() acquired} to the pool
+     *
+     * @param connection
+     */
+    public void release(Connection connection) {
+        lock.lock();
+        try {
+            idle.addLast(connection);
+            released.signalAll();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns the (cached) {@link DatabaseMetaData} associated with a pooled connection
+     *
+     * @param connection
+     * @return
+     * @throws SQLException
+     */
+    public DatabaseMetaData getMetaData(Connection connection) throws SQLException {
+        lock.lock();
+        try {
+            DatabaseMetaData meta = metadata.get(connection);
+            if (meta == null) {
+                meta = connection.getMetaData();
+                metadata.put(connection, meta);
+            }
+
+            return meta;
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Returns a statement prepared from the specified (positional) SQL that's
+     * kept open for reuse with the specified connection until the pool is
+     * {@link #close() closed}.  Settings that callers commonly change per use
+     * (currently just the query timeout) are reset each time it's returned.<p/>
+     *
+     * The statement is only meant to be used by the thread that's
+     * {@link #acquire() acquired} the connection.
+     *
+     * @param connection
+     * @param sql
+     * @return
+     * @throws SQLException if the pool has been closed
+     */
+    public PreparedStatement prepareStatement(Connection connection, String sql) throws SQLException {
+        StatementCache prepared;
+
+        lock.lock();
+        try {
+            if (closed)
+                throw new SQLException("The connection pool has been closed so statements can no longer be pooled");
+
+            prepared = statements.get(connection);
+            if (prepared == null) {
+                prepared = new StatementCache();
+                statements.put(connection, prepared);
+            }
+        } finally {
+            lock.unlock();
+        }
+
+        // the lock only keeps the cache consistent with close().  it's released before
+        // the statement is used, so using it is up to the thread that acquired the connection
+        prepared.lock.lock();
+        try {
+            PreparedStatement stmt = prepared.statements.get(sql);
+            if (stmt == null) {
+                stmt = connection.prepareStatement(sql);
+                prepared.statements.put(sql, stmt);
+            } else {
+                stmt.setQueryTimeout(0);
+            }
+
+            return stmt;
+        } finally {
+            prepared.lock.unlock();
+        }
+    }
+
+    /**
+     * Close all of the connections that the pool opened
+     * along with any statements that it was holding open.
+     * The primary connection is left open (and is all that the pool
+     * will hand out from then on), but statements can no longer be
+     * {@link #prepareStatement(Connection, String) prepared} since
+     * nothing would close them.
+     */
+    public void close() {
+        lock.lock();
+        try {
+            closed = true;
+            maxConnections = 1;
+
+            for (StatementCache prepared : statements.values()) {
+                prepared.lock.lock();
+                try {
+                    for (PreparedStatement stmt : prepared.statements.values()) {
+                        try {
+                            stmt.close();
+                        } catch (SQLException exc) {
+                            logger.fine("Failed to close pooled statement: " + exc);
+                        }
+                    }
+                } finally {
+                    prepared.lock.unlock();
+                }
+            }
+
+            for (Connection connection : connections) {
+                if (connection != primary)
+                    close(connection);
+            }
+
+            connections.clear();
+            connections.add(primary);
+            idle.clear();
+            idle.add(primary);
+            metadata.clear();
+            statements.clear();
+        } finally {
+            lock.unlock();
+        }
+    }
+
+    /**
+     * Open an additional connection.  Called without holding the lock.
+     * If the database refuses then the caller stops trying to grow the pool.
+     *
+     * @param number which connection this is, for messages
+     * @return the new connection or <code>null</code> if the pool can't grow
+     */
+    private Connection open(int number) {
+        Connection connection = null;
+
+        try {
+            connection = driver.connect(connectionURL, connectionProperties);
+        } catch (SQLException exc) {
+            logger.warning("Failed to open additional connection #" + number + ": " + exc);
+        }
+
+        if (connection != null)
+            logger.fine("Opened additional connection #" + number);
+
+        return connection;
+    }
+
+    private void close(Connection connection) {
+        try {
+            connection.close();
+        } catch (SQLException exc) {
+            logger.fine("Failed to close pooled connection: " + exc);
+        }
+    }
+
+    /**
+     * The statements prepared for one connection, keyed by their SQL.
+     * Its lock guards the map, not the use of the statements.
+     */
+    private static class StatementCache {
+        private final Lock lock = new ReentrantLock();
+        private final Map<String, PreparedStatement> statements = new HashMap<String, PreparedStatement>();
+    }
+}
@@ -0,0 +1,194 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package schemaspy.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the records of a CSV or TSV file one at a time so that arbitrarily
+ * large exports can be processed without reading them into memory.<p/>
+ *
+ * Comma separated values follow RFC 4180: fields that contain commas,
+ * quotes or line breaks are quoted and their quotes are doubled.<p/>
+ *
+ * Tab separated values follow the conventions of <code>mysql --batch</code>,
+ * <code>SELECT ... INTO OUTFILE</code> and PostgreSQL's <code>COPY</code>:
+ * tabs, line breaks and backslashes within fields are backslash escaped.<p/>
+ *
+ * Unquoted fields of <code>\N</code> or <code>NULL</code> are returned as
+ * <code>null</code>, as are empty unquoted fields of CSV files.
+ */
+public class DelimitedReader {
+    private final BufferedReader in;
+    private final char delimiter;
+    private final boolean escaped;
+    private int lineNumber;
+    private int recordLineNumber;
+
+    /**
+     * @param in
+     * @param delimiter <code>','</code> for CSV or <code>'\t'</code> for TSV
+     */
+    public DelimitedReader(Reader in, char delimiter) {
+        this.in = in instanceof BufferedReader ? (BufferedReader)in : new BufferedReader(in, 64 * 1024);
+        this.delimiter = delimiter;
+        escaped = delimiter == '\t';
+    }
+
+    /**
+     * Returns the delimiter implied by the specified file's name:
+     * tabs for <code>.tsv</code> and <code>.txt</code> files (optionally gzip'd),
+     * commas for anything else
+     *
+     * @param fileName
+     * @return
+     */
+    public static char getDelimiter(String fileName) {
+        String name = fileName.toLowerCase();
+        if (name.endsWith(".gz"))
+            name = name.substring(0, name.length() - 3);
+        return name.endsWith(".tsv") || name.endsWith(".txt") ? '\t' : ',';
+    }
+
+    /**
+     * Returns the fields of the next record or <code>null</code>
+     * at the end of the stream.  Blank lines are skipped.
+     *
+     * @return
+     * @throws IOException
+     */
+    public String[] readRecord() throws IOException {
+        String line;
+        do {
+            line = in.readLine();
+            if (line == null)
+                return null;
+            ++lineNumber;
+        } while (line.length() == 0);
+
+        recordLineNumber = lineNumber;
+        List<String> fields = new ArrayList<String>();
+        StringBuilder field = new StringBuilder();
+        int pos = 0;
+
+        while (true) {
+            boolean quoted = false;
+            field.setLength(0);
+
+            if (!escaped && pos < line.length() && line.charAt(pos) == '"') {
+                // quoted field, possibly spanning lines
+                quoted = true;
+                ++pos;
+                while (true) {
+                    if (pos >= line.length()) {
+                        line = in.readLine();
+                        if (line == null)
+                            throw new IOException("Unterminated quoted field that starts on line " + recordLineNumber);
+                        ++lineNumber;
+                        field.append('\n');
+                        pos = 0;
+                        continue;
+                    }
+
+                    char ch = line.charAt(pos++);
+                    if (ch == '"') {
+                        if (pos < line.length() && line.charAt(pos) == '"') {
+                            field.append('"');
+                            ++pos;
+                        } else {
+                            break;
+                        }
+                    } else {
+                        field.append(ch);
+                    }
+                }
+            }
+
+            // the (rest of the) unquoted field
+            int start = pos;
+            while (pos < line.length() && line.charAt(pos) != delimiter) {
+                char ch = line.charAt(pos++);
+                if (escaped && ch == '\\' && pos >= line.length()) {
+                    // an escaped line break (INTO OUTFILE)
+                    String next = in.readLine();
+                    if (next == null)
+                        break;
+                    ++lineNumber;
+                    field.append('\n');
+                    line = next;
+                    pos = 0;
+                    start = 0;
+                } else if (escaped && ch == '\\') {
+                    char next = line.charAt(pos++);
+                    switch (next) {
+                        case 't':
+                            field.append('\t');
+                            break;
+                        case 'n':
+                            field.append('\n');
+                            break;
+                        case 'r':
+                            field.append('\r');
+                            break;
+                        case '0':
+                            field.append('\0');
+                            break;
+                        default:
+                            field.append(next);
+                    }
+                } else {
+                    field.append(ch);
+                }
+            }
+
+            fields.add(quoted ? field.toString() : toValue(line.substring(start, pos), field));
+
+            if (pos >= line.length())
+                break;
+            ++pos;  // past the delimiter
+        }
+
+        return fields.toArray(new String[fields.size()]);
+    }
+
+    /**
+     * Returns the line number that the last record returned by
+     * {@link #readRecord()} started on
+     */
+    public int getLineNumber() {
+        return recordLineNumber;
+    }
+
+    public void close() throws IOException {
+        in.close();
+    }
+
+    /**
+     * Returns the value of an unquoted field given its raw and unescaped text
+     */
+    private String toValue(String raw, StringBuilder field) {
+        if (raw.equals("\\N") || raw.equals("NULL") || (!escaped && raw.length() == 0))
+            return null;
+        return field.toString();
+    }
+}
@@ -0,0 +1,306 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package schemaspy.util;
+
+import java.io.BufferedReader;
+import java.io.File;
+import java.io.FileInputStream;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.OutputStreamWriter;
+import java.io.Writer;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.logging.Logger;
+import schemaspy.Config;
+
+/**
+ * A directory of the images and image maps that dot generated, keyed by
+ * a hash of the <code>.dot</code> that they were generated from and the
+ * settings that they were generated with.  Diagrams of graphs that haven't
+ * changed since they were cached are copied from the cache rather than
+ * rendered again.<p/>
+ *
+ * The comments at the top of <code>.dot</code> files (dot version, OS,
+ * SchemaSpy revision) aren't part of the hash since they don't affect
+ * the diagram.<p/>
+ *
+ * When the cache takes up more than its limit the least recently used
+ * diagrams are evicted.
+ */
+public class DiagramCache {
+    private static final String IMAGE = ".image";
+    private static final String MAP = ".cmapx";
+    private static final String CHARSET = "UTF-8";
+
+    private final File dir;
+    private final long maxBytes;
+    private long bytes = -1;    // total size of the cache, determined when first needed
+    private int hits;
+    private int misses;
+    private int evictions;
+    private final Logger logger = Logger.getLogger(getClass().getName());
+
+    /**
+     * @param dir
+     * @param maxMegabytes the most space that the cached diagrams can take up
+     * @throws IOException if the directory can't be created
+     */
+    public DiagramCache(File dir, int maxMegabytes) throws IOException {
+        this.dir = dir;
+        maxBytes = maxMegabytes * 1024L * 1024;
+
+        if (!dir.isDirectory() && !dir.mkdirs())
+            throw new IOException("Failed to create diagram cache directory '" + dir + "'");
+
+        // the limit might have been lowered since the last run
+        if (getSize() > maxBytes)
+            evict();
+    }
+
+    /**
+     * Returns the key of the diagram generated from the specified
+     * <code>.dot</code> with the specified settings (format, renderer, etc.)
+     *
+     * @param dotFile
+     * @param settings
+     * @return
+     * @throws IOException
+     */
+    public String getKey(File dotFile, String[] settings) throws IOException {
+        MessageDigest digest;
+        try {
+            digest = MessageDigest.getInstance("SHA-1");
+        } catch (NoSuchAlgorithmException exc) {
+            throw new RuntimeException(exc);    // every JRE has SHA-1
+        }
+
+        for (String setting : settings) {
+            if (setting != null)
+                digest.update(setting.getBytes(CHARSET));
+            digest.update((byte)0);
+        }
+
+        BufferedReader in = new BufferedReader(new InputStreamReader(new FileInputStream(dotFile), Config.DOT_CHARSET));
+        try {
+            boolean inHeader = true;
+            String line;
+            while ((line = in.readLine()) != null) {
+                if (inHeader && line.startsWith("//"))
+                    continue;   // volatile header comments
+                inHeader = false;
+                digest.update(line.getBytes(CHARSET));
+                digest.update((byte)'\n');
+            }
+        } finally {
+            in.close();
+        }
+
+        StringBuilder hex = new StringBuilder();
+        for (byte b : digest.digest())
+            hex.append(Character.forDigit((b >> 4) & 0xf, 16)).append(Character.forDigit(b & 0xf, 16));
+        return hex.toString();
+    }
+
+    /**
+     * If the diagram with the specified key is cached then copy its image
+     * to <code>diagramFile</code> and return its image map.
+     *
+     * @param key
+     * @param diagramFile
+     * @return the image map or <code>null</code> if the diagram isn't cached
+     */
+    public synchronized String get(String key, File diagramFile) {
+        File image = new File(dir, key + IMAGE);
+        File map = new File(dir, key + MAP);
+
+        if (image.isFile() && map.isFile()) {
+            try {
+                String imageMap = read(map);
+                copy(image, diagramFile);
+                image.setLastModified(System.currentTimeMillis());
+                ++hits;
+                return imageMap;
+            } catch (IOException exc) {
+                logger.warning("Ignoring unreadable cached diagram " + image + ": " + exc);
+                remove(key);
+            }
+        }
+
+        ++misses;
+        return null;
+    }
+
+    /**
+     * Cache the specified diagram and its image map,
+     * evicting the least recently used diagrams if needed
+     *
+     * @param key
+     * @param diagramFile
+     * @param imageMap
+     * @throws IOException
+     */
+    public synchronized void put(String key, File diagramFile, String imageMap) throws IOException {
+        File image = new File(dir, key + IMAGE);
+        File map = new File(dir, key + MAP);
+        long others = getSize() - image.length() - map.length();
+
+        // the image is written last since it's what identifies an entry
+        File temp = File.createTempFile(key, ".tmp", dir);
+        try {
+            Writer out = new OutputStreamWriter(new FileOutputStream(temp), CHARSET);
+            try {
+                out.write(imageMap);
+            } finally {
+                out.close();
+            }
+            rename(temp, map);
+
+            copy(diagramFile, temp);
+            rename(temp, image);
+        } finally {
+            temp.delete();
+        }
+
+        bytes = others + image.length() + map.length();
+        if (bytes > maxBytes)
+            evict();
+    }
+
+    /**
+     * Returns a one-line summary of how the cache was used during this run
+     */
+    public synchronized String getSummary() {
+        int total = hits + misses;
+        StringBuilder summary = new StringBuilder("Diagram cache: ");
+        summary.append(hits).append(" of ").append(total).append(" diagrams reused");
+        if (total > 0)
+            summary.append(" (").append(hits * 100 / total).append("%)");
+        summary.append(", ").append(evictions).append(" evicted, ");
+        summary.append(getSize() / 1024).append("KB of ").append(maxBytes / 1024).append("KB used");
+        return summary.toString();
+    }
+
+    /**
+     * Remove the least recently used diagrams until the cache is comfortably
+     * within its limit so that we're not evicting with every new diagram
+     */
+    private void evict() {
+        long target = maxBytes / 10 * 9;
+        int evicted = 0;
+
+        List<File> images = new ArrayList<File>();
+        final Map<File, Long> lastUsed = new HashMap<File, Long>();
+        File[] files = dir.listFiles();
+        if (files != null) {
+            for (File file : files) {
+                if (file.getName().endsWith(IMAGE)) {
+                    images.add(file);
+                    lastUsed.put(file, new Long(file.lastModified()));
+                }
+            }
+        }
+
+        // least recently used first
+        Collections.sort(images, new Comparator<File>() {
+            public int compare(File image1, File image2) {
+                return lastUsed.get(image1).compareTo(lastUsed.get(image2));
+            }
+        });
+
+        for (File image : images) {
+            if (bytes <= target)
+                break;
+            String key = image.getName().substring(0, image.getName().length() - IMAGE.length());
+            bytes -= image.length() + new File(dir, key + MAP).length();
+            remove(key);
+            ++evicted;
+        }
+
+        evictions += evicted;
+        logger.fine("Evicted " + evicted + " diagrams from " + dir);
+    }
+
+    /**
+     * Returns the total size of the cache
+     */
+    private long getSize() {
+        if (bytes == -1) {
+            bytes = 0;
+            File[] files = dir.listFiles();
+            if (files != null) {
+                for (File file : files)
+                    bytes += file.length();
+            }
+        }
+
+        return bytes;
+    }
+
+    private void remove(String key) {
+        new File(dir, key + IMAGE).delete();
+        new File(dir, key + MAP).delete();
+    }
+
+    private static void rename(File from, File to) throws IOException {
+        to.delete();
+        if (!from.renameTo(to))
+            throw new IOException("Failed to rename " + from + " to " + to);
+    }
+
+    private static void copy(File from, File to) throws IOException {
+        InputStream in = new FileInputStream(from);
+        try {
+            OutputStream out = new FileOutputStream(to);
+            try {
+                byte[] buffer = new byte[16 * 1024];
+                int count;
+                while ((count = in.read(buffer)) != -1)
+                    out.write(buffer, 0, count);
+            } finally {
+                out.close();
+            }
+        } finally {
+            in.close();
+        }
+    }
+
+    private static String read(File file) throws IOException {
+        StringBuilder text = new StringBuilder();
+        InputStreamReader in = new InputStreamReader(new FileInputStream(file), CHARSET);
+        try {
+            char[] buffer = new char[8 * 1024];
+            int count;
+            while ((count = in.read(buffer)) != -1)
+                text.append(buffer, 0, count);
+        } finally {
+            in.close();
+        }
+        return text.toString();
+    }
+}
@@ -26,6 +26,7 @@ import java.io.InputStreamReader;
 import java.util.Collections; 
 import java.util.HashSet;
 import java.util.Set;
+import java.util.logging.Logger;
 import java.util.regex.Matcher;
 import java.util.regex.Pattern;
 import schemaspy.Config;
@@ -41,6 +42,9 @@ public class Dot {
     private String renderer;
     private final Set<String> validatedRenderers = Collections.synchronizedSet(new HashSet<String>());
     private final Set<String> invalidatedRenderers = Collections.synchronizedSet(new HashSet<String>());
+    private DiagramCache cache;
+    private boolean cacheResolved;
+    private final Logger logger = Logger.getLogger(getClass().getName());
 
     private Dot() {
         String versionText = null;
@@ -243,10 +247,49 @@ public class Dot {
         return dotExe;
     }
 
+    /**
+     * Returns the cache of previously generated diagrams or <code>null</code>
+     * if diagrams aren't cached
+     *
+     * @return
+     */
+    public synchronized DiagramCache getCache() {
+        if (!cacheResolved) {
+            cacheResolved = true;
+            File dir = Config.getInstance().getDiagramCacheDir();
+            if (dir != null) {
+                try {
+                    cache = new DiagramCache(dir, Config.getInstance().getDiagramCacheSize());
+                } catch (IOException exc) {
+                    logger.warning("Not caching diagrams: " + exc.getMessage());
+                }
+            }
+        }
+
+        return cache;
+    }
+
     /**
      * Using the specified .dot file generates an image returning the image's image map.
+     * If an identical graph was previously rendered with the same settings then
+     * its cached image and image map are used instead.
      */
     public String generateDiagram(File dotFile, File diagramFile) throws DotFailure {
+        DiagramCache diagramCache = getCache();
+        String cacheKey = null;
+        if (diagramCache != null) {
+            try {
+                // the graph's fonts are part of the .dot
+                cacheKey = diagramCache.getKey(dotFile, new String[] {getVersion().toString(), getFormat(), getRenderer()});
+            } catch (IOException exc) {
+                throw new DotFailure("Failed to read " + dotFile + ": " + exc);
+            }
+
+            String map = diagramCache.get(cacheKey, diagramFile);
+            if (map != null)
+                return toHtml(map);
+        }
+
         StringBuilder mapBuffer = new StringBuilder(1024);
         StringBuilder rsb = new StringBuilder();
         BufferedReader mapReader = null;
@@ -276,9 +319,15 @@ public class Dot {
             if (!diagramFile.exists())
                 throw new DotFailure("'" + commandLine + "' failed to create output file");
 
-            // dot generates post-HTML 4.0.1 output...convert trailing />'s to >'s
-            return mapBuffer.toString().replace("/>", ">").replace("href=\"","href=\"schemas?partial=").replace("tables/","").replace(".html","_table");
-            
+            if (cacheKey != null) {
+                try {
+                    diagramCache.put(cacheKey, diagramFile, mapBuffer.toString());
+                } catch (IOException exc) {
+                    logger.warning("Failed to cache " + diagramFile + ": " + exc);
+                }
+            }
+
+            return toHtml(mapBuffer.toString());
         } catch (InterruptedException interrupted) {
             throw new RuntimeException(interrupted);
         } catch (DotFailure failed) {
@@ -296,6 +345,14 @@ public class Dot {
         }
     }
 
+    /**
+     * Convert the image map generated by dot into what our pages expect
+     */
+    private static String toHtml(String map) {
+        // dot generates post-HTML 4.0.1 output...convert trailing />'s to >'s
+        return map.replace("/>", ">").replace("href=\"","href=\"schemas?partial=").replace("tables/","").replace(".html","_table");
+    }
+
     public class DotFailure extends IOException {
         private static final long serialVersionUID = 3833743270181351987L;
 
@@ -344,4 +401,4 @@ public class Dot {
             }
         }
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
@@ -0,0 +1,127 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package schemaspy.util;
+
+import java.util.ArrayList;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Translates simple regular expressions (literals, prefixes, suffixes and
+ * alternations of them, e.g. <code>ACCT_.*|.*_HIST|USERS</code>) into SQL
+ * <code>LIKE</code> patterns so that names can be filtered by the database
+ * rather than after every name has been retrieved.<p/>
+ *
+ * The patterns can match more than the expression does (<code>_</code> and
+ * <code>%</code> aren't escaped and the database might ignore case),
+ * so the expression still has to be applied to the names that are returned.
+ */
+public class LikePatterns {
+    private static final String REGEX_METACHARS = "^$?*+()[]{}";
+
+    private LikePatterns() {
+    }
+
+    /**
+     * Returns the <code>LIKE</code> patterns that, between them, match
+     * (at least) the names that the specified expression
+     * {@link java.util.regex.Matcher#matches() matches}.
+     *
+     * @param regex
+     * @return <code>null</code> if the expression is too complex to translate
+     *          or matches anything
+     */
+    public static List<String> fromRegex(Pattern regex) {
+        if ((regex.flags() & (Pattern.CASE_INSENSITIVE | Pattern.COMMENTS | Pattern.LITERAL)) != 0)
+            return null;
+
+        String expr = regex.pattern();
+        if (expr.startsWith("^"))
+            expr = expr.substring(1);
+        if (expr.endsWith("$") && !expr.endsWith("\\$"))
+            expr = expr.substring(0, expr.length() - 1);
+
+        // a group around the whole thing, e.g. (ORDERS|ORDER_LINES)
+        if (expr.endsWith(")") && expr.indexOf(')') == expr.length() - 1) {
+            if (expr.startsWith("(?:") && expr.lastIndexOf('(') == 0)
+                expr = expr.substring(3, expr.length() - 1);
+            else if (expr.startsWith("(") && expr.lastIndexOf('(') == 0)
+                expr = expr.substring(1, expr.length() - 1);
+        }
+
+        Set<String> patterns = new LinkedHashSet<String>();
+        StringBuilder like = new StringBuilder();
+
+        for (int i = 0; i < expr.length(); ++i) {
+            char ch = expr.charAt(i);
+            char next = i + 1 < expr.length() ? expr.charAt(i + 1) : 0;
+
+            if (ch == '|') {
+                patterns.add(collapse(like));
+                like = new StringBuilder();
+            } else if (ch == '.') {
+                if (next == '*') {
+                    like.append('%');
+                    ++i;
+                } else if (next == '+') {
+                    like.append("_%");
+                    ++i;
+                } else {
+                    like.append('_');
+                }
+            } else if (ch == '\\') {
+                // escaped metacharacters are literals, but \d, \w, etc. are classes
+                if (next == 0 || Character.isLetterOrDigit(next))
+                    return null;
+                like.append(next);
+                ++i;
+            } else if (REGEX_METACHARS.indexOf(ch) != -1) {
+                return null;
+            } else {
+                like.append(ch);
+            }
+        }
+
+        patterns.add(collapse(like));
+
+        if (patterns.contains("%"))
+            return null;
+        return new ArrayList<String>(patterns);
+    }
+
+    /**
+     * Returns <code>true</code> if the specified <code>LIKE</code> pattern has
+     * wildcards (i.e. it isn't simply a name)
+     *
+     * @param likePattern
+     * @return
+     */
+    public static boolean hasWildcards(String likePattern) {
+        return likePattern.indexOf('%') != -1 || likePattern.indexOf('_') != -1;
+    }
+
+    private static String collapse(StringBuilder like) {
+        String pattern = like.toString();
+        while (pattern.indexOf("%%") != -1)
+            pattern = pattern.replace("%%", "%");
+        return pattern;
+    }
+}
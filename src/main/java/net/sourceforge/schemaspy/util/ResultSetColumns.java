@@ -0,0 +1,94 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package schemaspy.util;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.Map;
+
+/**
+ * Resolves which columns a {@link ResultSet} has, by name, once rather than
+ * finding out that an optional column is missing by catching an exception
+ * for every row.<p/>
+ *
+ * Some databases don't play nice with their metadata
+ * (e.g. Oracle doesn't have a REMARKS column at all) and custom SQL
+ * from the .properties files is free to leave out optional columns.
+ *
+ * @see #getString(String)
+ */
+public class ResultSetColumns {
+    private final ResultSet rs;
+    private final Map<String, Integer> indexes = new CaseInsensitiveMap<Integer>();
+
+    /**
+     * @param rs
+     * @throws SQLException
+     */
+    public ResultSetColumns(ResultSet rs) throws SQLException {
+        this.rs = rs;
+
+        ResultSetMetaData rsMeta = rs.getMetaData();
+        int numColumns = rsMeta.getColumnCount();
+
+        // like the ResultSet, the first column with a given name wins
+        for (int i = 1; i <= numColumns; ++i) {
+            String label = rsMeta.getColumnLabel(i);
+            if (label != null && !indexes.containsKey(label))
+                indexes.put(label, new Integer(i));
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if the result set has a column
+     * with the specified name (ignoring case)
+     *
+     * @param columnName
+     * @return
+     */
+    public boolean has(String columnName) {
+        return indexes.containsKey(columnName);
+    }
+
+    /**
+     * Returns the 1-based index of the specified column
+     * or 0 if the result set doesn't have it
+     *
+     * @param columnName
+     * @return
+     */
+    public int getIndex(String columnName) {
+        Integer index = indexes.get(columnName);
+        return index == null ? 0 : index.intValue();
+    }
+
+    /**
+     * Returns the value of the specified column in the current row
+     * or <code>null</code> if the result set doesn't have the column
+     *
+     * @param columnName
+     * @return
+     * @throws SQLException
+     */
+    public String getString(String columnName) throws SQLException {
+        int index = getIndex(columnName);
+        return index == 0 ? null : rs.getString(index);
+    }
+}
@@ -0,0 +1,379 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package schemaspy.util;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Set;
+import java.util.regex.Pattern;
+
+/**
+ * Splits a stream of SQL (a script, dump or migration) into its statements
+ * one at a time so that arbitrarily large scripts can be processed without
+ * reading them into memory.<p/>
+ *
+ * Statements end with a <code>;</code>, a line with just <code>GO</code> or
+ * <code>/</code> on it or whatever a MySQL-style <code>DELIMITER</code> line
+ * specifies.  Terminators within quotes (including PostgreSQL's dollar quotes)
+ * and comments are ignored.  Comments are replaced with a space except for
+ * MySQL's executable comments (<code>/*!40101 ... *&#47;</code>), whose content
+ * is kept.  Backslashes only escape within quotes once the script has shown
+ * itself to be MySQL's (with a backtick or an executable comment) or within
+ * PostgreSQL's <code>E'...'</code> strings; elsewhere <code>'C:'</code> is a
+ * complete string.  The data that follows a PostgreSQL <code>COPY ... FROM stdin</code>
+ * is skipped.<p/>
+ *
+ * Statements that don't start with one of the specified keywords
+ * (<code>INSERT</code>s, typically the bulk of a dump) are skipped
+ * without being buffered.
+ */
+public class SqlStatementReader {
+    private final BufferedReader in;
+    private final Set<String> keywords;
+    private String delimiter = ";";
+    private String line;                // the line being scanned
+    private int pos;                    // where we are in it
+    private int lineNumber;
+    private int statementLineNumber;
+    private final StringBuilder statement = new StringBuilder();
+    private final StringBuilder firstWord = new StringBuilder();
+    private boolean started;            // the first word has been seen
+    private boolean skipping;           // not of interest, so not buffered
+    private boolean copying;            // skipping the data of a COPY FROM stdin
+    private char quote;                 // ', ", ` or ] if in a quoted string/identifier
+    private boolean escaping;           // backslashes escape within the current quote
+    private boolean backslashEscapes;   // MySQL-style script, so backslashes escape in all strings
+    private String dollarTag;           // if in a dollar quoted string
+    private boolean inComment;
+    private boolean inExecutableComment;
+    private static final Pattern copyFromStdin = Pattern.compile("(?is)COPY\\s.*\\sFROM\\s+stdin.*");
+
+    /**
+     * @param in
+     * @param keywords the (case insensitive) words that the statements of interest
+     *          start with, <code>null</code> for all statements
+     */
+    public SqlStatementReader(Reader in, Collection<String> keywords) {
+        this.in = in instanceof BufferedReader ? (BufferedReader)in : new BufferedReader(in, 64 * 1024);
+        if (keywords == null) {
+            this.keywords = null;
+        } else {
+            this.keywords = new HashSet<String>();
+            for (String keyword : keywords)
+                this.keywords.add(keyword.toUpperCase());
+        }
+    }
+
+    /**
+     * Returns the next statement of interest (without its terminator)
+     * or <code>null</code> at the end of the stream
+     *
+     * @return
+     * @throws IOException
+     */
+    public String readStatement() throws IOException {
+        while (true) {
+            if (line == null || pos > line.length()) {
+                line = in.readLine();
+                pos = 0;
+                if (line == null)
+                    return endStatement(); // a final statement without a terminator
+                ++lineNumber;
+
+                if (copying) {
+                    if (line.equals("\\."))
+                        copying = false;
+                    line = null;
+                    continue;
+                }
+
+                if (isBetweenStatements()) {
+                    String trimmed = line.trim();
+                    if (trimmed.regionMatches(true, 0, "DELIMITER ", 0, 10)) {
+                        delimiter = trimmed.substring(10).trim();
+                        line = null;
+                        continue;
+                    }
+                }
+
+                if (quote == 0 && dollarTag == null && !inComment && isTerminatorLine(line.trim())) {
+                    line = null;
+                    String ended = endStatement();
+                    if (ended != null)
+                        return ended;
+                    continue;
+                }
+            }
+
+            if (scan()) {
+                String ended = endStatement();
+                if (ended != null)
+                    return ended;
+            }
+        }
+    }
+
+    /**
+     * Returns <code>true</code> if what's been read so far is MySQL-style SQL,
+     * where backslashes escape characters within strings
+     */
+    public boolean hasBackslashEscapes() {
+        return backslashEscapes;
+    }
+
+    /**
+     * Returns the line number that the last statement returned by
+     * {@link #readStatement()} started on
+     */
+    public int getLineNumber() {
+        return statementLineNumber;
+    }
+
+    private boolean isBetweenStatements() {
+        return quote == 0 && dollarTag == null && !inComment && !started;
+    }
+
+    private static boolean isTerminatorLine(String line) {
+        return line.equals("/") || line.equalsIgnoreCase("GO");
+    }
+
+    /**
+     * Scan the rest of the current line, appending it to the current statement.
+     *
+     * @return <code>true</code> if a terminator was found
+     *          (the rest of the line is left to be scanned)
+     */
+    private boolean scan() {
+        int length = line.length();
+
+        while (pos < length) {
+            char ch = line.charAt(pos);
+
+            if (inComment) {
+                if (ch == '*' && pos + 1 < length && line.charAt(pos + 1) == '/') {
+                    inComment = false;
+                    ++pos;
+                }
+                ++pos;
+                continue;
+            }
+
+            if (dollarTag != null) {
+                if (line.startsWith(dollarTag, pos)) {
+                    append(dollarTag);
+                    pos += dollarTag.length();
+                    dollarTag = null;
+                } else {
+                    append(ch);
+                    ++pos;
+                }
+                continue;
+            }
+
+            if (quote != 0) {
+                append(ch);
+                if (ch == '\\' && escaping && pos + 1 < length) {
+                    append(line.charAt(++pos));
+                } else if (ch == quote) {
+                    if (quote != ']' && pos + 1 < length && line.charAt(pos + 1) == quote)
+                        append(line.charAt(++pos)); // doubled quote
+                    else
+                        quote = 0;
+                }
+                ++pos;
+                continue;
+            }
+
+            if (line.startsWith(delimiter, pos)) {
+                pos += delimiter.length();
+                return true;
+            }
+
+            switch (ch) {
+                case '-':
+                    if (pos + 1 < length && line.charAt(pos + 1) == '-') {
+                        pos = length;   // the rest of the line is a comment
+                        continue;
+                    }
+                    break;
+                case '/':
+                    if (pos + 1 < length && line.charAt(pos + 1) == '*') {
+                        append(' ');
+                        pos += 2;
+                        if (pos < length && line.charAt(pos) == '!') {
+                            // MySQL executable comment: keep its content
+                            backslashEscapes = true;
+                            ++pos;
+                            while (pos < length && Character.isDigit(line.charAt(pos)))
+                                ++pos;
+                            inExecutableComment = true;
+                        } else {
+                            inComment = true;
+                        }
+                        continue;
+                    }
+                    break;
+                case '*':
+                    if (inExecutableComment && pos + 1 < length && line.charAt(pos + 1) == '/') {
+                        inExecutableComment = false;
+                        append(' ');
+                        pos += 2;
+                        continue;
+                    }
+                    break;
+                case '\'':
+                    quote = ch;
+                    escaping = backslashEscapes || isEscapePrefix(line, pos);
+                    break;
+                case '`':
+                    backslashEscapes = true;
+                    quote = ch;
+                    escaping = false;
+                    break;
+                case '"':
+                    quote = ch;
+                    escaping = false;
+                    break;
+                case '[':
+                    quote = ']';
+                    escaping = false;
+                    break;
+                case '$':
+                    String tag = getDollarTag(line, pos);
+                    if (tag != null) {
+                        dollarTag = tag;
+                        append(tag);
+                        pos += tag.length();
+                        continue;
+                    }
+                    break;
+            }
+
+            append(ch);
+            ++pos;
+        }
+
+        append('\n');
+        ++pos;  // past the end of the line
+        return false;
+    }
+
+    /**
+     * Returns the <code>$tag$</code> that starts a dollar quoted string
+     * at the specified position or <code>null</code> if there isn't one
+     */
+    private static String getDollarTag(String line, int start) {
+        if (start > 0 && isIdentifierChar(line.charAt(start - 1)))
+            return null;    // part of a name or a positional parameter
+
+        int end = start + 1;
+        while (end < line.length() && (Character.isLetter(line.charAt(end)) || line.charAt(end) == '_'))
+            ++end;
+
+        if (end < line.length() && line.charAt(end) == '$')
+            return line.substring(start, end + 1);
+        return null;
+    }
+
+    /**
+     * Returns <code>true</code> if the string quote at the specified position
+     * is PostgreSQL's <code>E'</code> (whose backslashes escape)
+     */
+    public static boolean isEscapePrefix(CharSequence sql, int quotePos) {
+        if (quotePos < 1 || Character.toUpperCase(sql.charAt(quotePos - 1)) != 'E')
+            return false;
+        return quotePos < 2 || !isIdentifierChar(sql.charAt(quotePos - 2));
+    }
+
+    private static boolean isIdentifierChar(char ch) {
+        return Character.isLetterOrDigit(ch) || ch == '_' || ch == '$';
+    }
+
+    private void append(String text) {
+        for (int i = 0; i < text.length(); ++i)
+            append(text.charAt(i));
+    }
+
+    /**
+     * Append a character to the current statement, deciding whether the
+     * statement is of interest once its first word is complete
+     */
+    private void append(char ch) {
+        if (skipping)
+            return;
+
+        if (!started) {
+            if (firstWord.length() == 0) {
+                if (Character.isWhitespace(ch))
+                    return;
+                statementLineNumber = lineNumber;
+            }
+
+            if (isIdentifierChar(ch)) {
+                firstWord.append(ch);
+                return;
+            }
+
+            started = true;
+            statement.append(firstWord);
+            skipping = !isOfInterest(firstWord.toString());
+            if (skipping)
+                return;
+        }
+
+        statement.append(ch);
+    }
+
+    /**
+     * Statements of interest are buffered, as are <code>COPY</code>s
+     * so we can tell if data follows them
+     */
+    private boolean isOfInterest(String word) {
+        return keywords == null || keywords.contains(word.toUpperCase()) || word.equalsIgnoreCase("COPY");
+    }
+
+    /**
+     * End the current statement, returning it if it's of interest
+     */
+    private String endStatement() {
+        if (!started && firstWord.length() > 0) {
+            // nothing followed the first word
+            statement.append(firstWord);
+            skipping = !isOfInterest(firstWord.toString());
+        }
+
+        String ended = skipping ? "" : statement.toString().trim();
+        statement.setLength(0);
+        firstWord.setLength(0);
+        started = false;
+        skipping = false;
+        inExecutableComment = false;
+
+        if (ended.regionMatches(true, 0, "COPY", 0, 4)) {
+            copying = copyFromStdin.matcher(ended).matches();
+            if (keywords != null && !keywords.contains("COPY"))
+                return null;
+        }
+
+        return ended.length() == 0 ? null : ended;
+    }
+}
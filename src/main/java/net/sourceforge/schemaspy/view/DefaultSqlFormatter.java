@@ -26,6 +26,7 @@ import java.util.Map;
 import java.util.Set;
 import java.util.StringTokenizer;
 import schemaspy.model.Database;
+import schemaspy.model.DatabaseCapabilities;
 import schemaspy.model.Table;
 import schemaspy.util.CaseInsensitiveMap;
 import schemaspy.util.HtmlEncoder;
@@ -72,7 +73,7 @@ public class DefaultSqlFormatter implements SqlFormatter {
         {
             formatted.append("  <div class='viewDefinition'>");
             @SuppressWarnings("hiding")
-            Set<String> keywords = getKeywords(db.getMetaData());
+            Set<String> keywords = getKeywords(db.getCapabilities());
             StringTokenizer tokenizer = new StringTokenizer(sql, TOKENS, true);
             while (tokenizer.hasMoreTokens()) {
                 String token = tokenizer.nextToken();
@@ -106,7 +107,7 @@ public class DefaultSqlFormatter implements SqlFormatter {
 
         Map<String, Table> tables = getTableMap(db);
         @SuppressWarnings("hiding")
-        Set<String> keywords = getKeywords(db.getMetaData());
+        Set<String> keywords = getKeywords(db.getCapabilities());
 
         StringTokenizer tokenizer = new StringTokenizer(sql, TOKENS, true);
         while (tokenizer.hasMoreTokens()) {
@@ -187,6 +188,14 @@ public class DefaultSqlFormatter implements SqlFormatter {
      * @return
      */
     public Set<String> getKeywords(DatabaseMetaData meta) {
+        return getKeywords(new DatabaseCapabilities(meta));
+    }
+
+    /**
+     * @param capabilities
+     * @return
+     */
+    public Set<String> getKeywords(DatabaseCapabilities capabilities) {
         if (keywords == null) {
             keywords = new HashSet<String>(Arrays.asList(new String[] {
                 "ABSOLUTE", "ACTION", "ADD", "ALL", "ALLOCATE", "ALTER", "AND",
@@ -234,24 +243,19 @@ public class DefaultSqlFormatter implements SqlFormatter {
                 "ZONE"
             }));
 
-            try {
-                String keywordsArray[] = new String[] {
-                    meta.getSQLKeywords(),
-                    meta.getSystemFunctions(),
-                    meta.getNumericFunctions(),
-                    meta.getStringFunctions(),
-                    meta.getTimeDateFunctions()
-                };
-                for (int i = 0; i < keywordsArray.length; ++i) {
-                    StringTokenizer tokenizer = new StringTokenizer(keywordsArray[i].toUpperCase(), ",");
+            String keywordsArray[] = new String[] {
+                capabilities.getSqlKeywords(),
+                capabilities.getSystemFunctions(),
+                capabilities.getNumericFunctions(),
+                capabilities.getStringFunctions(),
+                capabilities.getTimeDateFunctions()
+            };
+            for (int i = 0; i < keywordsArray.length; ++i) {
+                StringTokenizer tokenizer = new StringTokenizer(keywordsArray[i].toUpperCase(), ",");
 
-                    while (tokenizer.hasMoreTokens()) {
-                        keywords.add(tokenizer.nextToken().trim());
-                    }
+                while (tokenizer.hasMoreTokens()) {
+                    keywords.add(tokenizer.nextToken().trim());
                 }
-            } catch (Exception exc) {
-                // don't totally fail just because we can't extract these details...
-                System.err.println(exc);
             }
         }
 
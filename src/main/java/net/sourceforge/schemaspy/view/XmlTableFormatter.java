@@ -97,8 +97,11 @@ public class XmlTableFormatter {
         if (table.getSchema() != null)
             DOMUtil.appendAttribute(tableNode, "schema", table.getSchema());
         DOMUtil.appendAttribute(tableNode, "name", table.getName());
-        if (table.getNumRows() != -1)
+        if (table.getNumRows() != -1) {
             DOMUtil.appendAttribute(tableNode, "numRows", String.valueOf(table.getNumRows()));
+            if (table.isNumRowsEstimated())
+                DOMUtil.appendAttribute(tableNode, "numRowsEstimated", "true");
+        }
         DOMUtil.appendAttribute(tableNode, "type", table.isView() ? "VIEW" : "TABLE");
         DOMUtil.appendAttribute(tableNode, "remarks", table.getComments() == null ? "" : table.getComments());
         appendColumns(tableNode, table);
@@ -287,4 +290,4 @@ public class XmlTableFormatter {
         }
         return buf.toString();
     }
-}
\ No newline at end of file
+}
\ No newline at end of file
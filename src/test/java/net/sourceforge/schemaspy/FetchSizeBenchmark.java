@@ -0,0 +1,241 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy;
+
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+
+/**
+ * Shows the effect of the <code>fetchSize</code> / <code>streamResults</code>
+ * settings on the latency and (client) memory footprint of reading a large
+ * catalog-style result set, both through a {@link Statement} (what the
+ * .properties SQL goes through) and through a schema-wide
+ * {@link java.sql.DatabaseMetaData#getColumns(String, String, String, String)}
+ * (what <code>-bulkmeta</code> goes through).<p/>
+ *
+ * It isn't a unit test; run it by hand against an embedded database whose
+ * driver is on the classpath, e.g.:
+ * <pre>
+ *   java -cp target/test-classes:h2.jar net.sourceforge.schemaspy.FetchSizeBenchmark org.h2.Driver jdbc:h2:mem:bench
+ * </pre>
+ * Optional third and fourth arguments are the number of tables and the
+ * number of columns per table to create (default 200 and 50).<p/>
+ *
+ * The memory figure is what the open result set holds on to once its first
+ * row has been read (after a garbage collection that isn't included in the time):
+ * everything if the driver buffers the whole result, a fetch's worth if it doesn't.
+ * Fetch size only matters to drivers that talk to a server, so use a client/server
+ * URL (e.g. <code>jdbc:h2:tcp://localhost/mem:bench</code>) to see its effect.
+ * Numbers from a run are in <code>dist/dbtypes.html</code>.
+ */
+public class FetchSizeBenchmark {
+    private static final int STREAM = Integer.MIN_VALUE;
+    private static final int[] FETCH_SIZES = {0, 10, 100, 1000, STREAM};
+    private static final int RUNS = 5;      // the fastest of these is reported
+
+    public static void main(String[] args) throws Exception {
+        if (args.length < 2) {
+            System.err.println("Usage: FetchSizeBenchmark <driverClass> <url> [numTables] [numColumns]");
+            System.exit(1);
+        }
+
+        Class.forName(args[0]);
+        int numTables = args.length > 2 ? Integer.parseInt(args[2]) : 200;
+        int numColumns = args.length > 3 ? Integer.parseInt(args[3]) : 50;
+
+        Connection connection = DriverManager.getConnection(args[1]);
+        try {
+            populate(connection, numTables, numColumns);
+
+            String sql = "select * from BENCH_ROWS";
+
+            // warm up so the first setting measured isn't penalized
+            for (int i = 0; i < FETCH_SIZES.length; ++i) {
+                measureQuery(connection, sql, FETCH_SIZES[i]);
+                measureColumns(connection, FETCH_SIZES[i]);
+            }
+
+            System.out.println("Statement: " + sql);
+            for (int i = 0; i < FETCH_SIZES.length; ++i) {
+                Measurement fastest = null;
+                for (int run = 0; run < RUNS; ++run)
+                    fastest = Measurement.faster(fastest, measureQuery(connection, sql, FETCH_SIZES[i]));
+                report(FETCH_SIZES[i], fastest);
+            }
+
+            System.out.println("DatabaseMetaData.getColumns() for " + numTables * numColumns + " columns");
+            for (int i = 0; i < FETCH_SIZES.length; ++i) {
+                Measurement fastest = null;
+                for (int run = 0; run < RUNS; ++run)
+                    fastest = Measurement.faster(fastest, measureColumns(connection, FETCH_SIZES[i]));
+                report(FETCH_SIZES[i], fastest);
+            }
+        } finally {
+            connection.close();
+        }
+    }
+
+    /**
+     * Create <code>numTables</code> tables of <code>numColumns</code> columns
+     * (the catalog) and one table with a row per column (a catalog-like result)
+     */
+    private static void populate(Connection connection, int numTables, int numColumns) throws SQLException {
+        Statement stmt = connection.createStatement();
+        try {
+            for (int t = 0; t < numTables; ++t) {
+                StringBuilder ddl = new StringBuilder("create table BENCH_" + t + " (");
+                for (int c = 0; c < numColumns; ++c) {
+                    if (c > 0)
+                        ddl.append(", ");
+                    ddl.append("COLUMN_" + c + " varchar(100)");
+                }
+                ddl.append(')');
+                stmt.executeUpdate(ddl.toString());
+            }
+
+            stmt.executeUpdate("create table BENCH_ROWS (table_name varchar(100), column_name varchar(100), remarks varchar(400))");
+        } finally {
+            stmt.close();
+        }
+
+        PreparedStatement insert = connection.prepareStatement("insert into BENCH_ROWS values (?, ?, ?)");
+        try {
+            for (int t = 0; t < numTables; ++t) {
+                for (int c = 0; c < numColumns; ++c) {
+                    insert.setString(1, "BENCH_" + t);
+                    insert.setString(2, "COLUMN_" + c);
+                    insert.setString(3, "Comments describing column " + c + " of table " + t + " in some detail");
+                    insert.addBatch();
+                }
+                insert.executeBatch();
+            }
+        } finally {
+            insert.close();
+        }
+    }
+
+    private static Measurement measureQuery(Connection connection, String sql, int fetchSize) throws SQLException {
+        Measurement measurement = new Measurement();
+        Statement stmt = connection.createStatement();
+
+        try {
+            if (!setFetchSize(stmt, fetchSize))
+                return null;
+            ResultSet rs = stmt.executeQuery(sql);
+            measurement.read(rs);
+            rs.close();
+        } finally {
+            stmt.close();
+        }
+
+        return measurement.done();
+    }
+
+    private static Measurement measureColumns(Connection connection, int fetchSize) throws SQLException {
+        if (fetchSize == STREAM)
+            return null; // can't be requested for metadata results
+
+        Measurement measurement = new Measurement();
+        ResultSet rs = connection.getMetaData().getColumns(null, null, "BENCH\\_%", "%");
+
+        try {
+            if (fetchSize > 0)
+                rs.setFetchSize(fetchSize);
+            measurement.read(rs);
+        } finally {
+            rs.close();
+        }
+
+        return measurement.done();
+    }
+
+    private static boolean setFetchSize(Statement stmt, int fetchSize) {
+        try {
+            if (fetchSize != 0)
+                stmt.setFetchSize(fetchSize);
+            return true;
+        } catch (SQLException exc) {
+            return false;
+        }
+    }
+
+    private static void report(int fetchSize, Measurement measurement) {
+        String setting = fetchSize == STREAM ? "streamResults" : fetchSize == 0 ? "driver default" : "fetchSize=" + fetchSize;
+        if (measurement == null)
+            System.out.println("  " + setting + ": not supported");
+        else
+            System.out.println("  " + setting + ": " + measurement.rows + " rows in " + measurement.millis + "ms, " + measurement.heldKb + "KB held");
+    }
+
+    /**
+     * Elapsed time of reading a result set and the heap that it holds on to
+     */
+    private static class Measurement {
+        private final Runtime runtime = Runtime.getRuntime();
+        private final long baseline;
+        private final long started;
+        private long paused;
+        private long held;
+        private int rows;
+        private long millis;
+        private long heldKb;
+
+        Measurement() {
+            System.gc();
+            baseline = used();
+            started = System.currentTimeMillis();
+        }
+
+        void read(ResultSet rs) throws SQLException {
+            int numColumns = rs.getMetaData().getColumnCount();
+            while (rs.next()) {
+                for (int i = 1; i <= numColumns; ++i)
+                    rs.getString(i);
+                if (++rows == 1) {
+                    long pause = System.currentTimeMillis();
+                    System.gc();
+                    held = used() - baseline;
+                    paused = System.currentTimeMillis() - pause;
+                }
+            }
+        }
+
+        static Measurement faster(Measurement measurement1, Measurement measurement2) {
+            if (measurement1 == null)
+                return measurement2;
+            if (measurement2 == null)
+                return measurement1;
+            return measurement2.millis < measurement1.millis ? measurement2 : measurement1;
+        }
+
+        Measurement done() {
+            millis = System.currentTimeMillis() - started - paused;
+            heldKb = Math.max(held, 0) / 1024;
+            return this;
+        }
+
+        private long used() {
+            return runtime.totalMemory() - runtime.freeMemory();
+        }
+    }
+}
@@ -0,0 +1,319 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.model;
+
+import java.io.BufferedOutputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.StringReader;
+import java.sql.DatabaseMetaData;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.GZIPOutputStream;
+import junit.framework.TestCase;
+
+/**
+ * Tests that {@link DatabaseSnapshot}s read back what was written
+ * (and what older versions wrote).
+ */
+public class DatabaseSnapshotTest extends TestCase {
+    private static final String DDL = lines(
+        "CREATE TABLE author (",
+        "    id integer NOT NULL,",
+        "    name varchar(100) NOT NULL,",
+        "    born date",
+        ");",
+        "COMMENT ON TABLE author IS 'People who write books';",
+        "COMMENT ON COLUMN author.name IS 'As printed on the cover';",
+        "CREATE TABLE publisher (",
+        "    id integer PRIMARY KEY,",
+        "    name varchar(50) NOT NULL",
+        ");",
+        "CREATE TABLE book (",
+        "    id integer NOT NULL,",
+        "    author_id integer,",
+        "    publisher_id integer,",
+        "    title text NOT NULL,",
+        "    price numeric(8,2) DEFAULT 0.00,",
+        "    CONSTRAINT book_price_check CHECK (price >= 0)",
+        ");",
+        "CREATE VIEW cheap_book AS SELECT id, title FROM book WHERE price < 10.00;",
+        "ALTER TABLE author ADD CONSTRAINT author_pkey PRIMARY KEY (id);",
+        "ALTER TABLE book ADD CONSTRAINT book_pkey PRIMARY KEY (id);",
+        "CREATE INDEX book_title_idx ON book (title);",
+        "CREATE UNIQUE INDEX book_author_title_idx ON book (author_id, title DESC);",
+        "ALTER TABLE book ADD CONSTRAINT book_author_fk FOREIGN KEY (author_id) REFERENCES author(id) ON DELETE CASCADE;",
+        "ALTER TABLE book ADD CONSTRAINT book_publisher_fk FOREIGN KEY (publisher_id) REFERENCES publisher(id) ON DELETE SET NULL;");
+
+    private File file;
+
+    @Override
+    protected void setUp() throws IOException {
+        file = File.createTempFile("snapshot", ".gz");
+    }
+
+    @Override
+    protected void tearDown() {
+        file.delete();
+    }
+
+    public void testRoundTrip() throws IOException {
+        DdlParser parser = new DdlParser(null);
+        parser.parse(new StringReader(DDL), getName());
+        Database written = parser.getDatabase("test", "books");
+        written.setLastDdlTime("book", "20110101000000");
+
+        DatabaseSnapshot.write(written, file);
+        Database read = DatabaseSnapshot.read(file);
+
+        assertEquals(written.getName(), read.getName());
+        assertEquals(written.getDescription(), read.getDescription());
+        assertEquals(names(written.getTables()), names(read.getTables()));
+        assertEquals(names(written.getViews()), names(read.getViews()));
+        assertEquals("20110101000000", read.getLastDdlTime("book"));
+        assertNull(read.getLastDdlTime("author"));
+
+        for (Table table : written.getTables())
+            assertSameTable(table, read.getTablesByName().get(table.getName()));
+        for (View view : written.getViews()) {
+            View readView = getView(read, view.getName());
+            assertSameTable(view, readView);
+            assertEquals(view.getViewSql(), readView.getViewSql());
+        }
+
+        // make sure that there was something to compare
+        Table book = read.getTablesByName().get("book");
+        Table author = read.getTablesByName().get("author");
+        assertEquals("People who write books", author.getComments());
+        assertTrue(book.getColumn("author_id").getParentConstraint(author.getColumn("id")).isCascadeOnDelete());
+        assertTrue(book.getIndex("book_author_title_idx").isUnique());
+        assertFalse(book.getIndex("book_author_title_idx").isAscending(book.getColumn("title")));
+        assertEquals(1, author.getColumn("id").getChildren().size());
+    }
+
+    /**
+     * Version 1 snapshots don't have the tables' last DDL times
+     */
+    public void testReadsVersion1() throws IOException {
+        DataOutputStream out = new DataOutputStream(new BufferedOutputStream(new GZIPOutputStream(new FileOutputStream(file))));
+        try {
+            out.writeInt(0x53537370);
+            out.writeInt(1);
+            writeString(out, "old");
+            writeString(out, "S");
+            writeString(out, null);
+            writeString(out, "Sat Jan 01 00:00 UTC 2011");
+
+            ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+            ObjectOutputStream objects = new ObjectOutputStream(bytes);
+            objects.writeObject(new DatabaseCapabilities("DDL", "v1"));
+            objects.close();
+            out.writeInt(bytes.size());
+            bytes.writeTo(out);
+            out.writeInt(-1);   // no properties
+
+            out.writeInt(2);
+            writeTable(out, "author", "id");
+            writeTable(out, "book", "author_id");
+
+            // author_id references author.id
+            out.writeInt(1);
+            out.writeInt(1);
+            writeString(out, "book_author_fk");
+            out.writeBoolean(true);
+            out.writeBoolean(true);
+            out.writeInt(DatabaseMetaData.importedKeyNoAction);
+            out.writeInt(DatabaseMetaData.importedKeyCascade);
+            out.writeInt(1);
+            writeString(out, "author_id");
+            out.writeInt(0);
+            out.writeInt(1);
+            writeString(out, "id");
+
+            out.writeInt(1);
+            out.writeInt(0);
+            out.writeInt(1);
+            writeString(out, "author_id");
+            out.writeInt(0);
+            writeString(out, "id");
+        } finally {
+            out.close();
+        }
+
+        Database db = DatabaseSnapshot.read(file);
+        assertEquals("old", db.getName());
+        assertEquals(2, db.getTables().size());
+        assertNull(db.getLastDdlTime("author"));
+
+        Table author = db.getTablesByName().get("author");
+        Table book = db.getTablesByName().get("book");
+        assertEquals(42, author.getNumRows());
+        assertEquals("id", author.getPrimaryColumns().get(0).getName());
+        assertEquals(1, book.getIndexes().size());
+
+        ForeignKeyConstraint foreignKey = book.getColumn("author_id").getParentConstraint(author.getColumn("id"));
+        assertEquals("book_author_fk", foreignKey.getName());
+        assertTrue(foreignKey.isCascadeOnDelete());
+        assertTrue(book.getForeignKeys().contains(foreignKey));
+    }
+
+    /**
+     * Write a version 1 table with an integer primary key column and an index on the specified column
+     */
+    private static void writeTable(DataOutputStream out, String name, String indexedColumn) throws IOException {
+        out.writeByte(0);               // a table
+        writeString(out, "S");
+        writeString(out, name);
+        writeString(out, null);
+        out.writeBoolean(false);        // no properties
+        // (version 2 writes the last DDL time here)
+        out.writeByte(0);               // no id
+        out.writeInt(42);
+        out.writeBoolean(false);
+
+        List<String> columns = new ArrayList<String>();
+        columns.add("id");
+        if (!columns.contains(indexedColumn))
+            columns.add(indexedColumn);
+        out.writeInt(columns.size());
+        for (String column : columns) {
+            writeString(out, column);
+            out.writeByte(0);
+            writeString(out, "integer");
+            out.writeInt(10);
+            out.writeInt(0);
+            writeString(out, "10");
+            out.writeBoolean(!column.equals("id"));
+            writeString(out, null);
+            writeString(out, null);
+            out.writeBoolean(false);
+            out.writeBoolean(true);
+            out.writeBoolean(true);
+            out.writeBoolean(false);
+            out.writeBoolean(false);
+        }
+
+        out.writeInt(1);
+        writeString(out, "id");
+
+        out.writeInt(1);
+        writeString(out, name + "_idx");
+        out.writeBoolean(false);
+        out.writeBoolean(false);
+        out.writeByte(0);
+        out.writeInt(1);
+        writeString(out, indexedColumn);
+        out.writeBoolean(true);
+
+        out.writeInt(0);                // no check constraints
+    }
+
+    private static View getView(Database db, String name) {
+        for (View view : db.getViews()) {
+            if (view.getName().equals(name))
+                return view;
+        }
+        return null;
+    }
+
+    private static void assertSameTable(Table expected, Table actual) {
+        assertNotNull(expected.getName() + " wasn't read", actual);
+        String name = expected.getName();
+        assertEquals(name, expected.getComments(), actual.getComments());
+        assertEquals(name, expected.getNumRows(), actual.getNumRows());
+        assertEquals(name, describeColumns(expected), describeColumns(actual));
+        assertEquals(name, names(expected.getPrimaryColumns()), names(actual.getPrimaryColumns()));
+        assertEquals(name, describeIndexes(expected), describeIndexes(actual));
+        assertEquals(name, expected.getCheckConstraints(), actual.getCheckConstraints());
+        assertEquals(name, describeForeignKeys(expected), describeForeignKeys(actual));
+    }
+
+    private static List<String> describeColumns(Table table) {
+        List<String> columns = new ArrayList<String>();
+        for (TableColumn column : table.getColumns()) {
+            columns.add(column.getName() + ' ' + column.getType() + ' ' + column.getDetailedSize() +
+                        ' ' + column.isNullable() + ' ' + column.getDefaultValue() + ' ' + column.getComments() +
+                        ' ' + column.isAutoUpdated());
+        }
+        return columns;
+    }
+
+    private static TreeMap<String, String> describeIndexes(Table table) {
+        TreeMap<String, String> indexes = new TreeMap<String, String>();
+        for (TableIndex index : table.getIndexes()) {
+            StringBuilder description = new StringBuilder();
+            description.append(index.isUnique()).append(' ').append(index.isPrimaryKey());
+            for (TableColumn column : index.getColumns())
+                description.append(' ').append(column.getName()).append(index.isAscending(column) ? " asc" : " desc");
+            indexes.put(index.getName(), description.toString());
+        }
+        return indexes;
+    }
+
+    /**
+     * Describes both directions of the table's relationships
+     */
+    private static TreeSet<String> describeForeignKeys(Table table) {
+        TreeSet<String> foreignKeys = new TreeSet<String>();
+        for (TableColumn column : table.getColumns()) {
+            for (TableColumn parent : column.getParents())
+                foreignKeys.add(describe(column.getParentConstraint(parent), column, parent));
+            for (TableColumn child : column.getChildren())
+                foreignKeys.add(describe(column.getChildConstraint(child), child, column));
+        }
+        return foreignKeys;
+    }
+
+    private static String describe(ForeignKeyConstraint foreignKey, TableColumn child, TableColumn parent) {
+        return foreignKey.getName() + ": " + child.getTable().getName() + '.' + child.getName() +
+                " -> " + parent.getTable().getName() + '.' + parent.getName() +
+                " update " + foreignKey.getUpdateRule() + " delete " + foreignKey.getDeleteRule() +
+                " real " + foreignKey.isReal();
+    }
+
+    private static TreeSet<String> names(Iterable<? extends Object> things) {
+        TreeSet<String> names = new TreeSet<String>();
+        for (Object thing : things)
+            names.add(thing instanceof TableColumn ? ((TableColumn)thing).getName() : ((Table)thing).getName());
+        return names;
+    }
+
+    private static void writeString(DataOutputStream out, String value) throws IOException {
+        if (value == null) {
+            out.writeInt(-1);
+        } else {
+            byte[] bytes = value.getBytes("UTF-8");
+            out.writeInt(bytes.length);
+            out.write(bytes);
+        }
+    }
+
+    private static String lines(String... lines) {
+        StringBuilder text = new StringBuilder();
+        for (String line : lines)
+            text.append(line).append('\n');
+        return text.toString();
+    }
+}
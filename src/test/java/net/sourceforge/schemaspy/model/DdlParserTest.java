@@ -0,0 +1,351 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.model;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.logging.Handler;
+import java.util.logging.Level;
+import java.util.logging.LogRecord;
+import java.util.logging.Logger;
+import junit.framework.TestCase;
+
+/**
+ * Tests {@link DdlParser} against excerpts of what the common dump tools generate.
+ */
+public class DdlParserTest extends TestCase {
+    private static final String PG_DUMP = lines(
+        "--",
+        "-- PostgreSQL database dump",
+        "--",
+        "SET statement_timeout = 0;",
+        "SELECT pg_catalog.set_config('search_path', '', false);",
+        "CREATE TABLE public.author (",
+        "    id integer NOT NULL,",
+        "    name character varying(100) NOT NULL,",
+        "    born date",
+        ");",
+        "ALTER TABLE public.author OWNER TO postgres;",
+        "COMMENT ON TABLE public.author IS 'People who write books';",
+        "CREATE SEQUENCE public.author_id_seq",
+        "    AS integer",
+        "    START WITH 1",
+        "    INCREMENT BY 1",
+        "    NO MINVALUE",
+        "    NO MAXVALUE",
+        "    CACHE 1;",
+        "ALTER TABLE public.author_id_seq OWNER TO postgres;",
+        "ALTER SEQUENCE public.author_id_seq OWNED BY public.author.id;",
+        "CREATE TABLE public.book (",
+        "    id integer NOT NULL,",
+        "    author_id integer,",
+        "    title text NOT NULL,",
+        "    price numeric(8,2) DEFAULT 0.00",
+        ");",
+        "ALTER TABLE public.book OWNER TO postgres;",
+        "CREATE VIEW public.cheap_book AS",
+        " SELECT book.id,",
+        "    book.title",
+        "   FROM public.book",
+        "  WHERE (book.price < 10.00);",
+        "ALTER TABLE public.cheap_book OWNER TO postgres;",
+        "ALTER TABLE ONLY public.author ALTER COLUMN id SET DEFAULT nextval('public.author_id_seq'::regclass);",
+        "ALTER TABLE ONLY public.author",
+        "    ADD CONSTRAINT author_pkey PRIMARY KEY (id);",
+        "ALTER TABLE ONLY public.book",
+        "    ADD CONSTRAINT book_pkey PRIMARY KEY (id);",
+        "CREATE INDEX book_title_idx ON public.book USING btree (title);",
+        "ALTER TABLE ONLY public.book",
+        "    ADD CONSTRAINT book_author_id_fkey FOREIGN KEY (author_id) REFERENCES public.author(id) ON DELETE CASCADE;");
+
+    private static final String MYSQLDUMP = lines(
+        "-- MySQL dump 10.13  Distrib 8.0.36, for Linux (x86_64)",
+        "/*!40101 SET @OLD_CHARACTER_SET_CLIENT=@@CHARACTER_SET_CLIENT */;",
+        "/*!40101 SET NAMES utf8mb4 */;",
+        "DROP TABLE IF EXISTS `book`;",
+        "/*!40101 SET @saved_cs_client     = @@character_set_client */;",
+        "/*!50503 SET character_set_client = utf8mb4 */;",
+        "CREATE TABLE `book` (",
+        "  `id` int NOT NULL AUTO_INCREMENT,",
+        "  `author_id` int DEFAULT NULL,",
+        "  `title` varchar(200) NOT NULL,",
+        "  PRIMARY KEY (`id`),",
+        "  UNIQUE KEY `book_title` (`title`),",
+        "  KEY `book_author` (`author_id`),",
+        "  CONSTRAINT `book_author` FOREIGN KEY (`author_id`) REFERENCES `author` (`id`) ON DELETE CASCADE",
+        ") ENGINE=InnoDB AUTO_INCREMENT=3 DEFAULT CHARSET=utf8mb4 COLLATE=utf8mb4_0900_ai_ci;",
+        "/*!40101 SET character_set_client = @saved_cs_client */;",
+        "LOCK TABLES `book` WRITE;",
+        "/*!40000 ALTER TABLE `book` DISABLE KEYS */;",
+        "INSERT INTO `book` VALUES (1,1,'Emma'),(2,2,'War and Peace');",
+        "/*!40000 ALTER TABLE `book` ENABLE KEYS */;",
+        "UNLOCK TABLES;",
+        "DROP TABLE IF EXISTS `author`;",
+        "CREATE TABLE `author` (",
+        "  `id` int NOT NULL AUTO_INCREMENT,",
+        "  `name` varchar(100) NOT NULL,",
+        "  PRIMARY KEY (`id`)",
+        ") ENGINE=InnoDB AUTO_INCREMENT=3 DEFAULT CHARSET=utf8mb4 COMMENT='People who write books';",
+        "ALTER TABLE `author` COMMENT = 'People who write novels';");
+
+    private static final String ORACLE = lines(
+        "  CREATE TABLE \"HR\".\"DEPARTMENTS\" ",
+        "   (\t\"DEPARTMENT_ID\" NUMBER(4,0), ",
+        "\t\"DEPARTMENT_NAME\" VARCHAR2(30 BYTE) CONSTRAINT \"DEPT_NAME_NN\" NOT NULL ENABLE, ",
+        "\t CONSTRAINT \"DEPT_ID_PK\" PRIMARY KEY (\"DEPARTMENT_ID\")",
+        "  USING INDEX PCTFREE 10 INITRANS 2 MAXTRANS 255 COMPUTE STATISTICS ",
+        "  TABLESPACE \"USERS\"  ENABLE",
+        "   ) SEGMENT CREATION IMMEDIATE ",
+        "  PCTFREE 10 PCTUSED 40 INITRANS 1 MAXTRANS 255 ",
+        " NOCOMPRESS LOGGING",
+        "  TABLESPACE \"USERS\" ;",
+        "  CREATE TABLE \"HR\".\"EMPLOYEES\" ",
+        "   (\t\"EMPLOYEE_ID\" NUMBER(6,0), ",
+        "\t\"LAST_NAME\" VARCHAR2(25 BYTE) CONSTRAINT \"EMP_LAST_NAME_NN\" NOT NULL ENABLE, ",
+        "\t\"SALARY\" NUMBER(8,2), ",
+        "\t\"DEPARTMENT_ID\" NUMBER(4,0), ",
+        "\t CONSTRAINT \"EMP_SALARY_MIN\" CHECK (salary > 0) ENABLE",
+        "   ) SEGMENT CREATION IMMEDIATE ",
+        "  TABLESPACE \"USERS\" ;",
+        "  ALTER TABLE \"HR\".\"EMPLOYEES\" ADD CONSTRAINT \"EMP_EMP_ID_PK\" PRIMARY KEY (\"EMPLOYEE_ID\")",
+        "  USING INDEX PCTFREE 10 INITRANS 2 MAXTRANS 255 COMPUTE STATISTICS ",
+        "  TABLESPACE \"USERS\"  ENABLE;",
+        "  ALTER TABLE \"HR\".\"EMPLOYEES\" MODIFY (\"EMPLOYEE_ID\" NOT NULL ENABLE);",
+        "  CREATE INDEX \"HR\".\"EMP_DEPARTMENT_IX\" ON \"HR\".\"EMPLOYEES\" (\"DEPARTMENT_ID\") ",
+        "  PCTFREE 10 INITRANS 2 MAXTRANS 255 COMPUTE STATISTICS ",
+        "  TABLESPACE \"USERS\" ;",
+        "   COMMENT ON TABLE \"HR\".\"EMPLOYEES\"  IS 'employees table';",
+        "  ALTER TABLE \"HR\".\"EMPLOYEES\" ADD CONSTRAINT \"EMP_DEPT_FK\" FOREIGN KEY (\"DEPARTMENT_ID\")",
+        "\t  REFERENCES \"HR\".\"DEPARTMENTS\" (\"DEPARTMENT_ID\") ENABLE;");
+
+    private static final String SSMS = lines(
+        "USE [Shop]",
+        "GO",
+        "/****** Object:  Table [dbo].[Customer]    Script Date: 10/18/2026 9:12:03 AM ******/",
+        "SET ANSI_NULLS ON",
+        "GO",
+        "SET QUOTED_IDENTIFIER ON",
+        "GO",
+        "CREATE TABLE [dbo].[Customer](",
+        "\t[Id] [int] IDENTITY(1,1) NOT NULL,",
+        "\t[Name] [nvarchar](100) NOT NULL,",
+        "\t[Active] [bit] NOT NULL,",
+        " CONSTRAINT [PK_Customer] PRIMARY KEY CLUSTERED ",
+        "(",
+        "\t[Id] ASC",
+        ")WITH (PAD_INDEX = OFF, STATISTICS_NORECOMPUTE = OFF, IGNORE_DUP_KEY = OFF, ALLOW_ROW_LOCKS = ON, ALLOW_PAGE_LOCKS = ON) ON [PRIMARY]",
+        ") ON [PRIMARY]",
+        "GO",
+        "CREATE TABLE [dbo].[Order](",
+        "\t[Id] [int] IDENTITY(1,1) NOT NULL,",
+        "\t[CustomerId] [int] NOT NULL,",
+        "\t[Total] [decimal](10, 2) NOT NULL,",
+        " CONSTRAINT [PK_Order] PRIMARY KEY CLUSTERED ",
+        "(",
+        "\t[Id] ASC",
+        ")WITH (PAD_INDEX = OFF, STATISTICS_NORECOMPUTE = OFF, IGNORE_DUP_KEY = OFF, ALLOW_ROW_LOCKS = ON, ALLOW_PAGE_LOCKS = ON) ON [PRIMARY]",
+        ") ON [PRIMARY]",
+        "GO",
+        "CREATE NONCLUSTERED INDEX [IX_Order_CustomerId] ON [dbo].[Order]",
+        "(",
+        "\t[CustomerId] ASC",
+        ")WITH (PAD_INDEX = OFF, STATISTICS_NORECOMPUTE = OFF, SORT_IN_TEMPDB = OFF, DROP_EXISTING = OFF, ONLINE = OFF) ON [PRIMARY]",
+        "GO",
+        "ALTER TABLE [dbo].[Customer] ADD  CONSTRAINT [DF_Customer_Active]  DEFAULT ((1)) FOR [Active]",
+        "GO",
+        "ALTER TABLE [dbo].[Order]  WITH CHECK ADD  CONSTRAINT [FK_Order_Customer] FOREIGN KEY([CustomerId])",
+        "REFERENCES [dbo].[Customer] ([Id])",
+        "GO",
+        "ALTER TABLE [dbo].[Order] CHECK CONSTRAINT [FK_Order_Customer]",
+        "GO",
+        "ALTER TABLE [dbo].[Order]  WITH NOCHECK ADD  CONSTRAINT [CK_Order_Total] CHECK  (([Total]>=(0)))",
+        "GO",
+        "ALTER TABLE [dbo].[Order] CHECK CONSTRAINT [CK_Order_Total]",
+        "GO");
+
+    private final List<String> warnings = new ArrayList<String>();
+    private final Logger logger = Logger.getLogger(DdlParser.class.getName());
+    private final Handler handler = new Handler() {
+        @Override
+        public void publish(LogRecord record) {
+            if (record.getLevel().intValue() >= Level.WARNING.intValue())
+                warnings.add(record.getMessage());
+        }
+
+        @Override
+        public void flush() {
+        }
+
+        @Override
+        public void close() {
+        }
+    };
+
+    @Override
+    protected void setUp() {
+        logger.addHandler(handler);
+    }
+
+    @Override
+    protected void tearDown() {
+        logger.removeHandler(handler);
+    }
+
+    public void testPgDump() throws IOException {
+        Database db = parse("public", PG_DUMP);
+        assertEquals(2, db.getTables().size());
+        assertEquals(1, db.getViews().size());
+
+        Table author = getTable(db, "author");
+        assertEquals("People who write books", author.getComments());
+        assertEquals(3, author.getColumns().size());
+        assertPrimaryKey(author, "id");
+        assertEquals("nextval('public.author_id_seq'::regclass)", author.getColumn("id").getDefaultValue());
+
+        Table book = getTable(db, "book");
+        assertPrimaryKey(book, "id");
+        assertNotNull(book.getIndex("book_title_idx"));
+        assertFalse(book.getIndex("book_title_idx").isUnique());
+        assertForeignKey(book, "author_id", author, "id", "book_author_id_fkey");
+        assertTrue(book.getColumn("author_id").getParentConstraint(author.getColumn("id")).isCascadeOnDelete());
+
+        assertEquals(2, db.getViews().iterator().next().getColumns().size());
+        assertEquals(new ArrayList<String>(), warnings);
+    }
+
+    public void testMysqldump() throws IOException {
+        Database db = parse(null, MYSQLDUMP);
+        assertEquals(2, db.getTables().size());
+
+        Table author = getTable(db, "author");
+        assertEquals("People who write novels", author.getComments());
+        assertPrimaryKey(author, "id");
+
+        Table book = getTable(db, "book");
+        assertPrimaryKey(book, "id");
+        assertTrue(book.getIndex("book_title").isUnique());
+        assertFalse(book.getIndex("book_author").isUnique());
+        assertTrue(book.getColumn("author_id").isNullable());
+        assertFalse(book.getColumn("title").isNullable());
+
+        // the foreign key references a table that's created later in the dump
+        assertForeignKey(book, "author_id", author, "id", "book_author");
+        assertEquals(new ArrayList<String>(), warnings);
+    }
+
+    public void testOracle() throws IOException {
+        Database db = parse("HR", ORACLE);
+        assertEquals(2, db.getTables().size());
+
+        Table departments = getTable(db, "DEPARTMENTS");
+        assertPrimaryKey(departments, "DEPARTMENT_ID");
+        assertFalse(departments.getColumn("DEPARTMENT_NAME").isNullable());
+
+        Table employees = getTable(db, "EMPLOYEES");
+        assertEquals("employees table", employees.getComments());
+        assertEquals(4, employees.getColumns().size());
+        assertPrimaryKey(employees, "EMPLOYEE_ID");
+        assertFalse(employees.getColumn("EMPLOYEE_ID").isNullable());
+        assertNotNull(employees.getIndex("EMP_DEPARTMENT_IX"));
+        assertTrue(employees.getCheckConstraints().containsKey("EMP_SALARY_MIN"));
+        assertForeignKey(employees, "DEPARTMENT_ID", departments, "DEPARTMENT_ID", "EMP_DEPT_FK");
+        assertEquals(new ArrayList<String>(), warnings);
+    }
+
+    public void testSqlServerManagementStudio() throws IOException {
+        Database db = parse("dbo", SSMS);
+        assertEquals(2, db.getTables().size());
+
+        Table customer = getTable(db, "Customer");
+        assertEquals(3, customer.getColumns().size());
+        assertPrimaryKey(customer, "Id");
+        assertEquals("((1))", customer.getColumn("Active").getDefaultValue());
+
+        Table order = getTable(db, "Order");
+        assertPrimaryKey(order, "Id");
+        assertNotNull(order.getIndex("IX_Order_CustomerId"));
+
+        // both added WITH [NO]CHECK
+        assertForeignKey(order, "CustomerId", customer, "Id", "FK_Order_Customer");
+        assertTrue(order.getCheckConstraints().containsKey("CK_Order_Total"));
+        assertEquals(new ArrayList<String>(), warnings);
+    }
+
+    public void testStringsEndingWithBackslashes() throws IOException {
+        Database db = parse(null, lines(
+            "CREATE TABLE a (id int PRIMARY KEY, dir varchar(10) DEFAULT 'C:\\');",
+            "INSERT INTO a VALUES (1, 'D:\\');",
+            "CREATE TABLE b (id int, note text DEFAULT E'it\\'s');",
+            "CREATE TABLE c (id int);"));
+
+        assertEquals(3, db.getTables().size());
+        assertEquals("'C:\\'", getTable(db, "a").getColumn("dir").getDefaultValue());
+        assertEquals(2, getTable(db, "b").getColumns().size());
+        assertNotNull(getTable(db, "c"));
+        assertEquals(new ArrayList<String>(), warnings);
+    }
+
+    public void testAlterationsThatArentUnderstoodAreWarnedAbout() throws IOException {
+        Database db = parse(null, lines(
+            "CREATE TABLE t (id int);",
+            "ALTER TABLE t FROBNICATE id, ADD name varchar(10);",
+            "ALTER TABLE missing ADD id int;",
+            "ALTER TABLE missing OWNER TO someone;"));
+
+        assertEquals(2, getTable(db, "t").getColumns().size());
+        assertEquals(2, warnings.size());
+        assertTrue(warnings.get(0), warnings.get(0).startsWith("Skipping alteration of t that isn't understood"));
+        assertTrue(warnings.get(1), warnings.get(1).startsWith("Ignoring ALTER of missing that hasn't been created"));
+    }
+
+    private Database parse(String schema, String ddl) throws IOException {
+        DdlParser parser = new DdlParser(schema);
+        parser.parse(new StringReader(ddl), getName());
+        return parser.getDatabase("test", null);
+    }
+
+    private static Table getTable(Database db, String name) {
+        Table table = db.getTablesByName().get(name);
+        assertNotNull("Table " + name + " wasn't parsed", table);
+        return table;
+    }
+
+    private static void assertPrimaryKey(Table table, String columnName) {
+        List<TableColumn> primaryColumns = table.getPrimaryColumns();
+        assertEquals(1, primaryColumns.size());
+        assertEquals(columnName, primaryColumns.get(0).getName());
+    }
+
+    private static void assertForeignKey(Table child, String childColumn, Table parent, String parentColumn, String name) {
+        TableColumn column = child.getColumn(childColumn);
+        TableColumn parentCol = parent.getColumn(parentColumn);
+        assertTrue(column.getParents().contains(parentCol));
+        assertTrue(parentCol.getChildren().contains(column));
+        assertEquals(name, column.getParentConstraint(parentCol).getName());
+    }
+
+    private static String lines(String... lines) {
+        StringBuilder text = new StringBuilder();
+        for (String line : lines)
+            text.append(line).append('\n');
+        return text.toString();
+    }
+}
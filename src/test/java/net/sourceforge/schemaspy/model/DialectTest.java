@@ -0,0 +1,56 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.model;
+
+import java.sql.SQLException;
+import junit.framework.TestCase;
+
+/**
+ * Tests which failures {@link Dialect} learns from.
+ */
+public class DialectTest extends TestCase {
+    public void testUnsupportedSql() {
+        assertTrue(Dialect.isUnsupportedSql(new SQLException("syntax error at or near \"row_count\"", "42601")));
+        assertTrue(Dialect.isUnsupportedSql(new SQLException("Unknown column 'table_rows'", "42S22")));
+        assertTrue(Dialect.isUnsupportedSql(new SQLException("ORA-00904: \"NUM_ROWS\": invalid identifier", "42000")));
+        assertTrue(Dialect.isUnsupportedSql(new SQLException("Feature not supported", "0A000")));
+    }
+
+    public void testAccessRuleViolations() {
+        assertFalse(Dialect.isUnsupportedSql(new SQLException("permission denied for relation a", "42501")));
+        assertFalse(Dialect.isUnsupportedSql(new SQLException("SELECT command denied to user 'x'", "42000")));
+    }
+
+    public void testMissingTables() {
+        assertFalse(Dialect.isUnsupportedSql(new SQLException("relation \"a\" does not exist", "42P01")));
+        assertFalse(Dialect.isUnsupportedSql(new SQLException("Table 'db.a' doesn't exist", "42S02")));
+        assertFalse(Dialect.isUnsupportedSql(new SQLException("ORA-00942: table or view does not exist\n", "42000", 942)));
+        assertFalse(Dialect.isUnsupportedSql(new SQLException("Invalid object name 'dbo.a'.", "S0002")));
+        assertFalse(Dialect.isUnsupportedSql(new SQLException("\"A\" is an undefined name.", "42704")));
+    }
+
+    public void testMissingTableDoesNotDisableVariant() {
+        Dialect dialect = new Dialect();
+        dialect.failed("selectRowCountSql", new SQLException("relation \"dropped\" does not exist", "42P01"));
+        assertFalse(dialect.isUnsupported("selectRowCountSql"));
+
+        dialect.failed("selectRowCountSql", new SQLException("column \"row_count\" does not exist", "42703"));
+        assertTrue(dialect.isUnsupported("selectRowCountSql"));
+    }
+}
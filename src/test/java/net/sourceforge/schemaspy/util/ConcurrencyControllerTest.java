@@ -0,0 +1,119 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import junit.framework.TestCase;
+
+/**
+ * Tests the AIMD adjustments and rate limiting done by {@link ConcurrencyController}.
+ */
+public class ConcurrencyControllerTest extends TestCase {
+    private static final long MILLIS = 1000000L;
+
+    /**
+     * Concurrency should grow one at a time while latency stays flat
+     * and never exceed the hard cap
+     */
+    public void testGrowsWhileLatencyIsFlat() throws InterruptedException {
+        ConcurrencyController controller = new ConcurrencyController(3, true, 0);
+        assertEquals(1, controller.getLimit());
+
+        complete(controller, 8, 10 * MILLIS);
+        assertEquals(2, controller.getLimit());
+
+        for (int i = 0; i < 10; ++i)
+            complete(controller, 8, 10 * MILLIS);
+        assertEquals(3, controller.getLimit());
+        assertEquals(3, controller.getPeakLimit());
+    }
+
+    /**
+     * Concurrency should be halved when latency degrades
+     */
+    public void testBacksOffWhenLatencyDegrades() throws InterruptedException {
+        ConcurrencyController controller = new ConcurrencyController(4, true, 0);
+        for (int i = 0; i < 10; ++i)
+            complete(controller, 8, 10 * MILLIS);
+        assertEquals(4, controller.getLimit());
+
+        complete(controller, 8, 50 * MILLIS);
+        assertEquals(2, controller.getLimit());
+    }
+
+    /**
+     * Concurrency should be halved when the work's queries start failing
+     * even though the work itself completes (and as quickly as ever)
+     */
+    public void testBacksOffOnFailures() throws InterruptedException {
+        ConcurrencyController controller = new ConcurrencyController(4, true, 0);
+        for (int i = 0; i < 10; ++i)
+            complete(controller, 8, 10 * MILLIS);
+        assertEquals(4, controller.getLimit());
+
+        complete(controller, 6, 10 * MILLIS);
+        complete(controller, 2, 10 * MILLIS, 1);
+        assertEquals(2, controller.getLimit());
+        assertTrue(controller.getSummary(), controller.getSummary().indexOf("with 2 failed queries") != -1);
+    }
+
+    /**
+     * Without adaptation the hard cap is the limit
+     */
+    public void testFixed() throws InterruptedException {
+        ConcurrencyController controller = new ConcurrencyController(4, false, 0);
+        complete(controller, 16, 50 * MILLIS);
+        assertEquals(4, controller.getLimit());
+    }
+
+    /**
+     * Starts should be spaced out to honor the maximum rate
+     */
+    public void testLimitsRate() throws InterruptedException {
+        ConcurrencyController controller = new ConcurrencyController(4, false, 50);  // one every 20ms
+        long started = System.nanoTime();
+        complete(controller, 6, 0);
+        long elapsed = System.nanoTime() - started;
+
+        // the first starts immediately and each of the other five waits its turn
+        assertTrue("Only took " + elapsed / MILLIS + "ms", elapsed >= 100 * MILLIS);
+    }
+
+    /**
+     * Without a maximum rate starts shouldn't be delayed
+     */
+    public void testUnlimitedRate() throws InterruptedException {
+        ConcurrencyController controller = new ConcurrencyController(4, false, 0);
+        long started = System.nanoTime();
+        complete(controller, 1000, 0);
+        long elapsed = System.nanoTime() - started;
+
+        assertTrue("Took " + elapsed / MILLIS + "ms", elapsed < 1000 * MILLIS);
+    }
+
+    private void complete(ConcurrencyController controller, int count, long nanos) throws InterruptedException {
+        complete(controller, count, nanos, 0);
+    }
+
+    private void complete(ConcurrencyController controller, int count, long nanos, int failures) throws InterruptedException {
+        for (int i = 0; i < count; ++i) {
+            controller.acquire();
+            controller.release(nanos, failures);
+        }
+    }
+}
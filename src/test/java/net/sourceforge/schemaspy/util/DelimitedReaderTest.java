@@ -0,0 +1,63 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.Arrays;
+import junit.framework.TestCase;
+
+/**
+ * Tests how {@link DelimitedReader} splits CSV and TSV exports into fields.
+ */
+public class DelimitedReaderTest extends TestCase {
+    public void testDelimiterFromFileName() {
+        assertEquals(',', DelimitedReader.getDelimiter("columns.csv"));
+        assertEquals('\t', DelimitedReader.getDelimiter("COLUMNS.TSV"));
+        assertEquals('\t', DelimitedReader.getDelimiter("columns.txt.gz"));
+    }
+
+    public void testCsvQuoting() throws IOException {
+        DelimitedReader reader = new DelimitedReader(new StringReader(
+            "NAME,DEFAULT,COMMENT\n" +
+            "a,\"x, y\",\"say \"\"hi\"\"\"\n" +
+            "\n" +
+            "b,,\"two\nlines\"\n" +
+            "c,NULL,\"\"\n"), ',');
+
+        assertEquals(Arrays.asList(new String[] {"NAME", "DEFAULT", "COMMENT"}), Arrays.asList(reader.readRecord()));
+        assertEquals(Arrays.asList(new String[] {"a", "x, y", "say \"hi\""}), Arrays.asList(reader.readRecord()));
+        assertEquals(Arrays.asList(new String[] {"b", null, "two\nlines"}), Arrays.asList(reader.readRecord()));
+        assertEquals(4, reader.getLineNumber());
+        assertEquals(Arrays.asList(new String[] {"c", null, ""}), Arrays.asList(reader.readRecord()));
+        assertNull(reader.readRecord());
+    }
+
+    public void testTsvEscapes() throws IOException {
+        DelimitedReader reader = new DelimitedReader(new StringReader(
+            "a\t\\N\tNULL\t\n" +
+            "tab\\there\tnew\\nline\tback\\\\slash\t\\\\N\n" +
+            "escaped\\\nbreak\t\"quoted\"\n"), '\t');
+
+        assertEquals(Arrays.asList(new String[] {"a", null, null, ""}), Arrays.asList(reader.readRecord()));
+        assertEquals(Arrays.asList(new String[] {"tab\there", "new\nline", "back\\slash", "\\N"}), Arrays.asList(reader.readRecord()));
+        assertEquals(Arrays.asList(new String[] {"escaped\nbreak", "\"quoted\""}), Arrays.asList(reader.readRecord()));
+        assertNull(reader.readRecord());
+    }
+}
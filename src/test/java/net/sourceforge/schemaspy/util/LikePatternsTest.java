@@ -0,0 +1,62 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.util.Arrays;
+import java.util.regex.Pattern;
+import junit.framework.TestCase;
+
+/**
+ * Tests the translation of simple regular expressions into LIKE patterns
+ */
+public class LikePatternsTest extends TestCase {
+    public void testLiteral() {
+        assertEquals(Arrays.asList("USERS"), translate("USERS"));
+    }
+
+    public void testPrefixAndSuffix() {
+        assertEquals(Arrays.asList("ACCT_%", "%_HIST"), translate("ACCT_.*|.*_HIST"));
+    }
+
+    public void testAlternationOfLiterals() {
+        assertEquals(Arrays.asList("ORDERS", "ORDER_LINES"), translate("^(ORDERS|ORDER_LINES)$"));
+    }
+
+    public void testSingleCharactersAndEscapes() {
+        assertEquals(Arrays.asList("T_MP_%", "A.B"), translate("T.MP.+|A\\.B"));
+    }
+
+    public void testMatchesAnything() {
+        assertNull(translate(".*"));
+        assertNull(translate("USERS|.*"));
+    }
+
+    public void testTooComplex() {
+        assertNull(translate("[A-Z]+"));
+        assertNull(translate("USERS?"));
+        assertNull(translate("(A|B)_.*"));
+        assertNull(translate("\\w+"));
+        assertNull(translate("(?i)users"));
+        assertNull(LikePatterns.fromRegex(Pattern.compile("users", Pattern.CASE_INSENSITIVE)));
+    }
+
+    private Object translate(String regex) {
+        return LikePatterns.fromRegex(Pattern.compile(regex));
+    }
+}
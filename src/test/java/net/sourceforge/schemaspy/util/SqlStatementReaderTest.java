@@ -0,0 +1,106 @@
+/*
+ * This file is a part of the SchemaSpy project (http://schemaspy.sourceforge.net).
+ * Copyright (C) 2004, 2005, 2006, 2007, 2008, 2009, 2010, 2011 John Currier
+ *
+ * SchemaSpy is free software; you can redistribute it and/or
+ * modify it under the terms of the GNU Lesser General Public
+ * License as published by the Free Software Foundation; either
+ * version 2.1 of the License, or (at your option) any later version.
+ *
+ * SchemaSpy is distributed in the hope that it will be useful,
+ * but WITHOUT ANY WARRANTY; without even the implied warranty of
+ * MERCHANTABILITY or FITNESS FOR A PARTICULAR PURPOSE.  See the GNU
+ * Lesser General Public License for more details.
+ *
+ * You should have received a copy of the GNU Lesser General Public
+ * License along with this library; if not, write to the Free Software
+ * Foundation, Inc., 51 Franklin Street, Fifth Floor, Boston, MA  02110-1301  USA
+ */
+package net.sourceforge.schemaspy.util;
+
+import java.io.IOException;
+import java.io.StringReader;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import junit.framework.TestCase;
+
+/**
+ * Tests how {@link SqlStatementReader} splits scripts into statements.
+ */
+public class SqlStatementReaderTest extends TestCase {
+    private static final List<String> DDL = Arrays.asList(new String[] {"create", "alter"});
+
+    public void testSemicolons() throws IOException {
+        List<String> statements = read("create table a (x int);\ncreate table b (y int); create table c (z int)", null);
+        assertEquals(Arrays.asList(new String[] {
+            "create table a (x int)", "create table b (y int)", "create table c (z int)"}), statements);
+    }
+
+    public void testTerminatorsInQuotesAndComments() throws IOException {
+        List<String> statements = read(
+            "create table \"a;b\" (x varchar(5) default 'it''s;' -- comment;\n" +
+            ", y int /* ; */, `z;` int, [w;] int);", null);
+        assertEquals(1, statements.size());
+        assertEquals("create table \"a;b\" (x varchar(5) default 'it''s;' \n, y int  , `z;` int, [w;] int)", statements.get(0));
+    }
+
+    public void testBackslashes() throws IOException {
+        // standard SQL: a backslash is just a character
+        List<String> statements = read("create table a (x varchar(5) default 'C:\\');\ncreate table b (y int);", null);
+        assertEquals(Arrays.asList(new String[] {
+            "create table a (x varchar(5) default 'C:\\')", "create table b (y int)"}), statements);
+
+        // PostgreSQL's E'' strings and MySQL scripts: backslashes escape
+        statements = read("create table a (x text default E'it\\'s;');\ncreate table `b` (y varchar(5) default 'it\\'s;');", null);
+        assertEquals(Arrays.asList(new String[] {
+            "create table a (x text default E'it\\'s;')", "create table `b` (y varchar(5) default 'it\\'s;')"}), statements);
+    }
+
+    public void testDollarQuotes() throws IOException {
+        List<String> statements = read(
+            "create function f() returns int as $body$\nbegin; return 1; end;\n$body$ language plpgsql;\ncreate table t (x int);", null);
+        assertEquals(2, statements.size());
+        assertTrue(statements.get(0).endsWith("$body$ language plpgsql"));
+        assertEquals("create table t (x int)", statements.get(1));
+    }
+
+    public void testExecutableComments() throws IOException {
+        List<String> statements = read("/*!40101 SET NAMES utf8 */;\ncreate table t (x int) /*!50100 ENGINE=InnoDB */;", null);
+        assertEquals(2, statements.size());
+        assertEquals("SET NAMES utf8", statements.get(0));
+        assertEquals("create table t (x int)   ENGINE=InnoDB", statements.get(1));
+    }
+
+    public void testDelimiterAndTerminatorLines() throws IOException {
+        List<String> statements = read(
+            "DELIMITER $$\ncreate trigger t before insert on a for each row begin set x = 1; end$$\nDELIMITER ;\n" +
+            "create table a (x int)\nGO\ncreate table b (y int)\n/\n", null);
+        assertEquals(3, statements.size());
+        assertEquals("create trigger t before insert on a for each row begin set x = 1; end", statements.get(0));
+        assertEquals("create table a (x int)", statements.get(1));
+        assertEquals("create table b (y int)", statements.get(2));
+    }
+
+    public void testKeywordsAndCopyData() throws IOException {
+        SqlStatementReader reader = new SqlStatementReader(new StringReader(
+            "insert into a values (1, 'create;');\n" +
+            "COPY a (x) FROM stdin;\n" +
+            "1\tcreate table x;\n" +
+            "\\.\n" +
+            "\n" +
+            "ALTER TABLE a ADD y int;\n"), DDL);
+        assertEquals("ALTER TABLE a ADD y int", reader.readStatement());
+        assertEquals(6, reader.getLineNumber());
+        assertNull(reader.readStatement());
+    }
+
+    private static List<String> read(String sql, List<String> keywords) throws IOException {
+        SqlStatementReader reader = new SqlStatementReader(new StringReader(sql), keywords);
+        List<String> statements = new ArrayList<String>();
+        String statement;
+        while ((statement = reader.readStatement()) != null)
+            statements.add(statement);
+        return statements;
+    }
+}